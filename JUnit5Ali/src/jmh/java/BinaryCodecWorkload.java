@@ -0,0 +1,35 @@
+import benchmarks.CodecWorkload;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Batches through {@link ProductStockCodec}, one encoder/decoder pair per
+ * batch.
+ */
+public class BinaryCodecWorkload implements CodecWorkload {
+
+    private List<ProductStock> batch;
+    private ByteBuffer out;
+    private ByteBuffer encoded;
+
+    @Override
+    public void setUp(int records) {
+        batch = StockFields.batch(records);
+        out = ByteBuffer.allocate(records * 128);
+        encode();
+        encoded = ByteBuffer.allocate(out.position()).put(out.flip()).flip();
+    }
+
+    @Override
+    public int encode() {
+        out.clear();
+        new ProductStockCodec.Encoder().encodeBatch(batch, out);
+        return out.position();
+    }
+
+    @Override
+    public int decode() {
+        return new ProductStockCodec.Decoder().decodeBatch(encoded.duplicate()).size();
+    }
+}
@@ -0,0 +1,54 @@
+import benchmarks.StockWorkload;
+
+/**
+ * {@link HotProductStock}, which splits into per-thread buckets under contention.
+ */
+public class HotProductStockWorkload implements StockWorkload {
+
+    private HotProductStock stock;
+
+    @Override
+    public void setUp(int onHand, int reorderThreshold, int maxCapacity) {
+        stock = new HotProductStock("SKU-1", "WH-1-A3", onHand, reorderThreshold, maxCapacity);
+    }
+
+    @Override
+    public void reserve(int amount) {
+        stock.reserve(amount);
+    }
+
+    @Override
+    public boolean tryReserve(int amount) {
+        return stock.tryReserve(amount) == StockStatus.OK;
+    }
+
+    @Override
+    public void releaseReservation(int amount) {
+        stock.releaseReservation(amount);
+    }
+
+    @Override
+    public void shipReserved(int amount) {
+        stock.shipReserved(amount);
+    }
+
+    @Override
+    public void addStock(int amount) {
+        stock.addStock(amount);
+    }
+
+    @Override
+    public int getAvailable() {
+        return stock.getAvailable();
+    }
+
+    @Override
+    public boolean isReorderNeeded() {
+        return stock.isReorderNeeded();
+    }
+
+    @Override
+    public Object create(String productId, String location, int onHand, int reorderThreshold, int maxCapacity) {
+        return new HotProductStock(productId, location, onHand, reorderThreshold, maxCapacity);
+    }
+}
@@ -0,0 +1,55 @@
+import benchmarks.CodecWorkload;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batches as a serialized ArrayList of records, through
+ * ObjectOutputStream.
+ */
+public class JavaSerializationCodecWorkload implements CodecWorkload {
+
+    private List<ProductStock> batch;
+    private byte[] encoded;
+
+    @Override
+    public void setUp(int records) {
+        batch = StockFields.batch(records);
+        encode();
+    }
+
+    @Override
+    public int encode() {
+        ArrayList<StockFields> fields = new ArrayList<>(batch.size());
+        for (ProductStock stock : batch) {
+            fields.add(StockFields.of(stock));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(fields);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        encoded = bytes.toByteArray();
+        return encoded.length;
+    }
+
+    @Override
+    public int decode() {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(encoded))) {
+            List<?> fields = (List<?>) in.readObject();
+            List<ProductStock> stocks = new ArrayList<>(fields.size());
+            for (Object f : fields) {
+                stocks.add(((StockFields) f).toProductStock());
+            }
+            return stocks.size();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
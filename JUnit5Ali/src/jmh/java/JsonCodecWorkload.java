@@ -0,0 +1,55 @@
+import benchmarks.CodecWorkload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batches as a JSON array of objects, through Jackson.
+ */
+public class JsonCodecWorkload implements CodecWorkload {
+
+    private static final TypeReference<List<StockFields>> BATCH = new TypeReference<>() {
+    };
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private List<ProductStock> batch;
+    private byte[] encoded;
+
+    @Override
+    public void setUp(int records) {
+        batch = StockFields.batch(records);
+        encode();
+    }
+
+    @Override
+    public int encode() {
+        List<StockFields> fields = new ArrayList<>(batch.size());
+        for (ProductStock stock : batch) {
+            fields.add(StockFields.of(stock));
+        }
+        try {
+            encoded = mapper.writeValueAsBytes(fields);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        return encoded.length;
+    }
+
+    @Override
+    public int decode() {
+        try {
+            List<StockFields> fields = mapper.readValue(encoded, BATCH);
+            List<ProductStock> stocks = new ArrayList<>(fields.size());
+            for (StockFields f : fields) {
+                stocks.add(f.toProductStock());
+            }
+            return stocks.size();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import benchmarks.OrderWorkload;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Order reservation against a {@link StockRegistry}. Records hold enough
+ * stock that neither path ever fails during a trial, so both measure the
+ * success path only.
+ */
+public class RegistryOrderWorkload implements OrderWorkload {
+
+    private StockRegistry registry;
+    private List<OrderLine> order;
+
+    @Override
+    public void setUp(int skus, int lines) {
+        registry = new StockRegistry();
+        for (int i = 0; i < skus; i++) {
+            registry.put(new ProductStock("SKU-" + i, "WH-1", 1_000_000_000, 10, Integer.MAX_VALUE));
+        }
+        order = new ArrayList<>(lines);
+        int stride = skus / lines;
+        for (int i = 0; i < lines; i++) {
+            order.add(new OrderLine("SKU-" + i * stride, "WH-1", 1));
+        }
+    }
+
+    @Override
+    public void reserveBatch() {
+        registry.reserveAll(order);
+    }
+
+    @Override
+    public void reservePerLine() {
+        int done = 0;
+        try {
+            for (OrderLine line : order) {
+                registry.reserve(line.productId(), line.location(), line.quantity());
+                done++;
+            }
+        } catch (IllegalStateException e) {
+            for (int i = 0; i < done; i++) {
+                OrderLine line = order.get(i);
+                registry.releaseReservation(line.productId(), line.location(), line.quantity());
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+import benchmarks.AnalyticsWorkload;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Total onHand and maxCapacity per warehouse for "WH-*" locations, over
+ * records spread across 16 warehouses of 1000 bins each.
+ */
+public class StockAnalyticsWorkload implements AnalyticsWorkload {
+
+    private List<ProductStock> stocks;
+    private StockAnalytics analytics;
+    private ForkJoinPool pool;
+
+    @Override
+    public void setUp(int records, int parallelism) {
+        Random random = new Random(1);
+        stocks = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            String location = (i % 10 == 0 ? "STORE-" : "WH-") + (i % 16) + "-" + random.nextInt(1000);
+            stocks.add(new ProductStock("SKU-" + i, location, random.nextInt(1000), 10, 1000));
+        }
+        analytics = StockAnalytics.of(stocks);
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @Override
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Override
+    public int adHocLoop() {
+        Map<String, long[]> groups = new HashMap<>();
+        for (ProductStock stock : stocks) {
+            String location = stock.getLocation();
+            if (location.startsWith("WH-")) {
+                String warehouse = location.substring(0, location.indexOf('-', 3));
+                long[] sums = groups.computeIfAbsent(warehouse, k -> new long[2]);
+                sums[0] += stock.getOnHand();
+                sums[1] += stock.getMaxCapacity();
+            }
+        }
+        return groups.size();
+    }
+
+    @Override
+    public int query() {
+        return analytics.query()
+                .locationMatches("WH-*")
+                .groupByLocationPrefix('-', 2)
+                .run(pool)
+                .groups()
+                .size();
+    }
+}
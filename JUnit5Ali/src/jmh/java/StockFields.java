@@ -0,0 +1,42 @@
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain carrier of a record's state for the JSON and Java serialization
+ * baselines, which cannot handle ProductStock directly.
+ */
+record StockFields(String productId,
+                   String location,
+                   int onHand,
+                   int reserved,
+                   int reorderThreshold,
+                   int maxCapacity) implements Serializable {
+
+    static StockFields of(ProductStock stock) {
+        return new StockFields(stock.getProductId(), stock.getLocation(), stock.getOnHand(),
+                stock.getReserved(), stock.getReorderThreshold(), stock.getMaxCapacity());
+    }
+
+    ProductStock toProductStock() {
+        ProductStock stock = new ProductStock(productId, location, onHand, reorderThreshold, maxCapacity);
+        if (reserved > 0) {
+            stock.reserve(reserved);
+        }
+        return stock;
+    }
+
+    /** A batch with the key repetition of a real feed: 7 locations, 5 records per product. */
+    static List<ProductStock> batch(int records) {
+        List<ProductStock> stocks = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            ProductStock stock = new ProductStock("SKU-" + (100_000 + i / 5), "WH-" + (i % 7) + "-A" + (i % 5),
+                    i % 900, 20, 1000);
+            if (i % 50 > 0) {
+                stock.reserve(i % 50);
+            }
+            stocks.add(stock);
+        }
+        return stocks;
+    }
+}
@@ -0,0 +1,69 @@
+import benchmarks.StockWorkload;
+
+/**
+ * {@link ProductStock} with every call made under the record's monitor, the
+ * way callers share a record between threads today.
+ */
+public class SynchronizedProductStockWorkload implements StockWorkload {
+
+    private ProductStock stock;
+
+    @Override
+    public void setUp(int onHand, int reorderThreshold, int maxCapacity) {
+        stock = new ProductStock("SKU-1", "WH-1-A3", onHand, reorderThreshold, maxCapacity);
+    }
+
+    @Override
+    public void reserve(int amount) {
+        synchronized (stock) {
+            stock.reserve(amount);
+        }
+    }
+
+    @Override
+    public boolean tryReserve(int amount) {
+        synchronized (stock) {
+            return stock.tryReserve(amount) == StockStatus.OK;
+        }
+    }
+
+    @Override
+    public void releaseReservation(int amount) {
+        synchronized (stock) {
+            stock.releaseReservation(amount);
+        }
+    }
+
+    @Override
+    public void shipReserved(int amount) {
+        synchronized (stock) {
+            stock.shipReserved(amount);
+        }
+    }
+
+    @Override
+    public void addStock(int amount) {
+        synchronized (stock) {
+            stock.addStock(amount);
+        }
+    }
+
+    @Override
+    public int getAvailable() {
+        synchronized (stock) {
+            return stock.getAvailable();
+        }
+    }
+
+    @Override
+    public boolean isReorderNeeded() {
+        synchronized (stock) {
+            return stock.isReorderNeeded();
+        }
+    }
+
+    @Override
+    public Object create(String productId, String location, int onHand, int reorderThreshold, int maxCapacity) {
+        return new ProductStock(productId, location, onHand, reorderThreshold, maxCapacity);
+    }
+}
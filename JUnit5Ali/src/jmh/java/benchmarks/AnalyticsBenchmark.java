@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grouped utilization report: StockAnalytics across pool sizes against the
+ * single-threaded loop over ProductStock objects it replaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    @Param({"1000000"})
+    public int records;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private AnalyticsWorkload analytics;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        analytics = Workloads.analytics();
+        analytics.setUp(records, parallelism);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        analytics.tearDown();
+    }
+
+    @Benchmark
+    public int adHocLoop() {
+        return analytics.adHocLoop();
+    }
+
+    @Benchmark
+    public int query() {
+        return analytics.query();
+    }
+}
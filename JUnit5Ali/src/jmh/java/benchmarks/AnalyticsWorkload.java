@@ -0,0 +1,21 @@
+package benchmarks;
+
+/**
+ * Reporting query over a large stock collection, as exercised by
+ * {@link AnalyticsBenchmark}. See {@link StockWorkload} for why
+ * implementations are loaded by name.
+ */
+public interface AnalyticsWorkload {
+
+    /** Builds {@code records} records and a pool of {@code parallelism} workers. */
+    void setUp(int records, int parallelism);
+
+    /** Shuts the pool down. */
+    void tearDown();
+
+    /** Sums onHand and maxCapacity per location prefix with a hand-written loop; returns the group count. */
+    int adHocLoop();
+
+    /** Runs the same query on the analytics engine; returns the group count. */
+    int query();
+}
@@ -0,0 +1,39 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Multi-line order reservation: StockRegistry.reserveAll against the
+ * per-line reserve loop with manual rollback it replaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchReserveBenchmark {
+
+    @Param({"20", "200"})
+    public int lines;
+
+    private OrderWorkload order;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        order = Workloads.order();
+        order.setUp(10_000, lines);
+    }
+
+    @Benchmark
+    public void reserveBatch() {
+        order.reserveBatch();
+    }
+
+    @Benchmark
+    public void reservePerLine() {
+        order.reservePerLine();
+    }
+}
@@ -0,0 +1,78 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the whole benchmark suite across thread counts and writes one JSON
+ * result file per run, for regression tracking.
+ * <p>
+ * Usage: {@code BenchmarkRunner [outputDir] [threadCounts...]}, defaulting to
+ * {@code jmh-results} and 1 2 4 8 16 32 64.
+ */
+public final class BenchmarkRunner {
+
+    private static final int[] DEFAULT_THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        File outputDir = new File(args.length > 0 ? args[0] : "jmh-results");
+        int[] threads = DEFAULT_THREADS;
+        if (args.length > 1) {
+            threads = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                threads[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + outputDir);
+        }
+
+        for (int t : threads) {
+            // the unguarded variant is only meaningful single-threaded
+            String[] variants = t == 1
+                    ? new String[]{"plain", "synchronized", "lockfree", "split"}
+                    : new String[]{"synchronized", "lockfree", "split"};
+            run(new OptionsBuilder()
+                    .include(ProductStockBenchmark.class.getSimpleName())
+                    .param("variant", variants)
+                    .threads(t)
+                    .result(new File(outputDir, "product-stock-t" + t + ".json").getPath())
+                    .resultFormat(ResultFormatType.JSON)
+                    .build());
+        }
+        run(new OptionsBuilder()
+                .include(RejectedReserveBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .result(new File(outputDir, "rejected-reserve.json").getPath())
+                .resultFormat(ResultFormatType.JSON)
+                .build());
+        run(new OptionsBuilder()
+                .include(BatchReserveBenchmark.class.getSimpleName())
+                .result(new File(outputDir, "batch-reserve.json").getPath())
+                .resultFormat(ResultFormatType.JSON)
+                .build());
+        run(new OptionsBuilder()
+                .include(CodecBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .result(new File(outputDir, "codec.json").getPath())
+                .resultFormat(ResultFormatType.JSON)
+                .build());
+        run(new OptionsBuilder()
+                .include(AnalyticsBenchmark.class.getSimpleName())
+                .result(new File(outputDir, "analytics.json").getPath())
+                .resultFormat(ResultFormatType.JSON)
+                .build());
+    }
+
+    private static void run(Options options) throws RunnerException {
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,43 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a replication batch: ProductStockCodec against
+ * JSON (Jackson) and Java serialization. Each operation is a whole batch on
+ * a fresh stream, so the binary codec pays for sending every string once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"binary", "json", "java"})
+    public String format;
+
+    @Param({"1000"})
+    public int records;
+
+    private CodecWorkload codec;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codec = Workloads.codec(format);
+        codec.setUp(records);
+    }
+
+    @Benchmark
+    public int encode() {
+        return codec.encode();
+    }
+
+    @Benchmark
+    public int decode() {
+        return codec.decode();
+    }
+}
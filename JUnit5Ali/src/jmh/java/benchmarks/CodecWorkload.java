@@ -0,0 +1,18 @@
+package benchmarks;
+
+/**
+ * One wire format for ProductStock batches, as exercised by
+ * {@link CodecBenchmark}. See {@link StockWorkload} for why implementations
+ * are loaded by name.
+ */
+public interface CodecWorkload {
+
+    /** Builds a batch of {@code records} records and encodes it once for {@link #decode()}. */
+    void setUp(int records);
+
+    /** Encodes the batch; returns the encoded size in bytes. */
+    int encode();
+
+    /** Decodes the batch encoded in setUp back into records; returns the record count. */
+    int decode();
+}
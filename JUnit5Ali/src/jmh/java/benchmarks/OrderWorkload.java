@@ -0,0 +1,18 @@
+package benchmarks;
+
+/**
+ * Multi-line order reservation against a registry, as exercised by
+ * {@link BatchReserveBenchmark}. See {@link StockWorkload} for why
+ * implementations are loaded by name.
+ */
+public interface OrderWorkload {
+
+    /** Registers {@code skus} records and prepares an order of {@code lines} lines. */
+    void setUp(int skus, int lines);
+
+    /** Reserves the order with one all-or-nothing batch call. */
+    void reserveBatch();
+
+    /** Reserves the order line by line, undoing earlier lines if one fails. */
+    void reservePerLine();
+}
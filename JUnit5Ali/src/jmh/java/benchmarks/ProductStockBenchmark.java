@@ -0,0 +1,66 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the ProductStock hot paths on one shared record.
+ * <p>
+ * Variants: {@code plain} is an unguarded ProductStock and is only valid with
+ * one thread; {@code synchronized} wraps every call in the record's monitor,
+ * as deployments do today; {@code lockfree} is ConcurrentProductStock;
+ * {@code split} is HotProductStock, which moves to per-thread buckets once
+ * reservations contend. Run with {@code -t 1..64} (or {@link BenchmarkRunner})
+ * to measure contention.
+ * <p>
+ * The mutating benchmarks pair operations so the record stays in a steady
+ * state for the whole trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductStockBenchmark {
+
+    @Param({"plain", "synchronized", "lockfree", "split"})
+    public String variant;
+
+    private StockWorkload stock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stock = Workloads.stock(variant);
+        stock.setUp(1_000_000, 10, 2_000_000);
+    }
+
+    @Benchmark
+    public void reserveRelease() {
+        stock.reserve(1);
+        stock.releaseReservation(1);
+    }
+
+    @Benchmark
+    public void reserveShipRestock() {
+        stock.reserve(1);
+        stock.shipReserved(1);
+        stock.addStock(1);
+    }
+
+    @Benchmark
+    public int getAvailable() {
+        return stock.getAvailable();
+    }
+
+    @Benchmark
+    public boolean isReorderNeeded() {
+        return stock.isReorderNeeded();
+    }
+
+    @Benchmark
+    public Object construct() {
+        return stock.create("SKU-1", "WH-1-A3", 50, 5, 100);
+    }
+}
@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of rejecting a reservation on a sold-out record: the throwing
+ * {@code reserve} against the status-returning {@code tryReserve}. Run with
+ * {@code -prof gc} to see the per-call allocation of the exception path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RejectedReserveBenchmark {
+
+    @Param({"plain", "lockfree"})
+    public String variant;
+
+    private StockWorkload stock;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stock = Workloads.stock(variant);
+        stock.setUp(0, 10, 100);
+    }
+
+    @Benchmark
+    public boolean reserveThrowing() {
+        try {
+            stock.reserve(1);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean tryReserve() {
+        return stock.tryReserve(1);
+    }
+}
@@ -0,0 +1,34 @@
+package benchmarks;
+
+/**
+ * One stock implementation as exercised by {@link ProductStockBenchmark}.
+ * <p>
+ * JMH only accepts benchmarks in a named package, while the stock classes
+ * live in the default package, which named packages cannot reference. The
+ * implementations of this interface therefore sit in the default package and
+ * are loaded by name once per trial; the interface call on the hot path is
+ * monomorphic and gets inlined.
+ */
+public interface StockWorkload {
+
+    /** Creates the shared record under test. */
+    void setUp(int onHand, int reorderThreshold, int maxCapacity);
+
+    void reserve(int amount);
+
+    /** Non-throwing reserve; {@code false} if the request was rejected. */
+    boolean tryReserve(int amount);
+
+    void releaseReservation(int amount);
+
+    void shipReserved(int amount);
+
+    void addStock(int amount);
+
+    int getAvailable();
+
+    boolean isReorderNeeded();
+
+    /** Constructs a new record, validation included. */
+    Object create(String productId, String location, int onHand, int reorderThreshold, int maxCapacity);
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+/**
+ * Loads default-package workload implementations by class name.
+ */
+final class Workloads {
+
+    private Workloads() {
+    }
+
+    static StockWorkload stock(String variant) {
+        switch (variant) {
+            case "plain":
+                return load("PlainProductStockWorkload", StockWorkload.class);
+            case "synchronized":
+                return load("SynchronizedProductStockWorkload", StockWorkload.class);
+            case "lockfree":
+                return load("ConcurrentProductStockWorkload", StockWorkload.class);
+            case "split":
+                return load("HotProductStockWorkload", StockWorkload.class);
+            default:
+                throw new IllegalArgumentException("Unknown stock variant: " + variant);
+        }
+    }
+
+    static OrderWorkload order() {
+        return load("RegistryOrderWorkload", OrderWorkload.class);
+    }
+
+    static AnalyticsWorkload analytics() {
+        return load("StockAnalyticsWorkload", AnalyticsWorkload.class);
+    }
+
+    static CodecWorkload codec(String format) {
+        switch (format) {
+            case "binary":
+                return load("BinaryCodecWorkload", CodecWorkload.class);
+            case "json":
+                return load("JsonCodecWorkload", CodecWorkload.class);
+            case "java":
+                return load("JavaSerializationCodecWorkload", CodecWorkload.class);
+            default:
+                throw new IllegalArgumentException("Unknown codec format: " + format);
+        }
+    }
+
+    private static <T> T load(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load workload " + className, e);
+        }
+    }
+}
@@ -0,0 +1,521 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel loader for full inventory feeds, in CSV or in a compact binary
+ * format.
+ * <p>
+ * The feed file is mapped with {@link FileChannel#map} and split into chunks
+ * that {@link ForkJoinPool} workers parse and load concurrently into a
+ * {@link StockRegistry}. Every row becomes a {@link ProductStock} through its
+ * constructor, so rows are validated by exactly the same rules. A row that
+ * fails to parse or validate is reported as a {@link Rejection} and the load
+ * carries on with the next row.
+ * <p>
+ * Rows are added with {@link StockRegistry#putIfAbsent(ProductStock)}: a row
+ * whose product and location are already registered, by an earlier load or
+ * by another row of the same feed, is rejected as a duplicate. Which of two
+ * duplicate rows in one feed is kept is not defined.
+ *
+ * <pre>
+ * CSV:    one row per line: productId,location,onHand,reorderThreshold,maxCapacity
+ *         no quoting; spaces around fields are ignored; blank lines are skipped;
+ *         a first line starting with "productId," is a header
+ * binary: header (8 bytes): magic, version
+ *         block:  [recordCount:4][byteLength:4] records
+ *         record: productId [len:varint][utf8], location [len:varint][utf8],
+ *                 onHand, reorderThreshold, maxCapacity as varints
+ * </pre>
+ * Binary feeds are written by {@link #writeBinary(Path, Iterable)}. Blocks
+ * let the file be split without decoding it; a record that cannot be decoded
+ * loses the rest of its block.
+ */
+public final class BulkStockLoader {
+
+    static final int MAGIC = 0x53544B46;        // "STKF"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int BLOCK_HEADER_SIZE = 8;
+    static final int RECORDS_PER_BLOCK = 4096;
+    static final int MAX_ROW_BYTES = 64 * 1024;
+
+    private static final int DEFAULT_CHUNK_BYTES = 8 * 1024 * 1024;
+    private static final String[] NUMBER_FIELDS = {"initialOnHand", "reorderThreshold", "maxCapacity"};
+
+    /**
+     * A row that was not loaded.
+     *
+     * @param row    1-based line number in a CSV feed, 1-based record number in a binary feed
+     * @param reason why the row was rejected
+     */
+    public record Rejection(long row, String reason) {
+    }
+
+    /**
+     * Outcome of a load.
+     *
+     * @param loaded     number of records added to the registry
+     * @param rejections rejected rows, in file order
+     */
+    public record Report(long loaded, List<Rejection> rejections) {
+
+        public int rejectedCount() {
+            return rejections.size();
+        }
+    }
+
+    private final StockRegistry registry;
+    private final ForkJoinPool pool;
+    private final int chunkBytes;
+
+    public BulkStockLoader(StockRegistry registry) {
+        this(registry, ForkJoinPool.commonPool());
+    }
+
+    public BulkStockLoader(StockRegistry registry, ForkJoinPool pool) {
+        this(registry, pool, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * @param chunkBytes bytes of feed parsed by one task (> 0)
+     */
+    BulkStockLoader(StockRegistry registry, ForkJoinPool pool, int chunkBytes) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry must not be null");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("pool must not be null");
+        }
+        if (chunkBytes <= 0) {
+            throw new IllegalArgumentException("chunkBytes must be > 0");
+        }
+        this.registry = registry;
+        this.pool = pool;
+        this.chunkBytes = chunkBytes;
+    }
+
+    // ---------- Loading ----------
+
+    /**
+     * Loads a CSV feed into the registry.
+     */
+    public Report loadCsv(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new Report(0, List.of());
+            }
+            return pool.invoke(new CsvTask(channel, size, 0, size)).toReport();
+        }
+    }
+
+    /**
+     * Loads a binary feed into the registry.
+     *
+     * @throws IllegalStateException if the file is not a binary stock feed
+     */
+    public Report loadBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (size < HEADER_SIZE || channel.read(header, 0) != HEADER_SIZE || header.getInt(0) != MAGIC) {
+                throw new IllegalStateException("Not a stock feed file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IllegalStateException("Unsupported stock feed version");
+            }
+
+            // walk the block headers only; the blocks themselves are decoded in parallel
+            List<long[]> blocks = new ArrayList<>();   // {offset, recordCount, byteLength}
+            Rejection truncated = null;
+            long records = 0;
+            long offset = HEADER_SIZE;
+            ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+            while (offset < size) {
+                blockHeader.clear();
+                int count = -1;
+                int length = -1;
+                if (size - offset >= BLOCK_HEADER_SIZE && channel.read(blockHeader, offset) == BLOCK_HEADER_SIZE) {
+                    count = blockHeader.getInt(0);
+                    length = blockHeader.getInt(4);
+                }
+                if (count < 0 || length < 0 || length > size - offset - BLOCK_HEADER_SIZE) {
+                    truncated = new Rejection(records + 1, "Truncated block at byte " + offset);
+                    break;
+                }
+                blocks.add(new long[]{offset + BLOCK_HEADER_SIZE, count, length});
+                records += count;
+                offset += BLOCK_HEADER_SIZE + length;
+            }
+
+            Partial result = blocks.isEmpty()
+                    ? new Partial()
+                    : pool.invoke(new BinaryTask(channel, blocks, 0, blocks.size()));
+            if (truncated != null) {
+                result.rejections.add(truncated);
+            }
+            return result.toReport();
+        }
+    }
+
+    /**
+     * Writes records as a binary feed that {@link #loadBinary(Path)} reads.
+     * Only the fields the constructor takes are written.
+     */
+    public static void writeBinary(Path file, Iterable<ProductStock> stocks) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+            int count = 0;
+            block.position(BLOCK_HEADER_SIZE);
+            for (ProductStock stock : stocks) {
+                byte[] productId = stock.getProductId().getBytes(StandardCharsets.UTF_8);
+                byte[] location = stock.getLocation().getBytes(StandardCharsets.UTF_8);
+                int needed = productId.length + location.length + 5 * Varints.MAX_INT_BYTES;
+                if (count == RECORDS_PER_BLOCK || block.remaining() < needed) {
+                    if (count > 0) {
+                        writeBlock(out, block, count);
+                        count = 0;
+                    }
+                    if (block.capacity() < BLOCK_HEADER_SIZE + needed) {
+                        block = ByteBuffer.allocate(BLOCK_HEADER_SIZE + needed);
+                    }
+                    block.clear().position(BLOCK_HEADER_SIZE);
+                }
+                Varints.putString(block, productId);
+                Varints.putString(block, location);
+                Varints.putUnsigned(block, stock.getOnHand());
+                Varints.putUnsigned(block, stock.getReorderThreshold());
+                Varints.putUnsigned(block, stock.getMaxCapacity());
+                count++;
+            }
+            if (count > 0) {
+                writeBlock(out, block, count);
+            }
+        }
+    }
+
+    private static void writeBlock(FileChannel out, ByteBuffer block, int count) throws IOException {
+        block.putInt(0, count).putInt(4, block.position() - BLOCK_HEADER_SIZE).flip();
+        while (block.hasRemaining()) {
+            out.write(block);
+        }
+    }
+
+    // ---------- Parallel tasks ----------
+
+    /**
+     * Rows seen and loaded by one task. Rejection rows are counted from the
+     * start of the task's range until partials are merged in file order.
+     */
+    private static final class Partial {
+        long rows;
+        long loaded;
+        final List<Rejection> rejections = new ArrayList<>();
+
+        Partial append(Partial next) {
+            for (Rejection r : next.rejections) {
+                rejections.add(new Rejection(rows + r.row(), r.reason()));
+            }
+            rows += next.rows;
+            loaded += next.loaded;
+            return this;
+        }
+
+        Report toReport() {
+            return new Report(loaded, List.copyOf(rejections));
+        }
+    }
+
+    /**
+     * Parses the CSV rows that start in [start, end). A row belongs to the
+     * chunk its first byte falls in, so each row is parsed exactly once.
+     */
+    private final class CsvTask extends RecursiveTask<Partial> {
+        private final FileChannel channel;
+        private final long size;
+        private final long start;
+        private final long end;
+
+        CsvTask(FileChannel channel, long size, long start, long end) {
+            this.channel = channel;
+            this.size = size;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (end - start > chunkBytes) {
+                long mid = start + (end - start) / 2;
+                CsvTask right = new CsvTask(channel, size, mid, end);
+                right.fork();
+                Partial left = new CsvTask(channel, size, start, mid).compute();
+                return left.append(right.join());
+            }
+            try {
+                return parse();
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read stock feed", e);
+            }
+        }
+
+        private Partial parse() throws IOException {
+            // map one byte before the chunk to see whether a row starts at it,
+            // and enough after it to finish the last row
+            long windowStart = Math.max(start - 1, 0);
+            long windowEnd = Math.min(size, end + MAX_ROW_BYTES);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+            int limit = window.limit();
+            int chunkEnd = (int) (end - windowStart);
+            boolean windowReachesEof = windowEnd == size;
+
+            Partial partial = new Partial();
+            int pos = (int) (start - windowStart);
+            if (start > 0 && window.get(0) != '\n') {
+                pos = indexOfNewline(window, pos, limit) + 1;
+                if (pos == 0) {
+                    return partial;
+                }
+            }
+            RowParser parser = new RowParser();
+            while (pos < chunkEnd) {
+                int newline = indexOfNewline(window, pos, limit);
+                partial.rows++;
+                int rowEnd = newline < 0 ? limit : newline;
+                if (rowEnd - pos > MAX_ROW_BYTES || (newline < 0 && !windowReachesEof)) {
+                    // skip just this row; a row running past the window ends
+                    // beyond this chunk, so the rows after it belong to the next
+                    partial.rejections.add(new Rejection(partial.rows, "Row longer than " + MAX_ROW_BYTES + " bytes"));
+                    pos = rowEnd + 1;
+                    continue;
+                }
+                boolean header = start == 0 && partial.rows == 1 && startsWith(window, pos, rowEnd, "productId,");
+                if (!header) {
+                    parser.load(window, pos, rowEnd, partial);
+                }
+                pos = rowEnd + 1;
+            }
+            return partial;
+        }
+    }
+
+    /**
+     * Decodes the blocks with indexes in [from, to).
+     */
+    private final class BinaryTask extends RecursiveTask<Partial> {
+        private final FileChannel channel;
+        private final List<long[]> blocks;
+        private final int from;
+        private final int to;
+
+        BinaryTask(FileChannel channel, List<long[]> blocks, int from, int to) {
+            this.channel = channel;
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            long bytes = 0;
+            for (int i = from; i < to; i++) {
+                bytes += blocks.get(i)[2];
+            }
+            if (to - from > 1 && bytes > chunkBytes) {
+                int mid = (from + to) >>> 1;
+                BinaryTask right = new BinaryTask(channel, blocks, mid, to);
+                right.fork();
+                Partial left = new BinaryTask(channel, blocks, from, mid).compute();
+                return left.append(right.join());
+            }
+            try {
+                Partial partial = new Partial();
+                for (int i = from; i < to; i++) {
+                    decodeBlock(blocks.get(i), partial);
+                }
+                return partial;
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot read stock feed", e);
+            }
+        }
+
+        private void decodeBlock(long[] block, Partial partial) throws IOException {
+            int count = (int) block[1];
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, block[0], block[2]);
+            for (int i = 0; i < count; i++) {
+                partial.rows++;
+                String productId;
+                String location;
+                int onHand;
+                int reorderThreshold;
+                int maxCapacity;
+                try {
+                    productId = Varints.getString(in);
+                    location = Varints.getString(in);
+                    onHand = Varints.getUnsigned(in);
+                    reorderThreshold = Varints.getUnsigned(in);
+                    maxCapacity = Varints.getUnsigned(in);
+                } catch (IllegalStateException | BufferUnderflowException e) {
+                    int skipped = count - i - 1;
+                    partial.rejections.add(new Rejection(partial.rows,
+                            "Malformed record; skipped the " + skipped + " records after it in its block"));
+                    partial.rows += skipped;
+                    return;
+                }
+                add(productId, location, onHand, reorderThreshold, maxCapacity, partial);
+            }
+        }
+    }
+
+    /**
+     * Splits CSV rows into fields without intermediate strings; only the two
+     * keys are decoded. One parser per task, so its scratch buffer is reused.
+     */
+    private final class RowParser {
+        private final int[] fieldStart = new int[5];
+        private final int[] fieldEnd = new int[5];
+        private final int[] numbers = new int[3];
+        private byte[] scratch = new byte[64];
+
+        void load(ByteBuffer row, int from, int to, Partial partial) {
+            if (to > from && row.get(to - 1) == '\r') {
+                to--;
+            }
+            int fields = 0;
+            int fieldFrom = from;
+            boolean blank = true;
+            for (int i = from; i <= to; i++) {
+                if (i == to || row.get(i) == ',') {
+                    if (fields == 5) {
+                        fields++;
+                        break;
+                    }
+                    fieldStart[fields] = fieldFrom;
+                    fieldEnd[fields] = i;
+                    fields++;
+                    fieldFrom = i + 1;
+                } else if (row.get(i) != ' ') {
+                    blank = false;
+                }
+            }
+            if (blank && fields == 1) {
+                return;
+            }
+            if (fields != 5) {
+                partial.rejections.add(new Rejection(partial.rows, "Expected 5 fields"));
+                return;
+            }
+            for (int f = 0; f < 5; f++) {
+                trim(row, f);
+            }
+            for (int f = 0; f < 3; f++) {
+                long value = parseInt(row, fieldStart[f + 2], fieldEnd[f + 2]);
+                if (value == Long.MIN_VALUE) {
+                    partial.rejections.add(new Rejection(partial.rows, NUMBER_FIELDS[f] + " is not a number"));
+                    return;
+                }
+                numbers[f] = (int) value;
+            }
+            add(decode(row, 0), decode(row, 1), numbers[0], numbers[1], numbers[2], partial);
+        }
+
+        private void trim(ByteBuffer row, int field) {
+            while (fieldStart[field] < fieldEnd[field] && row.get(fieldStart[field]) == ' ') {
+                fieldStart[field]++;
+            }
+            while (fieldEnd[field] > fieldStart[field] && row.get(fieldEnd[field] - 1) == ' ') {
+                fieldEnd[field]--;
+            }
+        }
+
+        private String decode(ByteBuffer row, int field) {
+            int length = fieldEnd[field] - fieldStart[field];
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            row.get(fieldStart[field], scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parses an optionally signed decimal int.
+     *
+     * @return the value, or Long.MIN_VALUE if the text is not an int
+     */
+    private static long parseInt(ByteBuffer row, int from, int to) {
+        boolean negative = from < to && row.get(from) == '-';
+        int i = negative ? from + 1 : from;
+        if (i == to) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = row.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                return Long.MIN_VALUE;
+            }
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    private void add(String productId, String location, int onHand, int reorderThreshold, int maxCapacity,
+                     Partial partial) {
+        ProductStock stock;
+        try {
+            stock = new ProductStock(productId, location, onHand, reorderThreshold, maxCapacity);
+        } catch (IllegalArgumentException e) {
+            partial.rejections.add(new Rejection(partial.rows, e.getMessage()));
+            return;
+        }
+        if (registry.putIfAbsent(stock) != null) {
+            partial.rejections.add(new Rejection(partial.rows,
+                    "Duplicate stock for product " + productId + " at " + location));
+            return;
+        }
+        partial.loaded++;
+    }
+
+    // ---------- Helpers ----------
+
+    private static int indexOfNewline(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int from, int to, String prefix) {
+        if (to - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer.get(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
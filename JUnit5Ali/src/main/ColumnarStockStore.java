@@ -0,0 +1,479 @@
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays store for very large numbers of stock records.
+ * <p>
+ * Instead of one {@link ProductStock} object per SKU-location pair, every
+ * field lives in its own parallel {@code int[]} column and productId/location
+ * are dictionary-encoded, so a record costs a few dozen bytes and the GC sees
+ * a handful of large arrays instead of millions of small objects.
+ * <p>
+ * Records are addressed by an {@code int} handle returned from {@link #add}.
+ * The operations mirror {@link ProductStock} with the same validation rules,
+ * exception types and messages; {@link View} offers an object-like flyweight
+ * over a handle. Not thread-safe, like {@link ProductStock}.
+ */
+public class ColumnarStockStore {
+
+    private static final int NOT_FOUND = -1;
+
+    private final StringDictionary productIds;
+    private final StringDictionary locations;
+    private final LongIntHashMap index;   // (productCode, locationCode) -> handle
+
+    private int[] productCode;
+    private int[] locationCode;
+    private int[] onHand;
+    private int[] reserved;
+    private int[] reorderThreshold;
+    private int[] maxCapacity;
+    private int size;
+
+    public ColumnarStockStore() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedSize expected number of records (>= 0)
+     */
+    public ColumnarStockStore(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must be >= 0");
+        }
+        int capacity = Math.max(16, expectedSize);
+        this.productIds = new StringDictionary();
+        this.locations = new StringDictionary();
+        this.index = new LongIntHashMap(expectedSize, NOT_FOUND);
+        this.productCode = new int[capacity];
+        this.locationCode = new int[capacity];
+        this.onHand = new int[capacity];
+        this.reserved = new int[capacity];
+        this.reorderThreshold = new int[capacity];
+        this.maxCapacity = new int[capacity];
+    }
+
+    private static long key(int productCode, int locationCode) {
+        return ((long) productCode << 32) | (locationCode & 0xFFFF_FFFFL);
+    }
+
+    private void grow() {
+        int capacity = size + (size >> 1) + 1;
+        productCode = Arrays.copyOf(productCode, capacity);
+        locationCode = Arrays.copyOf(locationCode, capacity);
+        onHand = Arrays.copyOf(onHand, capacity);
+        reserved = Arrays.copyOf(reserved, capacity);
+        reorderThreshold = Arrays.copyOf(reorderThreshold, capacity);
+        maxCapacity = Arrays.copyOf(maxCapacity, capacity);
+    }
+
+    private void checkHandle(int handle) {
+        if (handle < 0 || handle >= size) {
+            throw new IllegalArgumentException("Unknown stock handle: " + handle);
+        }
+    }
+
+    // ---------- Records ----------
+
+    /**
+     * Adds a record with the same validation as the {@link ProductStock} constructor.
+     *
+     * @return the handle of the new record
+     * @throws IllegalStateException if a record already exists for productId and location
+     */
+    public int add(String productId,
+                   String location,
+                   int initialOnHand,
+                   int reorderThreshold,
+                   int maxCapacity) {
+
+        if (productId == null || productId.isBlank()) {
+            throw new IllegalArgumentException("productId must not be null or blank");
+        }
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("location must not be null or blank");
+        }
+        if (initialOnHand < 0) {
+            throw new IllegalArgumentException("initialOnHand must be >= 0");
+        }
+        if (reorderThreshold < 0) {
+            throw new IllegalArgumentException("reorderThreshold must be >= 0");
+        }
+        if (maxCapacity <= 0) {
+            throw new IllegalArgumentException("maxCapacity must be > 0");
+        }
+        if (initialOnHand > maxCapacity) {
+            throw new IllegalArgumentException("initialOnHand exceeds maxCapacity");
+        }
+
+        int product = productIds.intern(productId);
+        int loc = locations.intern(location);
+        long key = key(product, loc);
+        if (index.get(key) != NOT_FOUND) {
+            throw new IllegalStateException("Stock already exists for " + productId + " at " + location);
+        }
+        if (size == onHand.length) {
+            grow();
+        }
+        int handle = size++;
+        this.productCode[handle] = product;
+        this.locationCode[handle] = loc;
+        this.onHand[handle] = initialOnHand;
+        this.reserved[handle] = 0;
+        this.reorderThreshold[handle] = reorderThreshold;
+        this.maxCapacity[handle] = maxCapacity;
+        index.put(key, handle);
+        return handle;
+    }
+
+    /**
+     * Copies an existing ProductStock into the store.
+     */
+    public int add(ProductStock stock) {
+        int handle = add(stock.getProductId(), stock.getLocation(), stock.getOnHand(),
+                stock.getReorderThreshold(), stock.getMaxCapacity());
+        reserved[handle] = stock.getReserved();
+        return handle;
+    }
+
+    /**
+     * Returns the handle for productId and location, or -1 if there is none.
+     */
+    public int find(String productId, String location) {
+        int product = productIds.codeOf(productId);
+        int loc = locations.codeOf(location);
+        if (product < 0 || loc < 0) {
+            return NOT_FOUND;
+        }
+        return index.get(key(product, loc));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ---------- Getters ----------
+
+    public String getProductId(int handle) {
+        checkHandle(handle);
+        return productIds.valueOf(productCode[handle]);
+    }
+
+    public String getLocation(int handle) {
+        checkHandle(handle);
+        return locations.valueOf(locationCode[handle]);
+    }
+
+    public int getOnHand(int handle) {
+        checkHandle(handle);
+        return onHand[handle];
+    }
+
+    public int getReserved(int handle) {
+        checkHandle(handle);
+        return reserved[handle];
+    }
+
+    /**
+     * Available stock = onHand - reserved.
+     */
+    public int getAvailable(int handle) {
+        checkHandle(handle);
+        return onHand[handle] - reserved[handle];
+    }
+
+    public int getReorderThreshold(int handle) {
+        checkHandle(handle);
+        return reorderThreshold[handle];
+    }
+
+    public int getMaxCapacity(int handle) {
+        checkHandle(handle);
+        return maxCapacity[handle];
+    }
+
+    // ---------- Mutating operations with business rules ----------
+
+    /**
+     * Change physical location of the stock.
+     */
+    public void changeLocation(int handle, String newLocation) {
+        checkHandle(handle);
+        if (newLocation == null || newLocation.isBlank()) {
+            throw new IllegalArgumentException("newLocation must not be null or blank");
+        }
+        int loc = locations.intern(newLocation);
+        if (loc == locationCode[handle]) {
+            return;
+        }
+        long newKey = key(productCode[handle], loc);
+        if (index.get(newKey) != NOT_FOUND) {
+            throw new IllegalStateException("Stock already exists for "
+                    + getProductId(handle) + " at " + newLocation);
+        }
+        index.remove(key(productCode[handle], locationCode[handle]));
+        index.put(newKey, handle);
+        locationCode[handle] = loc;
+    }
+
+    /**
+     * Adds stock to on-hand quantity. Fails if amount is not positive
+     * or if the operation would exceed maxCapacity.
+     */
+    public void addStock(int handle, int amount) {
+        checkHandle(handle);
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to add must be positive");
+        }
+        if ((long) onHand[handle] + amount > maxCapacity[handle]) {
+            throw new IllegalStateException("Cannot add stock beyond maxCapacity");
+        }
+        onHand[handle] += amount;
+    }
+
+    /**
+     * Removes stock from on-hand as damaged/expired.
+     * Cannot remove more than onHand.
+     */
+    public void removeDamaged(int handle, int amount) {
+        checkHandle(handle);
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to remove must be positive");
+        }
+        if (amount > onHand[handle]) {
+            throw new IllegalStateException("Cannot remove more than on-hand quantity");
+        }
+        onHand[handle] -= amount;
+        if (reserved[handle] > onHand[handle]) {
+            // Safety: never allow reserved > onHand
+            reserved[handle] = onHand[handle];
+        }
+    }
+
+    /**
+     * Reserves stock for a customer order.
+     * Cannot reserve more than available.
+     */
+    public void reserve(int handle, int amount) {
+        checkHandle(handle);
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to reserve must be positive");
+        }
+        if (amount > onHand[handle] - reserved[handle]) {
+            throw new IllegalStateException("Insufficient available stock to reserve");
+        }
+        reserved[handle] += amount;
+    }
+
+    /**
+     * Releases (un-reserves) previously reserved stock.
+     * Cannot release more than currently reserved.
+     */
+    public void releaseReservation(int handle, int amount) {
+        checkHandle(handle);
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to release must be positive");
+        }
+        if (amount > reserved[handle]) {
+            throw new IllegalStateException("Cannot release more than reserved");
+        }
+        reserved[handle] -= amount;
+    }
+
+    /**
+     * Confirms shipment: removes stock from on-hand and reserved at the same time.
+     */
+    public void shipReserved(int handle, int amount) {
+        checkHandle(handle);
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to ship must be positive");
+        }
+        if (amount > reserved[handle]) {
+            throw new IllegalStateException("Cannot ship more than reserved");
+        }
+        if (amount > onHand[handle]) {
+            throw new IllegalStateException("On-hand quantity is not enough to ship");
+        }
+        reserved[handle] -= amount;
+        onHand[handle] -= amount;
+    }
+
+    /**
+     * Returns true if available stock is below reorder threshold.
+     */
+    public boolean isReorderNeeded(int handle) {
+        checkHandle(handle);
+        return onHand[handle] - reserved[handle] < reorderThreshold[handle];
+    }
+
+    /**
+     * Updates the reorder threshold, must be >= 0 and <= maxCapacity.
+     */
+    public void updateReorderThreshold(int handle, int newThreshold) {
+        checkHandle(handle);
+        if (newThreshold < 0) {
+            throw new IllegalArgumentException("reorderThreshold must be >= 0");
+        }
+        if (newThreshold > maxCapacity[handle]) {
+            throw new IllegalArgumentException("reorderThreshold cannot exceed maxCapacity");
+        }
+        reorderThreshold[handle] = newThreshold;
+    }
+
+    /**
+     * Updates max capacity. Cannot be less than current onHand.
+     */
+    public void updateMaxCapacity(int handle, int newMaxCapacity) {
+        checkHandle(handle);
+        if (newMaxCapacity <= 0) {
+            throw new IllegalArgumentException("maxCapacity must be > 0");
+        }
+        if (newMaxCapacity < onHand[handle]) {
+            throw new IllegalStateException("New maxCapacity is less than current onHand");
+        }
+        maxCapacity[handle] = newMaxCapacity;
+        if (reorderThreshold[handle] > newMaxCapacity) {
+            reorderThreshold[handle] = newMaxCapacity;
+        }
+    }
+
+    /**
+     * Materializes a record as a standalone ProductStock.
+     */
+    public ProductStock toProductStock(int handle) {
+        checkHandle(handle);
+        ProductStock stock = new ProductStock(getProductId(handle), getLocation(handle),
+                onHand[handle], reorderThreshold[handle], maxCapacity[handle]);
+        if (reserved[handle] > 0) {
+            stock.reserve(reserved[handle]);
+        }
+        return stock;
+    }
+
+    // ---------- Flyweight ----------
+
+    /**
+     * Returns a flyweight positioned on the given record.
+     */
+    public View view(int handle) {
+        checkHandle(handle);
+        return new View(handle);
+    }
+
+    /**
+     * Object-like view over one record of the store. A single View can be
+     * moved across records with {@link #moveTo(int)} to scan the store
+     * without allocating.
+     */
+    public final class View {
+
+        private int handle;
+
+        private View(int handle) {
+            this.handle = handle;
+        }
+
+        public View moveTo(int handle) {
+            checkHandle(handle);
+            this.handle = handle;
+            return this;
+        }
+
+        public int handle() {
+            return handle;
+        }
+
+        public String getProductId() {
+            return ColumnarStockStore.this.getProductId(handle);
+        }
+
+        public String getLocation() {
+            return ColumnarStockStore.this.getLocation(handle);
+        }
+
+        public int getOnHand() {
+            return onHand[handle];
+        }
+
+        public int getReserved() {
+            return reserved[handle];
+        }
+
+        public int getAvailable() {
+            return onHand[handle] - reserved[handle];
+        }
+
+        public int getReorderThreshold() {
+            return reorderThreshold[handle];
+        }
+
+        public int getMaxCapacity() {
+            return maxCapacity[handle];
+        }
+
+        public boolean isReorderNeeded() {
+            return ColumnarStockStore.this.isReorderNeeded(handle);
+        }
+
+        public void addStock(int amount) {
+            ColumnarStockStore.this.addStock(handle, amount);
+        }
+
+        public void removeDamaged(int amount) {
+            ColumnarStockStore.this.removeDamaged(handle, amount);
+        }
+
+        public void reserve(int amount) {
+            ColumnarStockStore.this.reserve(handle, amount);
+        }
+
+        public void releaseReservation(int amount) {
+            ColumnarStockStore.this.releaseReservation(handle, amount);
+        }
+
+        public void shipReserved(int amount) {
+            ColumnarStockStore.this.shipReserved(handle, amount);
+        }
+
+        @Override
+        public String toString() {
+            return "ProductStock{" +
+                   "productId='" + getProductId() + '\'' +
+                   ", location='" + getLocation() + '\'' +
+                   ", onHand=" + getOnHand() +
+                   ", reserved=" + getReserved() +
+                   ", available=" + getAvailable() +
+                   ", reorderThreshold=" + getReorderThreshold() +
+                   ", maxCapacity=" + getMaxCapacity() +
+                   '}';
+        }
+    }
+
+    // ---------- Memory comparison ----------
+
+    /**
+     * Approximate heap used by this store: the six columns, the key index and
+     * both dictionaries (64-bit JVM, compressed oops).
+     */
+    public long footprintBytes() {
+        long columns = 6L * (MemoryLayout.ARRAY_HEADER_BYTES + (long) onHand.length * Integer.BYTES);
+        return columns + index.footprintBytes() + productIds.footprintBytes() + locations.footprintBytes();
+    }
+
+    /**
+     * Approximate heap the same records would need as one ProductStock object each,
+     * with their own productId and location strings and a HashMap entry keyed
+     * by a "productId@location" string, which is how deployments hold them today.
+     *
+     * @param records             number of SKU-location pairs
+     * @param avgProductIdLength  average productId length in characters
+     * @param avgLocationLength   average location length in characters
+     */
+    public static long objectPerSkuBytes(long records, int avgProductIdLength, int avgLocationLength) {
+        long perRecord = MemoryLayout.PRODUCT_STOCK_BYTES
+                         + MemoryLayout.stringBytes(avgProductIdLength)
+                         + MemoryLayout.stringBytes(avgLocationLength)
+                         + MemoryLayout.HASH_MAP_ENTRY_BYTES
+                         + MemoryLayout.stringBytes(avgProductIdLength + 1 + avgLocationLength);
+        return records * perRecord;
+    }
+}
@@ -0,0 +1,428 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Thread-safe, lock-free variant of {@link ProductStock}.
+ * <p>
+ * onHand and reserved are packed into a single {@code long} and updated with
+ * compare-and-set, so the invariant {@code reserved <= onHand} can never be
+ * observed broken and the hot operations never block each other.
+ * maxCapacity and reorderThreshold are packed into a second word that only
+ * changes on the (rare) limit updates.
+ * <p>
+ * Validation rules, exception types and messages are the same as {@link ProductStock}.
+ */
+public class ConcurrentProductStock {
+
+    // ---------- state word: [frozen:1][onHand:31][unused:1][reserved:31] ----------
+
+    private static final long FROZEN = 1L << 63;     // addStock or maxCapacity change in progress
+    private static final long QTY_MASK = 0x7FFF_FFFFL;
+
+    private static final VarHandle STATE;
+    private static final VarHandle LIMITS;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(ConcurrentProductStock.class, "state", long.class);
+            LIMITS = lookup.findVarHandle(ConcurrentProductStock.class, "limits", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String productId;
+    private volatile String location;   // e.g., "WH-1-A3"
+    private volatile long state;        // onHand + reserved, see layout above
+    private volatile long limits;       // maxCapacity (high int) + reorderThreshold (low int)
+
+    /**
+     * Creates a ConcurrentProductStock instance with basic inventory info.
+     *
+     * @param productId        unique ID of the product (must not be null/blank)
+     * @param location         storage location code (must not be null/blank)
+     * @param initialOnHand    initial on-hand quantity (>= 0)
+     * @param reorderThreshold threshold for triggering reorder (>= 0)
+     * @param maxCapacity      maximum capacity of this location (> 0)
+     */
+    public ConcurrentProductStock(String productId,
+                                  String location,
+                                  int initialOnHand,
+                                  int reorderThreshold,
+                                  int maxCapacity) {
+
+        if (productId == null || productId.isBlank()) {
+            throw new IllegalArgumentException("productId must not be null or blank");
+        }
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("location must not be null or blank");
+        }
+        if (initialOnHand < 0) {
+            throw new IllegalArgumentException("initialOnHand must be >= 0");
+        }
+        if (reorderThreshold < 0) {
+            throw new IllegalArgumentException("reorderThreshold must be >= 0");
+        }
+        if (maxCapacity <= 0) {
+            throw new IllegalArgumentException("maxCapacity must be > 0");
+        }
+        if (initialOnHand > maxCapacity) {
+            throw new IllegalArgumentException("initialOnHand exceeds maxCapacity");
+        }
+
+        this.productId = productId;
+        this.location = LocationCode.intern(location);
+        this.state = packState(initialOnHand, 0);
+        this.limits = packLimits(maxCapacity, reorderThreshold);
+    }
+
+    // ---------- Packing helpers ----------
+
+    private static long packState(int onHand, int reserved) {
+        return ((long) onHand << 32) | reserved;
+    }
+
+    private static int onHand(long state) {
+        return (int) ((state >>> 32) & QTY_MASK);
+    }
+
+    private static int reserved(long state) {
+        return (int) (state & QTY_MASK);
+    }
+
+    /** Replaces the quantities of a state word, keeping its frozen bit. */
+    private static long withQuantities(long state, int onHand, int reserved) {
+        return (state & FROZEN) | packState(onHand, reserved);
+    }
+
+    private static long packLimits(int maxCapacity, int reorderThreshold) {
+        return ((long) maxCapacity << 32) | reorderThreshold;
+    }
+
+    private static int maxCapacity(long limits) {
+        return (int) (limits >>> 32);
+    }
+
+    private static int reorderThreshold(long limits) {
+        return (int) limits;
+    }
+
+    // ---------- Getters ----------
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public int getOnHand() {
+        return onHand(state);
+    }
+
+    public int getReserved() {
+        return reserved(state);
+    }
+
+    /**
+     * Available stock = onHand - reserved, computed from one consistent read.
+     */
+    public int getAvailable() {
+        long s = state;
+        return onHand(s) - reserved(s);
+    }
+
+    public int getReorderThreshold() {
+        return reorderThreshold(limits);
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity(limits);
+    }
+
+    /**
+     * Quantities and limits as of one instant: the state word is re-read
+     * until the limits did not change around it.
+     */
+    public StockSnapshot snapshot() {
+        while (true) {
+            long l = limits;
+            long s = state;
+            if (limits == l) {
+                return new StockSnapshot(productId, location, onHand(s), reserved(s),
+                        reorderThreshold(l), maxCapacity(l));
+            }
+        }
+    }
+
+    // ---------- Mutating operations with business rules ----------
+
+    /**
+     * Change physical location of the stock.
+     */
+    public void changeLocation(String newLocation) {
+        if (newLocation == null || newLocation.isBlank()) {
+            throw new IllegalArgumentException("newLocation must not be null or blank");
+        }
+        this.location = LocationCode.intern(newLocation);
+    }
+
+    /**
+     * Adds stock to on-hand quantity. Fails if amount is not positive
+     * or if the operation would exceed maxCapacity.
+     * <p>
+     * The state word is frozen while the capacity is checked, like
+     * {@link #updateMaxCapacity(int)} does, so the limit read here cannot be
+     * replaced before the units land. A version bit in the word is not enough:
+     * two capacity changes between the read and the CAS restore the word.
+     */
+    public void addStock(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to add must be positive");
+        }
+        int onHand = onHand(freeze());
+        // limits only change under the frozen bit, so this one is current
+        boolean fits = (long) onHand + amount <= maxCapacity(limits);
+        while (true) {
+            long s = state;
+            // reservations and removals may have run meanwhile; they never raise onHand
+            long next = fits ? packState(onHand(s) + amount, reserved(s)) : s & ~FROZEN;
+            if (STATE.compareAndSet(this, s, next)) {
+                break;
+            }
+        }
+        if (!fits) {
+            throw new IllegalStateException("Cannot add stock beyond maxCapacity");
+        }
+    }
+
+    /**
+     * Removes stock from on-hand as damaged/expired.
+     * Cannot remove more than onHand.
+     */
+    public void removeDamaged(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to remove must be positive");
+        }
+        while (true) {
+            long s = state;
+            int onHand = onHand(s);
+            if (amount > onHand) {
+                throw new IllegalStateException("Cannot remove more than on-hand quantity");
+            }
+            int newOnHand = onHand - amount;
+            // Safety: never allow reserved > onHand
+            int newReserved = Math.min(reserved(s), newOnHand);
+            if (STATE.compareAndSet(this, s, withQuantities(s, newOnHand, newReserved))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reserves stock for a customer order.
+     * Cannot reserve more than available.
+     */
+    public void reserve(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to reserve must be positive");
+        }
+        if (tryReserve(amount) != StockStatus.OK) {
+            throw new IllegalStateException("Insufficient available stock to reserve");
+        }
+    }
+
+    /**
+     * Releases (un-reserves) previously reserved stock.
+     * Cannot release more than currently reserved.
+     */
+    public void releaseReservation(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to release must be positive");
+        }
+        if (tryReleaseReservation(amount) != StockStatus.OK) {
+            throw new IllegalStateException("Cannot release more than reserved");
+        }
+    }
+
+    /**
+     * Confirms shipment: removes stock from on-hand and reserved at the same time.
+     * This assumes the amount was previously reserved.
+     */
+    public void shipReserved(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to ship must be positive");
+        }
+        StockStatus status = tryShipReserved(amount);
+        if (status == StockStatus.INSUFFICIENT_RESERVED) {
+            throw new IllegalStateException("Cannot ship more than reserved");
+        }
+        if (status == StockStatus.INSUFFICIENT_ON_HAND) {
+            // Cannot happen while reserved <= onHand, kept for parity with ProductStock.
+            throw new IllegalStateException("On-hand quantity is not enough to ship");
+        }
+    }
+
+    /**
+     * Returns true if available stock is below reorder threshold.
+     */
+    public boolean isReorderNeeded() {
+        return getAvailable() < getReorderThreshold();
+    }
+
+    /**
+     * Updates the reorder threshold, must be >= 0 and <= maxCapacity.
+     */
+    public void updateReorderThreshold(int newThreshold) {
+        if (newThreshold < 0) {
+            throw new IllegalArgumentException("reorderThreshold must be >= 0");
+        }
+        while (true) {
+            long l = limits;
+            if (newThreshold > maxCapacity(l)) {
+                throw new IllegalArgumentException("reorderThreshold cannot exceed maxCapacity");
+            }
+            if (LIMITS.compareAndSet(this, l, packLimits(maxCapacity(l), newThreshold))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Updates max capacity. Cannot be less than current onHand.
+     * <p>
+     * The state word is frozen while the new limit is published, so no
+     * concurrent {@link #addStock(int)} can slip past the old capacity.
+     * Reservations, releases, shipments and removals keep running meanwhile
+     * since they never increase onHand.
+     */
+    public void updateMaxCapacity(int newMaxCapacity) {
+        if (newMaxCapacity <= 0) {
+            throw new IllegalArgumentException("maxCapacity must be > 0");
+        }
+        if (onHand(freeze()) > newMaxCapacity) {
+            unfreeze();
+            throw new IllegalStateException("New maxCapacity is less than current onHand");
+        }
+        try {
+            while (true) {
+                long l = limits;
+                int threshold = Math.min(reorderThreshold(l), newMaxCapacity);
+                if (LIMITS.compareAndSet(this, l, packLimits(newMaxCapacity, threshold))) {
+                    return;
+                }
+            }
+        } finally {
+            unfreeze();
+        }
+    }
+
+    /**
+     * Sets the frozen bit, waiting for the current holder to clear it.
+     *
+     * @return the state word as frozen
+     */
+    private long freeze() {
+        while (true) {
+            long s = state;
+            if ((s & FROZEN) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (STATE.compareAndSet(this, s, s | FROZEN)) {
+                return s | FROZEN;
+            }
+        }
+    }
+
+    private void unfreeze() {
+        while (true) {
+            long s = state;
+            if (STATE.compareAndSet(this, s, s & ~FROZEN)) {
+                return;
+            }
+        }
+    }
+
+    // ---------- Non-throwing operations ----------
+
+    /**
+     * Same rules as {@link #reserve(int)}, but reports a rejected request as a
+     * status instead of an exception, so sold-out traffic costs no allocation.
+     */
+    public StockStatus tryReserve(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        while (true) {
+            long s = state;
+            int onHand = onHand(s);
+            int reserved = reserved(s);
+            if (amount > onHand - reserved) {
+                return StockStatus.INSUFFICIENT_AVAILABLE;
+            }
+            if (STATE.compareAndSet(this, s, withQuantities(s, onHand, reserved + amount))) {
+                return StockStatus.OK;
+            }
+        }
+    }
+
+    /**
+     * Same rules as {@link #releaseReservation(int)}, reported as a status.
+     */
+    public StockStatus tryReleaseReservation(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        while (true) {
+            long s = state;
+            int reserved = reserved(s);
+            if (amount > reserved) {
+                return StockStatus.INSUFFICIENT_RESERVED;
+            }
+            if (STATE.compareAndSet(this, s, withQuantities(s, onHand(s), reserved - amount))) {
+                return StockStatus.OK;
+            }
+        }
+    }
+
+    /**
+     * Same rules as {@link #shipReserved(int)}, reported as a status.
+     */
+    public StockStatus tryShipReserved(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        while (true) {
+            long s = state;
+            int onHand = onHand(s);
+            int reserved = reserved(s);
+            if (amount > reserved) {
+                return StockStatus.INSUFFICIENT_RESERVED;
+            }
+            if (amount > onHand) {
+                return StockStatus.INSUFFICIENT_ON_HAND;
+            }
+            if (STATE.compareAndSet(this, s, withQuantities(s, onHand - amount, reserved - amount))) {
+                return StockStatus.OK;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        long s = state;
+        long l = limits;
+        return "ConcurrentProductStock{" +
+               "productId='" + productId + '\'' +
+               ", location='" + location + '\'' +
+               ", onHand=" + onHand(s) +
+               ", reserved=" + reserved(s) +
+               ", available=" + (onHand(s) - reserved(s)) +
+               ", reorderThreshold=" + reorderThreshold(l) +
+               ", maxCapacity=" + maxCapacity(l) +
+               '}';
+    }
+}
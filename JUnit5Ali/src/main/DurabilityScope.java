@@ -0,0 +1,107 @@
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Per-thread scope that postpones durability waits until the mutating thread
+ * has released its locks.
+ * <p>
+ * Listeners such as {@link StockWriteAheadLog} run on the mutating thread
+ * while it still holds the record's lock. Instead of waiting for an fsync
+ * there, which would keep the record locked for the whole group commit, a
+ * listener appends its event and hands the position to {@link #defer}. The
+ * wait then runs when the outermost scope on the thread is closed:
+ *
+ * <pre>
+ * DurabilityScope scope = DurabilityScope.open();
+ * try {
+ *     synchronized (stock) {
+ *         stock.reserve(5);
+ *     }
+ * } finally {
+ *     scope.close();   // waits here, after the monitor is released
+ * }
+ * </pre>
+ * <p>
+ * {@link StockRegistry} opens a scope around every locked operation. Outside
+ * a scope nothing is deferred and listeners wait inline. Scopes nest; only
+ * the outermost close waits. A scope belongs to the thread that opened it
+ * and allocates nothing.
+ */
+public final class DurabilityScope implements AutoCloseable {
+
+    /**
+     * Something that can block until everything up to a position is durable.
+     */
+    @FunctionalInterface
+    public interface Barrier {
+        void awaitDurable(long position);
+    }
+
+    private static final ThreadLocal<DurabilityScope> CURRENT = ThreadLocal.withInitial(DurabilityScope::new);
+
+    private int depth;
+    // nearly every deployment has one log, so the first barrier is kept in fields
+    private Barrier barrier;
+    private long position;
+    private Map<Barrier, Long> others;
+
+    private DurabilityScope() {
+    }
+
+    /**
+     * Opens a scope on the current thread; close it on the same thread.
+     */
+    public static DurabilityScope open() {
+        DurabilityScope scope = CURRENT.get();
+        scope.depth++;
+        return scope;
+    }
+
+    /**
+     * Postpones a wait to the close of the current thread's outermost scope.
+     *
+     * @return false if no scope is open, in which case the caller must wait itself
+     */
+    public static boolean defer(Barrier barrier, long position) {
+        DurabilityScope scope = CURRENT.get();
+        if (scope.depth == 0) {
+            return false;
+        }
+        if (scope.barrier == null || scope.barrier == barrier) {
+            scope.barrier = barrier;
+            scope.position = Math.max(scope.position, position);
+        } else {
+            if (scope.others == null) {
+                scope.others = new IdentityHashMap<>();
+            }
+            scope.others.merge(barrier, position, Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * Leaves the scope. Closing the outermost scope blocks until every
+     * deferred position is durable.
+     *
+     * @throws java.io.UncheckedIOException if a barrier failed
+     */
+    @Override
+    public void close() {
+        if (depth == 0) {
+            throw new IllegalStateException("Durability scope is not open");
+        }
+        if (--depth > 0 || barrier == null) {
+            return;
+        }
+        Barrier first = barrier;
+        long firstPosition = position;
+        Map<Barrier, Long> rest = others;
+        barrier = null;
+        position = 0;
+        others = null;
+        first.awaitDurable(firstPosition);
+        if (rest != null) {
+            rest.forEach(Barrier::awaitDurable);
+        }
+    }
+}
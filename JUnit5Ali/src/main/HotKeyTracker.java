@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Approximate top-N of the most frequent keys in a stream, in bounded memory
+ * (the Space-Saving algorithm).
+ * <p>
+ * At most {@code capacity} keys are counted. A key that is not counted takes
+ * over the counter of the least frequent one and inherits its count, so a
+ * key's count may be overestimated by at most the count it inherited, and
+ * any key seen more often than 1/capacity of the time is guaranteed to be
+ * counted. Counters sit in a min-heap, so each update is O(log capacity).
+ * <p>
+ * Recording never blocks: if another thread holds the tracker, the key is
+ * dropped, which thins every key alike under heavy contention.
+ */
+final class HotKeyTracker {
+
+    private static final class Counter {
+        String key;
+        long count;
+        int heapIndex;
+
+        Counter(String key, int heapIndex) {
+            this.key = key;
+            this.heapIndex = heapIndex;
+        }
+    }
+
+    private final int capacity;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Counter> counters;   // guarded by lock
+    private final Counter[] heap;                  // guarded by lock; least frequent first
+    private int size;                              // guarded by lock
+    private final LongAdder dropped = new LongAdder();
+
+    HotKeyTracker(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    void record(String key) {
+        if (!lock.tryLock()) {
+            dropped.increment();
+            return;
+        }
+        try {
+            Counter counter = counters.get(key);
+            if (counter == null && size < capacity) {
+                counter = new Counter(key, size);
+                counter.count = 1;
+                heap[size] = counter;
+                counters.put(key, counter);
+                siftUp(size++);
+                return;
+            }
+            if (counter == null) {
+                // evict the least frequent key; the newcomer inherits its count
+                counter = heap[0];
+                counters.remove(counter.key);
+                counter.key = key;
+                counters.put(key, counter);
+            }
+            counter.count++;
+            siftDown(counter.heapIndex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The {@code n} most frequent keys, most frequent first.
+     */
+    List<StockMetrics.HotProduct> top(int n) {
+        List<StockMetrics.HotProduct> all = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int i = 0; i < size; i++) {
+                all.add(new StockMetrics.HotProduct(heap[i].key, heap[i].count));
+            }
+        } finally {
+            lock.unlock();
+        }
+        all.sort(Comparator.comparingLong(StockMetrics.HotProduct::count).reversed()
+                .thenComparing(StockMetrics.HotProduct::productId));
+        return all.size() > n ? List.copyOf(all.subList(0, n)) : List.copyOf(all);
+    }
+
+    /** Keys not counted because the tracker was busy. */
+    long dropped() {
+        return dropped.sum();
+    }
+
+    void reset() {
+        lock.lock();
+        try {
+            counters.clear();
+            for (int i = 0; i < size; i++) {
+                heap[i] = null;
+            }
+            size = 0;
+            dropped.reset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void siftUp(int i) {
+        Counter counter = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heap[i].heapIndex = i;
+            i = parent;
+        }
+        heap[i] = counter;
+        counter.heapIndex = i;
+    }
+
+    private void siftDown(int i) {
+        Counter counter = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (heap[child].count >= counter.count) {
+                break;
+            }
+            heap[i] = heap[child];
+            heap[i].heapIndex = i;
+            i = child;
+        }
+        heap[i] = counter;
+        counter.heapIndex = i;
+    }
+}
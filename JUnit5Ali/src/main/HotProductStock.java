@@ -0,0 +1,779 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Variant of {@link ConcurrentProductStock} for designated hot SKUs, whose
+ * reservations can be served from per-thread sub-buckets.
+ * <p>
+ * The record starts out as a single state word updated with compare-and-set,
+ * like ConcurrentProductStock. When reservations keep losing their
+ * compare-and-set to each other, the record splits: a share of the available
+ * quantity is handed to a small array of cache-line padded buckets, and a
+ * reservation takes its units from the bucket its thread hashes to, touching
+ * no shared cache line. A bucket that runs dry refills from the state word.
+ * If the state word cannot cover a request either, every bucket's units are
+ * pulled back first, so a reservation is only refused when the record as a
+ * whole cannot cover it. Once reservations through the buckets slow down,
+ * the record collapses back to the single word. That is checked on the slow
+ * paths and, since a quiet record served from its buckets may never take
+ * one, by a shared background timer once per window while the record is split.
+ * <p>
+ * Units handed to the buckets are counted as reserved in the state word, so
+ * {@code reserved <= onHand} holds there at all times and stock can never be
+ * oversold; the getters subtract the buckets' units back out. Refills and
+ * the rare operations (restocking, removals, capacity changes, and releases
+ * and shipments while split) take a lock bit in the state word, which keeps
+ * the buckets' units stable while they are accounted for.
+ * <p>
+ * Validation rules, exception types and messages are the same as {@link ProductStock}.
+ */
+public class HotProductStock {
+
+    // ---------- state word: [locked:1][onHand:31][split:1][reserved:31] ----------
+
+    private static final long LOCKED = 1L << 63;
+    private static final long SPLIT = 1L << 31;
+    private static final long QTY_MASK = 0x7FFF_FFFFL;
+
+    static final int DEFAULT_SPLIT_AFTER = 64;
+    static final long DEFAULT_WINDOW_NANOS = 10_000_000L;
+    static final int DEFAULT_COLLAPSE_BELOW = 256;
+
+    /** Re-checks split records for quiet windows; holds them weakly. */
+    private static final ScheduledExecutorService COLLAPSE_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "hot-stock-collapse");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final VarHandle STATE;
+    private static final VarHandle LIMITS;
+    private static final VarHandle BUCKET;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            STATE = lookup.findVarHandle(HotProductStock.class, "state", long.class);
+            LIMITS = lookup.findVarHandle(HotProductStock.class, "limits", long.class);
+            BUCKET = lookup.findVarHandle(BucketWord.class, "word", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // ---------- Buckets ----------
+
+    // A bucket's word sits between two runs of padding (superclass fields are
+    // laid out first), so neighbouring buckets never share a cache line.
+
+    static class BucketPad {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    static class BucketWord extends BucketPad {
+        volatile long word;   // [reservations served:32][units:32]
+    }
+
+    static final class Bucket extends BucketWord {
+        private static final long RESERVATION = 1L << 32;
+
+        long p11, p12, p13, p14, p15, p16, p17;
+
+        boolean tryTake(int amount) {
+            while (true) {
+                long w = word;
+                if ((int) w < amount) {
+                    return false;
+                }
+                if (BUCKET.compareAndSet(this, w, w - amount + RESERVATION)) {
+                    return true;
+                }
+            }
+        }
+
+        void give(int units) {
+            BUCKET.getAndAdd(this, (long) units);
+        }
+
+        /** Empties the bucket and returns the units it held. */
+        int drain() {
+            while (true) {
+                long w = word;
+                if (BUCKET.compareAndSet(this, w, w & ~0xFFFF_FFFFL)) {
+                    return (int) w;
+                }
+            }
+        }
+
+        int units() {
+            return (int) word;
+        }
+
+        long served() {
+            return word >>> 32;
+        }
+    }
+
+    private final String productId;
+    private volatile String location;   // e.g., "WH-1-A3"
+    private volatile long state;        // onHand + reserved, see layout above
+    private volatile long limits;       // maxCapacity (high int) + reorderThreshold (low int)
+    private volatile Bucket[] buckets;  // non-null while split
+
+    private final int bucketCount;
+    private final int splitAfter;
+    private final long windowNanos;
+    private final int collapseBelow;
+
+    // contention sampling; updated racily since it only feeds a heuristic
+    private int lostCas;
+    private long contentionWindowStart;
+
+    // guarded by the state word's lock bit
+    private long splitWindowStart;
+    private long splitWindowServed;
+
+    /**
+     * Creates a HotProductStock instance with basic inventory info.
+     *
+     * @param productId        unique ID of the product (must not be null/blank)
+     * @param location         storage location code (must not be null/blank)
+     * @param initialOnHand    initial on-hand quantity (>= 0)
+     * @param reorderThreshold threshold for triggering reorder (>= 0)
+     * @param maxCapacity      maximum capacity of this location (> 0)
+     */
+    public HotProductStock(String productId,
+                           String location,
+                           int initialOnHand,
+                           int reorderThreshold,
+                           int maxCapacity) {
+        this(productId, location, initialOnHand, reorderThreshold, maxCapacity,
+                defaultBucketCount(), DEFAULT_SPLIT_AFTER, DEFAULT_WINDOW_NANOS, DEFAULT_COLLAPSE_BELOW);
+    }
+
+    /**
+     * @param bucketCount   number of buckets while split, rounded up to a power of two
+     * @param splitAfter    lost compare-and-sets within one window that split the record
+     * @param windowNanos   length of the sampling window
+     * @param collapseBelow bucket reservations per window below which a split record collapses
+     */
+    HotProductStock(String productId,
+                    String location,
+                    int initialOnHand,
+                    int reorderThreshold,
+                    int maxCapacity,
+                    int bucketCount,
+                    int splitAfter,
+                    long windowNanos,
+                    int collapseBelow) {
+
+        if (productId == null || productId.isBlank()) {
+            throw new IllegalArgumentException("productId must not be null or blank");
+        }
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("location must not be null or blank");
+        }
+        if (initialOnHand < 0) {
+            throw new IllegalArgumentException("initialOnHand must be >= 0");
+        }
+        if (reorderThreshold < 0) {
+            throw new IllegalArgumentException("reorderThreshold must be >= 0");
+        }
+        if (maxCapacity <= 0) {
+            throw new IllegalArgumentException("maxCapacity must be > 0");
+        }
+        if (initialOnHand > maxCapacity) {
+            throw new IllegalArgumentException("initialOnHand exceeds maxCapacity");
+        }
+        if (bucketCount <= 0) {
+            throw new IllegalArgumentException("bucketCount must be > 0");
+        }
+
+        this.productId = productId;
+        this.location = LocationCode.intern(location);
+        this.state = packState(initialOnHand, 0);
+        this.limits = packLimits(maxCapacity, reorderThreshold);
+        this.bucketCount = bucketCount == 1 ? 1 : Integer.highestOneBit(bucketCount - 1) << 1;
+        this.splitAfter = splitAfter;
+        this.windowNanos = windowNanos;
+        this.collapseBelow = collapseBelow;
+    }
+
+    private static int defaultBucketCount() {
+        return Math.min(64, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    // ---------- Packing helpers ----------
+
+    private static long packState(int onHand, int reserved) {
+        return ((long) onHand << 32) | reserved;
+    }
+
+    private static int onHand(long state) {
+        return (int) ((state >>> 32) & QTY_MASK);
+    }
+
+    private static int reserved(long state) {
+        return (int) (state & QTY_MASK);
+    }
+
+    /** Replaces the quantities of a state word, keeping its lock/split bits. */
+    private static long withQuantities(long state, int onHand, int reserved) {
+        return (state & (LOCKED | SPLIT)) | packState(onHand, reserved);
+    }
+
+    private static long packLimits(int maxCapacity, int reorderThreshold) {
+        return ((long) maxCapacity << 32) | reorderThreshold;
+    }
+
+    private static int maxCapacity(long limits) {
+        return (int) (limits >>> 32);
+    }
+
+    private static int reorderThreshold(long limits) {
+        return (int) limits;
+    }
+
+    // ---------- Lock bit ----------
+
+    /** Sets the lock bit and returns the locked state word. */
+    private long lock() {
+        while (true) {
+            long s = state;
+            if ((s & LOCKED) == 0 && STATE.compareAndSet(this, s, s | LOCKED)) {
+                return s | LOCKED;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Publishes the lock holder's new state word and clears the lock bit. */
+    private void unlock(long newState) {
+        state = newState & ~LOCKED;
+    }
+
+    private static int bucketIndex(int mask) {
+        long id = Thread.currentThread().threadId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    /** Units currently held by the buckets; only shrinks while the lock is held. */
+    private static int units(Bucket[] buckets) {
+        long total = 0;
+        for (Bucket bucket : buckets) {
+            total += bucket.units();
+        }
+        return (int) total;
+    }
+
+    private static int drain(Bucket[] buckets) {
+        long total = 0;
+        for (Bucket bucket : buckets) {
+            total += bucket.drain();
+        }
+        return (int) total;
+    }
+
+    /**
+     * The state word with the buckets' units moved from reserved back to
+     * available, read consistently.
+     */
+    private long quantities() {
+        while (true) {
+            long s = state;
+            if ((s & SPLIT) == 0) {
+                // a lock holder publishes nothing before it unlocks
+                return s;
+            }
+            Bucket[] b = buckets;
+            if ((s & LOCKED) != 0 || b == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int units = units(b);
+            if (state == s) {
+                return withQuantities(s, onHand(s), reserved(s) - units);
+            }
+        }
+    }
+
+    // ---------- Getters ----------
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public int getOnHand() {
+        return onHand(state);
+    }
+
+    public int getReserved() {
+        return reserved(quantities());
+    }
+
+    /**
+     * Available stock = onHand - reserved, including units parked in buckets.
+     */
+    public int getAvailable() {
+        long s = quantities();
+        return onHand(s) - reserved(s);
+    }
+
+    public int getReorderThreshold() {
+        return reorderThreshold(limits);
+    }
+
+    public int getMaxCapacity() {
+        return maxCapacity(limits);
+    }
+
+    /**
+     * Quantities and limits as of one instant, with parked bucket units
+     * counted as available.
+     */
+    public StockSnapshot snapshot() {
+        while (true) {
+            long l = limits;
+            long s = quantities();
+            if (limits == l) {
+                return new StockSnapshot(productId, location, onHand(s), reserved(s),
+                        reorderThreshold(l), maxCapacity(l));
+            }
+        }
+    }
+
+    /**
+     * Whether reservations are currently served from per-thread buckets.
+     */
+    public boolean isSplit() {
+        return (state & SPLIT) != 0;
+    }
+
+    // ---------- Mutating operations with business rules ----------
+
+    /**
+     * Change physical location of the stock.
+     */
+    public void changeLocation(String newLocation) {
+        if (newLocation == null || newLocation.isBlank()) {
+            throw new IllegalArgumentException("newLocation must not be null or blank");
+        }
+        this.location = LocationCode.intern(newLocation);
+    }
+
+    /**
+     * Adds stock to on-hand quantity. Fails if amount is not positive
+     * or if the operation would exceed maxCapacity.
+     */
+    public void addStock(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to add must be positive");
+        }
+        long s = lock();
+        int onHand = onHand(s);
+        if ((long) onHand + amount > maxCapacity(limits)) {
+            unlock(s);
+            throw new IllegalStateException("Cannot add stock beyond maxCapacity");
+        }
+        unlock(withQuantities(s, onHand + amount, reserved(s)));
+    }
+
+    /**
+     * Removes stock from on-hand as damaged/expired.
+     * Cannot remove more than onHand.
+     */
+    public void removeDamaged(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to remove must be positive");
+        }
+        long s = lock();
+        int onHand = onHand(s);
+        if (amount > onHand) {
+            unlock(s);
+            throw new IllegalStateException("Cannot remove more than on-hand quantity");
+        }
+        int newOnHand = onHand - amount;
+        int reserved = reserved(s);
+        Bucket[] b = buckets;
+        if (reserved > newOnHand && b != null) {
+            // the removed units may be parked in buckets; take them back first
+            reserved -= drain(b);
+        }
+        // Safety: never allow reserved > onHand
+        unlock(withQuantities(s, newOnHand, Math.min(reserved, newOnHand)));
+    }
+
+    /**
+     * Reserves stock for a customer order.
+     * Cannot reserve more than available.
+     */
+    public void reserve(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to reserve must be positive");
+        }
+        if (tryReserve(amount) != StockStatus.OK) {
+            throw new IllegalStateException("Insufficient available stock to reserve");
+        }
+    }
+
+    /**
+     * Releases (un-reserves) previously reserved stock.
+     * Cannot release more than currently reserved.
+     */
+    public void releaseReservation(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to release must be positive");
+        }
+        if (tryReleaseReservation(amount) != StockStatus.OK) {
+            throw new IllegalStateException("Cannot release more than reserved");
+        }
+    }
+
+    /**
+     * Confirms shipment: removes stock from on-hand and reserved at the same time.
+     * This assumes the amount was previously reserved.
+     */
+    public void shipReserved(int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to ship must be positive");
+        }
+        StockStatus status = tryShipReserved(amount);
+        if (status == StockStatus.INSUFFICIENT_RESERVED) {
+            throw new IllegalStateException("Cannot ship more than reserved");
+        }
+        if (status == StockStatus.INSUFFICIENT_ON_HAND) {
+            // Cannot happen while reserved <= onHand, kept for parity with ProductStock.
+            throw new IllegalStateException("On-hand quantity is not enough to ship");
+        }
+    }
+
+    /**
+     * Returns true if available stock is below reorder threshold.
+     */
+    public boolean isReorderNeeded() {
+        return getAvailable() < getReorderThreshold();
+    }
+
+    /**
+     * Updates the reorder threshold, must be >= 0 and <= maxCapacity.
+     */
+    public void updateReorderThreshold(int newThreshold) {
+        if (newThreshold < 0) {
+            throw new IllegalArgumentException("reorderThreshold must be >= 0");
+        }
+        while (true) {
+            long l = limits;
+            if (newThreshold > maxCapacity(l)) {
+                throw new IllegalArgumentException("reorderThreshold cannot exceed maxCapacity");
+            }
+            if (LIMITS.compareAndSet(this, l, packLimits(maxCapacity(l), newThreshold))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Updates max capacity. Cannot be less than current onHand.
+     * Restocking waits on the state word's lock until the new limit is published.
+     */
+    public void updateMaxCapacity(int newMaxCapacity) {
+        if (newMaxCapacity <= 0) {
+            throw new IllegalArgumentException("maxCapacity must be > 0");
+        }
+        long s = lock();
+        if (onHand(s) > newMaxCapacity) {
+            unlock(s);
+            throw new IllegalStateException("New maxCapacity is less than current onHand");
+        }
+        while (true) {
+            long l = limits;
+            int threshold = Math.min(reorderThreshold(l), newMaxCapacity);
+            if (LIMITS.compareAndSet(this, l, packLimits(newMaxCapacity, threshold))) {
+                break;
+            }
+        }
+        unlock(s);
+    }
+
+    // ---------- Non-throwing operations ----------
+
+    /**
+     * Same rules as {@link #reserve(int)}, but reports a rejected request as a
+     * status instead of an exception, so sold-out traffic costs no allocation.
+     */
+    public StockStatus tryReserve(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        while (true) {
+            Bucket[] b = buckets;
+            if (b != null) {
+                Bucket bucket = b[bucketIndex(b.length - 1)];
+                if (bucket.tryTake(amount)) {
+                    return StockStatus.OK;
+                }
+                StockStatus status = reserveFromState(b, bucket, amount);
+                if (status != null) {
+                    return status;
+                }
+                continue;
+            }
+            long s = state;
+            if ((s & (LOCKED | SPLIT)) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int onHand = onHand(s);
+            int reserved = reserved(s);
+            if (amount > onHand - reserved) {
+                return StockStatus.INSUFFICIENT_AVAILABLE;
+            }
+            if (STATE.compareAndSet(this, s, withQuantities(s, onHand, reserved + amount))) {
+                return StockStatus.OK;
+            }
+            contended();
+        }
+    }
+
+    /**
+     * Same rules as {@link #releaseReservation(int)}, reported as a status.
+     */
+    public StockStatus tryReleaseReservation(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        while (true) {
+            long s = state;
+            if ((s & LOCKED) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if ((s & SPLIT) != 0) {
+                return releaseFromState(amount, false);
+            }
+            int reserved = reserved(s);
+            if (amount > reserved) {
+                return StockStatus.INSUFFICIENT_RESERVED;
+            }
+            if (STATE.compareAndSet(this, s, withQuantities(s, onHand(s), reserved - amount))) {
+                return StockStatus.OK;
+            }
+        }
+    }
+
+    /**
+     * Same rules as {@link #shipReserved(int)}, reported as a status.
+     */
+    public StockStatus tryShipReserved(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        while (true) {
+            long s = state;
+            if ((s & LOCKED) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if ((s & SPLIT) != 0) {
+                return releaseFromState(amount, true);
+            }
+            int onHand = onHand(s);
+            int reserved = reserved(s);
+            if (amount > reserved) {
+                return StockStatus.INSUFFICIENT_RESERVED;
+            }
+            if (amount > onHand) {
+                return StockStatus.INSUFFICIENT_ON_HAND;
+            }
+            if (STATE.compareAndSet(this, s, withQuantities(s, onHand - amount, reserved - amount))) {
+                return StockStatus.OK;
+            }
+        }
+    }
+
+    // ---------- Splitting ----------
+
+    /**
+     * Called after a reservation lost its compare-and-set; splits the record
+     * once enough of them pile up within one window.
+     */
+    void contended() {
+        long now = System.nanoTime();
+        if (now - contentionWindowStart > windowNanos) {
+            contentionWindowStart = now;
+            lostCas = 0;
+        }
+        if (++lostCas >= splitAfter) {
+            lostCas = 0;
+            split();
+        }
+    }
+
+    /**
+     * Starts serving reservations from buckets. The buckets start empty and
+     * fill on their first reservation.
+     */
+    void split() {
+        long s = lock();
+        if ((s & SPLIT) != 0) {
+            unlock(s);
+            return;
+        }
+        Bucket[] b = new Bucket[bucketCount];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = new Bucket();
+        }
+        buckets = b;
+        splitWindowStart = System.nanoTime();
+        splitWindowServed = 0;
+        unlock(s | SPLIT);
+        scheduleCollapseCheck(b);
+    }
+
+    /**
+     * Runs {@link #collapseIfQuiet} for this split after one window, and again
+     * after every window in which the record stayed busy.
+     */
+    private void scheduleCollapseCheck(Bucket[] b) {
+        if (windowNanos == Long.MAX_VALUE) {
+            return;   // a window that never ends needs no timer
+        }
+        WeakReference<HotProductStock> ref = new WeakReference<>(this);
+        COLLAPSE_TIMER.schedule(() -> {
+            HotProductStock stock = ref.get();
+            if (stock != null) {
+                stock.checkQuiet(b);
+            }
+        }, windowNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void checkQuiet(Bucket[] b) {
+        long s = lock();
+        if (buckets != b) {
+            // collapsed meanwhile; a later split schedules its own check
+            unlock(s);
+            return;
+        }
+        long updated = collapseIfQuiet(s, b);
+        unlock(updated);
+        if ((updated & SPLIT) != 0) {
+            scheduleCollapseCheck(b);
+        }
+    }
+
+    /**
+     * Returns to the single state word, pulling every bucket's units back.
+     */
+    void collapse() {
+        long s = lock();
+        unlock(collapseLocked(s));
+    }
+
+    /** Collapses under the lock and returns the new (still locked) state word. */
+    private long collapseLocked(long s) {
+        Bucket[] b = buckets;
+        if (b == null) {
+            return s;
+        }
+        buckets = null;
+        return withQuantities(s & ~SPLIT, onHand(s), reserved(s) - drain(b));
+    }
+
+    /**
+     * Under the lock: collapses the record if too few reservations went
+     * through the buckets during the last window.
+     */
+    private long collapseIfQuiet(long s, Bucket[] b) {
+        long now = System.nanoTime();
+        if (now - splitWindowStart < windowNanos) {
+            return s;
+        }
+        long served = 0;
+        for (Bucket bucket : b) {
+            served += bucket.served();
+        }
+        if (served - splitWindowServed < collapseBelow) {
+            return collapseLocked(s);
+        }
+        splitWindowStart = now;
+        splitWindowServed = served;
+        return s;
+    }
+
+    /**
+     * Slow path of a split reservation: refills the thread's bucket from the
+     * state word, pulling every bucket's units back first if the state word
+     * alone cannot cover the request.
+     *
+     * @return the outcome, or null if the record collapsed meanwhile and the call must be retried
+     */
+    private StockStatus reserveFromState(Bucket[] b, Bucket bucket, int amount) {
+        long s = lock();
+        if (buckets != b) {
+            unlock(s);
+            return null;
+        }
+        int onHand = onHand(s);
+        int reserved = reserved(s);
+        if (amount > onHand - reserved) {
+            reserved -= drain(b);
+            if (amount > onHand - reserved) {
+                unlock(withQuantities(s, onHand, reserved));
+                return StockStatus.INSUFFICIENT_AVAILABLE;
+            }
+        }
+        // hand the bucket a share of what is left, keeping some for the others
+        int grant = (onHand - reserved - amount) / (2 * b.length);
+        if (grant > 0) {
+            bucket.give(grant);
+        }
+        unlock(collapseIfQuiet(withQuantities(s, onHand, reserved + amount + grant), b));
+        return StockStatus.OK;
+    }
+
+    /**
+     * Release or shipment of a split record. The lock keeps refills out, and
+     * bucket reservations only shrink the buckets meanwhile, so the units
+     * counted here are an upper bound and the check can only be conservative.
+     */
+    private StockStatus releaseFromState(int amount, boolean ship) {
+        long s = lock();
+        Bucket[] b = buckets;
+        int onHand = onHand(s);
+        int reserved = reserved(s);
+        int parked = b == null ? 0 : units(b);
+        if (amount > reserved - parked) {
+            unlock(s);
+            return StockStatus.INSUFFICIENT_RESERVED;
+        }
+        long updated = ship
+                ? withQuantities(s, onHand - amount, reserved - amount)
+                : withQuantities(s, onHand, reserved - amount);
+        unlock(b == null ? updated : collapseIfQuiet(updated, b));
+        return StockStatus.OK;
+    }
+
+    @Override
+    public String toString() {
+        long s = quantities();
+        long l = limits;
+        return "HotProductStock{" +
+               "productId='" + productId + '\'' +
+               ", location='" + location + '\'' +
+               ", onHand=" + onHand(s) +
+               ", reserved=" + reserved(s) +
+               ", available=" + (onHand(s) - reserved(s)) +
+               ", reorderThreshold=" + reorderThreshold(l) +
+               ", maxCapacity=" + maxCapacity(l) +
+               ", split=" + ((s & SPLIT) != 0) +
+               '}';
+    }
+}
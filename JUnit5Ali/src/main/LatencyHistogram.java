@@ -0,0 +1,111 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent log-linear latency histogram in the style of HdrHistogram.
+ * <p>
+ * Values are counted in buckets whose width grows with the value: each
+ * power-of-two range is split into {@value #SUB_BUCKETS} equal sub-buckets,
+ * so every recorded value is kept to within about 3% whatever its
+ * magnitude. Recording is a few atomic increments and never allocates or
+ * locks. Values from 0 to {@link #MAX_VALUE} nanoseconds (about 36 minutes)
+ * are tracked; larger ones are clamped.
+ */
+public final class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    public static final long MAX_VALUE = (1L << 41) - 1;
+
+    /**
+     * Distribution of the values recorded so far, in nanoseconds.
+     * Percentiles are the highest value of the bucket they fall in.
+     */
+    public record Snapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Bucket of a value: exact below {@value #SUB_BUCKETS}, then
+     * {@value #SUB_BUCKETS} buckets per power of two.
+     */
+    static int index(long value) {
+        int magnitude = 63 - Long.numberOfLeadingZeros(value | 1);
+        int shift = Math.max(0, magnitude - SUB_BUCKET_BITS);
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /** Smallest value counted in the bucket. */
+    static long lowestValue(int index) {
+        int shift = Math.max(0, (index >>> SUB_BUCKET_BITS) - 1);
+        return (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+    }
+
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(index(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Value at or below which {@code percentile} percent of the recorded
+     * values fall, or 0 if nothing was recorded.
+     */
+    public long valueAtPercentile(double percentile) {
+        return valuesAtPercentiles(percentile)[0];
+    }
+
+    public Snapshot snapshot() {
+        long n = count.sum();
+        long[] p = valuesAtPercentiles(50, 90, 99, 99.9);
+        return new Snapshot(n, n == 0 ? 0 : (double) sum.sum() / n, p[0], p[1], p[2], p[3], max.get());
+    }
+
+    private long[] valuesAtPercentiles(double... percentiles) {
+        int buckets = counts.length();
+        long[] copy = new long[buckets];
+        long total = 0;
+        for (int i = 0; i < buckets; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        long[] values = new long[percentiles.length];
+        if (total == 0) {
+            return values;
+        }
+        long highest = max.get();
+        for (int p = 0; p < percentiles.length; p++) {
+            long target = Math.max(1, (long) Math.ceil(percentiles[p] / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < buckets; i++) {
+                seen += copy[i];
+                if (seen >= target) {
+                    long bucketHighest = i + 1 < buckets ? lowestValue(i + 1) - 1 : MAX_VALUE;
+                    values[p] = Math.min(bucketHighest, highest);
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
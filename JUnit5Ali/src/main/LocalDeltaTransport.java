@@ -0,0 +1,107 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * In-process stand-in for the network between a {@link StockChangeFeed} and
+ * its replicas.
+ * <p>
+ * Published messages are copied, as a network would, and delivered to every
+ * subscriber synchronously in publication order. The most recent messages are
+ * retained so that a subscriber joining late, typically a replica that has
+ * just loaded a snapshot, can be replayed the batches it may have missed.
+ */
+public final class LocalDeltaTransport implements Consumer<ByteBuffer> {
+
+    static final int DEFAULT_RETAINED_MESSAGES = 1024;
+
+    private final int retainedMessages;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<ByteBuffer> retained = new ArrayDeque<>();   // guarded by lock
+    private final List<Consumer<ByteBuffer>> subscribers = new CopyOnWriteArrayList<>();
+    private long publishedMessages;   // guarded by lock
+    private long publishedBytes;      // guarded by lock
+
+    public LocalDeltaTransport() {
+        this(DEFAULT_RETAINED_MESSAGES);
+    }
+
+    /**
+     * @param retainedMessages messages kept for replay to new subscribers (>= 0)
+     */
+    public LocalDeltaTransport(int retainedMessages) {
+        if (retainedMessages < 0) {
+            throw new IllegalArgumentException("retainedMessages must be >= 0");
+        }
+        this.retainedMessages = retainedMessages;
+    }
+
+    /**
+     * Publishes a message to every subscriber.
+     */
+    @Override
+    public void accept(ByteBuffer message) {
+        ByteBuffer copy = ByteBuffer.allocate(message.remaining()).put(message.duplicate()).flip().asReadOnlyBuffer();
+        lock.lock();
+        try {
+            if (retainedMessages > 0) {
+                if (retained.size() == retainedMessages) {
+                    retained.removeFirst();
+                }
+                retained.addLast(copy);
+            }
+            publishedMessages++;
+            publishedBytes += copy.remaining();
+            for (Consumer<ByteBuffer> subscriber : subscribers) {
+                subscriber.accept(copy.duplicate());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replays the retained messages to the subscriber, then delivers every
+     * new one.
+     */
+    public void subscribe(Consumer<ByteBuffer> subscriber) {
+        if (subscriber == null) {
+            throw new IllegalArgumentException("subscriber must not be null");
+        }
+        lock.lock();
+        try {
+            for (ByteBuffer message : retained) {
+                subscriber.accept(message.duplicate());
+            }
+            subscribers.add(subscriber);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void unsubscribe(Consumer<ByteBuffer> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public long publishedMessages() {
+        lock.lock();
+        try {
+            return publishedMessages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Total size of the published messages, in bytes. */
+    public long publishedBytes() {
+        lock.lock();
+        try {
+            return publishedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A location string parsed into warehouse, zone and bin.
+ * <p>
+ * A location whose last dash-separated part is letters followed by digits is
+ * a bin: {@code "WH-1-A3"} is bin 3 of zone "A" in warehouse "WH-1". Any other
+ * location, such as {@code "WH-1"} or {@code "Nablus"}, names a warehouse as a
+ * whole and has no zone and no bin. {@code "WH-1-A03"} is bin 3 of the same
+ * zone, but a different location from "WH-1-A3"; {@link #binKey()} tells the
+ * two apart.
+ * <p>
+ * Location, warehouse and zone strings are interned with
+ * {@link String#intern()}, so every record stored at "WH-1-A3" shares one
+ * location string however many distinct locations there are, and a string
+ * no record uses any more can be collected. Parsed codes are cached weakly
+ * by location: a code lives as long as something, such as a
+ * {@link LocationIndex}, holds it. Compare codes with {@code equals}; a code
+ * parsed again after it was collected is a new instance.
+ */
+public record LocationCode(String location, String warehouse, String zone, int bin) {
+
+    /** Zone of a location that is not a bin. */
+    public static final String NO_ZONE = "";
+
+    /** Bin of a location that is not a bin. */
+    public static final int NO_BIN = -1;
+
+    private static final int MAX_BIN_DIGITS = 9;
+
+    // keys are interned location strings, held by the records stored there
+    private static final Map<String, WeakReference<LocationCode>> CODES = new WeakHashMap<>();
+
+    /**
+     * Returns the cached code for the location, parsing it if none is live.
+     */
+    public static LocationCode of(String location) {
+        String interned = intern(location);
+        synchronized (CODES) {
+            WeakReference<LocationCode> cached = CODES.get(interned);
+            LocationCode code = cached == null ? null : cached.get();
+            if (code == null) {
+                code = parse(interned);
+                CODES.put(interned, new WeakReference<>(code));
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Returns the shared instance of the location string.
+     */
+    public static String intern(String location) {
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("location must not be null or blank");
+        }
+        return location.intern();
+    }
+
+    private static LocationCode parse(String location) {
+        int dash = location.lastIndexOf('-');
+        int letters = dash + 1;
+        while (letters < location.length() && Character.isLetter(location.charAt(letters))) {
+            letters++;
+        }
+        int digits = location.length() - letters;
+        if (dash <= 0 || letters == dash + 1 || digits == 0 || digits > MAX_BIN_DIGITS) {
+            return new LocationCode(location, location, NO_ZONE, NO_BIN);
+        }
+        int bin = 0;
+        for (int i = letters; i < location.length(); i++) {
+            char c = location.charAt(i);
+            if (c < '0' || c > '9') {
+                return new LocationCode(location, location, NO_ZONE, NO_BIN);
+            }
+            bin = bin * 10 + (c - '0');
+        }
+        return new LocationCode(location, location.substring(0, dash).intern(),
+                location.substring(dash + 1, letters).intern(), bin);
+    }
+
+    /** Number of cached codes, live or not yet expunged. */
+    static int cached() {
+        synchronized (CODES) {
+            return CODES.size();
+        }
+    }
+
+    public boolean isBin() {
+        return bin != NO_BIN;
+    }
+
+    /**
+     * Sort key of the bin: bins order by number, and bins with the same
+     * number by how many digits they are written with, so "A3" and "A03"
+     * are neighbouring but distinct. Locations that are not bins have the
+     * key of {@link #NO_BIN}.
+     */
+    public long binKey() {
+        return binKey(bin) | (isBin() ? location.length() - digitsStart() : 0);
+    }
+
+    /** Smallest key of the bin number, whatever its digit count. */
+    static long binKey(int bin) {
+        return (long) bin << 4;
+    }
+
+    private int digitsStart() {
+        int i = location.length();
+        while (i > 0 && Character.isDigit(location.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+}
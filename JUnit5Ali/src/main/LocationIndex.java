@@ -0,0 +1,254 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Incrementally maintained warehouse → zone → bin index over records'
+ * locations.
+ * <p>
+ * Each tracked record is filed under its parsed {@link LocationCode} and
+ * moved when {@link ProductStock#changeLocation(String)} fires, so finding
+ * everything in a warehouse, a zone or a range of bins walks only the
+ * matching branch of the tree instead of comparing every record's location
+ * string. Levels are sorted maps, so warehouse-prefix and bin-range queries
+ * are sub-map views. Records whose location is not a bin are filed directly
+ * under their warehouse.
+ */
+public class LocationIndex implements StockListener {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private final Map<ProductStock, LocationCode> placed = new IdentityHashMap<>();
+    // guarded by lock
+    private final TreeMap<String, TreeMap<String, TreeMap<Long, Set<ProductStock>>>> warehouses = new TreeMap<>();
+
+    /**
+     * Starts maintaining the record in the index.
+     * Must be called while no other thread mutates the record.
+     */
+    public void track(ProductStock stock) {
+        lock.lock();
+        try {
+            if (placed.containsKey(stock)) {
+                return;
+            }
+            stock.addListener(this);
+            file(stock, LocationCode.of(stock.getLocation()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tracks every record currently in the registry.
+     */
+    public void trackAll(StockRegistry registry) {
+        registry.forEach(this::track);
+    }
+
+    public void untrack(ProductStock stock) {
+        lock.lock();
+        try {
+            LocationCode code = placed.get(stock);
+            if (code != null) {
+                stock.removeListener(this);
+                unfile(stock, code);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                           int previousOnHand, int previousReserved) {
+        if (mutation != StockMutation.CHANGE_LOCATION) {
+            return;
+        }
+        LocationCode code = LocationCode.of(stock.getLocation());
+        lock.lock();
+        try {
+            LocationCode previous = placed.get(stock);
+            if (previous != null && !previous.equals(code)) {
+                unfile(stock, previous);
+                file(stock, code);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void file(ProductStock stock, LocationCode code) {
+        placed.put(stock, code);
+        warehouses.computeIfAbsent(code.warehouse(), w -> new TreeMap<>())
+                .computeIfAbsent(code.zone(), z -> new TreeMap<>())
+                .computeIfAbsent(code.binKey(), b -> new HashSet<>())
+                .add(stock);
+    }
+
+    /** Removes the record and prunes branches it leaves empty. */
+    private void unfile(ProductStock stock, LocationCode code) {
+        placed.remove(stock);
+        TreeMap<String, TreeMap<Long, Set<ProductStock>>> zones = warehouses.get(code.warehouse());
+        TreeMap<Long, Set<ProductStock>> bins = zones.get(code.zone());
+        Set<ProductStock> records = bins.get(code.binKey());
+        records.remove(stock);
+        if (records.isEmpty()) {
+            bins.remove(code.binKey());
+            if (bins.isEmpty()) {
+                zones.remove(code.zone());
+                if (zones.isEmpty()) {
+                    warehouses.remove(code.warehouse());
+                }
+            }
+        }
+    }
+
+    // ---------- Queries ----------
+
+    /**
+     * Records stored at exactly this location.
+     */
+    public List<ProductStock> atLocation(String location) {
+        LocationCode code = LocationCode.of(location);
+        lock.lock();
+        try {
+            List<ProductStock> result = new ArrayList<>();
+            TreeMap<String, TreeMap<Long, Set<ProductStock>>> zones = warehouses.get(code.warehouse());
+            TreeMap<Long, Set<ProductStock>> bins = zones == null ? null : zones.get(code.zone());
+            Set<ProductStock> records = bins == null ? null : bins.get(code.binKey());
+            if (records != null) {
+                result.addAll(records);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records anywhere in the warehouse, bins or not.
+     */
+    public List<ProductStock> inWarehouse(String warehouse) {
+        lock.lock();
+        try {
+            List<ProductStock> result = new ArrayList<>();
+            TreeMap<String, TreeMap<Long, Set<ProductStock>>> zones = warehouses.get(warehouse);
+            if (zones != null) {
+                collectZones(zones.values(), result);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records in every warehouse whose name starts with the prefix, e.g. "WH-".
+     */
+    public List<ProductStock> inWarehouses(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("prefix must not be null");
+        }
+        lock.lock();
+        try {
+            List<ProductStock> result = new ArrayList<>();
+            for (TreeMap<String, TreeMap<Long, Set<ProductStock>>> zones : byPrefix(prefix).values()) {
+                collectZones(zones.values(), result);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records in any bin of the zone.
+     */
+    public List<ProductStock> inZone(String warehouse, String zone) {
+        return inBins(warehouse, zone, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Records in bins fromBin..toBin (inclusive) of the zone, however their
+     * numbers are written: bin 3 covers both "A3" and "A03".
+     */
+    public List<ProductStock> inBins(String warehouse, String zone, int fromBin, int toBin) {
+        if (fromBin > toBin) {
+            throw new IllegalArgumentException("fromBin must be <= toBin");
+        }
+        lock.lock();
+        try {
+            List<ProductStock> result = new ArrayList<>();
+            TreeMap<String, TreeMap<Long, Set<ProductStock>>> zones = warehouses.get(warehouse);
+            TreeMap<Long, Set<ProductStock>> bins = zones == null ? null : zones.get(zone);
+            if (bins != null) {
+                collectBins(bins.subMap(LocationCode.binKey(fromBin), true, LocationCode.binKey(toBin) | 0xF, true).values(), result);
+            }
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Names of the warehouses holding at least one tracked record, in order.
+     */
+    public List<String> warehouses() {
+        lock.lock();
+        try {
+            return new ArrayList<>(warehouses.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Zones of the warehouse holding at least one tracked record, in order.
+     * {@link LocationCode#NO_ZONE} stands for records filed under the warehouse itself.
+     */
+    public List<String> zones(String warehouse) {
+        lock.lock();
+        try {
+            TreeMap<String, TreeMap<Long, Set<ProductStock>>> zones = warehouses.get(warehouse);
+            return zones == null ? new ArrayList<>() : new ArrayList<>(zones.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int trackedCount() {
+        lock.lock();
+        try {
+            return placed.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private NavigableMap<String, TreeMap<String, TreeMap<Long, Set<ProductStock>>>> byPrefix(String prefix) {
+        return prefix.isEmpty()
+                ? warehouses
+                : warehouses.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static void collectZones(Collection<TreeMap<Long, Set<ProductStock>>> zones,
+                                     List<ProductStock> result) {
+        for (TreeMap<Long, Set<ProductStock>> bins : zones) {
+            collectBins(bins.values(), result);
+        }
+    }
+
+    private static void collectBins(Collection<Set<ProductStock>> bins, List<ProductStock> result) {
+        for (Set<ProductStock> records : bins) {
+            result.addAll(records);
+        }
+    }
+}
@@ -0,0 +1,468 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Memory-mapped, fixed-width ledger of {@link ProductStock} records.
+ * <p>
+ * Every tracked record owns one 96-byte slot in a file mapped with
+ * {@link FileChannel#map}. The ledger listens to its records and rewrites the
+ * slot in place after each mutation, so the file always mirrors the live
+ * state. After a restart {@link #restore()} remaps the file and rebuilds the
+ * records from their slots instead of reloading them from the database.
+ * <p>
+ * Durability depends on the {@link SyncPolicy}. Slot writes land in the OS
+ * page cache immediately, so they survive a crash of the JVM under every
+ * policy; surviving an OS crash or power loss requires the slot to have been
+ * forced to disk. Each slot carries a CRC32C, so a record torn by a power
+ * loss is detected on restore, reported by {@link #corruptSlots()} and left
+ * out rather than silently loaded.
+ * <p>
+ * A transfer rewrites two slots. Before writing them the ledger notes both
+ * slots and their quantities before and after in the header, and clears the
+ * note once both are written, so a restore that finds one slot moved and the
+ * other not completes the transfer instead of losing the units.
+ *
+ * <pre>
+ * header (64 bytes): magic, version, record size, capacity, high-water slot,
+ *                    transfer: source slot, target slot, source onHand before and
+ *                    after, target onHand before and after, crc32c
+ * slot   (96 bytes): productId [len:1][utf8:35], location [len:1][utf8:35],
+ *                    onHand, reserved, reorderThreshold, maxCapacity, status, crc32c
+ * </pre>
+ */
+public class MappedStockLedger implements StockListener, Closeable {
+
+    /**
+     * When mutated slots are forced from the page cache to the storage device.
+     */
+    public enum SyncPolicy {
+        /** Force the slot after every mutation: nothing acknowledged is lost, slowest. */
+        EVERY_WRITE,
+        /** Force the whole file on a fixed interval: bounded loss window on power failure. */
+        PERIODIC,
+        /** Force only on {@link #sync()} and {@link #close()}: fastest, relies on the caller. */
+        ON_DEMAND
+    }
+
+    static final int MAGIC = 0x53544B4C;        // "STKL"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 96;
+    static final int MAX_KEY_BYTES = 35;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_RECORD_SIZE = 8;
+    private static final int HEADER_CAPACITY = 12;
+    private static final int HEADER_HIGH_WATER = 16;
+    static final int HEADER_TRANSFER = 20;
+    private static final int TRANSFER_SIZE = 28;
+
+    private static final int PRODUCT_ID = 0;
+    private static final int LOCATION = 36;
+    private static final int ON_HAND = 72;
+    private static final int RESERVED = 76;
+    private static final int REORDER_THRESHOLD = 80;
+    private static final int MAX_CAPACITY = 84;
+    private static final int STATUS = 88;
+    private static final int CHECKSUM = 92;
+
+    private static final int STATUS_FREE = 0;
+    private static final int STATUS_LIVE = 1;
+
+    /** Slots per mapped segment; a single mapping is limited to 2 GB. */
+    private static final int SEGMENT_SLOTS = 1 << 20;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] segments;
+    private final SyncPolicy policy;
+    private final int capacity;
+    private final ConcurrentHashMap<ProductStock, Integer> slots = new ConcurrentHashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private final List<Integer> corruptSlots = new ArrayList<>();   // guarded by this
+    private final ScheduledExecutorService flusher;
+    private int highWater;
+    private boolean restored;
+
+    private MappedStockLedger(FileChannel channel, int capacity, boolean created,
+                              SyncPolicy policy, long syncIntervalMillis) throws IOException {
+        this.channel = channel;
+        this.policy = policy;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+        if (created) {
+            header.putInt(HEADER_MAGIC, MAGIC);
+            header.putInt(HEADER_VERSION, VERSION);
+            header.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+            header.putInt(HEADER_CAPACITY, capacity);
+            header.putInt(HEADER_HIGH_WATER, 0);
+            header.force();
+        } else {
+            if (header.getInt(HEADER_MAGIC) != MAGIC) {
+                throw new IllegalStateException("Not a stock ledger file");
+            }
+            if (header.getInt(HEADER_VERSION) != VERSION || header.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) {
+                throw new IllegalStateException("Unsupported stock ledger version");
+            }
+            capacity = header.getInt(HEADER_CAPACITY);
+        }
+        this.capacity = capacity;
+        this.highWater = header.getInt(HEADER_HIGH_WATER);
+
+        int segmentCount = (capacity + SEGMENT_SLOTS - 1) / SEGMENT_SLOTS;
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            int slotsInSegment = Math.min(SEGMENT_SLOTS, capacity - i * SEGMENT_SLOTS);
+            long offset = HEADER_SIZE + (long) i * SEGMENT_SLOTS * RECORD_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) slotsInSegment * RECORD_SIZE);
+        }
+
+        if (policy == SyncPolicy.PERIODIC) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "stock-ledger-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::sync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Opens the ledger file, creating it with room for {@code capacity} records
+     * if it does not exist. An existing file keeps its own capacity.
+     */
+    public static MappedStockLedger open(Path file, int capacity, SyncPolicy policy) throws IOException {
+        return open(file, capacity, policy, 1000);
+    }
+
+    /**
+     * @param syncIntervalMillis interval between forced syncs for {@link SyncPolicy#PERIODIC} (> 0)
+     */
+    public static MappedStockLedger open(Path file, int capacity, SyncPolicy policy,
+                                         long syncIntervalMillis) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("policy must not be null");
+        }
+        if (syncIntervalMillis <= 0) {
+            throw new IllegalArgumentException("syncIntervalMillis must be > 0");
+        }
+        boolean created = !Files.exists(file) || Files.size(file) == 0;
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new MappedStockLedger(channel, capacity, created, policy, syncIntervalMillis);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    public SyncPolicy policy() {
+        return policy;
+    }
+
+    // ---------- Tracking ----------
+
+    /**
+     * Rebuilds every live record from the file and starts tracking it.
+     * Can only be called once, before any record is tracked.
+     * <p>
+     * A slot that fails its checksum is skipped and listed by
+     * {@link #corruptSlots()}; it is not reused, so its bytes stay available
+     * for inspection. The other records are restored as usual.
+     */
+    public synchronized List<ProductStock> restore() {
+        if (restored || !slots.isEmpty()) {
+            throw new IllegalStateException("Ledger already restored or in use");
+        }
+        restored = true;
+        completeTransfer();
+        List<ProductStock> stocks = new ArrayList<>();
+        for (int slot = 0; slot < highWater; slot++) {
+            ByteBuffer record = record(slot);
+            if (record.getInt(CHECKSUM) != checksum(record)) {
+                corruptSlots.add(slot);
+                continue;
+            }
+            if (record.getInt(STATUS) != STATUS_LIVE) {
+                freeSlots.add(slot);
+                continue;
+            }
+            ProductStock stock = new ProductStock(
+                    readKey(record, PRODUCT_ID),
+                    readKey(record, LOCATION),
+                    record.getInt(ON_HAND),
+                    record.getInt(REORDER_THRESHOLD),
+                    record.getInt(MAX_CAPACITY));
+            int reserved = record.getInt(RESERVED);
+            if (reserved > 0) {
+                stock.reserve(reserved);
+            }
+            slots.put(stock, slot);
+            stock.addListener(this);
+            stocks.add(stock);
+        }
+        return stocks;
+    }
+
+    /**
+     * Slots skipped by {@link #restore()} because they failed their checksum,
+     * in ascending order. The records they held must be reloaded from elsewhere.
+     */
+    public synchronized List<Integer> corruptSlots() {
+        return List.copyOf(corruptSlots);
+    }
+
+    /**
+     * Restores every record from the file into the registry.
+     */
+    public void restoreInto(StockRegistry registry) {
+        for (ProductStock stock : restore()) {
+            registry.put(stock);
+        }
+    }
+
+    /**
+     * Assigns a slot to the record, writes it and keeps the slot in sync from now on.
+     *
+     * @throws IllegalArgumentException if productId or location do not fit in a slot
+     * @throws IllegalStateException    if the ledger is full
+     */
+    public synchronized void track(ProductStock stock) {
+        if (slots.containsKey(stock)) {
+            return;
+        }
+        checkKey(stock.getProductId(), "productId");
+        checkKey(stock.getLocation(), "location");
+        restored = true;
+        Integer slot = freeSlots.poll();
+        if (slot == null) {
+            if (highWater == capacity) {
+                throw new IllegalStateException("Stock ledger is full");
+            }
+            slot = highWater++;
+            header.putInt(HEADER_HIGH_WATER, highWater);
+        }
+        slots.put(stock, slot);
+        write(slot, stock, STATUS_LIVE);
+        // restore() only reads up to the high-water mark
+        forceHeader();
+        stock.addListener(this);
+    }
+
+    /**
+     * Stops tracking the record and frees its slot.
+     */
+    public synchronized void untrack(ProductStock stock) {
+        Integer slot = slots.remove(stock);
+        if (slot == null) {
+            return;
+        }
+        stock.removeListener(this);
+        write(slot, stock, STATUS_FREE);
+        freeSlots.add(slot);
+    }
+
+    @Override
+    public void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                           int previousOnHand, int previousReserved) {
+        Integer slot = slots.get(stock);
+        if (slot == null) {
+            return;
+        }
+        write(slot, stock, STATUS_LIVE);
+    }
+
+    /**
+     * Rewrites both slots under a transfer note in the header, so a crash
+     * between the two writes is repaired by {@link #restore()}.
+     */
+    @Override
+    public void onTransfer(ProductStock source, ProductStock target, int amount,
+                           int sourcePreviousOnHand, int targetPreviousOnHand) {
+        Integer sourceSlot = slots.get(source);
+        Integer targetSlot = slots.get(target);
+        if (sourceSlot == null || targetSlot == null) {
+            StockListener.super.onTransfer(source, target, amount, sourcePreviousOnHand, targetPreviousOnHand);
+            return;
+        }
+        synchronized (this) {
+            ByteBuffer note = header.slice(HEADER_TRANSFER, TRANSFER_SIZE);
+            note.putInt(0, sourceSlot);
+            note.putInt(4, targetSlot);
+            note.putInt(8, sourcePreviousOnHand);
+            note.putInt(12, source.getOnHand());
+            note.putInt(16, targetPreviousOnHand);
+            note.putInt(20, target.getOnHand());
+            note.putInt(24, transferChecksum(note));
+            forceHeader();
+            write(sourceSlot, source, STATUS_LIVE);
+            write(targetSlot, target, STATUS_LIVE);
+            for (int i = 0; i < TRANSFER_SIZE; i += 4) {
+                note.putInt(i, 0);
+            }
+            forceHeader();
+        }
+    }
+
+    /**
+     * Finishes a transfer noted in the header whose slots were only partly
+     * rewritten: a slot still at its old quantity while the other has moved
+     * is brought forward. Slots in any other state are left alone.
+     */
+    private void completeTransfer() {
+        ByteBuffer note = header.slice(HEADER_TRANSFER, TRANSFER_SIZE);
+        int sourceSlot = note.getInt(0);
+        int targetSlot = note.getInt(4);
+        if (sourceSlot == targetSlot || note.getInt(24) != transferChecksum(note)
+                || sourceSlot < 0 || sourceSlot >= highWater || targetSlot < 0 || targetSlot >= highWater) {
+            return;
+        }
+        ByteBuffer source = record(sourceSlot);
+        ByteBuffer target = record(targetSlot);
+        if (source.getInt(CHECKSUM) == checksum(source) && target.getInt(CHECKSUM) == checksum(target)) {
+            int sourceOnHand = source.getInt(ON_HAND);
+            int targetOnHand = target.getInt(ON_HAND);
+            if (sourceOnHand == note.getInt(12) && targetOnHand == note.getInt(16)) {
+                repair(targetSlot, target, note.getInt(20));
+            } else if (sourceOnHand == note.getInt(8) && targetOnHand == note.getInt(20)) {
+                repair(sourceSlot, source, note.getInt(12));
+            }
+        }
+        for (int i = 0; i < TRANSFER_SIZE; i += 4) {
+            note.putInt(i, 0);
+        }
+        header.force();
+    }
+
+    private void repair(int slot, ByteBuffer record, int onHand) {
+        record.putInt(ON_HAND, onHand);
+        record.putInt(CHECKSUM, checksum(record));
+        segments[slot / SEGMENT_SLOTS].force((slot % SEGMENT_SLOTS) * RECORD_SIZE, RECORD_SIZE);
+    }
+
+    private void forceHeader() {
+        if (policy == SyncPolicy.EVERY_WRITE) {
+            header.force();
+        }
+    }
+
+    /**
+     * Rejects a location that does not fit in a slot before the record moves.
+     */
+    @Override
+    public void checkLocation(ProductStock stock, String newLocation) {
+        if (slots.containsKey(stock)) {
+            checkKey(newLocation, "location");
+        }
+    }
+
+    // ---------- Durability ----------
+
+    /**
+     * Forces every slot and the header to the storage device.
+     */
+    public void sync() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        for (ProductStock stock : slots.keySet()) {
+            stock.removeListener(this);
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // ---------- Slot encoding ----------
+
+    private ByteBuffer record(int slot) {
+        MappedByteBuffer segment = segments[slot / SEGMENT_SLOTS];
+        return segment.slice((slot % SEGMENT_SLOTS) * RECORD_SIZE, RECORD_SIZE);
+    }
+
+    private void write(int slot, ProductStock stock, int status) {
+        ByteBuffer record = record(slot);
+        writeKey(record, PRODUCT_ID, stock.getProductId());
+        writeKey(record, LOCATION, stock.getLocation());
+        record.putInt(ON_HAND, stock.getOnHand());
+        record.putInt(RESERVED, stock.getReserved());
+        record.putInt(REORDER_THRESHOLD, stock.getReorderThreshold());
+        record.putInt(MAX_CAPACITY, stock.getMaxCapacity());
+        record.putInt(STATUS, status);
+        record.putInt(CHECKSUM, checksum(record));
+        if (policy == SyncPolicy.EVERY_WRITE) {
+            MappedByteBuffer segment = segments[slot / SEGMENT_SLOTS];
+            segment.force((slot % SEGMENT_SLOTS) * RECORD_SIZE, RECORD_SIZE);
+        }
+    }
+
+    private static int checksum(ByteBuffer record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.slice(0, CHECKSUM));
+        return (int) crc.getValue();
+    }
+
+    private static int transferChecksum(ByteBuffer note) {
+        CRC32C crc = new CRC32C();
+        crc.update(note.slice(0, TRANSFER_SIZE - 4));
+        return (int) crc.getValue();
+    }
+
+    private static void checkKey(String value, String name) {
+        if (value.getBytes(StandardCharsets.UTF_8).length > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException(name + " is too long for the stock ledger (max "
+                    + MAX_KEY_BYTES + " UTF-8 bytes)");
+        }
+    }
+
+    private static void writeKey(ByteBuffer record, int offset, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        record.put(offset, (byte) bytes.length);
+        record.put(offset + 1, bytes);
+    }
+
+    private static String readKey(ByteBuffer record, int offset) {
+        byte[] bytes = new byte[record.get(offset)];
+        record.get(offset + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
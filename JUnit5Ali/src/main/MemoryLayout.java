@@ -0,0 +1,33 @@
+/**
+ * Heap size estimates for a 64-bit HotSpot JVM with compressed oops and
+ * compact (Latin-1) strings. Used to compare stock storage layouts.
+ */
+final class MemoryLayout {
+
+    static final int OBJECT_HEADER_BYTES = 12;
+    static final int ARRAY_HEADER_BYTES = 16;
+    static final int REFERENCE_BYTES = 4;
+
+    /** HashMap.Node (hash, key, value, next) plus its table slot. */
+    static final int HASH_MAP_ENTRY_BYTES = 32 + REFERENCE_BYTES;
+    static final int BOXED_INTEGER_BYTES = 16;
+
+    /** ProductStock: header, productId and location references, four ints. */
+    static final int PRODUCT_STOCK_BYTES =
+            (int) align(OBJECT_HEADER_BYTES + 2 * REFERENCE_BYTES + 4 * Integer.BYTES);
+
+    private MemoryLayout() {
+    }
+
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * String object (header, hash, coder, hashIsZero, value reference) plus its byte[].
+     */
+    static long stringBytes(int length) {
+        return align(OBJECT_HEADER_BYTES + 4 + 1 + 1 + REFERENCE_BYTES)
+               + align(ARRAY_HEADER_BYTES + length);
+    }
+}
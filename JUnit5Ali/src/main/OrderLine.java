@@ -0,0 +1,9 @@
+/**
+ * One line of a multi-line order: a quantity of a product at a location.
+ *
+ * @param productId unique ID of the product
+ * @param location  storage location code the units are taken from
+ * @param quantity  number of units (> 0)
+ */
+public record OrderLine(String productId, String location, int quantity) {
+}
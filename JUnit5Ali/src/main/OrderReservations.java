@@ -0,0 +1,283 @@
+/**
+ * Reservations on one {@link ProductStock}, tracked per order ID so that
+ * retried requests are idempotent.
+ * <p>
+ * Each order's reserved quantity lives in a {@link LongIntHashMap} keyed by
+ * the numeric order ID: 12 bytes per order plus the map's free slots,
+ * typically 20 to 40 bytes in all, with no per-order objects.
+ * Once an order is shipped or released its entry stays behind as a marker,
+ * so a late retry of any of the three operations is recognised and ignored
+ * instead of reserving, releasing or shipping twice. Call
+ * {@link #purgeSettled()} once retries for settled orders can no longer
+ * arrive to reclaim their entries.
+ * <p>
+ * Units reserved here are ordinary reservations on the stock, and the usual
+ * rules and messages apply. The wrapper must own every reservation on its
+ * stock: it is built on a record with none, and once anyone else reserves,
+ * releases or ships on the record it refuses further work, since it could no
+ * longer tell whose units damage took. It mutates the stock directly, so it
+ * cannot wrap a record registered in a {@link StockRegistry}, whose changes
+ * must go through the registry's locks and snapshots; such records are
+ * rejected. Not thread-safe; confine the wrapper and its stock to one thread
+ * or one lock of the caller's.
+ * <p>
+ * {@link ProductStock#removeDamaged(int)} may clamp the stock's reserved
+ * count below what the open orders hold. This class listens to its stock and,
+ * when that happens, charges the lost units to open orders, in no particular
+ * order and each at most what it held, so the holds add up to the stock's
+ * reserved count again. An order that lost units cannot be shipped; release
+ * it, which frees what it still holds, and reserve again.
+ */
+public final class OrderReservations implements StockListener {
+
+    private static final int UNKNOWN = 0;     // missing value: no entry for the order
+    private static final int SHIPPED = -1;
+    private static final int RELEASED = -2;
+
+    private final ProductStock stock;
+    private LongIntHashMap orders;   // open quantity (> 0), or SHIPPED / RELEASED
+    private int openOrders;
+    private int openUnits;                                          // units held by open orders
+    private final LongIntHashMap shortfalls = new LongIntHashMap(0, 0);   // open order -> units lost to damage
+    private boolean applying;       // this wrapper is mutating the stock
+    private boolean foreign;        // someone else changed the stock's reservations
+
+    public OrderReservations(ProductStock stock) {
+        this(stock, 16);
+    }
+
+    /**
+     * @param expectedOrders expected number of tracked orders (>= 0)
+     * @throws IllegalArgumentException if the stock is null, already has
+     *                                  reservations or is registered in a
+     *                                  {@link StockRegistry}
+     */
+    public OrderReservations(ProductStock stock, int expectedOrders) {
+        if (stock == null) {
+            throw new IllegalArgumentException("stock must not be null");
+        }
+        if (stock.registered) {
+            throw new IllegalArgumentException("stock is managed by a StockRegistry; reserve through the registry");
+        }
+        if (stock.getReserved() != 0) {
+            throw new IllegalArgumentException("stock already has reservations not made through this wrapper");
+        }
+        this.stock = stock;
+        this.orders = new LongIntHashMap(expectedOrders, UNKNOWN);
+        stock.addListener(this);
+    }
+
+    public ProductStock getStock() {
+        return stock;
+    }
+
+    // ---------- Per-order operations ----------
+
+    /**
+     * Reserves stock for an order.
+     *
+     * @return true if the units were reserved, false if this is a retry of a
+     *         reservation already made (or already settled) for the order
+     * @throws IllegalArgumentException if amount is not positive
+     * @throws IllegalStateException    if there is not enough available stock,
+     *                                  or the order holds a different quantity
+     */
+    public boolean reserve(long orderId, int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to reserve must be positive");
+        }
+        int state = orders.get(orderId);
+        if (state > 0) {
+            if (state != amount) {
+                throw new IllegalStateException("Order " + orderId + " already holds a reservation of " + state);
+            }
+            return false;
+        }
+        if (state != UNKNOWN) {
+            return false;
+        }
+        checkOwnership();
+        applying = true;
+        try {
+            stock.reserve(amount);
+        } finally {
+            applying = false;
+        }
+        orders.put(orderId, amount);
+        openOrders++;
+        openUnits += amount;
+        return true;
+    }
+
+    /**
+     * Releases everything the order holds.
+     *
+     * @return true if units were released, false if the order holds nothing
+     *         (never reserved, or already released or shipped)
+     */
+    public boolean releaseReservation(long orderId) {
+        int state = orders.get(orderId);
+        if (state <= 0) {
+            return false;
+        }
+        checkOwnership();
+        int held = state - shortfalls.remove(orderId);
+        if (held > 0) {
+            applying = true;
+            try {
+                stock.releaseReservation(held);
+            } finally {
+                applying = false;
+            }
+        }
+        orders.put(orderId, RELEASED);
+        openOrders--;
+        openUnits -= held;
+        return true;
+    }
+
+    /**
+     * Ships everything the order holds.
+     *
+     * @return true if units were shipped, false if this is a retry of a
+     *         shipment already made
+     * @throws IllegalStateException if the order has no reservation, was
+     *                               released, or lost units to damage
+     */
+    public boolean shipReserved(long orderId) {
+        int state = orders.get(orderId);
+        if (state == SHIPPED) {
+            return false;
+        }
+        if (state == RELEASED) {
+            throw new IllegalStateException("Order " + orderId + " was released");
+        }
+        if (state == UNKNOWN) {
+            throw new IllegalStateException("No reservation for order " + orderId);
+        }
+        int lost = shortfalls.get(orderId);
+        if (lost > 0) {
+            throw new IllegalStateException("Order " + orderId + " lost " + lost + " reserved units to damage");
+        }
+        checkOwnership();
+        applying = true;
+        try {
+            stock.shipReserved(state);
+        } finally {
+            applying = false;
+        }
+        orders.put(orderId, SHIPPED);
+        openOrders--;
+        openUnits -= state;
+        return true;
+    }
+
+    /**
+     * @throws IllegalStateException if the stock was registered or had its
+     *                               reservations changed behind the wrapper
+     */
+    private void checkOwnership() {
+        if (stock.registered) {
+            throw new IllegalStateException("Stock was registered in a StockRegistry; reserve through the registry");
+        }
+        if (foreign) {
+            throw new IllegalStateException("Stock reservations were changed outside this wrapper");
+        }
+    }
+
+    // ---------- Queries ----------
+
+    /**
+     * Units currently held by the order, 0 if none.
+     */
+    public int getReserved(long orderId) {
+        return Math.max(orders.get(orderId), 0) - shortfalls.get(orderId);
+    }
+
+    /**
+     * Units the open order lost to damage, 0 if none.
+     */
+    public int getShortfall(long orderId) {
+        return shortfalls.get(orderId);
+    }
+
+    public boolean isOpen(long orderId) {
+        return orders.get(orderId) > 0;
+    }
+
+    /** Orders currently holding units. */
+    public int openOrderCount() {
+        return openOrders;
+    }
+
+    /** Orders with an entry, open or settled. */
+    public int trackedOrderCount() {
+        return orders.size();
+    }
+
+    /**
+     * Forgets shipped and released orders; retries for them are no longer
+     * recognised afterwards. The map is rebuilt at the size of the open set.
+     *
+     * @return the number of entries dropped
+     */
+    public int purgeSettled() {
+        int dropped = orders.size() - openOrders;
+        if (dropped == 0) {
+            return 0;
+        }
+        LongIntHashMap open = new LongIntHashMap(openOrders, UNKNOWN);
+        orders.forEach((orderId, state) -> {
+            if (state > 0) {
+                open.put(orderId, state);
+            }
+        });
+        orders = open;
+        return dropped;
+    }
+
+    /**
+     * Approximate heap used for order tracking, in bytes.
+     */
+    public long footprintBytes() {
+        return orders.footprintBytes() + shortfalls.footprintBytes();
+    }
+
+    // ---------- Damage reconciliation ----------
+
+    @Override
+    public void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                           int previousOnHand, int previousReserved) {
+        if (mutation == StockMutation.RESERVE || mutation == StockMutation.RELEASE_RESERVATION
+                || mutation == StockMutation.SHIP_RESERVED) {
+            if (!applying) {
+                foreign = true;
+            }
+            return;
+        }
+        if (mutation != StockMutation.REMOVE_DAMAGED) {
+            return;
+        }
+        int lost = openUnits - stock.getReserved();
+        if (lost <= 0) {
+            return;
+        }
+        long[] ids = new long[openOrders];
+        int[] held = new int[openOrders];
+        int[] count = new int[1];
+        orders.forEach((orderId, state) -> {
+            if (state > 0) {
+                ids[count[0]] = orderId;
+                held[count[0]++] = state - shortfalls.get(orderId);
+            }
+        });
+        for (int i = 0; i < count[0] && lost > 0; i++) {
+            int take = Math.min(held[i], lost);
+            if (take > 0) {
+                shortfalls.put(ids[i], shortfalls.get(ids[i]) + take);
+                openUnits -= take;
+                lost -= take;
+            }
+        }
+    }
+}
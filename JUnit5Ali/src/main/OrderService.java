@@ -0,0 +1,393 @@
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Embeddable order-processing front end for a {@link StockRegistry} that runs
+ * every request on its own virtual thread.
+ * <p>
+ * Request handlers are plain blocking code. A checkout waits on its
+ * {@link Authorizer}, typically a payment provider, and a virtual thread
+ * blocked there gives its carrier thread back, so the number of checkouts
+ * held open is bounded by memory rather than by a thread pool. Nothing on the
+ * request path uses {@code synchronized}: records are guarded by the
+ * registry's {@link ReentrantLock}s and orders by their own, and no lock is
+ * held while authorization blocks, so virtual threads never pin their carrier.
+ * <p>
+ * As with {@link OrderReservations}, a retried request for an order that is
+ * already reserved, shipped or released is answered from the order's state
+ * instead of being applied twice. Settled orders are remembered for that
+ * purpose until {@link #purgeSettled()}. Shipping and cancelling apply every
+ * line of the order or none, so a rejected ship or cancel leaves the order
+ * reserved and whole for a retry.
+ * <p>
+ * While a checkout waits for its authorizer the order is
+ * {@link Status#AUTHORIZING}: ships and cancels for it are rejected, and only
+ * the checkout ships or releases it. A retried checkout waits for and returns
+ * the first one's outcome, including why it was declined.
+ */
+public final class OrderService implements AutoCloseable {
+
+    /**
+     * Approves or declines a reserved order. Runs on the request's virtual
+     * thread and may block; throwing declines the order.
+     */
+    @FunctionalInterface
+    public interface Authorizer {
+        boolean authorize(long orderId, List<OrderLine> lines) throws Exception;
+    }
+
+    public enum Status {
+        /** The order's lines are reserved. */
+        RESERVED,
+        /** The order's lines are reserved and its checkout is waiting for the authorizer. */
+        AUTHORIZING,
+        /** The order's lines are shipped. */
+        SHIPPED,
+        /** The order's reservations were released. */
+        RELEASED,
+        /** The authorizer declined the order; its reservations were released. */
+        DECLINED,
+        /** The request broke a stock rule or conflicts with the order's state; nothing changed. */
+        REJECTED,
+        /** No such order. */
+        UNKNOWN_ORDER
+    }
+
+    /**
+     * @param reason why the request was rejected or declined, otherwise null
+     */
+    public record Response(long orderId, Status status, String reason) {
+    }
+
+    private enum State {
+        RESERVED, AUTHORIZING, SHIPPED, RELEASED
+    }
+
+    private static final class Order {
+        final ReentrantLock lock = new ReentrantLock();
+        final List<OrderLine> lines;
+        final CompletableFuture<Response> checkout;   // outcome of a checkout, null for a plain reserve
+        State state;   // guarded by lock; null until reserved
+
+        Order(List<OrderLine> lines, CompletableFuture<Response> checkout) {
+            this.lines = lines;
+            this.checkout = checkout;
+        }
+    }
+
+    private final StockRegistry registry;
+    private final Authorizer authorizer;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Long, Order> orders = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * A service whose checkouts are always approved.
+     */
+    public OrderService(StockRegistry registry) {
+        this(registry, (orderId, lines) -> true);
+    }
+
+    public OrderService(StockRegistry registry, Authorizer authorizer) {
+        this(registry, authorizer,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("order-service-", 0).factory()));
+    }
+
+    /**
+     * @param executor runs the requests; shut down by {@link #close()}
+     */
+    OrderService(StockRegistry registry, Authorizer authorizer, ExecutorService executor) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry must not be null");
+        }
+        if (authorizer == null) {
+            throw new IllegalArgumentException("authorizer must not be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.registry = registry;
+        this.authorizer = authorizer;
+        this.executor = executor;
+    }
+
+    // ---------- Requests ----------
+
+    /**
+     * Reserves every line of the order, all or nothing.
+     */
+    public CompletableFuture<Response> reserve(long orderId, List<OrderLine> lines) {
+        List<OrderLine> copy = checkLines(lines);
+        return submit(() -> handleReserve(orderId, copy, false).response);
+    }
+
+    /**
+     * Ships a reserved order.
+     */
+    public CompletableFuture<Response> ship(long orderId) {
+        return submit(() -> handleShip(orderId, false));
+    }
+
+    /**
+     * Releases a reserved order.
+     */
+    public CompletableFuture<Response> cancel(long orderId) {
+        return submit(() -> handleCancel(orderId, false));
+    }
+
+    /**
+     * Reserves the order, asks the authorizer and then ships it, or releases
+     * it if the authorizer declines.
+     */
+    public CompletableFuture<Response> checkout(long orderId, List<OrderLine> lines) {
+        List<OrderLine> copy = checkLines(lines);
+        return submit(() -> handleCheckout(orderId, copy));
+    }
+
+    private CompletableFuture<Response> submit(Supplier<Response> request) {
+        if (closed) {
+            throw new IllegalStateException("Order service is closed");
+        }
+        return CompletableFuture.supplyAsync(request, executor);
+    }
+
+    private static List<OrderLine> checkLines(List<OrderLine> lines) {
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("lines must not be null or empty");
+        }
+        return List.copyOf(lines);
+    }
+
+    // ---------- Handlers, on the request's thread ----------
+
+    private record Reservation(Response response, boolean created, CompletableFuture<Response> checkout) {
+    }
+
+    private Reservation handleReserve(long orderId, List<OrderLine> lines, boolean checkout) {
+        Order order = new Order(lines, checkout ? new CompletableFuture<>() : null);
+        order.lock.lock();
+        try {
+            while (true) {
+                Order existing = orders.putIfAbsent(orderId, order);
+                if (existing == null) {
+                    break;
+                }
+                // blocks until the holder settles or abandons its reservation
+                existing.lock.lock();
+                try {
+                    if (existing.state == null) {
+                        orders.remove(orderId, existing);   // its reservation failed
+                        continue;
+                    }
+                    if (isOpen(existing.state) && !existing.lines.equals(lines)) {
+                        return new Reservation(rejected(orderId, "Order " + orderId + " already holds other lines"),
+                                false, null);
+                    }
+                    return new Reservation(response(orderId, existing.state), false, existing.checkout);
+                } finally {
+                    existing.lock.unlock();
+                }
+            }
+            try {
+                registry.reserveAll(lines);
+                order.state = checkout ? State.AUTHORIZING : State.RESERVED;
+                return new Reservation(response(orderId, order.state), true, order.checkout);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                return new Reservation(rejected(orderId, e.getMessage()), false, null);
+            } catch (UncheckedIOException e) {
+                // the lines were applied before their write-ahead failed
+                order.state = State.RESERVED;
+                throw e;
+            } finally {
+                if (order.state == null) {
+                    orders.remove(orderId, order);
+                } else if (order.checkout != null && order.state != State.AUTHORIZING) {
+                    // no authorization follows; retried checkouts get the order's state
+                    order.checkout.complete(response(orderId, order.state));
+                }
+            }
+        } finally {
+            order.lock.unlock();
+        }
+    }
+
+    private Response handleShip(long orderId, boolean authorized) {
+        Order order = orders.get(orderId);
+        if (order == null) {
+            return new Response(orderId, Status.UNKNOWN_ORDER, null);
+        }
+        order.lock.lock();
+        try {
+            if (order.state == null) {
+                return new Response(orderId, Status.UNKNOWN_ORDER, null);
+            }
+            if (order.state == State.AUTHORIZING && !authorized) {
+                return rejected(orderId, "Order " + orderId + " is being authorized");
+            }
+            if (order.state == State.RELEASED) {
+                return rejected(orderId, "Order " + orderId + " was released");
+            }
+            if (isOpen(order.state)) {
+                // the units are this order's reservations, so shipping them
+                // can only fail if they were released behind the service's back;
+                // then no line is shipped and the order stays reserved
+                try {
+                    registry.shipAll(order.lines);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    order.state = State.RESERVED;
+                    return rejected(orderId, e.getMessage());
+                } catch (UncheckedIOException e) {
+                    order.state = State.SHIPPED;
+                    throw e;
+                }
+                order.state = State.SHIPPED;
+            }
+            return response(orderId, order.state);
+        } finally {
+            order.lock.unlock();
+        }
+    }
+
+    private Response handleCancel(long orderId, boolean declined) {
+        Order order = orders.get(orderId);
+        if (order == null) {
+            return new Response(orderId, Status.UNKNOWN_ORDER, null);
+        }
+        order.lock.lock();
+        try {
+            if (order.state == null) {
+                return new Response(orderId, Status.UNKNOWN_ORDER, null);
+            }
+            if (order.state == State.AUTHORIZING && !declined) {
+                return rejected(orderId, "Order " + orderId + " is being authorized");
+            }
+            if (order.state == State.SHIPPED) {
+                return rejected(orderId, "Order " + orderId + " was shipped");
+            }
+            if (isOpen(order.state)) {
+                try {
+                    registry.releaseAll(order.lines);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    order.state = State.RESERVED;
+                    return rejected(orderId, e.getMessage());
+                } catch (UncheckedIOException e) {
+                    order.state = State.RELEASED;
+                    throw e;
+                }
+                order.state = State.RELEASED;
+            }
+            return response(orderId, order.state);
+        } finally {
+            order.lock.unlock();
+        }
+    }
+
+    private Response handleCheckout(long orderId, List<OrderLine> lines) {
+        Reservation reservation = handleReserve(orderId, lines, true);
+        if (!reservation.created) {
+            // a retry waits for the first checkout's outcome
+            return reservation.checkout == null ? reservation.response : reservation.checkout.join();
+        }
+        Response outcome = null;
+        try {
+            outcome = authorizeAndSettle(orderId, lines);
+            return outcome;
+        } finally {
+            if (outcome != null) {
+                reservation.checkout.complete(outcome);
+            } else {
+                reservation.checkout.completeExceptionally(
+                        new IllegalStateException("Checkout of order " + orderId + " failed"));
+            }
+        }
+    }
+
+    private Response authorizeAndSettle(long orderId, List<OrderLine> lines) {
+        // no lock is held here, so a blocking authorizer never pins the thread;
+        // the order stays AUTHORIZING, so only this checkout can settle it
+        String reason;
+        try {
+            if (authorizer.authorize(orderId, lines)) {
+                return handleShip(orderId, true);
+            }
+            reason = "Declined by authorizer";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reason = "Authorization interrupted";
+        } catch (Exception e) {
+            reason = "Authorization failed: " + e.getMessage();
+        }
+        Response released = handleCancel(orderId, true);
+        return released.status() == Status.RELEASED ? new Response(orderId, Status.DECLINED, reason) : released;
+    }
+
+    private static boolean isOpen(State state) {
+        return state == State.RESERVED || state == State.AUTHORIZING;
+    }
+
+    private static Response response(long orderId, State state) {
+        return new Response(orderId, Status.valueOf(state.name()), null);
+    }
+
+    private static Response rejected(long orderId, String reason) {
+        return new Response(orderId, Status.REJECTED, reason);
+    }
+
+    // ---------- Bookkeeping ----------
+
+    /**
+     * Number of orders currently holding reservations.
+     */
+    public int openOrders() {
+        int open = 0;
+        for (Order order : orders.values()) {
+            order.lock.lock();
+            try {
+                if (isOpen(order.state)) {
+                    open++;
+                }
+            } finally {
+                order.lock.unlock();
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Forgets shipped and released orders. Call once retries for them can no
+     * longer arrive.
+     *
+     * @return number of orders forgotten
+     */
+    public int purgeSettled() {
+        int purged = 0;
+        for (var it = orders.values().iterator(); it.hasNext(); ) {
+            Order order = it.next();
+            order.lock.lock();
+            try {
+                if (order.state == State.SHIPPED || order.state == State.RELEASED) {
+                    it.remove();
+                    purged++;
+                }
+            } finally {
+                order.lock.unlock();
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Stops accepting requests and waits for the running ones to finish.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.close();
+    }
+}
@@ -0,0 +1,200 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-product totals of onHand, reserved and available stock across every
+ * location, maintained incrementally.
+ * <p>
+ * Each tracked record reports its mutations as a {@link StockListener}; the
+ * listener turns the previous and current quantities into deltas and adds
+ * them to the product's totals. onHand and reserved share one
+ * {@link AtomicLong} (onHand in the high 32 bits, reserved in the low 32), so
+ * an update is a single atomic add, and a read is one volatile load that
+ * always sees matching totals, without taking any record's lock. Totals hold
+ * up to 2^32 - 1 units per product.
+ */
+public class ProductAvailability implements StockListener {
+
+    private static final long LOW_MASK = 0xFFFF_FFFFL;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final class Totals {
+        final AtomicLong quantities = new AtomicLong();   // [onHand:32][reserved:32]
+        final Set<ProductStock> records = ConcurrentHashMap.newKeySet();
+    }
+
+    private final Map<String, Totals> byProduct = new ConcurrentHashMap<>();
+
+    /**
+     * Starts counting the record in its product's totals.
+     * Must be called while no other thread mutates the record.
+     */
+    public void track(ProductStock stock) {
+        Totals totals = byProduct.computeIfAbsent(stock.getProductId(), id -> new Totals());
+        if (totals.records.add(stock)) {
+            stock.addListener(this);
+            add(totals, stock.getOnHand(), stock.getReserved());
+        }
+    }
+
+    /**
+     * Tracks every record currently in the registry.
+     */
+    public void trackAll(StockRegistry registry) {
+        registry.forEach(this::track);
+    }
+
+    /**
+     * Stops counting the record. Must be called while no other thread
+     * mutates the record.
+     */
+    public void untrack(ProductStock stock) {
+        Totals totals = byProduct.get(stock.getProductId());
+        if (totals != null && totals.records.remove(stock)) {
+            stock.removeListener(this);
+            add(totals, -stock.getOnHand(), -stock.getReserved());
+        }
+    }
+
+    @Override
+    public void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                           int previousOnHand, int previousReserved) {
+        int onHandDelta = stock.getOnHand() - previousOnHand;
+        int reservedDelta = stock.getReserved() - previousReserved;
+        if (onHandDelta != 0 || reservedDelta != 0) {
+            add(byProduct.get(stock.getProductId()), onHandDelta, reservedDelta);
+        }
+    }
+
+    /**
+     * Applies both sides at once: a transfer between a product's records
+     * moves no units out of the product, so its totals never dip mid-transfer.
+     */
+    @Override
+    public void onTransfer(ProductStock source, ProductStock target, int amount,
+                           int sourcePreviousOnHand, int targetPreviousOnHand) {
+        int sourceDelta = source.getOnHand() - sourcePreviousOnHand;
+        int targetDelta = target.getOnHand() - targetPreviousOnHand;
+        if (source.getProductId().equals(target.getProductId())) {
+            if (sourceDelta + targetDelta != 0) {
+                add(byProduct.get(source.getProductId()), sourceDelta + targetDelta, 0);
+            }
+            return;
+        }
+        add(byProduct.get(source.getProductId()), sourceDelta, 0);
+        add(byProduct.get(target.getProductId()), targetDelta, 0);
+    }
+
+    private static void add(Totals totals, int onHandDelta, int reservedDelta) {
+        // reserved never goes negative, so the signed add never borrows across halves
+        totals.quantities.addAndGet(((long) onHandDelta << 32) + reservedDelta);
+    }
+
+    // ---------- Queries ----------
+
+    public long getOnHand(String productId) {
+        return quantities(productId) >>> 32;
+    }
+
+    public long getReserved(String productId) {
+        return quantities(productId) & LOW_MASK;
+    }
+
+    /**
+     * Available stock of the product across all locations, from one
+     * consistent read of its totals.
+     */
+    public long getAvailable(String productId) {
+        long q = quantities(productId);
+        return (q >>> 32) - (q & LOW_MASK);
+    }
+
+    public int locationCount(String productId) {
+        Totals totals = byProduct.get(productId);
+        return totals == null ? 0 : totals.records.size();
+    }
+
+    public int productCount() {
+        return byProduct.size();
+    }
+
+    private long quantities(String productId) {
+        Totals totals = byProduct.get(productId);
+        return totals == null ? 0 : totals.quantities.get();
+    }
+
+    // ---------- Allocation ----------
+
+    /**
+     * Reserves {@code quantity} units of the product spread over as few
+     * locations as possible: locations are taken in descending order of
+     * available stock until the quantity is covered. The reservation goes
+     * through {@link StockRegistry#reserveAll(List)}, so it is all or nothing.
+     * <p>
+     * The plan is made from unlocked reads; if a concurrent mutation makes it
+     * stale, the registry rejects it and a new plan is made.
+     *
+     * @return the lines that were reserved, one per location used
+     * @throws IllegalArgumentException if quantity is not positive or the product is not tracked
+     * @throws IllegalStateException    if the product does not have enough available stock
+     */
+    public List<OrderLine> reserveAnywhere(StockRegistry registry, String productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Amount to reserve must be positive");
+        }
+        Totals totals = byProduct.get(productId);
+        if (totals == null || totals.records.isEmpty()) {
+            throw new IllegalArgumentException("No stock for product " + productId);
+        }
+        RuntimeException lastFailure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (getAvailable(productId) < quantity) {
+                throw new IllegalStateException("Insufficient available stock to reserve product " + productId);
+            }
+            List<OrderLine> plan = plan(totals, productId, quantity);
+            if (plan == null) {
+                continue;
+            }
+            try {
+                registry.reserveAll(plan);
+                return plan;
+            } catch (IllegalStateException | IllegalArgumentException e) {
+                // stale plan: stock moved or was taken since it was read
+                lastFailure = e;
+            }
+        }
+        if (lastFailure != null) {
+            throw lastFailure;
+        }
+        throw new IllegalStateException("Insufficient available stock to reserve product " + productId);
+    }
+
+    private static List<OrderLine> plan(Totals totals, String productId, int quantity) {
+        List<ProductStock> candidates = new ArrayList<>(totals.records);
+        int[] available = new int[candidates.size()];
+        Integer[] order = new Integer[candidates.size()];
+        for (int i = 0; i < available.length; i++) {
+            available[i] = candidates.get(i).getAvailable();
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> available[i]).reversed());
+
+        List<OrderLine> lines = new ArrayList<>();
+        int remaining = quantity;
+        for (int i : order) {
+            if (remaining == 0 || available[i] <= 0) {
+                break;
+            }
+            int take = Math.min(remaining, available[i]);
+            lines.add(new OrderLine(productId, candidates.get(i).getLocation(), take));
+            remaining -= take;
+        }
+        return remaining == 0 ? lines : null;
+    }
+}
@@ -1,11 +1,17 @@
+import java.util.Arrays;
+
 public class ProductStock {
 
+    private static final StockListener[] NO_LISTENERS = new StockListener[0];
+
     private final String productId;
     private String location;       // e.g., "WH-1-A3"
     private int onHand;            // physical units stored
     private int reserved;          // units reserved for orders
     private int reorderThreshold;  // when available < threshold → reorder needed
     private int maxCapacity;       // max units this location can store
+    private volatile StockListener[] listeners = NO_LISTENERS;
+    volatile boolean registered;   // set by StockRegistry while the record is registered there
 
     /**
      * Creates a ProductStock instance with basic inventory info.
@@ -42,7 +48,7 @@ public class ProductStock {
         }
 
         this.productId = productId;
-        this.location = location;
+        this.location = LocationCode.intern(location);
         this.onHand = initialOnHand;
         this.reserved = 0;
         this.reorderThreshold = reorderThreshold;
@@ -82,6 +88,40 @@ public class ProductStock {
         return maxCapacity;
     }
 
+    // ---------- Listeners ----------
+
+    /**
+     * Registers a listener that is called after every successful mutation.
+     */
+    public synchronized void addListener(StockListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        StockListener[] current = listeners;
+        StockListener[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void removeListener(StockListener listener) {
+        StockListener[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                StockListener[] updated = new StockListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    private void fire(StockMutation mutation, int amount, int previousOnHand, int previousReserved) {
+        for (StockListener listener : listeners) {
+            listener.onMutation(this, mutation, amount, previousOnHand, previousReserved);
+        }
+    }
+
     // ---------- Mutating operations with business rules ----------
 
     /**
@@ -91,7 +131,11 @@ public class ProductStock {
         if (newLocation == null || newLocation.isBlank()) {
             throw new IllegalArgumentException("newLocation must not be null or blank");
         }
-        this.location = newLocation;
+        for (StockListener listener : listeners) {
+            listener.checkLocation(this, newLocation);
+        }
+        this.location = LocationCode.intern(newLocation);
+        fire(StockMutation.CHANGE_LOCATION, 0, onHand, reserved);
     }
 
     /**
@@ -106,6 +150,7 @@ public class ProductStock {
             throw new IllegalStateException("Cannot add stock beyond maxCapacity");
         }
         onHand += amount;
+        fire(StockMutation.ADD_STOCK, amount, onHand - amount, reserved);
     }
 
     /**
@@ -119,12 +164,14 @@ public class ProductStock {
         if (amount > onHand) {
             throw new IllegalStateException("Cannot remove more than on-hand quantity");
         }
+        int previousReserved = reserved;
         onHand -= amount;
         // reserved is unchanged here
         if (reserved > onHand) {
             // Safety: never allow reserved > onHand
             reserved = onHand;
         }
+        fire(StockMutation.REMOVE_DAMAGED, amount, onHand + amount, previousReserved);
     }
 
     /**
@@ -135,10 +182,9 @@ public class ProductStock {
         if (amount <= 0) {
             throw new IllegalArgumentException("Amount to reserve must be positive");
         }
-        if (amount > getAvailable()) {
+        if (tryReserve(amount) != StockStatus.OK) {
             throw new IllegalStateException("Insufficient available stock to reserve");
         }
-        reserved += amount;
     }
 
     /**
@@ -149,10 +195,9 @@ public class ProductStock {
         if (amount <= 0) {
             throw new IllegalArgumentException("Amount to release must be positive");
         }
-        if (amount > reserved) {
+        if (tryReleaseReservation(amount) != StockStatus.OK) {
             throw new IllegalStateException("Cannot release more than reserved");
         }
-        reserved -= amount;
     }
 
     /**
@@ -163,17 +208,15 @@ public class ProductStock {
         if (amount <= 0) {
             throw new IllegalArgumentException("Amount to ship must be positive");
         }
-        if (amount > reserved) {
+        StockStatus status = tryShipReserved(amount);
+        if (status == StockStatus.INSUFFICIENT_RESERVED) {
             throw new IllegalStateException("Cannot ship more than reserved");
         }
-        if (amount > onHand) {
+        if (status == StockStatus.INSUFFICIENT_ON_HAND) {
             // Should not happen if invariant reserved <= onHand holds,
             // but we guard anyway.
             throw new IllegalStateException("On-hand quantity is not enough to ship");
         }
-
-        reserved -= amount;
-        onHand -= amount;
     }
 
     /**
@@ -194,6 +237,7 @@ public class ProductStock {
             throw new IllegalArgumentException("reorderThreshold cannot exceed maxCapacity");
         }
         this.reorderThreshold = newThreshold;
+        fire(StockMutation.UPDATE_REORDER_THRESHOLD, newThreshold, onHand, reserved);
     }
 
     /**
@@ -210,6 +254,113 @@ public class ProductStock {
         if (reorderThreshold > maxCapacity) {
             reorderThreshold = maxCapacity;
         }
+        fire(StockMutation.UPDATE_MAX_CAPACITY, newMaxCapacity, onHand, reserved);
+    }
+
+    /**
+     * Moves units of this product to its record at another location, both
+     * sides or neither. Only available units can move; reservations stay
+     * with this record. Fails if the target would exceed its maxCapacity.
+     * A listener on both records is told once, through
+     * {@link StockListener#onTransfer}; a listener on only one of them sees
+     * {@link StockMutation#TRANSFER_OUT} or {@link StockMutation#TRANSFER_IN}.
+     */
+    public void transferTo(ProductStock target, int amount) {
+        if (target == null) {
+            throw new IllegalArgumentException("target must not be null");
+        }
+        if (target == this) {
+            throw new IllegalArgumentException("Cannot transfer stock to itself");
+        }
+        if (!productId.equals(target.productId)) {
+            throw new IllegalArgumentException("Cannot transfer between different products");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to transfer must be positive");
+        }
+        if (amount > getAvailable()) {
+            throw new IllegalStateException("Insufficient available stock to transfer");
+        }
+        if ((long) target.onHand + amount > target.maxCapacity) {
+            throw new IllegalStateException("Cannot add stock beyond maxCapacity");
+        }
+        onHand -= amount;
+        target.onHand += amount;
+        StockListener[] from = listeners;
+        StockListener[] to = target.listeners;
+        for (StockListener listener : from) {
+            if (contains(to, listener)) {
+                listener.onTransfer(this, target, amount, onHand + amount, target.onHand - amount);
+            } else {
+                listener.onMutation(this, StockMutation.TRANSFER_OUT, amount, onHand + amount, reserved);
+            }
+        }
+        for (StockListener listener : to) {
+            if (!contains(from, listener)) {
+                listener.onMutation(target, StockMutation.TRANSFER_IN, amount, target.onHand - amount, target.reserved);
+            }
+        }
+    }
+
+    private static boolean contains(StockListener[] listeners, StockListener listener) {
+        for (StockListener l : listeners) {
+            if (l == listener) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ---------- Non-throwing operations ----------
+
+    /**
+     * Same rules as {@link #reserve(int)}, but reports a rejected request as a
+     * status instead of an exception, so sold-out traffic costs no allocation.
+     */
+    public StockStatus tryReserve(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        if (amount > getAvailable()) {
+            return StockStatus.INSUFFICIENT_AVAILABLE;
+        }
+        reserved += amount;
+        fire(StockMutation.RESERVE, amount, onHand, reserved - amount);
+        return StockStatus.OK;
+    }
+
+    /**
+     * Same rules as {@link #releaseReservation(int)}, reported as a status.
+     */
+    public StockStatus tryReleaseReservation(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        if (amount > reserved) {
+            return StockStatus.INSUFFICIENT_RESERVED;
+        }
+        reserved -= amount;
+        fire(StockMutation.RELEASE_RESERVATION, amount, onHand, reserved + amount);
+        return StockStatus.OK;
+    }
+
+    /**
+     * Same rules as {@link #shipReserved(int)}, reported as a status.
+     */
+    public StockStatus tryShipReserved(int amount) {
+        if (amount <= 0) {
+            return StockStatus.INVALID_AMOUNT;
+        }
+        if (amount > reserved) {
+            return StockStatus.INSUFFICIENT_RESERVED;
+        }
+        if (amount > onHand) {
+            return StockStatus.INSUFFICIENT_ON_HAND;
+        }
+        reserved -= amount;
+        onHand -= amount;
+        fire(StockMutation.SHIP_RESERVED, amount, onHand + amount, reserved + amount);
+        return StockStatus.OK;
     }
 
     @Override
@@ -0,0 +1,207 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Versioned binary encoding of {@link ProductStock} records for replication.
+ * <p>
+ * Quantities are varints, so typical stock levels take one or two bytes.
+ * productId and location are dictionary-encoded: the first occurrence of a
+ * string on a stream is written inline and both ends assign it the next
+ * code, and every later occurrence is written as that code. An
+ * {@link Encoder} and its {@link Decoder} therefore form a pair that must
+ * see the same messages in the same order; after a decoding error the
+ * decoder is out of step and both must be replaced.
+ * <p>
+ * Records are written straight into the caller's {@link ByteBuffer} and read
+ * straight out of it, without intermediate buffers. Only productId,
+ * location and the four quantities are encoded; listeners are not.
+ *
+ * <pre>
+ * record:  [version:1] entry
+ * batch:   [version:1] [count:varint] entry*
+ * entry:   productId, location, onHand, reserved, reorderThreshold, maxCapacity
+ * string:  [code &lt;&lt; 1 : varint]                  known string
+ *          [length &lt;&lt; 1 | 1 : varint] [utf8]     new string, takes the next code
+ * </pre>
+ */
+public final class ProductStockCodec {
+
+    public static final int VERSION = 1;
+
+    private ProductStockCodec() {
+    }
+
+    /**
+     * Encoding side of a stream. Not thread-safe.
+     */
+    public static final class Encoder {
+        private final StringDictionary dictionary = new StringDictionary();
+
+        /**
+         * Writes one record.
+         *
+         * @throws BufferOverflowException if {@code out} may be too small;
+         *                                 nothing is written in that case
+         */
+        public void encode(ProductStock stock, ByteBuffer out) {
+            checkRoom(out, 1 + maxEntrySize(stock));
+            out.put((byte) VERSION);
+            putEntry(stock, out);
+        }
+
+        /**
+         * Writes the records as one batch.
+         *
+         * @throws BufferOverflowException if {@code out} may be too small;
+         *                                 nothing is written in that case
+         */
+        public void encodeBatch(Collection<ProductStock> stocks, ByteBuffer out) {
+            long bound = 1 + Varints.MAX_INT_BYTES;
+            for (ProductStock stock : stocks) {
+                bound += maxEntrySize(stock);
+            }
+            checkRoom(out, bound);
+            out.put((byte) VERSION);
+            Varints.putUnsigned(out, stocks.size());
+            for (ProductStock stock : stocks) {
+                putEntry(stock, out);
+            }
+        }
+
+        /** Distinct strings sent so far. */
+        public int dictionarySize() {
+            return dictionary.size();
+        }
+
+        private int maxEntrySize(ProductStock stock) {
+            return maxStringSize(stock.getProductId()) + maxStringSize(stock.getLocation())
+                   + 4 * Varints.MAX_INT_BYTES;
+        }
+
+        private int maxStringSize(String value) {
+            // UTF-8 takes at most 3 bytes per UTF-16 char
+            return dictionary.codeOf(value) >= 0 ? Varints.MAX_INT_BYTES : Varints.MAX_INT_BYTES + 3 * value.length();
+        }
+
+        private void putEntry(ProductStock stock, ByteBuffer out) {
+            putString(stock.getProductId(), out);
+            putString(stock.getLocation(), out);
+            Varints.putUnsigned(out, stock.getOnHand());
+            Varints.putUnsigned(out, stock.getReserved());
+            Varints.putUnsigned(out, stock.getReorderThreshold());
+            Varints.putUnsigned(out, stock.getMaxCapacity());
+        }
+
+        private void putString(String value, ByteBuffer out) {
+            int code = dictionary.codeOf(value);
+            if (code >= 0) {
+                Varints.putUnsigned(out, code << 1);
+                return;
+            }
+            dictionary.intern(value);
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            Varints.putUnsigned(out, utf8.length << 1 | 1);
+            out.put(utf8);
+        }
+
+        private static void checkRoom(ByteBuffer out, long bytes) {
+            if (out.remaining() < bytes) {
+                throw new BufferOverflowException();
+            }
+        }
+    }
+
+    /**
+     * Decoding side of a stream. Not thread-safe.
+     */
+    public static final class Decoder {
+        private final StringDictionary dictionary = new StringDictionary();
+
+        /**
+         * Reads one record.
+         *
+         * @throws IllegalStateException    if the input is malformed or of another version
+         * @throws IllegalArgumentException if the record fails the {@link ProductStock} rules
+         * @throws java.nio.BufferUnderflowException if the input ends inside the record
+         */
+        public ProductStock decode(ByteBuffer in) {
+            checkVersion(in);
+            return getEntry(in);
+        }
+
+        /**
+         * Reads one batch.
+         *
+         * @throws IllegalStateException    if the input is malformed or of another version
+         * @throws IllegalArgumentException if a record fails the {@link ProductStock} rules
+         */
+        public List<ProductStock> decodeBatch(ByteBuffer in) {
+            checkVersion(in);
+            int count = Varints.getUnsigned(in);
+            if (count < 0 || count > in.remaining()) {
+                throw new IllegalStateException("Malformed batch size: " + count);
+            }
+            List<ProductStock> stocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                stocks.add(getEntry(in));
+            }
+            return stocks;
+        }
+
+        /** Distinct strings received so far. */
+        public int dictionarySize() {
+            return dictionary.size();
+        }
+
+        private static void checkVersion(ByteBuffer in) {
+            int version = in.get();
+            if (version != VERSION) {
+                throw new IllegalStateException("Unsupported stock codec version: " + version);
+            }
+        }
+
+        private ProductStock getEntry(ByteBuffer in) {
+            String productId = getString(in);
+            String location = getString(in);
+            int onHand = Varints.getUnsigned(in);
+            int reserved = Varints.getUnsigned(in);
+            int reorderThreshold = Varints.getUnsigned(in);
+            int maxCapacity = Varints.getUnsigned(in);
+            ProductStock stock = new ProductStock(productId, location, onHand, reorderThreshold, maxCapacity);
+            if (reserved > 0) {
+                stock.reserve(reserved);
+            }
+            return stock;
+        }
+
+        private String getString(ByteBuffer in) {
+            int header = Varints.getUnsigned(in);
+            if ((header & 1) == 0) {
+                int code = header >>> 1;
+                if (code >= dictionary.size()) {
+                    throw new IllegalStateException("Unknown dictionary code: " + code);
+                }
+                return dictionary.valueOf(code);
+            }
+            int length = header >>> 1;
+            if (length > in.remaining()) {
+                throw new IllegalStateException("Malformed string length: " + length);
+            }
+            String value;
+            if (in.hasArray()) {
+                value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            } else {
+                byte[] utf8 = new byte[length];
+                in.get(utf8);
+                value = new String(utf8, StandardCharsets.UTF_8);
+            }
+            dictionary.intern(value);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * A record entered ({@code reorderNeeded == true}) or left the reorder set.
+ *
+ * @param productId        product of the record
+ * @param location         location of the record at the time of the change
+ * @param reorderNeeded    the new value of {@link ProductStock#isReorderNeeded()}
+ * @param available        available stock right after the change
+ * @param reorderThreshold reorder threshold right after the change
+ */
+public record ReorderEvent(String productId,
+                           String location,
+                           boolean reorderNeeded,
+                           int available,
+                           int reorderThreshold) {
+
+    static ReorderEvent of(ProductStock stock, boolean reorderNeeded) {
+        return new ReorderEvent(stock.getProductId(), stock.getLocation(), reorderNeeded,
+                stock.getAvailable(), stock.getReorderThreshold());
+    }
+}
@@ -0,0 +1,210 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes reorder-state changes of a {@link ReorderIndex} as a
+ * {@link Flow.Publisher} with backpressure and per-record coalescing.
+ * <p>
+ * Each subscriber has its own queue holding at most one pending event per
+ * record. A newer change for a record replaces the pending one, and two
+ * changes that cancel out (needed, then no longer needed) drop both, since
+ * the subscriber's view is already correct. A burst of thousands of
+ * reservations on one hot SKU therefore produces at most one event, and a
+ * slow subscriber's queue is bounded by the number of distinct records
+ * rather than by the number of mutations.
+ * <p>
+ * Events are delivered on the given executor, never on the mutating thread,
+ * and only as far as the subscriber has requested.
+ */
+public class ReorderEventPublisher implements Flow.Publisher<ReorderEvent>, AutoCloseable {
+
+    private final ReorderIndex index;
+    private final Executor executor;
+    private final List<ReorderSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final ReorderIndex.TransitionListener listener = this::publish;
+    private volatile boolean closed;
+
+    public ReorderEventPublisher(ReorderIndex index) {
+        this(index, ForkJoinPool.commonPool());
+    }
+
+    public ReorderEventPublisher(ReorderIndex index, Executor executor) {
+        if (index == null) {
+            throw new IllegalArgumentException("index must not be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.index = index;
+        this.executor = executor;
+        index.addTransitionListener(listener);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ReorderEvent> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        ReorderSubscription subscription = new ReorderSubscription(subscriber);
+        subscriptions.add(subscription);
+        subscriber.onSubscribe(subscription);
+        if (closed) {
+            subscription.complete();
+        }
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    private void publish(ProductStock stock, boolean reorderNeeded) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        ReorderEvent event = ReorderEvent.of(stock, reorderNeeded);
+        for (ReorderSubscription subscription : subscriptions) {
+            subscription.offer(stock, event);
+        }
+    }
+
+    /**
+     * Stops listening to the index; subscribers receive their pending events
+     * and then {@code onComplete}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        index.removeTransitionListener(listener);
+        for (ReorderSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    /**
+     * One subscriber's coalescing queue and demand.
+     */
+    private final class ReorderSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super ReorderEvent> subscriber;
+        private final Map<ProductStock, ReorderEvent> pending = new LinkedHashMap<>();  // guarded by this
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile boolean completing;
+        private volatile Throwable error;
+        private boolean done;   // only touched by the drain loop
+
+        ReorderSubscription(Flow.Subscriber<? super ReorderEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(ProductStock stock, ReorderEvent event) {
+            if (cancelled || completing) {
+                return;
+            }
+            synchronized (this) {
+                ReorderEvent previous = pending.remove(stock);
+                if (previous == null || previous.reorderNeeded() == event.reorderNeeded()) {
+                    pending.put(stock, event);
+                }
+                // otherwise the two changes cancel out and neither is delivered
+            }
+            schedule();
+        }
+
+        void complete() {
+            completing = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("non-positive subscription request: " + n);
+            } else {
+                demand.getAndAccumulate(n, (current, add) -> {
+                    long sum = current + add;
+                    return sum < 0 ? Long.MAX_VALUE : sum;
+                });
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                pending.clear();
+            }
+        }
+
+        private void schedule() {
+            if (work.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (done || cancelled) {
+                return;
+            }
+            if (error != null) {
+                finish();
+                subscriber.onError(error);
+                return;
+            }
+            while (demand.get() > 0 && !cancelled) {
+                ReorderEvent next;
+                synchronized (this) {
+                    Iterator<ReorderEvent> it = pending.values().iterator();
+                    if (!it.hasNext()) {
+                        break;
+                    }
+                    next = it.next();
+                    it.remove();
+                }
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                try {
+                    subscriber.onNext(next);
+                } catch (RuntimeException e) {
+                    cancel();
+                    return;
+                }
+            }
+            if (completing && !cancelled && isEmpty()) {
+                finish();
+                subscriber.onComplete();
+            }
+        }
+
+        private synchronized boolean isEmpty() {
+            return pending.isEmpty();
+        }
+
+        private void finish() {
+            done = true;
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+    }
+}
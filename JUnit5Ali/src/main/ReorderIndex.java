@@ -0,0 +1,120 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Incrementally maintained set of the records whose available stock is below
+ * their reorder threshold.
+ * <p>
+ * The index listens to every tracked record and re-evaluates
+ * {@link ProductStock#isReorderNeeded()} after each mutation, adding or
+ * removing the record only when it crosses the boundary. Reading the current
+ * reorder set therefore costs O(records needing reorder) instead of a scan
+ * over every record.
+ */
+public class ReorderIndex implements StockListener {
+
+    /**
+     * Callback invoked when a record enters or leaves the reorder set. Runs on
+     * the mutating thread, so it must be fast.
+     */
+    @FunctionalInterface
+    public interface TransitionListener {
+        void onTransition(ProductStock stock, boolean reorderNeeded);
+    }
+
+    private final Set<ProductStock> tracked = ConcurrentHashMap.newKeySet();
+    private final Set<ProductStock> needingReorder = ConcurrentHashMap.newKeySet();
+    private final List<TransitionListener> transitionListeners = new CopyOnWriteArrayList<>();
+
+    public void addTransitionListener(TransitionListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+        transitionListeners.add(listener);
+    }
+
+    public void removeTransitionListener(TransitionListener listener) {
+        transitionListeners.remove(listener);
+    }
+
+    /**
+     * Starts maintaining the record in the index.
+     * Must be called while no other thread mutates the record.
+     */
+    public void track(ProductStock stock) {
+        if (tracked.add(stock)) {
+            stock.addListener(this);
+            evaluate(stock);
+        }
+    }
+
+    /**
+     * Tracks every record currently in the registry.
+     */
+    public void trackAll(StockRegistry registry) {
+        registry.forEach(this::track);
+    }
+
+    public void untrack(ProductStock stock) {
+        if (tracked.remove(stock)) {
+            stock.removeListener(this);
+            needingReorder.remove(stock);
+        }
+    }
+
+    @Override
+    public void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                           int previousOnHand, int previousReserved) {
+        if (mutation != StockMutation.CHANGE_LOCATION) {
+            evaluate(stock);
+        }
+    }
+
+    /**
+     * Re-checks the record and updates its membership.
+     *
+     * @return true if the record crossed the reorder boundary
+     */
+    boolean evaluate(ProductStock stock) {
+        boolean needed = stock.isReorderNeeded();
+        boolean changed = needed ? needingReorder.add(stock) : needingReorder.remove(stock);
+        if (changed) {
+            for (TransitionListener listener : transitionListeners) {
+                listener.onTransition(stock, needed);
+            }
+        }
+        return changed;
+    }
+
+    // ---------- Queries ----------
+
+    public boolean isReorderNeeded(ProductStock stock) {
+        return needingReorder.contains(stock);
+    }
+
+    /**
+     * Number of tracked records currently below their reorder threshold.
+     */
+    public int size() {
+        return needingReorder.size();
+    }
+
+    public int trackedCount() {
+        return tracked.size();
+    }
+
+    /**
+     * Returns a copy of the records currently needing reorder.
+     */
+    public List<ProductStock> snapshot() {
+        return new ArrayList<>(needingReorder);
+    }
+
+    public void forEach(Consumer<ProductStock> action) {
+        needingReorder.forEach(action);
+    }
+}
@@ -0,0 +1,716 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregation engine for reports over large numbers of stock records, such
+ * as total onHand per location prefix, capacity utilization or reserved
+ * ratio per product.
+ * <p>
+ * An instance is an immutable columnar copy of its source: one {@code int[]}
+ * per field, with productId and location dictionary-encoded, in the same
+ * layout as {@link ColumnarStockStore}. Queries filter on location and
+ * productId patterns and on field ranges, group by product, location or
+ * location prefix, and are evaluated by {@link ForkJoinPool} tasks over
+ * row ranges whose partial sums are added together at the end.
+ * <p>
+ * String predicates and group keys are resolved once per distinct productId
+ * or location, never per row, so the row loop only reads int columns and
+ * small lookup tables. An unfiltered, ungrouped query reduces to plain column
+ * sums.
+ *
+ * <pre>
+ * StockAnalytics.Result result = StockAnalytics.of(registry)
+ *         .query()
+ *         .locationMatches("WH-1-*")
+ *         .groupByLocationPrefix('-', 3)
+ *         .run();
+ * </pre>
+ */
+public final class StockAnalytics {
+
+    static final int DEFAULT_LEAF_ROWS = 16 * 1024;
+
+    /** Key of {@link Result#total()} and of the single group of an ungrouped query. */
+    public static final String ALL = "*";
+
+    // accumulator layout, one STRIDE-long block per group
+    private static final int RECORDS = 0;
+    private static final int ON_HAND = 1;
+    private static final int RESERVED = 2;
+    private static final int MAX_CAPACITY = 3;
+    private static final int REORDER_NEEDED = 4;
+    private static final int STRIDE = 5;
+
+    /**
+     * A record field that queries can filter on.
+     */
+    public enum Field {
+        ON_HAND, RESERVED, AVAILABLE, REORDER_THRESHOLD, MAX_CAPACITY
+    }
+
+    /**
+     * Sums over the records of one group.
+     *
+     * @param key            the group's productId, location or location prefix, or {@link #ALL}
+     * @param records        number of records in the group
+     * @param onHand         total onHand
+     * @param reserved       total reserved
+     * @param maxCapacity    total maxCapacity
+     * @param reorderNeeded  number of records whose available stock is below their reorder threshold
+     */
+    public record Aggregate(String key,
+                            long records,
+                            long onHand,
+                            long reserved,
+                            long maxCapacity,
+                            long reorderNeeded) {
+
+        /**
+         * Available stock = onHand - reserved.
+         */
+        public long available() {
+            return onHand - reserved;
+        }
+
+        /**
+         * Total onHand over total maxCapacity, in [0, 1].
+         */
+        public double utilization() {
+            return maxCapacity == 0 ? 0 : (double) onHand / maxCapacity;
+        }
+
+        /**
+         * Total reserved over total onHand, in [0, 1]; 0 when nothing is on hand.
+         */
+        public double reservedRatio() {
+            return onHand == 0 ? 0 : (double) reserved / onHand;
+        }
+    }
+
+    /**
+     * Outcome of a query.
+     *
+     * @param groups non-empty groups, ordered by key
+     * @param total  sums over every selected record
+     */
+    public record Result(List<Aggregate> groups, Aggregate total) {
+
+        /** The group with the given key, or null if no selected record falls in it. */
+        public Aggregate group(String key) {
+            for (Aggregate aggregate : groups) {
+                if (aggregate.key().equals(key)) {
+                    return aggregate;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final String[] productIds;   // by product code
+    private final String[] locations;    // by location code
+    private final int[] productCode;
+    private final int[] locationCode;
+    private final int[] onHand;
+    private final int[] reserved;
+    private final int[] reorderThreshold;
+    private final int[] maxCapacity;
+    private final int size;
+
+    private StockAnalytics(Columns columns) {
+        this.productIds = values(columns.productIds);
+        this.locations = values(columns.locations);
+        this.size = columns.size;
+        this.productCode = Arrays.copyOf(columns.productCode, size);
+        this.locationCode = Arrays.copyOf(columns.locationCode, size);
+        this.onHand = Arrays.copyOf(columns.onHand, size);
+        this.reserved = Arrays.copyOf(columns.reserved, size);
+        this.reorderThreshold = Arrays.copyOf(columns.reorderThreshold, size);
+        this.maxCapacity = Arrays.copyOf(columns.maxCapacity, size);
+    }
+
+    // ---------- Sources ----------
+
+    /**
+     * Copies plain records. The records must not be modified during the copy;
+     * use {@link #of(StockRegistry)} for records that are being updated.
+     */
+    public static StockAnalytics of(Collection<ProductStock> stocks) {
+        if (stocks == null) {
+            throw new IllegalArgumentException("stocks must not be null");
+        }
+        Columns columns = new Columns(stocks.size());
+        for (ProductStock stock : stocks) {
+            columns.add(stock.getProductId(), stock.getLocation(), stock.getOnHand(),
+                    stock.getReserved(), stock.getReorderThreshold(), stock.getMaxCapacity());
+        }
+        return new StockAnalytics(columns);
+    }
+
+    /**
+     * Copies point-in-time views, such as those taken from
+     * {@link ConcurrentProductStock#snapshot()} or {@link HotProductStock#snapshot()}.
+     */
+    public static StockAnalytics ofSnapshots(Collection<StockSnapshot> snapshots) {
+        if (snapshots == null) {
+            throw new IllegalArgumentException("snapshots must not be null");
+        }
+        Columns columns = new Columns(snapshots.size());
+        for (StockSnapshot s : snapshots) {
+            columns.add(s.productId(), s.location(), s.onHand(), s.reserved(), s.reorderThreshold(), s.maxCapacity());
+        }
+        return new StockAnalytics(columns);
+    }
+
+    /**
+     * Copies a consistent snapshot of the registry; updates running meanwhile
+     * are either fully included or not at all.
+     */
+    public static StockAnalytics of(StockRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry must not be null");
+        }
+        return of(registry.snapshot());
+    }
+
+    public static StockAnalytics of(StockRegistry.Snapshot snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("snapshot must not be null");
+        }
+        return ofSnapshots(snapshot.records().values());
+    }
+
+    public static StockAnalytics of(ColumnarStockStore store) {
+        if (store == null) {
+            throw new IllegalArgumentException("store must not be null");
+        }
+        Columns columns = new Columns(store.size());
+        for (int h = 0; h < store.size(); h++) {
+            columns.add(store.getProductId(h), store.getLocation(h), store.getOnHand(h),
+                    store.getReserved(h), store.getReorderThreshold(h), store.getMaxCapacity(h));
+        }
+        return new StockAnalytics(columns);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Starts a query that selects every record and does not group.
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    // ---------- Queries ----------
+
+    private enum Grouping {
+        NONE, PRODUCT, LOCATION, LOCATION_PREFIX
+    }
+
+    /**
+     * Filters and grouping for one aggregation. Filters are combined with AND.
+     * A query can be run any number of times; it is not thread-safe.
+     */
+    public final class Query {
+
+        private final List<String> productPatterns = new ArrayList<>();
+        private final List<String> locationPatterns = new ArrayList<>();
+        private final int[] min = new int[Field.values().length];
+        private final int[] max = new int[Field.values().length];
+        private boolean ranged;
+        private boolean reorderNeededOnly;
+        private Grouping grouping = Grouping.NONE;
+        private char separator;
+        private int segments;
+        private int leafRows = DEFAULT_LEAF_ROWS;
+
+        private Query() {
+            Arrays.fill(min, Integer.MIN_VALUE);
+            Arrays.fill(max, Integer.MAX_VALUE);
+        }
+
+        /**
+         * Keeps records whose productId matches the pattern: an exact productId,
+         * or a prefix followed by {@code *}.
+         */
+        public Query productMatches(String pattern) {
+            productPatterns.add(checkPattern(pattern));
+            return this;
+        }
+
+        /**
+         * Keeps records whose location matches the pattern: an exact location,
+         * or a prefix followed by {@code *}, e.g. {@code "WH-1-*"}.
+         */
+        public Query locationMatches(String pattern) {
+            locationPatterns.add(checkPattern(pattern));
+            return this;
+        }
+
+        /**
+         * Keeps records whose field lies in [min, max].
+         */
+        public Query where(Field field, int min, int max) {
+            if (field == null) {
+                throw new IllegalArgumentException("field must not be null");
+            }
+            if (min > max) {
+                throw new IllegalArgumentException("min must be <= max");
+            }
+            int f = field.ordinal();
+            this.min[f] = Math.max(this.min[f], min);
+            this.max[f] = Math.min(this.max[f], max);
+            ranged = true;
+            return this;
+        }
+
+        /**
+         * Keeps records whose available stock is below their reorder threshold.
+         */
+        public Query reorderNeeded() {
+            reorderNeededOnly = true;
+            return this;
+        }
+
+        public Query groupByProduct() {
+            grouping = Grouping.PRODUCT;
+            return this;
+        }
+
+        public Query groupByLocation() {
+            grouping = Grouping.LOCATION;
+            return this;
+        }
+
+        /**
+         * Groups by the first {@code segments} separator-delimited parts of the
+         * location, so {@code ('-', 2)} puts "WH-1-A3" and "WH-1-B7" in group
+         * "WH-1". Locations with fewer parts form their own group.
+         */
+        public Query groupByLocationPrefix(char separator, int segments) {
+            if (segments <= 0) {
+                throw new IllegalArgumentException("segments must be > 0");
+            }
+            this.grouping = Grouping.LOCATION_PREFIX;
+            this.separator = separator;
+            this.segments = segments;
+            return this;
+        }
+
+        /**
+         * @param rows minimum number of rows aggregated by one task (> 0)
+         */
+        Query leafRows(int rows) {
+            if (rows <= 0) {
+                throw new IllegalArgumentException("rows must be > 0");
+            }
+            this.leafRows = rows;
+            return this;
+        }
+
+        /**
+         * Runs the query in the common pool.
+         */
+        public Result run() {
+            return run(ForkJoinPool.commonPool());
+        }
+
+        public Result run(ForkJoinPool pool) {
+            if (pool == null) {
+                throw new IllegalArgumentException("pool must not be null");
+            }
+            Plan plan = plan();
+            if (size == 0) {
+                return plan.result(new long[plan.groupKeys.length * STRIDE]);
+            }
+            int rows = splitRows(pool);
+            boolean sparse = sparse(plan, rows);
+            long[] sums = pool.invoke(new AggregateTask(plan, 0, size, rows, sparse));
+            return plan.result(sparse ? plan.fold(sums) : sums);
+        }
+
+        /**
+         * Rows per task: a few tasks per worker for balance.
+         */
+        private int splitRows(ForkJoinPool pool) {
+            int tasks = pool.getParallelism() * 4;
+            return Math.max(leafRows, (size + tasks - 1) / tasks);
+        }
+
+        /**
+         * Whether tasks sum into sparse partials: when there are more groups
+         * than rows per task, dense per-task sums would hold more cells than
+         * the columns they are computed from.
+         */
+        private boolean sparse(Plan plan, int rows) {
+            return plan.keys != null && plan.groupKeys.length > rows;
+        }
+
+        /** Number of leaf tasks the query splits into on the pool. */
+        int leafTasks(ForkJoinPool pool) {
+            return size == 0 ? 0 : leaves(size, splitRows(pool));
+        }
+
+        private Plan plan() {
+            boolean[] productPass = productPatterns.isEmpty() ? null : matches(productIds, productPatterns);
+            boolean[] locationPass = locationPatterns.isEmpty() ? null : matches(locations, locationPatterns);
+            int[] keys = null;
+            int[] groupOf = null;
+            String[] groupKeys;
+            switch (grouping) {
+                case PRODUCT:
+                    keys = productCode;
+                    groupOf = identity(productIds.length);
+                    groupKeys = productIds;
+                    break;
+                case LOCATION:
+                    keys = locationCode;
+                    groupOf = identity(locations.length);
+                    groupKeys = locations;
+                    break;
+                case LOCATION_PREFIX:
+                    keys = locationCode;
+                    groupOf = new int[locations.length];
+                    Map<String, Integer> prefixes = new HashMap<>();
+                    List<String> distinct = new ArrayList<>();
+                    for (int code = 0; code < locations.length; code++) {
+                        String prefix = prefix(locations[code], separator, segments);
+                        Integer group = prefixes.get(prefix);
+                        if (group == null) {
+                            group = distinct.size();
+                            prefixes.put(prefix, group);
+                            distinct.add(prefix);
+                        }
+                        groupOf[code] = group;
+                    }
+                    groupKeys = distinct.toArray(new String[0]);
+                    break;
+                default:
+                    groupKeys = new String[]{ALL};
+            }
+            return new Plan(productPass, locationPass, ranged ? min.clone() : null, ranged ? max.clone() : null,
+                    reorderNeededOnly, keys, groupOf, groupKeys);
+        }
+    }
+
+    private static String checkPattern(String pattern) {
+        if (pattern == null || pattern.isBlank()) {
+            throw new IllegalArgumentException("pattern must not be null or blank");
+        }
+        int star = pattern.indexOf('*');
+        if (star >= 0 && star != pattern.length() - 1) {
+            throw new IllegalArgumentException("Only a trailing '*' is supported: " + pattern);
+        }
+        return pattern;
+    }
+
+    /** Evaluates the patterns once per dictionary entry. */
+    private static boolean[] matches(String[] values, List<String> patterns) {
+        boolean[] pass = new boolean[values.length];
+        for (int code = 0; code < values.length; code++) {
+            boolean all = true;
+            for (String pattern : patterns) {
+                all &= pattern.endsWith("*")
+                        ? values[code].startsWith(pattern.substring(0, pattern.length() - 1))
+                        : values[code].equals(pattern);
+            }
+            pass[code] = all;
+        }
+        return pass;
+    }
+
+    static String prefix(String location, char separator, int segments) {
+        int end = -1;
+        for (int i = 0; i < segments; i++) {
+            end = location.indexOf(separator, end + 1);
+            if (end < 0) {
+                return location;
+            }
+        }
+        return location.substring(0, end);
+    }
+
+    private static int[] identity(int n) {
+        int[] groups = new int[n];
+        for (int i = 0; i < n; i++) {
+            groups[i] = i;
+        }
+        return groups;
+    }
+
+    // ---------- Evaluation ----------
+
+    /**
+     * A query resolved against this instance's dictionaries. Null tables mean
+     * "no filter" and "no grouping".
+     */
+    private final class Plan {
+        final boolean[] productPass;
+        final boolean[] locationPass;
+        final int[] min;              // by Field ordinal
+        final int[] max;
+        final boolean reorderNeededOnly;
+        final int[] keys;             // productCode or locationCode
+        final int[] groupOf;          // dictionary code -> group
+        final String[] groupKeys;
+
+        Plan(boolean[] productPass, boolean[] locationPass, int[] min, int[] max,
+             boolean reorderNeededOnly, int[] keys, int[] groupOf, String[] groupKeys) {
+            this.productPass = productPass;
+            this.locationPass = locationPass;
+            this.min = min;
+            this.max = max;
+            this.reorderNeededOnly = reorderNeededOnly;
+            this.keys = keys;
+            this.groupOf = groupOf;
+            this.groupKeys = groupKeys;
+        }
+
+        boolean filtered() {
+            return productPass != null || locationPass != null || min != null || reorderNeededOnly;
+        }
+
+        long[] aggregate(int from, int to) {
+            long[] sums = new long[groupKeys.length * STRIDE];
+            if (keys == null && !filtered()) {
+                sums[RECORDS] = to - from;
+                sums[ON_HAND] = sum(onHand, from, to);
+                sums[RESERVED] = sum(reserved, from, to);
+                sums[MAX_CAPACITY] = sum(maxCapacity, from, to);
+                sums[REORDER_NEEDED] = countReorderNeeded(from, to);
+                return sums;
+            }
+            for (int i = from; i < to; i++) {
+                int available = onHand[i] - reserved[i];
+                boolean reorder = available < reorderThreshold[i];
+                if (!selected(i, available, reorder)) {
+                    continue;
+                }
+                int base = keys == null ? 0 : groupOf[keys[i]] * STRIDE;
+                sums[base + RECORDS]++;
+                sums[base + ON_HAND] += onHand[i];
+                sums[base + RESERVED] += reserved[i];
+                sums[base + MAX_CAPACITY] += maxCapacity[i];
+                sums[base + REORDER_NEEDED] += reorder ? 1 : 0;
+            }
+            return sums;
+        }
+
+        /**
+         * Same sums as {@link #aggregate}, but only for the groups the rows
+         * touch, packed as {@code [group, sums...]} blocks of STRIDE + 1.
+         */
+        long[] aggregateSparse(int from, int to) {
+            LongIntHashMap slots = new LongIntHashMap(Math.min(to - from, groupKeys.length), -1);
+            long[] packed = new long[Math.min(to - from, groupKeys.length) * (STRIDE + 1)];
+            int used = 0;
+            for (int i = from; i < to; i++) {
+                int available = onHand[i] - reserved[i];
+                boolean reorder = available < reorderThreshold[i];
+                if (!selected(i, available, reorder)) {
+                    continue;
+                }
+                int group = groupOf[keys[i]];
+                int base = slots.get(group);
+                if (base < 0) {
+                    base = used;
+                    used += STRIDE + 1;
+                    slots.put(group, base);
+                    packed[base] = group;
+                }
+                packed[base + 1 + RECORDS]++;
+                packed[base + 1 + ON_HAND] += onHand[i];
+                packed[base + 1 + RESERVED] += reserved[i];
+                packed[base + 1 + MAX_CAPACITY] += maxCapacity[i];
+                packed[base + 1 + REORDER_NEEDED] += reorder ? 1 : 0;
+            }
+            return Arrays.copyOf(packed, used);
+        }
+
+        /** Folds sparse partials into dense per-group sums. */
+        long[] fold(long[] packed) {
+            long[] sums = new long[groupKeys.length * STRIDE];
+            for (int p = 0; p < packed.length; p += STRIDE + 1) {
+                int base = (int) packed[p] * STRIDE;
+                for (int k = 0; k < STRIDE; k++) {
+                    sums[base + k] += packed[p + 1 + k];
+                }
+            }
+            return sums;
+        }
+
+        private boolean selected(int i, int available, boolean reorder) {
+            if (productPass != null && !productPass[productCode[i]]) {
+                return false;
+            }
+            if (locationPass != null && !locationPass[locationCode[i]]) {
+                return false;
+            }
+            if (reorderNeededOnly && !reorder) {
+                return false;
+            }
+            return min == null
+                   || in(Field.ON_HAND, onHand[i])
+                      & in(Field.RESERVED, reserved[i])
+                      & in(Field.AVAILABLE, available)
+                      & in(Field.REORDER_THRESHOLD, reorderThreshold[i])
+                      & in(Field.MAX_CAPACITY, maxCapacity[i]);
+        }
+
+        private boolean in(Field field, int value) {
+            return value >= min[field.ordinal()] & value <= max[field.ordinal()];
+        }
+
+        Result result(long[] sums) {
+            List<Aggregate> groups = new ArrayList<>();
+            long[] total = new long[STRIDE];
+            for (int g = 0; g < groupKeys.length; g++) {
+                int base = g * STRIDE;
+                if (sums[base + RECORDS] == 0) {
+                    continue;
+                }
+                for (int k = 0; k < STRIDE; k++) {
+                    total[k] += sums[base + k];
+                }
+                groups.add(toAggregate(groupKeys[g], sums, base));
+            }
+            groups.sort((a, b) -> a.key().compareTo(b.key()));
+            return new Result(List.copyOf(groups), toAggregate(ALL, total, 0));
+        }
+    }
+
+    private static Aggregate toAggregate(String key, long[] sums, int base) {
+        return new Aggregate(key, sums[base + RECORDS], sums[base + ON_HAND], sums[base + RESERVED],
+                sums[base + MAX_CAPACITY], sums[base + REORDER_NEEDED]);
+    }
+
+    // Plain counted loops over one column, which the JIT unrolls and vectorizes.
+
+    private static long sum(int[] column, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += column[i];
+        }
+        return sum;
+    }
+
+    private long countReorderNeeded(int from, int to) {
+        long count = 0;
+        for (int i = from; i < to; i++) {
+            count += onHand[i] - reserved[i] < reorderThreshold[i] ? 1 : 0;
+        }
+        return count;
+    }
+
+    /** Leaf tasks an {@link AggregateTask} over this many rows splits into. */
+    private static int leaves(int rows, int leafRows) {
+        if (rows <= leafRows) {
+            return 1;
+        }
+        int mid = rows >>> 1;
+        return leaves(mid, leafRows) + leaves(rows - mid, leafRows);
+    }
+
+    /**
+     * Aggregates rows [from, to), splitting in halves down to leafRows.
+     * Dense partials are added cell by cell; sparse ones are concatenated
+     * and folded once at the end.
+     */
+    private final class AggregateTask extends RecursiveTask<long[]> {
+        private final Plan plan;
+        private final int from;
+        private final int to;
+        private final int leafRows;
+        private final boolean sparse;
+
+        AggregateTask(Plan plan, int from, int to, int leafRows, boolean sparse) {
+            this.plan = plan;
+            this.from = from;
+            this.to = to;
+            this.leafRows = leafRows;
+            this.sparse = sparse;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= leafRows) {
+                return sparse ? plan.aggregateSparse(from, to) : plan.aggregate(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            AggregateTask right = new AggregateTask(plan, mid, to, leafRows, sparse);
+            right.fork();
+            long[] left = new AggregateTask(plan, from, mid, leafRows, sparse).compute();
+            long[] other = right.join();
+            if (sparse) {
+                long[] both = Arrays.copyOf(left, left.length + other.length);
+                System.arraycopy(other, 0, both, left.length, other.length);
+                return both;
+            }
+            for (int i = 0; i < left.length; i++) {
+                left[i] += other[i];
+            }
+            return left;
+        }
+    }
+
+    // ---------- Loading ----------
+
+    /**
+     * Growable columns filled while copying a source.
+     */
+    private static final class Columns {
+        final StringDictionary productIds = new StringDictionary();
+        final StringDictionary locations = new StringDictionary();
+        int[] productCode;
+        int[] locationCode;
+        int[] onHand;
+        int[] reserved;
+        int[] reorderThreshold;
+        int[] maxCapacity;
+        int size;
+
+        Columns(int expectedSize) {
+            int capacity = Math.max(16, expectedSize);
+            productCode = new int[capacity];
+            locationCode = new int[capacity];
+            onHand = new int[capacity];
+            reserved = new int[capacity];
+            reorderThreshold = new int[capacity];
+            maxCapacity = new int[capacity];
+        }
+
+        void add(String productId, String location, int onHand, int reserved, int reorderThreshold, int maxCapacity) {
+            if (size == this.onHand.length) {
+                int capacity = size + (size >> 1) + 1;
+                productCode = Arrays.copyOf(productCode, capacity);
+                locationCode = Arrays.copyOf(locationCode, capacity);
+                this.onHand = Arrays.copyOf(this.onHand, capacity);
+                this.reserved = Arrays.copyOf(this.reserved, capacity);
+                this.reorderThreshold = Arrays.copyOf(this.reorderThreshold, capacity);
+                this.maxCapacity = Arrays.copyOf(this.maxCapacity, capacity);
+            }
+            productCode[size] = productIds.intern(productId);
+            locationCode[size] = locations.intern(location);
+            this.onHand[size] = onHand;
+            this.reserved[size] = reserved;
+            this.reorderThreshold[size] = reorderThreshold;
+            this.maxCapacity[size] = maxCapacity;
+            size++;
+        }
+    }
+
+    private static String[] values(StringDictionary dictionary) {
+        String[] values = new String[dictionary.size()];
+        for (int code = 0; code < values.length; code++) {
+            values[code] = dictionary.valueOf(code);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,476 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Change-data-capture stream of {@link ProductStock} mutations, for
+ * replicating stock to read replicas ({@link StockReplica}).
+ * <p>
+ * Every mutation of a tracked record is given the next sequence number. The
+ * feed keeps a mirror of each record's state and marks the record dirty;
+ * {@link #flush()} publishes one delta per dirty record, carrying its latest
+ * state and the sequence of its latest mutation. A hot record mutated many
+ * times between flushes therefore costs one delta per batch. Deltas hold
+ * absolute quantities, so applying one twice is harmless, and the strings
+ * are sent only when a record first appears or changes location.
+ * <p>
+ * Mirrors are spread over lock stripes by record identity, so the listener
+ * only contends with mutations of records in the same stripe, and it never
+ * calls the transport. Batches are cut and handed to the transport by a
+ * background drainer when {@code maxBatchRecords} records are dirty, every
+ * {@code flushIntervalMillis} if an interval was given, and by
+ * {@link #flush()} and {@link #close()} on the calling thread. Cutting a
+ * batch briefly takes every stripe lock, so the batch holds every change up
+ * to its last sequence; the transport runs after they are released. Batches
+ * reach the transport in sequence order. If the transport throws on the
+ * drainer, that batch is lost and counted by {@link #failedBatchCount()};
+ * replicas see the gap and reload a snapshot.
+ * <p>
+ * {@link #snapshot()} encodes every record at the current sequence; a new
+ * replica loads it and then applies batches from the transport.
+ *
+ * <pre>
+ * batch:    [BATCH:1] [previousSequence:varlong] [lastSequence:varlong] [count:varint] delta*
+ * snapshot: [SNAPSHOT:1] [sequence:varlong] [count:varint] delta*   (all UPSERT)
+ * delta:    [tag:1] [recordId:varint] [lastSequence - sequence:varlong] body
+ *           UPSERT: productId, location [len:varint][utf8], onHand, reserved,
+ *                   reorderThreshold, maxCapacity as varints
+ *           UPDATE: onHand, reserved, reorderThreshold, maxCapacity as varints
+ *           REMOVE: no body
+ * </pre>
+ */
+public final class StockChangeFeed implements StockListener, AutoCloseable {
+
+    static final byte BATCH = 1;
+    static final byte SNAPSHOT = 2;
+    static final byte UPSERT = 0;
+    static final byte UPDATE = 1;
+    static final byte REMOVE = 2;
+
+    static final int DEFAULT_MAX_BATCH_RECORDS = 1024;
+
+    private static final int STRIPES = 64;
+
+    /**
+     * The feed's copy of one record, as of its latest mutation.
+     */
+    private static final class Mirror {
+        final int id;
+        final String productId;
+        String location;
+        int onHand;
+        int reserved;
+        int reorderThreshold;
+        int maxCapacity;
+        long sequence;
+        boolean dirty;
+        boolean identityChanged;   // productId or location not yet sent
+        boolean removed;
+
+        Mirror(int id, ProductStock stock) {
+            this.id = id;
+            this.productId = stock.getProductId();
+            this.location = stock.getLocation();
+            copyQuantities(stock);
+        }
+
+        void copyQuantities(ProductStock stock) {
+            onHand = stock.getOnHand();
+            reserved = stock.getReserved();
+            reorderThreshold = stock.getReorderThreshold();
+            maxCapacity = stock.getMaxCapacity();
+        }
+    }
+
+    /**
+     * Mirrors of the records whose identity hashes to this stripe.
+     */
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Map<ProductStock, Mirror> records = new IdentityHashMap<>();   // guarded by lock
+        final List<Mirror> dirty = new ArrayList<>();                        // guarded by lock
+    }
+
+    private final Consumer<ByteBuffer> transport;
+    private final int maxBatchRecords;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();     // last assigned; advanced under a stripe lock
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder coalesced = new LongAdder();
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private final ReentrantLock publishLock = new ReentrantLock();   // orders batches on the transport
+    private final ScheduledExecutorService drainer;
+    private volatile long publishedSequence;   // written under publishLock
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    public StockChangeFeed(Consumer<ByteBuffer> transport) {
+        this(transport, DEFAULT_MAX_BATCH_RECORDS, 0);
+    }
+
+    /**
+     * @param maxBatchRecords     dirty records that trigger a flush (> 0)
+     * @param flushIntervalMillis interval between background flushes, or 0 to flush only
+     *                            on demand and on full batches (>= 0)
+     */
+    public StockChangeFeed(Consumer<ByteBuffer> transport, int maxBatchRecords, long flushIntervalMillis) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport must not be null");
+        }
+        if (maxBatchRecords <= 0) {
+            throw new IllegalArgumentException("maxBatchRecords must be > 0");
+        }
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("flushIntervalMillis must be >= 0");
+        }
+        this.transport = transport;
+        this.maxBatchRecords = maxBatchRecords;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "stock-change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        if (flushIntervalMillis > 0) {
+            drainer.scheduleWithFixedDelay(this::drain, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Stripe stripeFor(ProductStock stock) {
+        return stripes[stripeIndex(stock)];
+    }
+
+    private static int stripeIndex(ProductStock stock) {
+        int h = System.identityHashCode(stock);
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    // ---------- Tracking ----------
+
+    /**
+     * Starts capturing the record; it reaches replicas with the next batch.
+     * Must be called while no other thread mutates the record.
+     */
+    public void track(ProductStock stock) {
+        Stripe stripe = stripeFor(stock);
+        stripe.lock.lock();
+        try {
+            if (stripe.records.containsKey(stock)) {
+                return;
+            }
+            Mirror mirror = new Mirror(nextId.getAndIncrement(), stock);
+            stripe.records.put(stock, mirror);
+            mirror.identityChanged = true;
+            changed(stripe, mirror);
+        } finally {
+            stripe.lock.unlock();
+        }
+        stock.addListener(this);
+    }
+
+    /**
+     * Tracks every record currently in the registry.
+     */
+    public void trackAll(StockRegistry registry) {
+        registry.forEach(this::track);
+    }
+
+    /**
+     * Stops capturing the record; replicas drop it with the next batch.
+     */
+    public void untrack(ProductStock stock) {
+        stock.removeListener(this);
+        Stripe stripe = stripeFor(stock);
+        stripe.lock.lock();
+        try {
+            Mirror mirror = stripe.records.remove(stock);
+            if (mirror != null) {
+                mirror.removed = true;
+                changed(stripe, mirror);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    @Override
+    public void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                           int previousOnHand, int previousReserved) {
+        Stripe stripe = stripeFor(stock);
+        stripe.lock.lock();
+        try {
+            Mirror mirror = stripe.records.get(stock);
+            if (mirror == null) {
+                return;
+            }
+            if (mutation == StockMutation.CHANGE_LOCATION) {
+                mirror.location = stock.getLocation();
+                mirror.identityChanged = true;
+            }
+            mirror.copyQuantities(stock);
+            changed(stripe, mirror);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Updates both mirrors while holding both stripes, so no batch carries
+     * one side of the transfer without the other. Stripes are locked in
+     * index order, like {@link #cut()} does.
+     */
+    @Override
+    public void onTransfer(ProductStock source, ProductStock target, int amount,
+                           int sourcePreviousOnHand, int targetPreviousOnHand) {
+        int a = stripeIndex(source);
+        int b = stripeIndex(target);
+        Stripe first = stripes[Math.min(a, b)];
+        Stripe second = stripes[Math.max(a, b)];
+        first.lock.lock();
+        second.lock.lock();
+        try {
+            transferred(stripes[a], source);
+            transferred(stripes[b], target);
+        } finally {
+            second.lock.unlock();
+            first.lock.unlock();
+        }
+    }
+
+    private void transferred(Stripe stripe, ProductStock stock) {
+        Mirror mirror = stripe.records.get(stock);
+        if (mirror != null) {
+            mirror.copyQuantities(stock);
+            changed(stripe, mirror);
+        }
+    }
+
+    /**
+     * Stamps the mirror with the next sequence and queues it; the stripe lock
+     * must be held, so a batch cut under every stripe lock sees all changes
+     * up to the sequence it reads.
+     */
+    private void changed(Stripe stripe, Mirror mirror) {
+        mirror.sequence = sequence.incrementAndGet();
+        if (mirror.dirty) {
+            coalesced.increment();
+            return;
+        }
+        mirror.dirty = true;
+        stripe.dirty.add(mirror);
+        if (pending.incrementAndGet() >= maxBatchRecords && drainQueued.compareAndSet(false, true)) {
+            try {
+                drainer.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainQueued.set(false);   // closing; close() publishes what is left
+            }
+        }
+    }
+
+    // ---------- Publishing ----------
+
+    /**
+     * Publishes a batch with every record changed since the last batch, on
+     * the calling thread.
+     */
+    public void flush() {
+        publishLock.lock();
+        try {
+            ByteBuffer batch = cut();
+            if (batch != null) {
+                transport.accept(batch);
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /** Background flush; a failing transport loses the batch rather than the drainer. */
+    private void drain() {
+        drainQueued.set(false);
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            failedBatches.incrementAndGet();
+        }
+    }
+
+    /**
+     * Encodes and clears every dirty mirror under all stripe locks, or returns
+     * null if none is dirty; publishLock must be held.
+     */
+    private ByteBuffer cut() {
+        lockAll();
+        try {
+            long last = sequence.get();
+            int count = 0;
+            int bound = 1 + 2 * Varints.MAX_LONG_BYTES + Varints.MAX_INT_BYTES;
+            for (Stripe stripe : stripes) {
+                count += stripe.dirty.size();
+                for (Mirror mirror : stripe.dirty) {
+                    bound += maxDeltaSize(mirror);
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+            ByteBuffer out = ByteBuffer.allocate(bound);
+            out.put(BATCH);
+            Varints.putUnsignedLong(out, publishedSequence);
+            Varints.putUnsignedLong(out, last);
+            Varints.putUnsigned(out, count);
+            for (Stripe stripe : stripes) {
+                for (Mirror mirror : stripe.dirty) {
+                    putDelta(out, mirror, last);
+                    mirror.dirty = false;
+                    mirror.identityChanged = false;
+                }
+                stripe.dirty.clear();
+            }
+            pending.addAndGet(-count);
+            publishedSequence = last;
+            return out.flip();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    /**
+     * Encodes every tracked record as of the current sequence, including
+     * changes not yet published.
+     */
+    public ByteBuffer snapshot() {
+        lockAll();
+        try {
+            long last = sequence.get();
+            int count = 0;
+            int bound = 1 + Varints.MAX_LONG_BYTES + Varints.MAX_INT_BYTES;
+            for (Stripe stripe : stripes) {
+                count += stripe.records.size();
+                for (Mirror mirror : stripe.records.values()) {
+                    bound += maxDeltaSize(mirror);
+                }
+            }
+            ByteBuffer out = ByteBuffer.allocate(bound);
+            out.put(SNAPSHOT);
+            Varints.putUnsignedLong(out, last);
+            Varints.putUnsigned(out, count);
+            for (Stripe stripe : stripes) {
+                for (Mirror mirror : stripe.records.values()) {
+                    boolean identityChanged = mirror.identityChanged;
+                    mirror.identityChanged = true;
+                    putDelta(out, mirror, last);
+                    mirror.identityChanged = identityChanged;
+                }
+            }
+            return out.flip();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    private static int maxDeltaSize(Mirror mirror) {
+        // UTF-8 takes at most 3 bytes per UTF-16 char
+        return 1 + Varints.MAX_INT_BYTES + Varints.MAX_LONG_BYTES + 4 * Varints.MAX_INT_BYTES
+               + 2 * Varints.MAX_INT_BYTES + 3 * (mirror.productId.length() + mirror.location.length());
+    }
+
+    private static void putDelta(ByteBuffer out, Mirror mirror, long lastSequence) {
+        byte tag = mirror.removed ? REMOVE : mirror.identityChanged ? UPSERT : UPDATE;
+        out.put(tag);
+        Varints.putUnsigned(out, mirror.id);
+        Varints.putUnsignedLong(out, lastSequence - mirror.sequence);
+        if (tag == REMOVE) {
+            return;
+        }
+        if (tag == UPSERT) {
+            Varints.putString(out, mirror.productId.getBytes(StandardCharsets.UTF_8));
+            Varints.putString(out, mirror.location.getBytes(StandardCharsets.UTF_8));
+        }
+        Varints.putUnsigned(out, mirror.onHand);
+        Varints.putUnsigned(out, mirror.reserved);
+        Varints.putUnsigned(out, mirror.reorderThreshold);
+        Varints.putUnsigned(out, mirror.maxCapacity);
+    }
+
+    // ---------- Queries ----------
+
+    /** Sequence number of the latest captured change. */
+    public long sequence() {
+        return sequence.get();
+    }
+
+    /** Last sequence covered by a published batch. */
+    public long publishedSequence() {
+        return publishedSequence;
+    }
+
+    /** Records changed since the last batch. */
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    /** Changes folded into an already pending delta instead of sent on their own. */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /** Batches lost because the transport threw on the background drainer. */
+    public long failedBatchCount() {
+        return failedBatches.get();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.records.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Stops the drainer and publishes what is pending.
+     */
+    @Override
+    public void close() {
+        drainer.shutdownNow();
+        try {
+            drainer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
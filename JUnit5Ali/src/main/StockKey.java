@@ -0,0 +1,21 @@
+/**
+ * Identifies one stock record: a product stored at one location.
+ *
+ * @param productId unique ID of the product
+ * @param location  storage location code, e.g. "WH-1-A3"
+ */
+public record StockKey(String productId, String location) {
+
+    public StockKey {
+        if (productId == null || productId.isBlank()) {
+            throw new IllegalArgumentException("productId must not be null or blank");
+        }
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("location must not be null or blank");
+        }
+    }
+
+    public static StockKey of(ProductStock stock) {
+        return new StockKey(stock.getProductId(), stock.getLocation());
+    }
+}
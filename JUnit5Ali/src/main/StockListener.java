@@ -0,0 +1,51 @@
+/**
+ * Callback invoked after every successful mutation of a {@link ProductStock}.
+ * <p>
+ * Listeners run synchronously on the mutating thread, after the new state is
+ * in place, so they see the record exactly as the mutation left it. They must
+ * be fast and must not mutate the record themselves.
+ */
+@FunctionalInterface
+public interface StockListener {
+
+    /**
+     * @param stock            the mutated record
+     * @param mutation         which operation was applied
+     * @param amount           the operation's argument: the quantity for stock
+     *                         movements, the new value for limit updates, 0 for
+     *                         {@link StockMutation#CHANGE_LOCATION}
+     * @param previousOnHand   onHand before the mutation
+     * @param previousReserved reserved before the mutation
+     */
+    void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                    int previousOnHand, int previousReserved);
+
+    /**
+     * Called once by {@link ProductStock#transferTo} when the listener is
+     * registered on both records, after both have changed, so a listener that
+     * persists or publishes changes can write the two sides as one
+     * {@link StockMutation#TRANSFER}. By default reports
+     * {@link StockMutation#TRANSFER_OUT} on the source and then
+     * {@link StockMutation#TRANSFER_IN} on the target.
+     *
+     * @param sourcePreviousOnHand onHand of the source before the transfer
+     * @param targetPreviousOnHand onHand of the target before the transfer
+     */
+    default void onTransfer(ProductStock source, ProductStock target, int amount,
+                            int sourcePreviousOnHand, int targetPreviousOnHand) {
+        onMutation(source, StockMutation.TRANSFER_OUT, amount, sourcePreviousOnHand, source.getReserved());
+        onMutation(target, StockMutation.TRANSFER_IN, amount, targetPreviousOnHand, target.getReserved());
+    }
+
+    /**
+     * Called by {@link ProductStock#changeLocation(String)} before the new
+     * location is applied. A listener that cannot follow the record there
+     * rejects the move by throwing, while nothing has changed yet; once a
+     * mutation is applied, {@link #onMutation} must not throw. Accepts every
+     * location by default.
+     *
+     * @throws IllegalArgumentException if the listener cannot store the location
+     */
+    default void checkLocation(ProductStock stock, String newLocation) {
+    }
+}
@@ -0,0 +1,246 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counters, latencies and hot products for the operations of a
+ * {@link StockRegistry}, enabled with {@link StockRegistry#setMetrics(StockMetrics)}.
+ * <p>
+ * Per operation, successes, failures and lock contention are counted in
+ * {@link LongAdder}s, which stripe their cells across threads so that
+ * concurrent updates do not contend, and latencies go to a
+ * {@link LatencyHistogram}. Latency is measured around the whole call,
+ * including the wait for the record's lock. The most frequently operated and
+ * the most often contended productIds are tracked with a bounded
+ * {@link HotKeyTracker}.
+ * <p>
+ * Read the metrics with {@link #snapshot()}, or over JMX after
+ * {@link #registerMBean(String)}.
+ */
+public final class StockMetrics implements StockMetricsMXBean {
+
+    static final int DEFAULT_TRACKED_PRODUCTS = 256;
+    static final int DEFAULT_TOP = 10;
+
+    /**
+     * The registry operations that are measured.
+     */
+    public enum Operation {
+        ADD_STOCK,
+        REMOVE_DAMAGED,
+        RESERVE,
+        RELEASE_RESERVATION,
+        SHIP_RESERVED,
+        RESERVE_ALL,
+        SHIP_ALL,
+        RELEASE_ALL,
+        RELOCATE,
+        TRANSFER,
+        UPDATE_REORDER_THRESHOLD,
+        UPDATE_MAX_CAPACITY
+    }
+
+    /**
+     * A product and its estimated number of operations or contended operations.
+     */
+    public record HotProduct(String productId, long count) {
+    }
+
+    /**
+     * Totals for one operation.
+     *
+     * @param contended calls that had to wait for the record's lock
+     */
+    public record OperationStats(long successes, long failures, long contended, LatencyHistogram.Snapshot latency) {
+    }
+
+    /**
+     * Point-in-time copy of all metrics.
+     */
+    public record Snapshot(Map<Operation, OperationStats> operations,
+                           List<HotProduct> hottest,
+                           List<HotProduct> mostContended) {
+    }
+
+    private static final class OperationMetrics {
+        final LongAdder successes = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private final OperationMetrics[] operations = new OperationMetrics[Operation.values().length];
+    private final HotKeyTracker hottest;
+    private final HotKeyTracker mostContended;
+    private final int top;
+
+    public StockMetrics() {
+        this(DEFAULT_TRACKED_PRODUCTS, DEFAULT_TOP);
+    }
+
+    /**
+     * @param trackedProducts products counted for the hot lists (> 0); more
+     *                        gives more accurate counts for the tail of the lists
+     * @param top             length of the hot lists (> 0, <= trackedProducts)
+     */
+    public StockMetrics(int trackedProducts, int top) {
+        if (trackedProducts <= 0) {
+            throw new IllegalArgumentException("trackedProducts must be > 0");
+        }
+        if (top <= 0 || top > trackedProducts) {
+            throw new IllegalArgumentException("top must be > 0 and <= trackedProducts");
+        }
+        for (int i = 0; i < operations.length; i++) {
+            operations[i] = new OperationMetrics();
+        }
+        this.hottest = new HotKeyTracker(trackedProducts);
+        this.mostContended = new HotKeyTracker(trackedProducts);
+        this.top = top;
+    }
+
+    // ---------- Recording ----------
+
+    /**
+     * Records one call.
+     *
+     * @param productId the product operated on, or null if the call spans products
+     */
+    void record(Operation operation, String productId, long nanos, boolean success, boolean contended) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        (success ? metrics.successes : metrics.failures).increment();
+        metrics.latency.record(nanos);
+        if (productId != null) {
+            hottest.record(productId);
+        }
+        if (contended) {
+            metrics.contended.increment();
+            if (productId != null) {
+                mostContended.record(productId);
+            }
+        }
+    }
+
+    // ---------- Reading ----------
+
+    public OperationStats stats(Operation operation) {
+        OperationMetrics metrics = operations[operation.ordinal()];
+        return new OperationStats(metrics.successes.sum(), metrics.failures.sum(), metrics.contended.sum(),
+                metrics.latency.snapshot());
+    }
+
+    public Snapshot snapshot() {
+        Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, stats(operation));
+        }
+        return new Snapshot(stats, hottest.top(top), mostContended.top(top));
+    }
+
+    /**
+     * Clears every metric. Calls in flight may be counted on either side.
+     */
+    @Override
+    public void reset() {
+        for (OperationMetrics metrics : operations) {
+            metrics.successes.reset();
+            metrics.failures.reset();
+            metrics.contended.reset();
+            metrics.latency.reset();
+        }
+        hottest.reset();
+        mostContended.reset();
+    }
+
+    // ---------- JMX ----------
+
+    /**
+     * Registers the metrics with the platform MBean server under
+     * {@code stock:type=StockMetrics,name=<name>}.
+     *
+     * @throws IllegalStateException if the name is taken or invalid
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = objectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register stock metrics as " + name, e);
+        }
+    }
+
+    public void unregisterMBean(String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(name));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister stock metrics " + name, e);
+        }
+    }
+
+    private static ObjectName objectName(String name) throws JMException {
+        return new ObjectName("stock:type=StockMetrics,name=" + ObjectName.quote(name));
+    }
+
+    @Override
+    public Map<String, Long> getSuccessCounts() {
+        return perOperation(m -> m.successes.sum());
+    }
+
+    @Override
+    public Map<String, Long> getFailureCounts() {
+        return perOperation(m -> m.failures.sum());
+    }
+
+    @Override
+    public Map<String, Long> getContendedCounts() {
+        return perOperation(m -> m.contended.sum());
+    }
+
+    @Override
+    public Map<String, Long> getMedianLatencyNanos() {
+        return perOperation(m -> m.latency.valueAtPercentile(50));
+    }
+
+    @Override
+    public Map<String, Long> getP99LatencyNanos() {
+        return perOperation(m -> m.latency.valueAtPercentile(99));
+    }
+
+    @Override
+    public Map<String, Long> getMaxLatencyNanos() {
+        return perOperation(m -> m.latency.snapshot().max());
+    }
+
+    @Override
+    public List<String> getHottestProducts() {
+        return format(hottest.top(top));
+    }
+
+    @Override
+    public List<String> getMostContendedProducts() {
+        return format(mostContended.top(top));
+    }
+
+    private Map<String, Long> perOperation(ToLongFunction<OperationMetrics> metric) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            values.put(operation.name(), metric.applyAsLong(operations[operation.ordinal()]));
+        }
+        return values;
+    }
+
+    private static List<String> format(List<HotProduct> products) {
+        List<String> lines = new ArrayList<>(products.size());
+        for (HotProduct product : products) {
+            lines.add(product.productId() + "=" + product.count());
+        }
+        return lines;
+    }
+}
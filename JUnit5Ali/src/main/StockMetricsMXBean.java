@@ -0,0 +1,28 @@
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX view of {@link StockMetrics}. Maps are keyed by operation name;
+ * product lists hold {@code productId=count} entries, highest count first.
+ */
+public interface StockMetricsMXBean {
+
+    Map<String, Long> getSuccessCounts();
+
+    Map<String, Long> getFailureCounts();
+
+    /** Operations that had to wait for the record's lock. */
+    Map<String, Long> getContendedCounts();
+
+    Map<String, Long> getMedianLatencyNanos();
+
+    Map<String, Long> getP99LatencyNanos();
+
+    Map<String, Long> getMaxLatencyNanos();
+
+    List<String> getHottestProducts();
+
+    List<String> getMostContendedProducts();
+
+    void reset();
+}
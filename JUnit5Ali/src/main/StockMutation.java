@@ -0,0 +1,17 @@
+/**
+ * The mutating operations of {@link ProductStock}, as reported to {@link StockListener}s.
+ */
+public enum StockMutation {
+    ADD_STOCK,
+    REMOVE_DAMAGED,
+    RESERVE,
+    RELEASE_RESERVATION,
+    SHIP_RESERVED,
+    CHANGE_LOCATION,
+    UPDATE_REORDER_THRESHOLD,
+    UPDATE_MAX_CAPACITY,
+    TRANSFER_OUT,
+    TRANSFER_IN,
+    /** Both sides of a transfer at once, as reported to {@link StockListener#onTransfer}. */
+    TRANSFER
+}
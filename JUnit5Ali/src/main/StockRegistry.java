@@ -0,0 +1,1012 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * In-memory registry of {@link ProductStock} records keyed by productId and location.
+ * <p>
+ * Records are striped across a power-of-two number of shards by the hash of
+ * their {@link StockKey}. Each record carries its own lock, so mutations on
+ * different SKUs never contend; lookups are lock-free.
+ * <p>
+ * Registered records must only be mutated through the registry, and their
+ * location must only be changed with {@link #relocate(String, String, String)}.
+ * <p>
+ * Every change made through the registry is also kept as an immutable
+ * version of the record, so {@link #snapshot()} can read all records as of
+ * one instant without locking: a report never sees half of a
+ * {@link #reserveAll(List)} or a record between two of its fields, and
+ * writers never wait for readers.
+ * <p>
+ * Stock operations can be measured by attaching a {@link StockMetrics} with
+ * {@link #setMetrics(StockMetrics)}.
+ */
+public class StockRegistry {
+
+    static final int DEFAULT_SHARDS = 64;
+
+    private static final AtomicLong ENTRY_IDS = new AtomicLong();
+
+    private final ConcurrentHashMap<StockKey, Entry>[] shards;
+    private final int shardShift;   // 32 - log2(shards.length)
+    private volatile StockMetrics metrics;
+
+    // ---------- MVCC state ----------
+
+    /** Every registered entry, plus removed ones that a running snapshot may still see. */
+    private final Set<Entry> entries = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Entry> retired = new ConcurrentLinkedQueue<>();
+    /** Advanced by readers only, so writers just read it. */
+    private final AtomicLong snapshotClock = new AtomicLong();
+    private final ReentrantLock readersLock = new ReentrantLock();
+    private final TreeMap<Long, Integer> readers = new TreeMap<>();   // guarded by readersLock
+    private volatile long oldestReader = Long.MAX_VALUE;
+
+    /**
+     * Consistent view of the registry as of one instant.
+     *
+     * @param version the snapshot clock the view was taken at
+     */
+    public record Snapshot(long version, Map<StockKey, StockSnapshot> records) {
+
+        /** The record at the given key, or null if none was registered. */
+        public StockSnapshot get(String productId, String location) {
+            return records.get(new StockKey(productId, location));
+        }
+
+        public int size() {
+            return records.size();
+        }
+    }
+
+    /**
+     * A registered record together with the lock guarding its mutations.
+     * Entries are always locked in ascending {@code id} order when more than
+     * one is held, which rules out lock-order deadlocks.
+     */
+    static final class Entry {
+        final long id = ENTRY_IDS.incrementAndGet();
+        final ProductStock stock;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile Version head;   // newest first, written under lock
+        boolean retired;         // guarded by lock; set once the entry is removed
+
+        Entry(ProductStock stock) {
+            this.stock = stock;
+        }
+    }
+
+    /**
+     * One state of a record. A version is numbered with the snapshot clock
+     * read after it was chained, so a snapshot taken at clock {@code T}
+     * reads the newest version numbered {@code <= T}, and the versions of
+     * one {@link #reserveAll(List)} share a number.
+     */
+    static final class Version {
+        static final long PENDING = -1;
+
+        volatile long number = PENDING;
+        final String location;
+        final int onHand;
+        final int reserved;
+        final int reorderThreshold;
+        final int maxCapacity;
+        final boolean removed;
+        Version previous;   // cut once no snapshot can need it
+
+        Version(ProductStock stock, boolean removed, Version previous) {
+            this.location = stock.getLocation();
+            this.onHand = stock.getOnHand();
+            this.reserved = stock.getReserved();
+            this.reorderThreshold = stock.getReorderThreshold();
+            this.maxCapacity = stock.getMaxCapacity();
+            this.removed = removed;
+            this.previous = previous;
+        }
+
+        /** Waits out the few instructions between chaining and numbering a version. */
+        long number() {
+            long n;
+            while ((n = number) == PENDING) {
+                Thread.onSpinWait();
+            }
+            return n;
+        }
+
+        StockSnapshot toSnapshot(String productId) {
+            return new StockSnapshot(productId, location, onHand, reserved, reorderThreshold, maxCapacity);
+        }
+    }
+
+    /**
+     * A resolved order line: the target entry and the quantity to apply.
+     */
+    private static final class Claim {
+        final StockKey key;
+        final Entry entry;
+        int amount;
+
+        Claim(StockKey key, Entry entry, int amount) {
+            this.key = key;
+            this.entry = entry;
+            this.amount = amount;
+        }
+    }
+
+    private static final Comparator<Claim> LOCK_ORDER = Comparator.comparingLong(c -> c.entry.id);
+
+    public StockRegistry() {
+        this(DEFAULT_SHARDS, 16 * DEFAULT_SHARDS);
+    }
+
+    /**
+     * @param shardCount   number of shards, rounded up to a power of two (> 0)
+     * @param expectedSize expected number of records (>= 0), used to presize the shards
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public StockRegistry(int shardCount, int expectedSize) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be > 0");
+        }
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must be >= 0");
+        }
+        int n = Integer.highestOneBit(shardCount - 1) << 1;
+        if (n <= 0) {
+            n = 1;
+        }
+        this.shards = new ConcurrentHashMap[n];
+        this.shardShift = 32 - Integer.numberOfTrailingZeros(n);
+        int perShard = Math.max(16, expectedSize / n);
+        for (int i = 0; i < n; i++) {
+            shards[i] = new ConcurrentHashMap<>(perShard);
+        }
+    }
+
+    private ConcurrentHashMap<StockKey, Entry> shardFor(StockKey key) {
+        return shards[shardIndex(key)];
+    }
+
+    /**
+     * The shard comes from the high bits of the re-mixed hash: each shard's
+     * map indexes its buckets by the low bits of the spread hash, so taking
+     * the shard from those too would leave every key in a shard with the
+     * same low bits and most of its buckets unused.
+     */
+    int shardIndex(StockKey key) {
+        // as a long, so a single shard (shift 32) yields 0
+        return (int) (((key.hashCode() * 0x9E3779B9) & 0xFFFFFFFFL) >>> shardShift);
+    }
+
+    int shardCount() {
+        return shards.length;
+    }
+
+    Entry entry(StockKey key) {
+        return shardFor(key).get(key);
+    }
+
+    Entry requireEntry(String productId, String location) {
+        Entry entry = entry(new StockKey(productId, location));
+        if (entry == null) {
+            throw new IllegalArgumentException("No stock for product " + productId + " at " + location);
+        }
+        return entry;
+    }
+
+    // ---------- Metrics ----------
+
+    /**
+     * Starts measuring the registry's operations into {@code metrics}, or
+     * stops measuring if it is null. While disabled, an operation pays one
+     * volatile read.
+     */
+    public void setMetrics(StockMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public StockMetrics getMetrics() {
+        return metrics;
+    }
+
+    // ---------- Map operations ----------
+
+    /**
+     * Registers a record under its current productId and location.
+     *
+     * @return the record previously registered under that key, or null
+     */
+    public ProductStock put(ProductStock stock) {
+        if (stock == null) {
+            throw new IllegalArgumentException("stock must not be null");
+        }
+        StockKey key = StockKey.of(stock);
+        ConcurrentHashMap<StockKey, Entry> shard = shardFor(key);
+        while (true) {
+            Entry previous = shard.get(key);
+            // created after previous, so it comes later in lock order
+            Entry entry = new Entry(stock);
+            if (previous == null) {
+                if (register(shard, key, entry)) {
+                    return null;
+                }
+                continue;
+            }
+            previous.lock.lock();
+            entry.lock.lock();
+            try {
+                entries.add(entry);
+                if (shard.replace(key, previous, entry)) {
+                    // the replacement becomes visible to snapshots in one step
+                    previous.retired = true;
+                    previous.stock.registered = false;
+                    stock.registered = true;
+                    Version removed = stage(previous, true);
+                    Version added = stage(entry, false);
+                    long number = snapshotClock.get();
+                    removed.number = number;
+                    added.number = number;
+                    trim(removed);
+                    trim(added);
+                    retire(previous, number);
+                    return previous.stock;
+                }
+                entries.remove(entry);
+            } finally {
+                entry.lock.unlock();
+                previous.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Registers a record unless one is already registered under its key.
+     *
+     * @return the record already registered under that key, or null if this one was added
+     */
+    public ProductStock putIfAbsent(ProductStock stock) {
+        if (stock == null) {
+            throw new IllegalArgumentException("stock must not be null");
+        }
+        StockKey key = StockKey.of(stock);
+        ConcurrentHashMap<StockKey, Entry> shard = shardFor(key);
+        while (true) {
+            if (register(shard, key, new Entry(stock))) {
+                return null;
+            }
+            Entry existing = shard.get(key);
+            if (existing != null) {
+                return existing.stock;
+            }
+        }
+    }
+
+    /**
+     * Adds a new entry unless the key is taken, and publishes its first version.
+     */
+    private boolean register(ConcurrentHashMap<StockKey, Entry> shard, StockKey key, Entry entry) {
+        entry.lock.lock();
+        try {
+            // listed before it is reachable, so a snapshot that could see it finds it
+            entries.add(entry);
+            if (shard.putIfAbsent(key, entry) != null) {
+                entries.remove(entry);
+                return false;
+            }
+            entry.stock.registered = true;
+            publish(entry);
+            return true;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the record for the given key, or null if none is registered.
+     */
+    public ProductStock get(String productId, String location) {
+        Entry entry = entry(new StockKey(productId, location));
+        return entry == null ? null : entry.stock;
+    }
+
+    /**
+     * Removes the record for the given key.
+     *
+     * @return the removed record, or null if none was registered
+     */
+    public ProductStock remove(String productId, String location) {
+        StockKey key = new StockKey(productId, location);
+        ConcurrentHashMap<StockKey, Entry> shard = shardFor(key);
+        while (true) {
+            Entry removed = shard.get(key);
+            if (removed == null) {
+                return null;
+            }
+            removed.lock.lock();
+            try {
+                if (shard.get(key) != removed) {
+                    continue;
+                }
+                // numbered while the key is still taken, so a record
+                // registered there next is numbered after the tombstone
+                removed.retired = true;
+                removed.stock.registered = false;
+                Version tombstone = stage(removed, true);
+                long number = snapshotClock.get();
+                tombstone.number = number;
+                trim(tombstone);
+                shard.remove(key, removed);
+                retire(removed, number);
+                return removed.stock;
+            } finally {
+                removed.lock.unlock();
+            }
+        }
+    }
+
+    public boolean contains(String productId, String location) {
+        return entry(new StockKey(productId, location)) != null;
+    }
+
+    public int size() {
+        long total = 0;
+        for (ConcurrentHashMap<StockKey, Entry> shard : shards) {
+            total += shard.mappingCount();
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Visits every registered record. The action runs under the record's lock,
+     * so it sees a consistent record, but records are visited one at a time.
+     */
+    public void forEach(Consumer<ProductStock> action) {
+        for (ConcurrentHashMap<StockKey, Entry> shard : shards) {
+            for (Entry entry : shard.values()) {
+                entry.lock.lock();
+                try {
+                    action.accept(entry.stock);
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    // ---------- Pass-through stock operations ----------
+
+    public void addStock(String productId, String location, int amount) {
+        apply(StockMetrics.Operation.ADD_STOCK, productId, location, amount, ProductStock::addStock);
+    }
+
+    public void removeDamaged(String productId, String location, int amount) {
+        apply(StockMetrics.Operation.REMOVE_DAMAGED, productId, location, amount, ProductStock::removeDamaged);
+    }
+
+    public void reserve(String productId, String location, int amount) {
+        apply(StockMetrics.Operation.RESERVE, productId, location, amount, ProductStock::reserve);
+    }
+
+    public void releaseReservation(String productId, String location, int amount) {
+        apply(StockMetrics.Operation.RELEASE_RESERVATION, productId, location, amount, ProductStock::releaseReservation);
+    }
+
+    public void shipReserved(String productId, String location, int amount) {
+        apply(StockMetrics.Operation.SHIP_RESERVED, productId, location, amount, ProductStock::shipReserved);
+    }
+
+    public void updateReorderThreshold(String productId, String location, int newThreshold) {
+        apply(StockMetrics.Operation.UPDATE_REORDER_THRESHOLD, productId, location, newThreshold,
+                ProductStock::updateReorderThreshold);
+    }
+
+    public void updateMaxCapacity(String productId, String location, int newMaxCapacity) {
+        apply(StockMetrics.Operation.UPDATE_MAX_CAPACITY, productId, location, newMaxCapacity,
+                ProductStock::updateMaxCapacity);
+    }
+
+    public int getAvailable(String productId, String location) {
+        Entry entry = requireEntry(productId, location);
+        entry.lock.lock();
+        try {
+            return entry.stock.getAvailable();
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    // ---------- Batch operations ----------
+
+    /**
+     * Reserves every line of a multi-line order, all or nothing.
+     * <p>
+     * All lines are validated first; the touched records are then locked in a
+     * fixed global order, availability is checked for every line and only
+     * then are the reservations applied. Either every line is reserved or no
+     * record is changed, and no other thread can observe a partial order.
+     * Lines for the same record are merged.
+     *
+     * @throws IllegalArgumentException if a quantity is not positive or a record is unknown
+     * @throws IllegalStateException    if any line exceeds the available stock or
+     *                                  a record was moved or removed concurrently
+     */
+    public void reserveAll(List<OrderLine> lines) {
+        DurabilityScope scope = DurabilityScope.open();
+        try {
+            StockMetrics m = metrics;
+            if (m == null) {
+                reserveAllUnmeasured(lines);
+                return;
+            }
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                reserveAllUnmeasured(lines);
+                success = true;
+            } finally {
+                m.record(StockMetrics.Operation.RESERVE_ALL, null, System.nanoTime() - start, success, false);
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private void reserveAllUnmeasured(List<OrderLine> lines) {
+        Claim[] claims = claims(lines, "Amount to reserve must be positive");
+        int count = mergeInLockOrder(claims, "Insufficient available stock to reserve");
+
+        int locked = 0;
+        try {
+            for (; locked < count; locked++) {
+                claims[locked].entry.lock.lock();
+            }
+            checkClaims(claims, count);
+            for (int i = 0; i < count; i++) {
+                ProductStock stock = claims[i].entry.stock;
+                if (claims[i].amount > stock.getAvailable()) {
+                    throw new IllegalStateException("Insufficient available stock to reserve product "
+                            + stock.getProductId() + " at " + stock.getLocation());
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                claims[i].entry.stock.reserve(claims[i].amount);
+            }
+            publishAll(claims, count);
+        } finally {
+            while (locked > 0) {
+                claims[--locked].entry.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Ships every line of a reserved multi-line order, all or nothing.
+     * <p>
+     * Works like {@link #reserveAll(List)}: the records are locked in the
+     * global order and every line is checked against its record's
+     * reservations before any is shipped, so a failing line leaves every
+     * record unchanged. Lines for the same record are merged.
+     *
+     * @throws IllegalArgumentException if a quantity is not positive or a record is unknown
+     * @throws IllegalStateException    if any line exceeds the reserved or on-hand stock
+     *                                  or a record was moved or removed concurrently
+     */
+    public void shipAll(List<OrderLine> lines) {
+        DurabilityScope scope = DurabilityScope.open();
+        try {
+            StockMetrics m = metrics;
+            if (m == null) {
+                shipAllUnmeasured(lines);
+                return;
+            }
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                shipAllUnmeasured(lines);
+                success = true;
+            } finally {
+                m.record(StockMetrics.Operation.SHIP_ALL, null, System.nanoTime() - start, success, false);
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private void shipAllUnmeasured(List<OrderLine> lines) {
+        Claim[] claims = claims(lines, "Amount to ship must be positive");
+        int count = mergeInLockOrder(claims, "Cannot ship more than reserved");
+
+        int locked = 0;
+        try {
+            for (; locked < count; locked++) {
+                claims[locked].entry.lock.lock();
+            }
+            checkClaims(claims, count);
+            for (int i = 0; i < count; i++) {
+                ProductStock stock = claims[i].entry.stock;
+                if (claims[i].amount > stock.getReserved()) {
+                    throw new IllegalStateException("Cannot ship more than reserved of product "
+                            + stock.getProductId() + " at " + stock.getLocation());
+                }
+                if (claims[i].amount > stock.getOnHand()) {
+                    throw new IllegalStateException("On-hand quantity is not enough to ship product "
+                            + stock.getProductId() + " at " + stock.getLocation());
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                claims[i].entry.stock.shipReserved(claims[i].amount);
+            }
+            publishAll(claims, count);
+        } finally {
+            while (locked > 0) {
+                claims[--locked].entry.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Releases the reservations of every line of a multi-line order, all or
+     * nothing, like {@link #shipAll(List)}.
+     *
+     * @throws IllegalArgumentException if a quantity is not positive or a record is unknown
+     * @throws IllegalStateException    if any line exceeds its record's reservations
+     *                                  or a record was moved or removed concurrently
+     */
+    public void releaseAll(List<OrderLine> lines) {
+        DurabilityScope scope = DurabilityScope.open();
+        try {
+            StockMetrics m = metrics;
+            if (m == null) {
+                releaseAllUnmeasured(lines);
+                return;
+            }
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                releaseAllUnmeasured(lines);
+                success = true;
+            } finally {
+                m.record(StockMetrics.Operation.RELEASE_ALL, null, System.nanoTime() - start, success, false);
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private void releaseAllUnmeasured(List<OrderLine> lines) {
+        Claim[] claims = claims(lines, "Amount to release must be positive");
+        int count = mergeInLockOrder(claims, "Cannot release more than reserved");
+
+        int locked = 0;
+        try {
+            for (; locked < count; locked++) {
+                claims[locked].entry.lock.lock();
+            }
+            checkClaims(claims, count);
+            for (int i = 0; i < count; i++) {
+                ProductStock stock = claims[i].entry.stock;
+                if (claims[i].amount > stock.getReserved()) {
+                    throw new IllegalStateException("Cannot release more than reserved of product "
+                            + stock.getProductId() + " at " + stock.getLocation());
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                claims[i].entry.stock.releaseReservation(claims[i].amount);
+            }
+            publishAll(claims, count);
+        } finally {
+            while (locked > 0) {
+                claims[--locked].entry.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Resolves every line to its entry, before any lock is taken.
+     */
+    private Claim[] claims(List<OrderLine> lines, String nonPositive) {
+        if (lines == null) {
+            throw new IllegalArgumentException("lines must not be null");
+        }
+        Claim[] claims = new Claim[lines.size()];
+        for (int i = 0; i < claims.length; i++) {
+            OrderLine line = lines.get(i);
+            if (line.quantity() <= 0) {
+                throw new IllegalArgumentException(nonPositive);
+            }
+            StockKey key = new StockKey(line.productId(), line.location());
+            claims[i] = new Claim(key, requireEntry(line.productId(), line.location()), line.quantity());
+        }
+        return claims;
+    }
+
+    /**
+     * Sorts claims into lock order and merges claims on the same entry.
+     *
+     * @param overflow message for merged quantities beyond an int, which no
+     *                 record can satisfy
+     * @return number of distinct claims left at the front of the array
+     */
+    private static int mergeInLockOrder(Claim[] claims, String overflow) {
+        Arrays.sort(claims, LOCK_ORDER);
+        int count = 0;
+        for (Claim claim : claims) {
+            if (count > 0 && claims[count - 1].entry == claim.entry) {
+                if (!claims[count - 1].key.equals(claim.key)) {
+                    // two keys reached one entry: it was being relocated
+                    throw new IllegalStateException("Stock was moved or removed concurrently");
+                }
+                long merged = (long) claims[count - 1].amount + claim.amount;
+                if (merged > Integer.MAX_VALUE) {
+                    throw new IllegalStateException(overflow);
+                }
+                claims[count - 1].amount = (int) merged;
+            } else {
+                claims[count++] = claim;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Under the claimed entries' locks: fails if any claim's record was
+     * relocated, removed or replaced after its line was resolved.
+     */
+    private void checkClaims(Claim[] claims, int count) {
+        for (int i = 0; i < count; i++) {
+            if (entry(claims[i].key) != claims[i].entry) {
+                throw new IllegalStateException("Stock was moved or removed concurrently");
+            }
+        }
+    }
+
+    /**
+     * Moves units of a product from its record at one location to its record
+     * at another, as one step: both records are locked in the global lock
+     * order, so opposite transfers between the same pair cannot deadlock, and
+     * snapshots see either both sides or neither. Rules are those of
+     * {@link ProductStock#transferTo(ProductStock, int)}.
+     *
+     * @throws IllegalArgumentException if the amount is not positive, a record is
+     *                                  unknown or both locations are the same
+     * @throws IllegalStateException    if the source lacks available stock or the
+     *                                  target lacks capacity
+     */
+    public void transfer(String productId, String fromLocation, String toLocation, int amount) {
+        DurabilityScope scope = DurabilityScope.open();
+        try {
+            StockMetrics m = metrics;
+            if (m == null) {
+                transferUnmeasured(productId, fromLocation, toLocation, amount);
+                return;
+            }
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                transferUnmeasured(productId, fromLocation, toLocation, amount);
+                success = true;
+            } finally {
+                m.record(StockMetrics.Operation.TRANSFER, productId, System.nanoTime() - start, success, false);
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private void transferUnmeasured(String productId, String fromLocation, String toLocation, int amount) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount to transfer must be positive");
+        }
+        StockKey sourceKey = new StockKey(productId, fromLocation);
+        StockKey targetKey = new StockKey(productId, toLocation);
+        Entry source = requireEntry(productId, fromLocation);
+        Entry target = requireEntry(productId, toLocation);
+        if (source == target) {
+            throw new IllegalArgumentException("Cannot transfer stock to itself");
+        }
+        Claim[] claims = {new Claim(sourceKey, source, amount), new Claim(targetKey, target, amount)};
+        Arrays.sort(claims, LOCK_ORDER);
+
+        claims[0].entry.lock.lock();
+        try {
+            claims[1].entry.lock.lock();
+            try {
+                if (entry(sourceKey) != source || entry(targetKey) != target) {
+                    throw new IllegalStateException("Stock was moved or removed concurrently");
+                }
+                source.stock.transferTo(target.stock, amount);
+                publishAll(claims, 2);
+            } finally {
+                claims[1].entry.lock.unlock();
+            }
+        } finally {
+            claims[0].entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Moves a record to a new location and re-keys it.
+     * Fails if another record is already registered at the new location.
+     */
+    public void relocate(String productId, String location, String newLocation) {
+        DurabilityScope scope = DurabilityScope.open();
+        try {
+            StockMetrics m = metrics;
+            if (m == null) {
+                relocateUnmeasured(productId, location, newLocation);
+                return;
+            }
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                relocateUnmeasured(productId, location, newLocation);
+                success = true;
+            } finally {
+                m.record(StockMetrics.Operation.RELOCATE, productId, System.nanoTime() - start, success, false);
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private void relocateUnmeasured(String productId, String location, String newLocation) {
+        StockKey source = new StockKey(productId, location);
+        StockKey target = new StockKey(productId, newLocation);
+        Entry entry = requireEntry(productId, location);
+        if (source.equals(target)) {
+            return;
+        }
+        entry.lock.lock();
+        try {
+            if (entry(source) != entry) {
+                throw new IllegalStateException("Stock was moved or removed concurrently");
+            }
+            if (shardFor(target).putIfAbsent(target, entry) != null) {
+                throw new IllegalStateException("Stock already registered at " + newLocation);
+            }
+            try {
+                entry.stock.changeLocation(newLocation);
+            } catch (RuntimeException e) {
+                // a listener rejected the location; the record did not move
+                shardFor(target).remove(target, entry);
+                throw e;
+            }
+            // published before the old key is freed, so a record registered
+            // there next never shares a snapshot with this one
+            publish(entry);
+            shardFor(source).remove(source, entry);
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    private void apply(StockMetrics.Operation op, String productId, String location, int amount,
+                       ObjIntConsumer<ProductStock> operation) {
+        DurabilityScope scope = DurabilityScope.open();
+        try {
+            StockMetrics m = metrics;
+            if (m != null) {
+                applyMeasured(m, op, productId, location, amount, operation);
+                return;
+            }
+            StockKey key = new StockKey(productId, location);
+            Entry entry = requireEntry(productId, location);
+            entry.lock.lock();
+            entry = lockedCurrent(key, entry);
+            try {
+                operation.accept(entry.stock, amount);
+                publish(entry);
+            } finally {
+                entry.lock.unlock();
+            }
+        } finally {
+            scope.close();
+        }
+    }
+
+    private void applyMeasured(StockMetrics m, StockMetrics.Operation op, String productId, String location,
+                               int amount, ObjIntConsumer<ProductStock> operation) {
+        long start = System.nanoTime();
+        boolean success = false;
+        boolean contended = false;
+        try {
+            StockKey key = new StockKey(productId, location);
+            Entry entry = requireEntry(productId, location);
+            if (!entry.lock.tryLock()) {
+                contended = true;
+                entry.lock.lock();
+            }
+            entry = lockedCurrent(key, entry);
+            try {
+                operation.accept(entry.stock, amount);
+                publish(entry);
+                success = true;
+            } finally {
+                entry.lock.unlock();
+            }
+        } finally {
+            m.record(op, productId, System.nanoTime() - start, success, contended);
+        }
+    }
+
+    /**
+     * Called holding the lock of the entry resolved for the key. If the
+     * record was relocated, removed or replaced before the lock was taken,
+     * unlocks it and locks whatever is registered at the key now.
+     *
+     * @return the locked entry registered at the key
+     * @throws IllegalArgumentException if nothing is registered there any more; no lock is held then
+     */
+    private Entry lockedCurrent(StockKey key, Entry locked) {
+        Entry entry = locked;
+        Entry current;
+        while ((current = entry(key)) != entry) {
+            entry.lock.unlock();
+            if (current == null) {
+                throw new IllegalArgumentException("No stock for product " + key.productId() + " at " + key.location());
+            }
+            entry = current;
+            entry.lock.lock();
+        }
+        return entry;
+    }
+
+    // ---------- Snapshots ----------
+
+    /**
+     * Reads every registered record as of one instant, without blocking
+     * writers. Changes made directly on a registered ProductStock rather
+     * than through the registry are not seen.
+     */
+    public Snapshot snapshot() {
+        long registered = beginRead();
+        try {
+            long at = snapshotClock.getAndIncrement();
+            Map<StockKey, StockSnapshot> records = new LinkedHashMap<>();
+            for (Entry entry : entries) {
+                Version version = visible(entry, at);
+                if (version != null && !version.removed) {
+                    String productId = entry.stock.getProductId();
+                    records.put(new StockKey(productId, version.location), version.toSnapshot(productId));
+                }
+            }
+            return new Snapshot(at, Collections.unmodifiableMap(records));
+        } finally {
+            endRead(registered);
+        }
+    }
+
+    /**
+     * The latest state of one record, or null if none is registered.
+     */
+    public StockSnapshot snapshot(String productId, String location) {
+        Entry entry = entry(new StockKey(productId, location));
+        Version head = entry == null ? null : entry.head;
+        if (head == null || head.removed) {
+            return null;
+        }
+        head.number();
+        return head.toSnapshot(entry.stock.getProductId());
+    }
+
+    private static Version visible(Entry entry, long at) {
+        for (Version version = entry.head; version != null; version = version.previous) {
+            if (version.number() <= at) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Registers a reader before it reads the clock, so that any writer that
+     * misses the registration has numbered its versions at or below the
+     * reader's clock.
+     */
+    private long beginRead() {
+        readersLock.lock();
+        try {
+            long registered = snapshotClock.get();
+            readers.merge(registered, 1, Integer::sum);
+            oldestReader = readers.firstKey();
+            return registered;
+        } finally {
+            readersLock.unlock();
+        }
+    }
+
+    private void endRead(long registered) {
+        long oldest;
+        readersLock.lock();
+        try {
+            readers.merge(registered, -1, (a, b) -> a + b == 0 ? null : a + b);
+            oldest = readers.isEmpty() ? Long.MAX_VALUE : readers.firstKey();
+            oldestReader = oldest;
+        } finally {
+            readersLock.unlock();
+        }
+        retired.removeIf(entry -> {
+            if (entry.head.number() <= oldest) {
+                entries.remove(entry);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /** Under the entry's lock: chains the record's current state as a pending version. */
+    private static Version stage(Entry entry, boolean removed) {
+        Version version = new Version(entry.stock, removed, entry.head);
+        entry.head = version;
+        return version;
+    }
+
+    /** Under the entry's lock: publishes the record's current state. */
+    private void publish(Entry entry) {
+        if (entry.retired) {
+            return;
+        }
+        Version version = stage(entry, false);
+        version.number = snapshotClock.get();
+        trim(version);
+    }
+
+    /** Under the claimed entries' locks: publishes their states as one version. */
+    private void publishAll(Claim[] claims, int count) {
+        Version[] versions = new Version[count];
+        for (int i = 0; i < count; i++) {
+            if (!claims[i].entry.retired) {
+                versions[i] = stage(claims[i].entry, false);
+            }
+        }
+        long number = snapshotClock.get();
+        for (Version version : versions) {
+            if (version != null) {
+                version.number = number;
+            }
+        }
+        for (Version version : versions) {
+            if (version != null) {
+                trim(version);
+            }
+        }
+    }
+
+    /**
+     * Drops the versions behind the newest one that the oldest running
+     * snapshot can see.
+     */
+    private void trim(Version head) {
+        long oldest = oldestReader;
+        for (Version version = head; version != null; version = version.previous) {
+            if (version.number <= oldest) {
+                version.previous = null;
+                return;
+            }
+        }
+    }
+
+    /** Forgets a removed entry once no running snapshot can still see it. */
+    private void retire(Entry entry, long number) {
+        if (number <= oldestReader) {
+            entries.remove(entry);
+        } else {
+            retired.add(entry);
+            if (oldestReader == Long.MAX_VALUE && retired.remove(entry)) {
+                // the last reader left meanwhile
+                entries.remove(entry);
+            }
+        }
+    }
+}
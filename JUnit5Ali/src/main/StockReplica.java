@@ -0,0 +1,187 @@
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Read-only copy of stock state, rebuilt from a {@link StockChangeFeed}.
+ * <p>
+ * The replica accepts the feed's snapshots and batches as raw messages, so
+ * it can be subscribed to any transport. A snapshot replaces the whole state.
+ * A batch is applied if it follows on from what the replica has seen; a
+ * delta only replaces a record's state if it is newer, so batches that
+ * overlap a snapshot are harmless. If a batch starts after a sequence the
+ * replica never saw, deltas were lost: the replica stops applying batches and
+ * reports {@link #isInSync()} false until a new snapshot is loaded. A new
+ * replica starts empty at sequence 0, so it can follow a new feed from its
+ * first batch without a snapshot.
+ * <p>
+ * Queries read a concurrent map of immutable entries and take no lock. A
+ * snapshot is loaded into new maps that replace the old ones in one volatile
+ * write, so readers never see the replica half-emptied.
+ */
+public final class StockReplica implements Consumer<ByteBuffer> {
+
+    /**
+     * Replicated state of one record.
+     *
+     * @param sequence sequence number of the change this state reflects
+     */
+    public record Entry(String productId,
+                        String location,
+                        int onHand,
+                        int reserved,
+                        int reorderThreshold,
+                        int maxCapacity,
+                        long sequence) {
+
+        public int available() {
+            return onHand - reserved;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private Map<Integer, Entry> byId = new HashMap<>();                           // guarded by lock
+    private volatile ConcurrentHashMap<StockKey, Entry> byKey = new ConcurrentHashMap<>();   // replaced under lock
+    private volatile long appliedSequence;
+    private volatile boolean inSync = true;   // an empty replica matches a new feed
+
+    // ---------- Applying ----------
+
+    /**
+     * Applies a snapshot or a batch.
+     *
+     * @throws IllegalStateException if the message is malformed
+     */
+    @Override
+    public void accept(ByteBuffer message) {
+        ByteBuffer in = message.duplicate();
+        lock.lock();
+        try {
+            byte kind = in.get();
+            if (kind == StockChangeFeed.SNAPSHOT) {
+                loadSnapshot(in);
+            } else if (kind == StockChangeFeed.BATCH) {
+                applyBatch(in);
+            } else {
+                throw new IllegalStateException("Unknown stock feed message: " + kind);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void loadSnapshot(ByteBuffer in) {
+        long sequence = Varints.getUnsignedLong(in);
+        int count = Varints.getUnsigned(in);
+        Map<Integer, Entry> ids = new HashMap<>();
+        ConcurrentHashMap<StockKey, Entry> keys = new ConcurrentHashMap<>();
+        for (int i = 0; i < count; i++) {
+            applyDelta(in, sequence, ids, keys);
+        }
+        byId = ids;
+        byKey = keys;
+        appliedSequence = sequence;
+        inSync = true;
+    }
+
+    private void applyBatch(ByteBuffer in) {
+        long previousSequence = Varints.getUnsignedLong(in);
+        long lastSequence = Varints.getUnsignedLong(in);
+        if (!inSync || lastSequence <= appliedSequence) {
+            return;
+        }
+        if (previousSequence > appliedSequence) {
+            // changes in (appliedSequence, previousSequence] never arrived
+            inSync = false;
+            return;
+        }
+        int count = Varints.getUnsigned(in);
+        for (int i = 0; i < count; i++) {
+            applyDelta(in, lastSequence, byId, byKey);
+        }
+        appliedSequence = lastSequence;
+    }
+
+    private static void applyDelta(ByteBuffer in, long lastSequence,
+                                   Map<Integer, Entry> byId, Map<StockKey, Entry> byKey) {
+        byte tag = in.get();
+        int id = Varints.getUnsigned(in);
+        long sequence = lastSequence - Varints.getUnsignedLong(in);
+        Entry current = byId.get(id);
+        boolean newer = current == null || sequence > current.sequence();
+
+        if (tag == StockChangeFeed.REMOVE) {
+            if (current != null && newer) {
+                byId.remove(id);
+                byKey.remove(new StockKey(current.productId(), current.location()));
+            }
+            return;
+        }
+        String productId;
+        String location;
+        if (tag == StockChangeFeed.UPSERT) {
+            productId = Varints.getString(in);
+            location = Varints.getString(in);
+        } else if (tag == StockChangeFeed.UPDATE) {
+            if (current == null) {
+                throw new IllegalStateException("Update for unknown record " + id);
+            }
+            productId = current.productId();
+            location = current.location();
+        } else {
+            throw new IllegalStateException("Unknown delta tag: " + tag);
+        }
+        int onHand = Varints.getUnsigned(in);
+        int reserved = Varints.getUnsigned(in);
+        int reorderThreshold = Varints.getUnsigned(in);
+        int maxCapacity = Varints.getUnsigned(in);
+        if (!newer) {
+            return;
+        }
+        Entry entry = new Entry(productId, location, onHand, reserved, reorderThreshold, maxCapacity, sequence);
+        byId.put(id, entry);
+        if (current != null && !current.location().equals(location)) {
+            byKey.remove(new StockKey(current.productId(), current.location()));
+        }
+        byKey.put(new StockKey(productId, location), entry);
+    }
+
+    // ---------- Queries ----------
+
+    /**
+     * Returns the replicated record, or null if there is none.
+     */
+    public Entry get(String productId, String location) {
+        return byKey.get(new StockKey(productId, location));
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such record
+     */
+    public int getAvailable(String productId, String location) {
+        Entry entry = get(productId, location);
+        if (entry == null) {
+            throw new IllegalArgumentException("No stock for product " + productId + " at " + location);
+        }
+        return entry.available();
+    }
+
+    public int size() {
+        return byKey.size();
+    }
+
+    /** Sequence number up to which every change has been applied. */
+    public long appliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * False after a gap in the batches; the replica then needs a new snapshot.
+     */
+    public boolean isInSync() {
+        return inSync;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Immutable point-in-time view of one stock record.
+ */
+public record StockSnapshot(String productId,
+                            String location,
+                            int onHand,
+                            int reserved,
+                            int reorderThreshold,
+                            int maxCapacity) {
+
+    /**
+     * Available stock = onHand - reserved.
+     */
+    public int available() {
+        return onHand - reserved;
+    }
+
+    public boolean isReorderNeeded() {
+        return available() < reorderThreshold;
+    }
+}
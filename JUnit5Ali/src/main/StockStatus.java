@@ -0,0 +1,22 @@
+/**
+ * Outcome of the non-throwing stock operations ({@code tryReserve} and
+ * friends). Constants are shared singletons, so reporting a result, success
+ * or failure, allocates nothing.
+ */
+public enum StockStatus {
+
+    /** The operation was applied. */
+    OK,
+
+    /** The amount was zero or negative; nothing changed. */
+    INVALID_AMOUNT,
+
+    /** Not enough available (on-hand minus reserved) stock to reserve. */
+    INSUFFICIENT_AVAILABLE,
+
+    /** Not enough reserved stock to release or ship. */
+    INSUFFICIENT_RESERVED,
+
+    /** Not enough on-hand stock to ship; only possible if reserved exceeds on-hand. */
+    INSUFFICIENT_ON_HAND
+}
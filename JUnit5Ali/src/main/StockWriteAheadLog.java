@@ -0,0 +1,603 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead log of {@link ProductStock} mutations with group commit.
+ * <p>
+ * Every tracked record gets a small numeric id. Each mutation is logged as a
+ * compact binary event: the operation, the record id, the operation's argument
+ * and the resulting quantities, all varint-encoded. Because an event carries
+ * the resulting state, replaying it is idempotent, which lets snapshots be
+ * taken without stopping writers. A transfer between two tracked records is
+ * one event carrying both records' states, so it is replayed in full or not
+ * at all.
+ * <p>
+ * Durability uses group commit: a mutating thread appends its event to a
+ * shared buffer and then waits until the buffer is on disk. The first waiter
+ * becomes the leader and writes and fsyncs everything appended so far in one
+ * frame; threads that append meanwhile are covered by the next fsync. One
+ * fsync therefore acknowledges many concurrent mutations.
+ * <p>
+ * Events are appended on the mutating thread while it holds the record's
+ * lock, but the wait for the fsync is handed to the thread's
+ * {@link DurabilityScope} when one is open, so the record is unlocked again
+ * before the commit. {@link StockRegistry} operations open a scope; a
+ * mutation made directly on a record outside any scope waits inline.
+ * <p>
+ * The log is bound to a {@link StockRegistry}: {@link #open} replays the latest
+ * snapshot and the log segments after it into the registry, and
+ * {@link #snapshot()} reads records under the registry's locks. Records must
+ * be registered and tracked to be logged.
+ * <p>
+ * If the log cannot be written the mutation has already been applied in
+ * memory and the mutating call, or the close of its scope, fails with an
+ * {@link UncheckedIOException}.
+ */
+public class StockWriteAheadLog implements StockListener, Closeable {
+
+    private static final byte CREATE = (byte) 0x80;
+    private static final byte DROP = (byte) 0x81;
+
+    private static final int FRAME_HEADER = 8;            // length + crc32c
+    private static final int SNAPSHOT_MAGIC = 0x53544B53; // "STKS"
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path directory;
+    private final StockRegistry registry;
+    private final ConcurrentHashMap<ProductStock, Integer> ids = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId;
+    private final DurabilityScope.Barrier barrier = this::awaitDurable;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private FileChannel channel;
+    private int segment;
+    private long appendedPosition;
+    private long durablePosition;
+    private boolean flushing;
+    private IOException failure;
+
+    private StockWriteAheadLog(Path directory, StockRegistry registry, int segment, int nextId) throws IOException {
+        this.directory = directory;
+        this.registry = registry;
+        this.segment = segment;
+        this.nextId = new AtomicInteger(nextId);
+        this.channel = openSegment(segment);
+    }
+
+    /**
+     * Opens the log in the directory, replays the latest snapshot and every
+     * later segment into the registry and starts logging its records.
+     */
+    public static StockWriteAheadLog open(Path directory, StockRegistry registry) throws IOException {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry must not be null");
+        }
+        Files.createDirectories(directory);
+        TreeMap<Integer, Path> segments = list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        TreeMap<Integer, Path> snapshots = list(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+
+        Map<Integer, RecordState> records = new HashMap<>();
+        int firstSegment = 0;
+        if (!snapshots.isEmpty()) {
+            firstSegment = snapshots.lastKey();
+            readSnapshot(snapshots.lastEntry().getValue(), records);
+        }
+        for (Map.Entry<Integer, Path> entry : segments.tailMap(firstSegment, true).entrySet()) {
+            replaySegment(entry.getValue(), records);
+        }
+
+        int nextId = 0;
+        for (int id : records.keySet()) {
+            nextId = Math.max(nextId, id + 1);
+        }
+        int nextSegment = segments.isEmpty() ? firstSegment : Math.max(firstSegment, segments.lastKey() + 1);
+        StockWriteAheadLog log = new StockWriteAheadLog(directory, registry, nextSegment, nextId);
+        for (Map.Entry<Integer, RecordState> entry : records.entrySet()) {
+            ProductStock stock = entry.getValue().toProductStock();
+            registry.put(stock);
+            log.ids.put(stock, entry.getKey());
+            stock.addListener(log);
+        }
+        return log;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    long durablePosition() {
+        lock.lock();
+        try {
+            return durablePosition;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------- Tracking ----------
+
+    /**
+     * Logs the record's creation and every later mutation.
+     */
+    public void track(ProductStock stock) {
+        int id = nextId.getAndIncrement();
+        if (ids.putIfAbsent(stock, id) != null) {
+            return;
+        }
+        byte[] productId = stock.getProductId().getBytes(StandardCharsets.UTF_8);
+        byte[] location = stock.getLocation().getBytes(StandardCharsets.UTF_8);
+        long position;
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(2 + 6 * Varints.MAX_INT_BYTES + productId.length + location.length);
+            int start = out.position();
+            out.put(CREATE);
+            Varints.putUnsigned(out, id);
+            Varints.putString(out, productId);
+            Varints.putString(out, location);
+            putState(out, stock);
+            position = (appendedPosition += out.position() - start);
+        } finally {
+            lock.unlock();
+        }
+        stock.addListener(this);
+        awaitDurable(position);
+    }
+
+    /**
+     * Logs that the record is gone and stops logging it.
+     */
+    public void untrack(ProductStock stock) {
+        Integer id = ids.remove(stock);
+        if (id == null) {
+            return;
+        }
+        stock.removeListener(this);
+        long position;
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(1 + Varints.MAX_INT_BYTES);
+            int start = out.position();
+            out.put(DROP);
+            Varints.putUnsigned(out, id);
+            position = (appendedPosition += out.position() - start);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    @Override
+    public void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                           int previousOnHand, int previousReserved) {
+        Integer id = ids.get(stock);
+        if (id == null) {
+            return;
+        }
+        byte[] location = mutation == StockMutation.CHANGE_LOCATION
+                ? stock.getLocation().getBytes(StandardCharsets.UTF_8)
+                : null;
+        long position;
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(1 + 7 * Varints.MAX_INT_BYTES + (location == null ? 0 : location.length));
+            int start = out.position();
+            out.put((byte) mutation.ordinal());
+            Varints.putUnsigned(out, id);
+            Varints.putUnsigned(out, amount);
+            putState(out, stock);
+            if (location != null) {
+                Varints.putString(out, location);
+            }
+            position = (appendedPosition += out.position() - start);
+        } finally {
+            lock.unlock();
+        }
+        if (!DurabilityScope.defer(barrier, position)) {
+            awaitDurable(position);
+        }
+    }
+
+    /**
+     * Logs both sides as one {@link StockMutation#TRANSFER} event, appended
+     * under one hold of the lock so a group commit cannot split them.
+     */
+    @Override
+    public void onTransfer(ProductStock source, ProductStock target, int amount,
+                           int sourcePreviousOnHand, int targetPreviousOnHand) {
+        Integer sourceId = ids.get(source);
+        Integer targetId = ids.get(target);
+        if (sourceId == null || targetId == null) {
+            StockListener.super.onTransfer(source, target, amount, sourcePreviousOnHand, targetPreviousOnHand);
+            return;
+        }
+        long position;
+        lock.lock();
+        try {
+            ByteBuffer out = reserve(1 + 12 * Varints.MAX_INT_BYTES);
+            int start = out.position();
+            out.put((byte) StockMutation.TRANSFER.ordinal());
+            Varints.putUnsigned(out, sourceId);
+            Varints.putUnsigned(out, amount);
+            putState(out, source);
+            Varints.putUnsigned(out, targetId);
+            putState(out, target);
+            position = (appendedPosition += out.position() - start);
+        } finally {
+            lock.unlock();
+        }
+        if (!DurabilityScope.defer(barrier, position)) {
+            awaitDurable(position);
+        }
+    }
+
+    private static void putState(ByteBuffer out, ProductStock stock) {
+        Varints.putUnsigned(out, stock.getOnHand());
+        Varints.putUnsigned(out, stock.getReserved());
+        Varints.putUnsigned(out, stock.getReorderThreshold());
+        Varints.putUnsigned(out, stock.getMaxCapacity());
+    }
+
+    /** Returns the pending buffer with room for {@code bytes} more bytes; lock must be held. */
+    private ByteBuffer reserve(int bytes) {
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        return pending;
+    }
+
+    // ---------- Group commit ----------
+
+    /**
+     * Blocks until everything appended so far is on disk.
+     */
+    public void flush() {
+        long position;
+        lock.lock();
+        try {
+            position = appendedPosition;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(position);
+    }
+
+    private void awaitDurable(long position) {
+        lock.lock();
+        try {
+            while (durablePosition < position) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Write-ahead log failed", failure);
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    writeBatch();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Write-ahead log failed", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes and fsyncs everything pending as one frame. Called with the lock
+     * held and no flush in progress; the lock is released during the I/O so
+     * other threads can keep appending to the other buffer.
+     */
+    private void writeBatch() throws IOException {
+        flushing = true;
+        ByteBuffer batch = pending;
+        pending = spare;
+        long target = appendedPosition;
+        FileChannel out = channel;
+        lock.unlock();
+        IOException error = null;
+        try {
+            batch.flip();
+            writeFrame(out, batch);
+            out.force(false);
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            lock.lock();
+            flushing = false;
+            batch.clear();
+            spare = batch;
+            if (error == null) {
+                durablePosition = target;
+            } else {
+                failure = error;
+            }
+            flushed.signalAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private static void writeFrame(FileChannel out, ByteBuffer payload) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        header.putInt(payload.remaining()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] frame = {header, payload};
+        while (payload.hasRemaining()) {
+            out.write(frame);
+        }
+    }
+
+    // ---------- Snapshots ----------
+
+    /**
+     * Writes a snapshot of every tracked record and deletes the segments and
+     * snapshots it supersedes. Writers keep running: the log is rolled to a
+     * new segment first, so every event in older segments is already part of
+     * the captured state, and events in the new segment are idempotent.
+     */
+    public void snapshot() throws IOException {
+        int snapshotSegment = roll();
+
+        List<Map.Entry<Integer, RecordState>> captured = new ArrayList<>();
+        registry.forEach(stock -> {
+            Integer id = ids.get(stock);
+            if (id != null) {
+                captured.add(Map.entry(id, RecordState.of(stock)));
+            }
+        });
+
+        ByteBuffer out = ByteBuffer.allocate(16 + captured.size() * 64);
+        out.putInt(SNAPSHOT_MAGIC).putInt(captured.size());
+        for (Map.Entry<Integer, RecordState> entry : captured) {
+            RecordState state = entry.getValue();
+            byte[] productId = state.productId.getBytes(StandardCharsets.UTF_8);
+            byte[] location = state.location.getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < 6 * Varints.MAX_INT_BYTES + productId.length + location.length + 4) {
+                ByteBuffer larger = ByteBuffer.allocate(out.capacity() * 2 + productId.length + location.length);
+                out.flip();
+                out = larger.put(out);
+            }
+            Varints.putUnsigned(out, entry.getKey());
+            Varints.putString(out, productId);
+            Varints.putString(out, location);
+            Varints.putUnsigned(out, state.onHand);
+            Varints.putUnsigned(out, state.reserved);
+            Varints.putUnsigned(out, state.reorderThreshold);
+            Varints.putUnsigned(out, state.maxCapacity);
+        }
+        out.flip();
+
+        Path target = directory.resolve(name(SNAPSHOT_PREFIX, snapshotSegment, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFrame(file, out);
+            file.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (Map.Entry<Integer, Path> old : list(directory, SEGMENT_PREFIX, SEGMENT_SUFFIX).headMap(snapshotSegment).entrySet()) {
+            Files.deleteIfExists(old.getValue());
+        }
+        for (Map.Entry<Integer, Path> old : list(directory, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headMap(snapshotSegment).entrySet()) {
+            Files.deleteIfExists(old.getValue());
+        }
+    }
+
+    /**
+     * Flushes the current segment and switches appends to a new one.
+     *
+     * @return the number of the new segment
+     */
+    private int roll() throws IOException {
+        lock.lock();
+        try {
+            while (flushing || pending.position() > 0) {
+                if (failure != null) {
+                    throw failure;
+                }
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    writeBatch();
+                }
+            }
+            FileChannel next = openSegment(segment + 1);
+            channel.close();
+            channel = next;
+            return ++segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (ProductStock stock : ids.keySet()) {
+            stock.removeListener(this);
+        }
+        try {
+            flush();
+        } finally {
+            lock.lock();
+            try {
+                channel.close();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // ---------- Files and replay ----------
+
+    private FileChannel openSegment(int number) throws IOException {
+        return FileChannel.open(directory.resolve(name(SEGMENT_PREFIX, number, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static String name(String prefix, int number, String suffix) {
+        return String.format("%s%08d%s", prefix, number, suffix);
+    }
+
+    private static TreeMap<Integer, Path> list(Path directory, String prefix, String suffix) throws IOException {
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                files.put(Integer.parseInt(name.substring(prefix.length(), name.length() - suffix.length())), file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the payloads of every intact frame in the file. Reading stops at
+     * the first short or corrupt frame: the tail of a crashed write.
+     */
+    private static List<ByteBuffer> readFrames(Path file) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        List<ByteBuffer> frames = new ArrayList<>();
+        while (data.remaining() >= FRAME_HEADER) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < 0 || length > data.remaining()) {
+                break;
+            }
+            ByteBuffer payload = data.slice(data.position(), length);
+            CRC32C crc = new CRC32C();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            frames.add(payload);
+            data.position(data.position() + length);
+        }
+        return frames;
+    }
+
+    private static void readSnapshot(Path file, Map<Integer, RecordState> records) throws IOException {
+        List<ByteBuffer> frames = readFrames(file);
+        if (frames.size() != 1 || frames.get(0).getInt() != SNAPSHOT_MAGIC) {
+            throw new IllegalStateException("Corrupt stock snapshot: " + file);
+        }
+        ByteBuffer in = frames.get(0);
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int id = Varints.getUnsigned(in);
+            RecordState state = new RecordState(Varints.getString(in), Varints.getString(in));
+            state.onHand = Varints.getUnsigned(in);
+            state.reserved = Varints.getUnsigned(in);
+            state.reorderThreshold = Varints.getUnsigned(in);
+            state.maxCapacity = Varints.getUnsigned(in);
+            records.put(id, state);
+        }
+    }
+
+    private static void replaySegment(Path file, Map<Integer, RecordState> records) throws IOException {
+        StockMutation[] mutations = StockMutation.values();
+        for (ByteBuffer in : readFrames(file)) {
+            while (in.hasRemaining()) {
+                byte type = in.get();
+                int id = Varints.getUnsigned(in);
+                if (type == CREATE) {
+                    RecordState state = new RecordState(Varints.getString(in), Varints.getString(in));
+                    readState(in, state);
+                    records.put(id, state);
+                } else if (type == DROP) {
+                    records.remove(id);
+                } else {
+                    if (type < 0 || type >= mutations.length) {
+                        throw new IllegalStateException("Unknown log event type " + type + " in " + file);
+                    }
+                    Varints.getUnsigned(in); // the operation's argument, kept for auditing
+                    RecordState state = recordFor(records, id, file);
+                    readState(in, state);
+                    if (mutations[type] == StockMutation.CHANGE_LOCATION) {
+                        state.location = Varints.getString(in);
+                    } else if (mutations[type] == StockMutation.TRANSFER) {
+                        readState(in, recordFor(records, Varints.getUnsigned(in), file));
+                    }
+                }
+            }
+        }
+    }
+
+    private static RecordState recordFor(Map<Integer, RecordState> records, int id, Path file) {
+        RecordState state = records.get(id);
+        if (state == null) {
+            throw new IllegalStateException("Log event for unknown record " + id + " in " + file);
+        }
+        return state;
+    }
+
+    private static void readState(ByteBuffer in, RecordState state) {
+        state.onHand = Varints.getUnsigned(in);
+        state.reserved = Varints.getUnsigned(in);
+        state.reorderThreshold = Varints.getUnsigned(in);
+        state.maxCapacity = Varints.getUnsigned(in);
+    }
+
+    /**
+     * Mutable record state rebuilt during replay.
+     */
+    private static final class RecordState {
+        final String productId;
+        String location;
+        int onHand;
+        int reserved;
+        int reorderThreshold;
+        int maxCapacity;
+
+        RecordState(String productId, String location) {
+            this.productId = productId;
+            this.location = location;
+        }
+
+        static RecordState of(ProductStock stock) {
+            RecordState state = new RecordState(stock.getProductId(), stock.getLocation());
+            state.onHand = stock.getOnHand();
+            state.reserved = stock.getReserved();
+            state.reorderThreshold = stock.getReorderThreshold();
+            state.maxCapacity = stock.getMaxCapacity();
+            return state;
+        }
+
+        ProductStock toProductStock() {
+            ProductStock stock = new ProductStock(productId, location, onHand, reorderThreshold, maxCapacity);
+            if (reserved > 0) {
+                stock.reserve(reserved);
+            }
+            return stock;
+        }
+    }
+}
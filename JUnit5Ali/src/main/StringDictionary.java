@@ -0,0 +1,79 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for repeated strings such as productIds and location codes.
+ * <p>
+ * Each distinct string is stored once and assigned a dense {@code int} code
+ * (0, 1, 2, ...), so columns can hold codes instead of references. Not thread-safe.
+ */
+public class StringDictionary {
+
+    private final Map<String, Integer> codes;
+    private String[] values;
+    private int size;
+
+    public StringDictionary() {
+        this(16);
+    }
+
+    public StringDictionary(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must be >= 0");
+        }
+        this.codes = new HashMap<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+        this.values = new String[Math.max(16, expectedSize)];
+    }
+
+    /**
+     * Returns the code for the value, assigning the next free code on first use.
+     */
+    public int intern(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size + (size >> 1));
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Returns the code for the value, or -1 if it was never interned.
+     */
+    public int codeOf(String value) {
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    public String valueOf(int code) {
+        if (code < 0 || code >= size) {
+            throw new IllegalArgumentException("Unknown dictionary code: " + code);
+        }
+        return values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Approximate heap used by the dictionary, in bytes (64-bit JVM, compressed oops).
+     * Counts each distinct string once plus the lookup map and the code array.
+     */
+    public long footprintBytes() {
+        long bytes = 16L + values.length * 4L;
+        for (int i = 0; i < size; i++) {
+            bytes += MemoryLayout.stringBytes(values[i].length());
+            bytes += MemoryLayout.HASH_MAP_ENTRY_BYTES + MemoryLayout.BOXED_INTEGER_BYTES;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,254 @@
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Reservations with a time-to-live on top of a {@link StockRegistry}.
+ * <p>
+ * Each hold reserves its units through the registry right away and files its
+ * expiry in a {@link TimingWheel}, so scheduling, settling and expiring a
+ * hold are O(1) however many holds are pending. A background thread advances
+ * the wheel every tick and releases expired holds through
+ * {@link StockRegistry#releaseReservation(String, String, int)}, exactly as
+ * a manual release would. Holds are settled at most once: by
+ * {@link #ship(Hold)}, {@link #release(Hold)} or expiry, whichever comes first.
+ * <p>
+ * Expiry is accurate to one tick. If a hold's units are no longer reserved
+ * when it expires (for example because damaged stock trimmed the
+ * reservation), the release is skipped.
+ */
+public final class TimedReservations implements AutoCloseable {
+
+    static final long DEFAULT_TICK_MILLIS = 100;
+
+    private final StockRegistry registry;
+    private final long tickMillis;
+    private final LongSupplier clockMillis;
+    private final long originMillis;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimingWheel<Hold> wheel;   // guarded by lock
+    private final ScheduledExecutorService ticker;
+    private long expiredCount;               // guarded by lock
+
+    /**
+     * A reservation that is released automatically when its TTL runs out.
+     */
+    public static final class Hold {
+        private final String productId;
+        private final String location;
+        private final int amount;
+        private TimingWheel.Node<Hold> timer;   // guarded by the owner's lock
+
+        private Hold(String productId, String location, int amount) {
+            this.productId = productId;
+            this.location = location;
+            this.amount = amount;
+        }
+
+        public String getProductId() {
+            return productId;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public int getAmount() {
+            return amount;
+        }
+
+        @Override
+        public String toString() {
+            return "Hold{" +
+                   "productId='" + productId + '\'' +
+                   ", location='" + location + '\'' +
+                   ", amount=" + amount +
+                   '}';
+        }
+    }
+
+    public TimedReservations(StockRegistry registry) {
+        this(registry, DEFAULT_TICK_MILLIS);
+    }
+
+    public TimedReservations(StockRegistry registry, long tickMillis) {
+        this(registry, tickMillis, () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime()), true);
+    }
+
+    /**
+     * @param startTicker false to drive expiry manually with {@link #expireDue()}
+     */
+    TimedReservations(StockRegistry registry, long tickMillis, LongSupplier clockMillis, boolean startTicker) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry must not be null");
+        }
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be > 0");
+        }
+        this.registry = registry;
+        this.tickMillis = tickMillis;
+        this.clockMillis = clockMillis;
+        this.originMillis = clockMillis.getAsLong();
+        this.wheel = new TimingWheel<>(0);
+        if (startTicker) {
+            this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "reservation-expiry");
+                t.setDaemon(true);
+                return t;
+            });
+            ticker.scheduleAtFixedRate(this::expireDue, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.ticker = null;
+        }
+    }
+
+    /**
+     * Reserves {@code amount} units for at most {@code ttl}.
+     *
+     * @throws IllegalArgumentException if the amount or ttl is not positive or the record is unknown
+     * @throws IllegalStateException    if there is not enough available stock
+     */
+    public Hold reserve(String productId, String location, int amount, Duration ttl) {
+        long deadline = deadlineTick(ttl);
+        registry.reserve(productId, location, amount);
+        Hold hold = new Hold(productId, location, amount);
+        lock.lock();
+        try {
+            hold.timer = wheel.schedule(hold, deadline);
+        } finally {
+            lock.unlock();
+        }
+        return hold;
+    }
+
+    /**
+     * Pushes the expiry of a pending hold to {@code ttl} from now.
+     *
+     * @return false if the hold was already settled
+     */
+    public boolean extend(Hold hold, Duration ttl) {
+        long deadline = deadlineTick(ttl);
+        lock.lock();
+        try {
+            if (!hold.timer.isScheduled()) {
+                return false;
+            }
+            wheel.reschedule(hold.timer, deadline);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ships the held units.
+     *
+     * @throws IllegalStateException if the hold already expired or was settled
+     */
+    public void ship(Hold hold) {
+        if (!settle(hold)) {
+            throw new IllegalStateException("Hold has expired or was already settled");
+        }
+        registry.shipReserved(hold.productId, hold.location, hold.amount);
+    }
+
+    /**
+     * Releases the held units before the hold expires.
+     *
+     * @return false if the hold already expired or was settled
+     */
+    public boolean release(Hold hold) {
+        if (!settle(hold)) {
+            return false;
+        }
+        registry.releaseReservation(hold.productId, hold.location, hold.amount);
+        return true;
+    }
+
+    public boolean isPending(Hold hold) {
+        lock.lock();
+        try {
+            return hold.timer.isScheduled();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of holds not yet settled. */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return wheel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of holds released by expiry so far. */
+    public long expiredCount() {
+        lock.lock();
+        try {
+            return expiredCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases every hold whose TTL has run out. Called by the background
+     * ticker; releases happen outside the wheel's lock.
+     */
+    public void expireDue() {
+        List<Hold> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            wheel.advanceTo(currentTick(), expired::add);
+            expiredCount += expired.size();
+        } finally {
+            lock.unlock();
+        }
+        for (Hold hold : expired) {
+            try {
+                registry.releaseReservation(hold.productId, hold.location, hold.amount);
+            } catch (IllegalStateException | IllegalArgumentException ignored) {
+                // units no longer reserved, or the record was removed
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    // ---------- Helpers ----------
+
+    private boolean settle(Hold hold) {
+        lock.lock();
+        try {
+            return wheel.cancel(hold.timer);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long currentTick() {
+        return (clockMillis.getAsLong() - originMillis) / tickMillis;
+    }
+
+    private long deadlineTick(Duration ttl) {
+        if (ttl == null || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        long dueMillis = clockMillis.getAsLong() - originMillis + ttl.toMillis();
+        // round up so a hold never expires early
+        return (dueMillis + tickMillis - 1) / tickMillis;
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: {@value #LEVELS} levels of {@value #SLOTS} slots,
+ * each level covering 64 times the span of the one below.
+ * <p>
+ * Deadlines are absolute tick numbers. A timer is filed under the level
+ * matching its distance from the current tick, in a doubly linked slot list,
+ * so scheduling and cancelling are O(1). When a level wraps, the next
+ * slot of the level above is cascaded down; each timer moves at most
+ * {@value #LEVELS} times before it expires, so expiry is O(1) per timer too.
+ * <p>
+ * Not thread-safe; callers serialize access.
+ */
+final class TimingWheel<T> {
+
+    static final int SLOTS = 64;
+    static final int LEVELS = 6;
+
+    private static final int BITS = 6;
+    private static final int MASK = SLOTS - 1;
+    private static final long MAX_SPAN = (1L << (BITS * LEVELS)) - 1;
+
+    /**
+     * A scheduled timer. Owned by the wheel while {@link #isScheduled()}.
+     */
+    static final class Node<T> {
+        final T value;
+        long deadline;
+        private int slot = -1;
+        private Node<T> prev;
+        private Node<T> next;
+
+        private Node(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+
+        boolean isScheduled() {
+            return slot >= 0;
+        }
+    }
+
+    private final Node<T>[] slots;
+    private final long[] occupied = new long[LEVELS];   // one bit per non-empty slot
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimingWheel(long startTick) {
+        this.slots = (Node<T>[]) new Node[LEVELS * SLOTS];
+        this.currentTick = startTick;
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedules {@code value} to expire at {@code deadlineTick}. Deadlines at
+     * or before the current tick expire on the next advance.
+     */
+    Node<T> schedule(T value, long deadlineTick) {
+        Node<T> node = new Node<>(value, Math.max(deadlineTick, currentTick + 1));
+        file(node);
+        size++;
+        return node;
+    }
+
+    /**
+     * Moves a scheduled timer to a new deadline.
+     */
+    void reschedule(Node<T> node, long deadlineTick) {
+        if (!node.isScheduled()) {
+            throw new IllegalStateException("Timer is not scheduled");
+        }
+        unlink(node);
+        node.deadline = Math.max(deadlineTick, currentTick + 1);
+        file(node);
+    }
+
+    /**
+     * Removes a timer before it expires.
+     *
+     * @return false if it had already expired or been cancelled
+     */
+    boolean cancel(Node<T> node) {
+        if (!node.isScheduled()) {
+            return false;
+        }
+        unlink(node);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel to {@code tick}, handing every timer whose deadline
+     * has passed to {@code expired}, in deadline order.
+     */
+    void advanceTo(long tick, Consumer<T> expired) {
+        while (currentTick < tick) {
+            long next = nextEventTick();
+            if (next > tick) {
+                // nothing to cascade or expire on the way
+                currentTick = tick;
+                return;
+            }
+            // cascade every level that wraps at this tick, highest first
+            int wrapped = 0;
+            while (wrapped < LEVELS - 1 && ((next >>> (BITS * (wrapped + 1))) << (BITS * (wrapped + 1))) == next) {
+                wrapped++;
+            }
+            currentTick = next;
+            for (int level = wrapped; level >= 1; level--) {
+                cascade(level, (int) (next >>> (BITS * level)) & MASK);
+            }
+            expireSlot((int) next & MASK, expired);
+        }
+    }
+
+    /**
+     * The first tick after the current one at which an occupied slot is
+     * cascaded or expired, found from the occupancy bitmaps, so idle
+     * stretches are skipped instead of stepped through.
+     */
+    private long nextEventTick() {
+        long best = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS; level++) {
+            long bits = occupied[level];
+            if (bits == 0) {
+                continue;
+            }
+            int shift = BITS * level;
+            int current = (int) (currentTick >>> shift) & MASK;
+            long rotation = currentTick & ~((1L << (shift + BITS)) - 1);
+            // slots after the current one come up in this rotation, the rest in the next
+            long later = current == MASK ? 0 : bits & (-1L << (current + 1));
+            long tick = later != 0
+                    ? rotation + ((long) Long.numberOfTrailingZeros(later) << shift)
+                    : rotation + (1L << (shift + BITS)) + ((long) Long.numberOfTrailingZeros(bits) << shift);
+            best = Math.min(best, tick);
+        }
+        return best;
+    }
+
+    // ---------- Slot lists ----------
+
+    /**
+     * Files a timer by its distance from the current tick: level L holds
+     * distances in [64^L, 64^(L+1)), in the slot of the deadline's L-th
+     * 6-bit group. That slot is cascaded exactly when the lower groups of
+     * the clock reach zero on the way to the deadline. Deadlines beyond the
+     * top level are parked at its far end and refiled when they come round.
+     */
+    private void file(Node<T> node) {
+        long delta = Math.min(node.deadline - currentTick, MAX_SPAN);
+        long deadline = currentTick + delta;
+        int level = delta < SLOTS ? 0 : (63 - Long.numberOfLeadingZeros(delta)) / BITS;
+        int index = level * SLOTS + ((int) (deadline >>> (BITS * level)) & MASK);
+        Node<T> head = slots[index];
+        node.slot = index;
+        node.prev = null;
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        slots[index] = node;
+        occupied[level] |= 1L << (index & MASK);
+    }
+
+    private void unlink(Node<T> node) {
+        int index = node.slot;
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            slots[index] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+        if (slots[index] == null) {
+            occupied[index / SLOTS] &= ~(1L << (index & MASK));
+        }
+        node.slot = -1;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private Node<T> detach(int index) {
+        Node<T> head = slots[index];
+        slots[index] = null;
+        occupied[index / SLOTS] &= ~(1L << (index & MASK));
+        return head;
+    }
+
+    private void cascade(int level, int slot) {
+        if ((occupied[level] & (1L << slot)) == 0) {
+            return;
+        }
+        Node<T> node = detach(level * SLOTS + slot);
+        while (node != null) {
+            Node<T> next = node.next;
+            file(node);
+            node = next;
+        }
+    }
+
+    private void expireSlot(int slot, Consumer<T> expired) {
+        if ((occupied[0] & (1L << slot)) == 0) {
+            return;
+        }
+        Node<T> node = detach(slot);
+        while (node != null) {
+            Node<T> next = node.next;
+            if (node.deadline > currentTick) {
+                // parked beyond the top level, not due yet
+                file(node);
+                node = next;
+                continue;
+            }
+            node.slot = -1;
+            node.prev = null;
+            node.next = null;
+            size--;
+            expired.accept(node.value);
+            node = next;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * LEB128-style variable-length encoding of non-negative ints and longs, and of strings.
+ * Small quantities, which dominate stock data, take one or two bytes.
+ */
+final class Varints {
+
+    static final int MAX_INT_BYTES = 5;
+    static final int MAX_LONG_BYTES = 10;
+
+    private Varints() {
+    }
+
+    static void putUnsigned(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getUnsigned(ByteBuffer buffer) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static void putUnsignedLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getUnsignedLong(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static int sizeOfUnsigned(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string.
+     */
+    static void putString(ByteBuffer buffer, byte[] utf8) {
+        putUnsigned(buffer, utf8.length);
+        buffer.put(utf8);
+    }
+
+    static String getString(ByteBuffer buffer) {
+        int length = getUnsigned(buffer);
+        if (length > buffer.remaining()) {
+            throw new IllegalStateException("Malformed string length: " + length);
+        }
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator for {@link OrderService}: opens N checkouts at once, each
+ * blocking in authorization for a fixed latency, and reports throughput on
+ * virtual threads against a fixed pool of platform threads.
+ * <p>
+ * Usage: {@code OrderLoadGenerator [latencyMillis] [concurrency...]},
+ * defaulting to 50 ms and 10000 50000 100000. Add
+ * {@code -Djdk.tracePinnedThreads=full} to check that no request pins its
+ * carrier.
+ */
+public final class OrderLoadGenerator {
+
+    private static final int PLATFORM_THREADS = 200;
+    private static final int SKUS = 1_000;
+
+    private OrderLoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        long latencyMillis = args.length > 0 ? Long.parseLong(args[0]) : 50;
+        int[] levels = {10_000, 50_000, 100_000};
+        if (args.length > 1) {
+            levels = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                levels[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%-10s %12s %10s %14s %10s%n", "threads", "concurrency", "seconds", "orders/s", "shipped");
+        for (int concurrency : levels) {
+            run("virtual", concurrency, latencyMillis, null);
+            run("platform", concurrency, latencyMillis, Executors.newFixedThreadPool(PLATFORM_THREADS));
+        }
+    }
+
+    /**
+     * @param executor platform pool to run on, or null for the service's virtual threads
+     */
+    private static void run(String label, int concurrency, long latencyMillis, ExecutorService executor) {
+        StockRegistry registry = new StockRegistry();
+        for (int i = 0; i < SKUS; i++) {
+            registry.put(new ProductStock("SKU-" + i, "WH-1", 1_000_000, 0, 1_000_000));
+        }
+        OrderService.Authorizer authorizer = (orderId, lines) -> {
+            Thread.sleep(latencyMillis);
+            return true;
+        };
+        long start = System.nanoTime();
+        int shipped = 0;
+        try (OrderService service = executor == null
+                ? new OrderService(registry, authorizer)
+                : new OrderService(registry, authorizer, executor)) {
+            List<CompletableFuture<OrderService.Response>> responses = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                responses.add(service.checkout(i, List.of(new OrderLine("SKU-" + i % SKUS, "WH-1", 1))));
+            }
+            for (CompletableFuture<OrderService.Response> response : responses) {
+                if (response.join().status() == OrderService.Status.SHIPPED) {
+                    shipped++;
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.printf("%-10s %12d %10.2f %14.0f %10d%n", label, concurrency, seconds, concurrency / seconds, shipped);
+    }
+}
@@ -0,0 +1,154 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Long-running mixed workloads. Each test runs for {@code stress.seconds}
+ * (default 10) and then checks that no unit was created or lost.
+ */
+@Tag("performance")
+@DisplayName("Stock – Concurrency Stress")
+class StockStressTest {
+
+    private static final int SECONDS = Integer.getInteger("stress.seconds", 10);
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = Executors.newFixedThreadPool(THREADS + 1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pool.shutdownNow();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Lock-free stock conserves units under mixed load")
+    void lockFreeStockConservesUnits() throws Exception {
+        ConcurrentProductStock stock = new ConcurrentProductStock("1", "Nablus", 5_000, 100, 10_000);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                // added, reserved, released, shipped; damage removal is left
+                // out because it may trim reserved, which is not observable here
+                long[] totals = new long[4];
+                while (System.nanoTime() < deadline) {
+                    int amount = 1 + random.nextInt(5);
+                    try {
+                        switch (random.nextInt(4)) {
+                            case 0 -> { stock.addStock(amount); totals[0] += amount; }
+                            case 1 -> { stock.reserve(amount); totals[1] += amount; }
+                            case 2 -> { stock.releaseReservation(amount); totals[2] += amount; }
+                            default -> { stock.shipReserved(amount); totals[3] += amount; }
+                        }
+                    } catch (IllegalStateException ignored) {
+                        // rule violation for this amount right now, nothing changed
+                    }
+                }
+                return totals;
+            }));
+        }
+        Future<?> checker = pool.submit(() -> {
+            start.await();
+            while (System.nanoTime() < deadline) {
+                int onHand = stock.getOnHand();
+                int reserved = stock.getReserved();
+                assertTrue(onHand >= 0 && onHand <= stock.getMaxCapacity(), "onHand out of range: " + onHand);
+                assertTrue(reserved >= 0, "negative reserved: " + reserved);
+            }
+            return null;
+        });
+        start.countDown();
+
+        long[] sum = new long[4];
+        for (Future<long[]> worker : workers) {
+            long[] totals = worker.get(SECONDS + 30L, TimeUnit.SECONDS);
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += totals[i];
+            }
+        }
+        checker.get(30, TimeUnit.SECONDS);
+
+        assertEquals(5_000 + sum[0] - sum[3], stock.getOnHand());
+        assertEquals(sum[1] - sum[2] - sum[3], stock.getReserved());
+        assertTrue(stock.getReserved() <= stock.getOnHand());
+    }
+
+    @Test
+    @DisplayName("Overlapping batch reservations neither deadlock nor oversell")
+    void batchReservationsNeverDeadlock() throws Exception {
+        int skus = 16;
+        StockRegistry registry = new StockRegistry();
+        for (int i = 0; i < skus; i++) {
+            registry.put(new ProductStock("SKU-" + i, "WH-1", 1_000, 10, 1_000));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS);
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<long[]>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] held = new long[skus];
+                while (System.nanoTime() < deadline) {
+                    // random order of lines so lock ordering is actually exercised
+                    List<OrderLine> order = new ArrayList<>();
+                    int first = random.nextInt(skus);
+                    int lines = 1 + random.nextInt(4);
+                    for (int i = 0; i < lines; i++) {
+                        order.add(new OrderLine("SKU-" + (first + i * 5) % skus, "WH-1", 1 + random.nextInt(3)));
+                    }
+                    try {
+                        registry.reserveAll(order);
+                        for (OrderLine line : order) {
+                            held[Integer.parseInt(line.productId().substring(4))] += line.quantity();
+                        }
+                    } catch (IllegalStateException e) {
+                        // give some back so the run does not saturate
+                        int sku = random.nextInt(skus);
+                        if (held[sku] > 0) {
+                            int amount = (int) Math.min(held[sku], 10);
+                            registry.releaseReservation("SKU-" + sku, "WH-1", amount);
+                            held[sku] -= amount;
+                        }
+                    }
+                }
+                return held;
+            }));
+        }
+        start.countDown();
+
+        long[] held = new long[skus];
+        for (Future<long[]> worker : workers) {
+            long[] mine = worker.get(SECONDS + 30L, TimeUnit.SECONDS);
+            for (int i = 0; i < skus; i++) {
+                held[i] += mine[i];
+            }
+        }
+
+        for (int i = 0; i < skus; i++) {
+            ProductStock stock = registry.get("SKU-" + i, "WH-1");
+            assertEquals(held[i], stock.getReserved(), "SKU-" + i);
+            assertTrue(stock.getReserved() <= stock.getOnHand());
+        }
+    }
+}
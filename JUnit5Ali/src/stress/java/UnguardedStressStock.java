@@ -0,0 +1,84 @@
+import stress.StressStock;
+
+/**
+ * {@link ProductStock} shared without any lock, as seen by the jcstress tests.
+ */
+public class UnguardedStressStock implements StressStock {
+
+    private final ProductStock stock;
+
+    UnguardedStressStock(int onHand, int reserved, int maxCapacity) {
+        stock = new ProductStock("SKU-1", "WH-1", onHand, 0, maxCapacity);
+        if (reserved > 0) {
+            stock.reserve(reserved);
+        }
+    }
+
+    @Override
+    public boolean addStock(int amount) {
+        try {
+            stock.addStock(amount);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean removeDamaged(int amount) {
+        try {
+            stock.removeDamaged(amount);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean reserve(int amount) {
+        return stock.tryReserve(amount) == StockStatus.OK;
+    }
+
+    @Override
+    public boolean shipReserved(int amount) {
+        return stock.tryShipReserved(amount) == StockStatus.OK;
+    }
+
+    @Override
+    public boolean updateMaxCapacity(int newMaxCapacity) {
+        try {
+            stock.updateMaxCapacity(newMaxCapacity);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int getOnHand() {
+        return stock.getOnHand();
+    }
+
+    @Override
+    public int getReserved() {
+        return stock.getReserved();
+    }
+
+    @Override
+    public int getAvailable() {
+        return stock.getAvailable();
+    }
+
+    @Override
+    public int getMaxCapacity() {
+        return stock.getMaxCapacity();
+    }
+
+    public static final class Factory implements StressStock.Factory {
+
+        @Override
+        public StressStock create(int onHand, int reserved, int maxCapacity) {
+            return new UnguardedStressStock(onHand, reserved, maxCapacity);
+        }
+    }
+}
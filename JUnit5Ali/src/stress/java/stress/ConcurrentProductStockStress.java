@@ -0,0 +1,249 @@
+package stress;
+
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.II_Result;
+import org.openjdk.jcstress.infra.results.III_Result;
+import org.openjdk.jcstress.infra.results.ZZI_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * Races the ConcurrentProductStock mutators against each other. Every
+ * accepted outcome is the result of some serial order of the actors; any
+ * other outcome, including a broken invariant, is reported as forbidden.
+ * Outcome ids are regular expressions.
+ */
+public class ConcurrentProductStockStress {
+
+    private ConcurrentProductStockStress() {
+    }
+
+    /*
+     * onHand 10. reserve(8) | removeDamaged(5) | observe available.
+     * Reserve first: 10/8, then removal trims reserved to 5/5.
+     * Remove first: 5/0, then the reservation is rejected.
+     */
+    @JCStressTest
+    @Outcome(id = "(10|2|0), 5, 5", expect = ACCEPTABLE, desc = "reserve, then removal trims reserved")
+    @Outcome(id = "(10|5), 5, 0", expect = ACCEPTABLE, desc = "removal, then reservation rejected")
+    @Outcome(expect = FORBIDDEN, desc = "reserved > onHand or lost update")
+    @State
+    public static class ReserveVsRemoveDamaged {
+
+        private final StressStock stock = Stocks.LOCK_FREE.create(10, 0, 100);
+
+        @Actor
+        public void reserve() {
+            stock.reserve(8);
+        }
+
+        @Actor
+        public void remove() {
+            stock.removeDamaged(5);
+        }
+
+        @Actor
+        public void observe(III_Result r) {
+            r.r1 = stock.getAvailable();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            r.r2 = stock.getOnHand();
+            r.r3 = stock.getReserved();
+        }
+    }
+
+    /*
+     * onHand 10, reserved 6. reserve(4) | shipReserved(6) | observe available.
+     * Both orders end at 4/4; available is 4 or 0 in between, never negative.
+     */
+    @JCStressTest
+    @Outcome(id = "(4|0), 4, 4", expect = ACCEPTABLE, desc = "both applied in some order")
+    @Outcome(expect = FORBIDDEN, desc = "negative available or lost update")
+    @State
+    public static class ReserveVsShip {
+
+        private final StressStock stock = Stocks.LOCK_FREE.create(10, 6, 100);
+
+        @Actor
+        public void reserve() {
+            stock.reserve(4);
+        }
+
+        @Actor
+        public void ship() {
+            stock.shipReserved(6);
+        }
+
+        @Actor
+        public void observe(III_Result r) {
+            r.r1 = stock.getAvailable();
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            r.r2 = stock.getOnHand();
+            r.r3 = stock.getReserved();
+        }
+    }
+
+    /*
+     * onHand 10, reserved 8. removeDamaged(6) | shipReserved(8).
+     * Removal first trims reserved to 4/4 and the shipment is rejected;
+     * shipment first leaves 2/0 and the removal is rejected.
+     */
+    @JCStressTest
+    @Outcome(id = "4, 4", expect = ACCEPTABLE, desc = "removal, then shipment rejected")
+    @Outcome(id = "2, 0", expect = ACCEPTABLE, desc = "shipment, then removal rejected")
+    @Outcome(expect = FORBIDDEN, desc = "reserved > onHand or lost update")
+    @State
+    public static class RemoveDamagedVsShip {
+
+        private final StressStock stock = Stocks.LOCK_FREE.create(10, 8, 100);
+
+        @Actor
+        public void remove() {
+            stock.removeDamaged(6);
+        }
+
+        @Actor
+        public void ship() {
+            stock.shipReserved(8);
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            r.r1 = stock.getOnHand();
+            r.r2 = stock.getReserved();
+        }
+    }
+
+    /*
+     * onHand 50, maxCapacity 100. addStock(30) | updateMaxCapacity(60).
+     * Add first: 80 on hand, so the shrink is rejected.
+     * Shrink first: capacity 60, so the add is rejected.
+     */
+    @JCStressTest
+    @Outcome(id = "80, 100", expect = ACCEPTABLE, desc = "add, then shrink rejected")
+    @Outcome(id = "50, 60", expect = ACCEPTABLE, desc = "shrink, then add rejected")
+    @Outcome(expect = FORBIDDEN, desc = "onHand > maxCapacity or lost update")
+    @State
+    public static class AddStockVsShrinkCapacity {
+
+        private final StressStock stock = Stocks.LOCK_FREE.create(50, 0, 100);
+
+        @Actor
+        public void add() {
+            stock.addStock(30);
+        }
+
+        @Actor
+        public void shrink() {
+            stock.updateMaxCapacity(60);
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            r.r1 = stock.getOnHand();
+            r.r2 = stock.getMaxCapacity();
+        }
+    }
+
+    /*
+     * onHand 50, maxCapacity 100. addStock(30) | updateMaxCapacity(120), updateMaxCapacity(60).
+     * Two capacity changes must not let an add checked against the old
+     * limit land after the shrink: 80 on hand under a 60 cap is forbidden.
+     */
+    @JCStressTest
+    @Outcome(id = "80, 120", expect = ACCEPTABLE, desc = "add before the shrink, shrink rejected")
+    @Outcome(id = "50, 60", expect = ACCEPTABLE, desc = "both changes, then add rejected")
+    @Outcome(expect = FORBIDDEN, desc = "onHand > maxCapacity or lost update")
+    @State
+    public static class AddStockVsTwoCapacityChanges {
+
+        private final StressStock stock = Stocks.LOCK_FREE.create(50, 0, 100);
+
+        @Actor
+        public void add() {
+            stock.addStock(30);
+        }
+
+        @Actor
+        public void growThenShrink() {
+            stock.updateMaxCapacity(120);
+            stock.updateMaxCapacity(60);
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            r.r1 = stock.getOnHand();
+            r.r2 = stock.getMaxCapacity();
+        }
+    }
+
+    /*
+     * onHand 50, maxCapacity 100. addStock(40) | removeDamaged(30) | updateMaxCapacity(60).
+     * The six serial orders end at 60/60, 60/100 (add, shrink rejected,
+     * remove) or 20/60 (shrink, add rejected, remove).
+     */
+    @JCStressTest
+    @Outcome(id = "60, 60", expect = ACCEPTABLE, desc = "shrink applied after onHand fit")
+    @Outcome(id = "60, 100", expect = ACCEPTABLE, desc = "add, shrink rejected, remove")
+    @Outcome(id = "20, 60", expect = ACCEPTABLE, desc = "shrink, add rejected, remove")
+    @Outcome(expect = FORBIDDEN, desc = "onHand > maxCapacity or lost update")
+    @State
+    public static class AddRemoveVsShrinkCapacity {
+
+        private final StressStock stock = Stocks.LOCK_FREE.create(50, 0, 100);
+
+        @Actor
+        public void add() {
+            stock.addStock(40);
+        }
+
+        @Actor
+        public void remove() {
+            stock.removeDamaged(30);
+        }
+
+        @Actor
+        public void shrink() {
+            stock.updateMaxCapacity(60);
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            r.r1 = stock.getOnHand();
+            r.r2 = stock.getMaxCapacity();
+        }
+    }
+
+    /*
+     * onHand 10. reserve(6) | reserve(6). Exactly one may succeed.
+     */
+    @JCStressTest
+    @Outcome(id = {"true, false, 6", "false, true, 6"}, expect = ACCEPTABLE, desc = "one reservation wins")
+    @Outcome(expect = FORBIDDEN, desc = "oversold or lost update")
+    @State
+    public static class CompetingReservations {
+
+        private final StressStock stock = Stocks.LOCK_FREE.create(10, 0, 100);
+
+        @Actor
+        public void first(ZZI_Result r) {
+            r.r1 = stock.reserve(6);
+        }
+
+        @Actor
+        public void second(ZZI_Result r) {
+            r.r2 = stock.reserve(6);
+        }
+
+        @Arbiter
+        public void arbiter(ZZI_Result r) {
+            r.r3 = stock.getReserved();
+        }
+    }
+}
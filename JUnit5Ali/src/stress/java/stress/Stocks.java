@@ -0,0 +1,24 @@
+package stress;
+
+/**
+ * Factories for the default-package {@link StressStock} implementations.
+ */
+final class Stocks {
+
+    /** ConcurrentProductStock, the lock-free record. */
+    static final StressStock.Factory LOCK_FREE = load("ConcurrentStressStock$Factory");
+
+    /** ProductStock shared without a lock; expected to break. */
+    static final StressStock.Factory UNGUARDED = load("UnguardedStressStock$Factory");
+
+    private Stocks() {
+    }
+
+    private static StressStock.Factory load(String className) {
+        try {
+            return (StressStock.Factory) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load stress stock " + className, e);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package stress;
+
+/**
+ * One stock record as raced by the jcstress tests in this package.
+ * <p>
+ * jcstress only accepts tests in a named package, while the stock classes
+ * live in the default package, which named packages cannot reference. The
+ * implementations therefore sit in the default package and are loaded by
+ * name through {@link Stocks}. Mutators report a rejected request as
+ * {@code false} instead of throwing.
+ */
+public interface StressStock {
+
+    boolean addStock(int amount);
+
+    boolean removeDamaged(int amount);
+
+    boolean reserve(int amount);
+
+    boolean shipReserved(int amount);
+
+    boolean updateMaxCapacity(int newMaxCapacity);
+
+    int getOnHand();
+
+    int getReserved();
+
+    /** Single consistent read of onHand - reserved. */
+    int getAvailable();
+
+    int getMaxCapacity();
+
+    interface Factory {
+
+        StressStock create(int onHand, int reserved, int maxCapacity);
+    }
+}
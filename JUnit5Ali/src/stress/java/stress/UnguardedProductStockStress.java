@@ -0,0 +1,47 @@
+package stress;
+
+import org.openjdk.jcstress.annotations.*;
+import org.openjdk.jcstress.infra.results.ZZI_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE_INTERESTING;
+
+/**
+ * Shows why a plain ProductStock must only be shared under a lock (as
+ * StockRegistry does) or replaced by ConcurrentProductStock: the same race
+ * that {@link ConcurrentProductStockStress.CompetingReservations} forbids
+ * does happen here.
+ */
+public class UnguardedProductStockStress {
+
+    private UnguardedProductStockStress() {
+    }
+
+    /*
+     * onHand 10. reserve(6) | reserve(6) on an unguarded ProductStock.
+     */
+    @JCStressTest
+    @Outcome(id = {"true, false, 6", "false, true, 6"}, expect = ACCEPTABLE, desc = "one reservation wins")
+    @Outcome(id = "true, true, 12", expect = ACCEPTABLE_INTERESTING, desc = "oversold: reserved > onHand")
+    @Outcome(id = "true, true, 6", expect = ACCEPTABLE_INTERESTING, desc = "lost update")
+    @State
+    public static class CompetingReservations {
+
+        private final StressStock stock = Stocks.UNGUARDED.create(10, 0, 100);
+
+        @Actor
+        public void first(ZZI_Result r) {
+            r.r1 = stock.reserve(6);
+        }
+
+        @Actor
+        public void second(ZZI_Result r) {
+            r.r2 = stock.reserve(6);
+        }
+
+        @Arbiter
+        public void arbiter(ZZI_Result r) {
+            r.r3 = stock.getReserved();
+        }
+    }
+}
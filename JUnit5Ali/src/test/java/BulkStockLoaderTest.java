@@ -0,0 +1,241 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("BulkStockLoader – Parallel Feed Import")
+class BulkStockLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    private StockRegistry registry;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StockRegistry();
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private Path csv(String content) throws IOException {
+        Path file = dir.resolve("feed.csv");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private static String rows(int count) {
+        StringBuilder sb = new StringBuilder("productId,location,onHand,reorderThreshold,maxCapacity\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("P").append(i).append(",WH-").append(i % 7).append(',')
+              .append(i % 100).append(",5,100\n");
+        }
+        return sb.toString();
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("CSV feeds")
+    class CsvTests {
+
+        @Test
+        void validRowsAreLoaded() throws IOException {
+            Path file = csv("productId,location,onHand,reorderThreshold,maxCapacity\n"
+                            + "1,WH-1-A3,50,5,100\n"
+                            + "2, WH-2-B1 , 7 ,0,10\r\n"
+                            + "\n"
+                            + "3,WH-1-A3,0,0,1");
+
+            BulkStockLoader.Report report = new BulkStockLoader(registry, pool).loadCsv(file);
+
+            assertEquals(3, report.loaded());
+            assertEquals(0, report.rejectedCount());
+            ProductStock stock = registry.get("2", "WH-2-B1");
+            assertEquals(7, stock.getOnHand());
+            assertEquals(0, stock.getReorderThreshold());
+            assertEquals(10, stock.getMaxCapacity());
+        }
+
+        @Test
+        void invalidRowsAreReportedAndSkipped() throws IOException {
+            Path file = csv("1,WH-1,50,5,100\n"
+                            + "2,WH-1,500,5,100\n"
+                            + " ,WH-1,1,1,10\n"
+                            + "4,WH-1,-3,5,100\n"
+                            + "5,WH-1,x,5,100\n"
+                            + "6,WH-1,1,5\n"
+                            + "7,WH-1,1,5,99999999999\n"
+                            + "1,WH-1,9,9,90\n"
+                            + "9,WH-1,1,1,10\n");
+
+            BulkStockLoader.Report report = new BulkStockLoader(registry, pool).loadCsv(file);
+
+            assertEquals(2, report.loaded());
+            assertEquals(List.of(
+                    new BulkStockLoader.Rejection(2, "initialOnHand exceeds maxCapacity"),
+                    new BulkStockLoader.Rejection(3, "productId must not be null or blank"),
+                    new BulkStockLoader.Rejection(4, "initialOnHand must be >= 0"),
+                    new BulkStockLoader.Rejection(5, "initialOnHand is not a number"),
+                    new BulkStockLoader.Rejection(6, "Expected 5 fields"),
+                    new BulkStockLoader.Rejection(7, "maxCapacity is not a number"),
+                    new BulkStockLoader.Rejection(8, "Duplicate stock for product 1 at WH-1")
+            ), report.rejections());
+            assertEquals(50, registry.get("1", "WH-1").getOnHand());
+        }
+
+        @Test
+        void smallChunksLoadEveryRowOnce() throws IOException {
+            Path file = csv(rows(2000) + "bad,row\n");
+
+            BulkStockLoader.Report report = new BulkStockLoader(registry, pool, 97).loadCsv(file);
+
+            assertEquals(2000, report.loaded());
+            assertEquals(2000, registry.size());
+            assertEquals(List.of(new BulkStockLoader.Rejection(2002, "Expected 5 fields")), report.rejections());
+            assertEquals(99, registry.get("P1999", "WH-4").getOnHand());
+        }
+
+        @Test
+        void rejectionsKeepFileOrderAcrossChunks() throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 1; i <= 500; i++) {
+                sb.append(i % 50 == 0 ? "," : "P" + i).append(",WH,1,1,10\n");
+            }
+
+            BulkStockLoader.Report report = new BulkStockLoader(registry, pool, 64).loadCsv(csv(sb.toString()));
+
+            assertEquals(490, report.loaded());
+            List<Long> rows = report.rejections().stream().map(BulkStockLoader.Rejection::row).toList();
+            assertEquals(List.of(50L, 100L, 150L, 200L, 250L, 300L, 350L, 400L, 450L, 500L), rows);
+        }
+
+        @Test
+        void overLongRowRejectsOnlyItself() throws IOException {
+            String feed = "1,WH-1,5,1,10\n"
+                          + "2".repeat(BulkStockLoader.MAX_ROW_BYTES + 10) + ",WH-1,1,1,10\n"
+                          + "3,WH-1,7,1,10\n"
+                          + "4,WH-1,8,1,10\n";
+            Path file = csv(feed);
+            List<BulkStockLoader.Rejection> expected = List.of(
+                    new BulkStockLoader.Rejection(2, "Row longer than " + BulkStockLoader.MAX_ROW_BYTES + " bytes"));
+
+            for (int chunkBytes : new int[]{64, 4096, 1 << 20}) {
+                StockRegistry loaded = new StockRegistry();
+                BulkStockLoader.Report report = new BulkStockLoader(loaded, pool, chunkBytes).loadCsv(file);
+
+                assertEquals(3, report.loaded(), "chunk " + chunkBytes);
+                assertEquals(expected, report.rejections(), "chunk " + chunkBytes);
+                assertEquals(8, loaded.get("4", "WH-1").getOnHand());
+            }
+        }
+
+        @Test
+        void emptyFileLoadsNothing() throws IOException {
+            BulkStockLoader.Report report = new BulkStockLoader(registry, pool).loadCsv(csv(""));
+
+            assertEquals(0, report.loaded());
+            assertEquals(0, registry.size());
+        }
+    }
+
+    @Nested
+    @DisplayName("Binary feeds")
+    class BinaryTests {
+
+        private List<ProductStock> stocks(int count) {
+            List<ProductStock> stocks = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                stocks.add(new ProductStock("P" + i, "WH-" + (i % 7), i % 100, 5, 100));
+            }
+            return stocks;
+        }
+
+        @Test
+        void roundTripAcrossBlocks() throws IOException {
+            Path file = dir.resolve("feed.bin");
+            BulkStockLoader.writeBinary(file, stocks(10_000));
+
+            BulkStockLoader.Report report = new BulkStockLoader(registry, pool, 4096).loadBinary(file);
+
+            assertEquals(10_000, report.loaded());
+            assertEquals(0, report.rejectedCount());
+            ProductStock stock = registry.get("P9999", "WH-3");
+            assertEquals(99, stock.getOnHand());
+            assertEquals(5, stock.getReorderThreshold());
+            assertEquals(100, stock.getMaxCapacity());
+        }
+
+        @Test
+        void invalidRecordsAreValidatedLikeTheConstructor() throws IOException {
+            Path file = dir.resolve("feed.bin");
+            ByteBuffer block = ByteBuffer.allocate(64);
+            block.putInt(BulkStockLoader.MAGIC).putInt(BulkStockLoader.VERSION).putInt(2).putInt(0);
+            int start = block.position();
+            Varints.putString(block, "1".getBytes());
+            Varints.putString(block, "WH".getBytes());
+            Varints.putUnsigned(block, 5);
+            Varints.putUnsigned(block, 0);
+            Varints.putUnsigned(block, 0);
+            Varints.putString(block, "2".getBytes());
+            Varints.putString(block, "WH".getBytes());
+            Varints.putUnsigned(block, 5);
+            Varints.putUnsigned(block, 0);
+            Varints.putUnsigned(block, 10);
+            block.putInt(12, block.position() - start).flip();
+            write(file, block);
+
+            BulkStockLoader.Report report = new BulkStockLoader(registry, pool).loadBinary(file);
+
+            assertEquals(1, report.loaded());
+            assertEquals(List.of(new BulkStockLoader.Rejection(1, "maxCapacity must be > 0")), report.rejections());
+        }
+
+        @Test
+        void truncatedBlockIsReportedAndEarlierBlocksLoad() throws IOException {
+            Path file = dir.resolve("feed.bin");
+            BulkStockLoader.writeBinary(file, stocks(BulkStockLoader.RECORDS_PER_BLOCK + 10));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 5);
+            }
+
+            BulkStockLoader.Report report = new BulkStockLoader(registry, pool).loadBinary(file);
+
+            assertEquals(BulkStockLoader.RECORDS_PER_BLOCK, report.loaded());
+            assertEquals(1, report.rejectedCount());
+            assertEquals(BulkStockLoader.RECORDS_PER_BLOCK + 1, report.rejections().get(0).row());
+        }
+
+        @Test
+        void notAFeedIsRejected() throws IOException {
+            Path file = csv(rows(3));
+
+            IllegalStateException ex = assertThrows(IllegalStateException.class,
+                    () -> new BulkStockLoader(registry, pool).loadBinary(file));
+            assertEquals("Not a stock feed file", ex.getMessage());
+        }
+
+        private void write(Path file, ByteBuffer content) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("ColumnarStockStore – Structure-of-arrays Store")
+class ColumnarStockStoreTest {
+
+    private ColumnarStockStore store;
+    private int handle;
+
+    @BeforeEach
+    void setUp() {
+        store = new ColumnarStockStore(4);
+        handle = store.add("1", "Nablus", 50, 5, 100);
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Records and handles")
+    class RecordTests {
+
+        @Test
+        void addAndRead() {
+            assertEquals("1", store.getProductId(handle));
+            assertEquals("Nablus", store.getLocation(handle));
+            assertEquals(50, store.getOnHand(handle));
+            assertEquals(0, store.getReserved(handle));
+            assertEquals(5, store.getReorderThreshold(handle));
+            assertEquals(100, store.getMaxCapacity(handle));
+        }
+
+        @Test
+        void findByKey() {
+            int other = store.add("1", "Jenin", 3, 5, 100);
+
+            assertEquals(handle, store.find("1", "Nablus"));
+            assertEquals(other, store.find("1", "Jenin"));
+            assertEquals(-1, store.find("2", "Nablus"));
+        }
+
+        @Test
+        void duplicateKeyFails() {
+            assertThrows(IllegalStateException.class, () -> store.add("1", "Nablus", 1, 0, 10));
+        }
+
+        @Test
+        void constructorRulesApply() {
+            Exception exception = assertThrows(IllegalArgumentException.class,
+                    () -> store.add("2", "Nablus", 200, 5, 100));
+            assertEquals("initialOnHand exceeds maxCapacity", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> store.add(" ", "Nablus", 1, 0, 10));
+        }
+
+        @Test
+        void unknownHandleFails() {
+            assertThrows(IllegalArgumentException.class, () -> store.getOnHand(7));
+        }
+
+        @Test
+        void growsPastInitialCapacity() {
+            for (int i = 0; i < 100; i++) {
+                store.add("p" + i, "WH-1-A" + (i % 3), i, 0, 1000);
+            }
+            assertEquals(101, store.size());
+            assertEquals(42, store.getOnHand(store.find("p42", "WH-1-A0")));
+        }
+
+        @Test
+        void changeLocationRekeys() {
+            store.changeLocation(handle, "Jenin");
+
+            assertEquals(-1, store.find("1", "Nablus"));
+            assertEquals(handle, store.find("1", "Jenin"));
+            // the old key is free again
+            store.add("1", "Nablus", 1, 0, 10);
+        }
+
+        @Test
+        void relocationChurnLeavesOnlyTheCurrentKey() {
+            for (int i = 0; i < 1_000; i++) {
+                store.changeLocation(handle, "WH-" + i);
+            }
+            assertEquals(handle, store.find("1", "WH-999"));
+            assertEquals(-1, store.find("1", "WH-998"));
+            assertEquals(-1, store.find("1", "Nablus"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Operations")
+    class OperationTests {
+
+        @Test
+        void reserveReleaseShip() {
+            store.reserve(handle, 20);
+            store.releaseReservation(handle, 5);
+            store.shipReserved(handle, 10);
+
+            assertEquals(40, store.getOnHand(handle));
+            assertEquals(5, store.getReserved(handle));
+            assertEquals(35, store.getAvailable(handle));
+        }
+
+        @Test
+        void sameMessagesAsProductStock() {
+            Exception exception = assertThrows(IllegalStateException.class, () -> store.reserve(handle, 51));
+            assertEquals("Insufficient available stock to reserve", exception.getMessage());
+            exception = assertThrows(IllegalStateException.class, () -> store.addStock(handle, 51));
+            assertEquals("Cannot add stock beyond maxCapacity", exception.getMessage());
+        }
+
+        @Test
+        void removeDamagedClampsReserved() {
+            store.reserve(handle, 40);
+            store.removeDamaged(handle, 20);
+            assertEquals(30, store.getReserved(handle));
+        }
+
+        @Test
+        void updateLimits() {
+            store.updateReorderThreshold(handle, 80);
+            store.updateMaxCapacity(handle, 60);
+
+            assertEquals(60, store.getReorderThreshold(handle));
+            assertTrue(store.isReorderNeeded(handle));
+            assertThrows(IllegalStateException.class, () -> store.updateMaxCapacity(handle, 10));
+        }
+
+        @Test
+        void viewDelegatesToColumns() {
+            ColumnarStockStore.View view = store.view(handle);
+            view.reserve(10);
+
+            assertEquals(10, store.getReserved(handle));
+            assertEquals(40, view.getAvailable());
+
+            int other = store.add("2", "Jenin", 3, 5, 100);
+            assertTrue(view.moveTo(other).isReorderNeeded());
+        }
+
+        @Test
+        void roundTripThroughProductStock() {
+            store.reserve(handle, 7);
+            ProductStock stock = store.toProductStock(handle);
+
+            ColumnarStockStore copy = new ColumnarStockStore();
+            int h = copy.add(stock);
+            assertEquals(7, copy.getReserved(h));
+            assertEquals(stock.toString(), copy.view(h).toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Columnar layout is smaller than one object per SKU")
+    void footprintComparison() {
+        int records = 100_000;
+        ColumnarStockStore large = new ColumnarStockStore(records);
+        for (int i = 0; i < records; i++) {
+            large.add("SKU-" + (i / 10), "WH-" + (i % 10) + "-A3", 10, 1, 100);
+        }
+        long columnar = large.footprintBytes();
+        long objects = ColumnarStockStore.objectPerSkuBytes(records, 8, 7);
+
+        assertTrue(columnar * 3 < objects,
+                "columnar=" + columnar + " bytes, object-per-SKU=" + objects + " bytes");
+    }
+}
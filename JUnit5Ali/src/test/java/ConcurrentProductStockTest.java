@@ -0,0 +1,262 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("ConcurrentProductStock – Lock-free Variant")
+class ConcurrentProductStockTest {
+
+    private ConcurrentProductStock stock;
+
+    @BeforeEach
+    void setUp() {
+        stock = new ConcurrentProductStock("1", "Nablus", 50, 5, 100);
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Same rules as ProductStock")
+    class ParityTests {
+
+        @Test
+        void validConstructor() {
+            assertEquals("1", stock.getProductId());
+            assertEquals("Nablus", stock.getLocation());
+            assertEquals(50, stock.getOnHand());
+            assertEquals(0, stock.getReserved());
+            assertEquals(5, stock.getReorderThreshold());
+            assertEquals(100, stock.getMaxCapacity());
+        }
+
+        @Test
+        void constructorMessagesMatch() {
+            Exception exception = assertThrows(IllegalArgumentException.class,
+                    () -> new ConcurrentProductStock("1", "Nablus", 200, 5, 100));
+            assertEquals("initialOnHand exceeds maxCapacity", exception.getMessage());
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {0, -1})
+        void nonPositiveAmountsFail(int amount) {
+            assertThrows(IllegalArgumentException.class, () -> stock.addStock(amount));
+            assertThrows(IllegalArgumentException.class, () -> stock.reserve(amount));
+            assertThrows(IllegalArgumentException.class, () -> stock.releaseReservation(amount));
+            assertThrows(IllegalArgumentException.class, () -> stock.shipReserved(amount));
+            assertThrows(IllegalArgumentException.class, () -> stock.removeDamaged(amount));
+        }
+
+        @Test
+        void reserveMoreThanAvailableFails() {
+            Exception exception = assertThrows(IllegalStateException.class, () -> stock.reserve(51));
+            assertEquals("Insufficient available stock to reserve", exception.getMessage());
+        }
+
+        @Test
+        void addBeyondCapacityFails() {
+            Exception exception = assertThrows(IllegalStateException.class, () -> stock.addStock(51));
+            assertEquals("Cannot add stock beyond maxCapacity", exception.getMessage());
+        }
+
+        @Test
+        void reserveReleaseShip() {
+            stock.reserve(20);
+            stock.releaseReservation(5);
+            stock.shipReserved(10);
+
+            assertEquals(40, stock.getOnHand());
+            assertEquals(5, stock.getReserved());
+            assertEquals(35, stock.getAvailable());
+        }
+
+        @Test
+        void shipMoreThanReservedFails() {
+            stock.reserve(5);
+            assertThrows(IllegalStateException.class, () -> stock.shipReserved(10));
+        }
+
+        @Test
+        void removeDamagedClampsReserved() {
+            stock.reserve(40);
+            stock.removeDamaged(20);
+
+            assertEquals(30, stock.getOnHand());
+            assertEquals(30, stock.getReserved());
+        }
+
+        @Test
+        void updateMaxCapacityClampsThreshold() {
+            stock.updateReorderThreshold(80);
+            stock.updateMaxCapacity(60);
+
+            assertEquals(60, stock.getMaxCapacity());
+            assertEquals(60, stock.getReorderThreshold());
+        }
+
+        @Test
+        void updateCapacityBelowOnHandFails() {
+            assertThrows(IllegalStateException.class, () -> stock.updateMaxCapacity(10));
+            // a failed update must not leave the stock frozen
+            stock.addStock(50);
+            assertEquals(100, stock.getOnHand());
+        }
+
+        @Test
+        void reorderNeeded() {
+            stock.reserve(46);
+            assertTrue(stock.isReorderNeeded());
+        }
+    }
+
+    @Nested
+    @DisplayName("Non-throwing operations")
+    class TryOperationTests {
+
+        @Test
+        void tryOperationsReportStatus() {
+            assertEquals(StockStatus.INVALID_AMOUNT, stock.tryReserve(0));
+            assertEquals(StockStatus.INSUFFICIENT_AVAILABLE, stock.tryReserve(51));
+            assertEquals(StockStatus.OK, stock.tryReserve(20));
+            assertEquals(StockStatus.INSUFFICIENT_RESERVED, stock.tryReleaseReservation(21));
+            assertEquals(StockStatus.INSUFFICIENT_RESERVED, stock.tryShipReserved(21));
+            assertEquals(StockStatus.OK, stock.tryShipReserved(5));
+            assertEquals(StockStatus.OK, stock.tryReleaseReservation(5));
+
+            assertEquals(45, stock.getOnHand());
+            assertEquals(10, stock.getReserved());
+        }
+
+        @Test
+        @Timeout(10)
+        void concurrentTryReserveNeverOversells() throws Exception {
+            int threads = 8;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int reserved = 0;
+                    while (stock.tryReserve(1) == StockStatus.OK) {
+                        reserved++;
+                    }
+                    return reserved;
+                }));
+            }
+            start.countDown();
+
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+            assertEquals(50, total);
+            assertEquals(0, stock.getAvailable());
+        }
+    }
+
+    @Nested
+    @DisplayName("Concurrent access")
+    class ConcurrencyTests {
+
+        @Test
+        @Timeout(10)
+        void concurrentReservationsNeverOversell() throws Exception {
+            int threads = 8;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int reserved = 0;
+                    while (true) {
+                        try {
+                            stock.reserve(1);
+                            reserved++;
+                        } catch (IllegalStateException e) {
+                            return reserved;
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+            assertEquals(50, total);
+            assertEquals(50, stock.getReserved());
+            assertEquals(0, stock.getAvailable());
+        }
+
+        @Test
+        @Timeout(10)
+        void addStockRacingCapacityChangesStaysWithinCapacity() throws Exception {
+            ExecutorService pool = Executors.newFixedThreadPool(3);
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> adder = pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 20_000; i++) {
+                    try {
+                        stock.addStock(1);
+                    } catch (IllegalStateException ignored) {
+                        // capacity reached, keep racing
+                    }
+                    int onHand = stock.getOnHand();
+                    if (onHand > 0) {
+                        try {
+                            stock.removeDamaged(1);
+                        } catch (IllegalStateException ignored) {
+                            // raced with another removal
+                        }
+                    }
+                }
+                return null;
+            });
+            Future<?> resizer = pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 20_000; i++) {
+                    try {
+                        stock.updateMaxCapacity(i % 2 == 0 ? 60 : 100);
+                    } catch (IllegalStateException ignored) {
+                        // onHand currently above 60
+                    }
+                }
+                return null;
+            });
+            Future<?> checker = pool.submit(() -> {
+                start.await();
+                while (!adder.isDone() || !resizer.isDone()) {
+                    int reserved = stock.getReserved();
+                    int available = stock.getAvailable();
+                    assertTrue(reserved >= 0 && available >= 0);
+                }
+                return null;
+            });
+            start.countDown();
+
+            adder.get();
+            resizer.get();
+            checker.get();
+            pool.shutdown();
+
+            assertTrue(stock.getOnHand() <= stock.getMaxCapacity());
+        }
+    }
+}
@@ -0,0 +1,320 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("HotProductStock – Split Counters")
+class HotProductStockTest {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private HotProductStock stock;
+
+    @BeforeEach
+    void setUp() {
+        stock = new HotProductStock("1", "Nablus", 50, 5, 100);
+    }
+
+    /** A record that only splits or collapses when told to. */
+    private static HotProductStock manual(int onHand, int buckets) {
+        return new HotProductStock("1", "Nablus", onHand, 5, 1000, buckets, Integer.MAX_VALUE, NEVER, 0);
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Same rules as ProductStock")
+    class ParityTests {
+
+        @Test
+        void validConstructor() {
+            assertEquals("1", stock.getProductId());
+            assertEquals("Nablus", stock.getLocation());
+            assertEquals(50, stock.getOnHand());
+            assertEquals(0, stock.getReserved());
+            assertEquals(5, stock.getReorderThreshold());
+            assertEquals(100, stock.getMaxCapacity());
+            assertFalse(stock.isSplit());
+        }
+
+        @Test
+        void constructorMessagesMatch() {
+            Exception exception = assertThrows(IllegalArgumentException.class,
+                    () -> new HotProductStock("1", "Nablus", 200, 5, 100));
+            assertEquals("initialOnHand exceeds maxCapacity", exception.getMessage());
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {0, -1})
+        void nonPositiveAmountsFail(int amount) {
+            assertThrows(IllegalArgumentException.class, () -> stock.addStock(amount));
+            assertThrows(IllegalArgumentException.class, () -> stock.reserve(amount));
+            assertThrows(IllegalArgumentException.class, () -> stock.releaseReservation(amount));
+            assertThrows(IllegalArgumentException.class, () -> stock.shipReserved(amount));
+            assertThrows(IllegalArgumentException.class, () -> stock.removeDamaged(amount));
+        }
+
+        @Test
+        void reserveReleaseShip() {
+            stock.reserve(20);
+            stock.releaseReservation(5);
+            stock.shipReserved(10);
+
+            assertEquals(40, stock.getOnHand());
+            assertEquals(5, stock.getReserved());
+            assertEquals(35, stock.getAvailable());
+        }
+
+        @Test
+        void failedUpdatesDoNotLeaveTheRecordLocked() {
+            Exception exception = assertThrows(IllegalStateException.class, () -> stock.addStock(51));
+            assertEquals("Cannot add stock beyond maxCapacity", exception.getMessage());
+            assertThrows(IllegalStateException.class, () -> stock.updateMaxCapacity(10));
+            assertThrows(IllegalStateException.class, () -> stock.removeDamaged(51));
+
+            stock.addStock(50);
+            assertEquals(100, stock.getOnHand());
+        }
+
+        @Test
+        void removeDamagedClampsReserved() {
+            stock.reserve(40);
+            stock.removeDamaged(20);
+
+            assertEquals(30, stock.getOnHand());
+            assertEquals(30, stock.getReserved());
+        }
+    }
+
+    @Nested
+    @DisplayName("Split mode")
+    class SplitTests {
+
+        @Test
+        void bucketUnitsStillCountAsAvailable() {
+            HotProductStock hot = manual(1000, 4);
+            hot.split();
+            hot.reserve(10);
+
+            assertTrue(hot.isSplit());
+            assertEquals(1000, hot.getOnHand());
+            assertEquals(10, hot.getReserved());
+            assertEquals(990, hot.getAvailable());
+        }
+
+        @Test
+        void reservationDrawsOnOtherBucketsBeforeFailing() {
+            HotProductStock hot = manual(100, 4);
+            hot.split();
+            hot.reserve(1);
+            // this thread's bucket now holds part of the rest; ask for everything else
+            assertEquals(StockStatus.OK, hot.tryReserve(99));
+            assertEquals(StockStatus.INSUFFICIENT_AVAILABLE, hot.tryReserve(1));
+            assertEquals(100, hot.getReserved());
+            assertEquals(0, hot.getAvailable());
+        }
+
+        @Test
+        void releaseCannotTakeUnitsParkedInBuckets() {
+            HotProductStock hot = manual(1000, 4);
+            hot.split();
+            hot.reserve(5);
+
+            Exception exception = assertThrows(IllegalStateException.class, () -> hot.releaseReservation(6));
+            assertEquals("Cannot release more than reserved", exception.getMessage());
+            assertEquals(StockStatus.INSUFFICIENT_RESERVED, hot.tryShipReserved(6));
+
+            hot.shipReserved(3);
+            hot.releaseReservation(2);
+            assertEquals(997, hot.getOnHand());
+            assertEquals(0, hot.getReserved());
+            assertEquals(997, hot.getAvailable());
+        }
+
+        @Test
+        void removeDamagedReclaimsBucketUnits() {
+            HotProductStock hot = manual(100, 4);
+            hot.split();
+            hot.reserve(10);
+            hot.removeDamaged(85);
+
+            assertEquals(15, hot.getOnHand());
+            assertEquals(10, hot.getReserved());
+            assertEquals(5, hot.getAvailable());
+            assertEquals(StockStatus.INSUFFICIENT_AVAILABLE, hot.tryReserve(6));
+            assertEquals(StockStatus.OK, hot.tryReserve(5));
+        }
+
+        @Test
+        void collapseReturnsBucketUnits() {
+            HotProductStock hot = manual(1000, 4);
+            hot.split();
+            hot.reserve(10);
+            hot.collapse();
+
+            assertFalse(hot.isSplit());
+            assertEquals(10, hot.getReserved());
+            assertEquals(990, hot.getAvailable());
+            hot.releaseReservation(10);
+            assertEquals(0, hot.getReserved());
+        }
+    }
+
+    @Nested
+    @DisplayName("Switching")
+    class SwitchingTests {
+
+        @Test
+        void lostCompareAndSetsSplitTheRecord() {
+            HotProductStock hot = new HotProductStock("1", "Nablus", 100, 5, 100, 4, 3, NEVER, 0);
+            hot.contended();
+            hot.contended();
+            assertFalse(hot.isSplit());
+            hot.contended();
+            assertTrue(hot.isSplit());
+        }
+
+        @Test
+        void quietSplitRecordCollapses() {
+            HotProductStock hot = new HotProductStock("1", "Nablus", 100, 5, 100, 4, 1, 0, Integer.MAX_VALUE);
+            hot.split();
+            hot.reserve(1);
+
+            assertFalse(hot.isSplit());
+            assertEquals(1, hot.getReserved());
+            assertEquals(99, hot.getAvailable());
+        }
+
+        @Test
+        @Timeout(10)
+        void quietRecordServedFromBucketsCollapsesOnTheTimer() throws InterruptedException {
+            long window = 20_000_000L;
+            HotProductStock hot = new HotProductStock("1", "Nablus", 1000, 5, 1000, 1, 1, window, 1_000);
+            hot.split();
+            // the first reservation refills the only bucket, the rest come from it
+            for (int i = 0; i < 10; i++) {
+                hot.reserve(1);
+            }
+            assertTrue(hot.isSplit());
+
+            while (hot.isSplit()) {
+                Thread.sleep(5);
+            }
+            assertEquals(10, hot.getReserved());
+            assertEquals(990, hot.getAvailable());
+        }
+    }
+
+    @Nested
+    @DisplayName("Concurrent access")
+    class ConcurrencyTests {
+
+        @Test
+        @Timeout(10)
+        void concurrentReservationsNeverOversell() throws Exception {
+            HotProductStock hot = new HotProductStock("1", "Nablus", 5000, 5, 5000, 8, 4, NEVER, 0);
+            hot.split();
+            int threads = 8;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int reserved = 0;
+                    while (hot.tryReserve(1) == StockStatus.OK) {
+                        reserved++;
+                    }
+                    return reserved;
+                }));
+            }
+            start.countDown();
+
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+            assertEquals(5000, total);
+            assertEquals(5000, hot.getReserved());
+            assertEquals(0, hot.getAvailable());
+        }
+
+        @Test
+        @Timeout(20)
+        void mixedTrafficWhileSwitchingKeepsTheBooksExact() throws Exception {
+            HotProductStock hot = new HotProductStock("1", "Nablus", 1000, 5, 10_000, 4, Integer.MAX_VALUE, NEVER, 0);
+            int threads = 4;
+            int rounds = 20_000;
+            ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    int held = 0;
+                    int shipped = 0;
+                    for (int i = 0; i < rounds; i++) {
+                        if (hot.tryReserve(2) == StockStatus.OK) {
+                            held += 2;
+                        }
+                        if (held > 0 && i % 3 == 0) {
+                            hot.shipReserved(1);
+                            held--;
+                            shipped++;
+                        } else if (held > 0) {
+                            hot.releaseReservation(1);
+                            held--;
+                        }
+                        assertTrue(hot.getAvailable() >= 0);
+                    }
+                    return new int[]{held, shipped};
+                }));
+            }
+            Future<Integer> toggler = pool.submit(() -> {
+                start.await();
+                int restocked = 0;
+                for (int i = 0; i < 2000; i++) {
+                    if (i % 2 == 0) {
+                        hot.split();
+                    } else {
+                        hot.collapse();
+                    }
+                    if (i % 100 == 0) {
+                        hot.addStock(10);
+                        restocked += 10;
+                    }
+                }
+                return restocked;
+            });
+            start.countDown();
+
+            int held = 0;
+            int shipped = 0;
+            for (Future<int[]> result : results) {
+                int[] r = result.get();
+                held += r[0];
+                shipped += r[1];
+            }
+            int restocked = toggler.get();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+            hot.collapse();
+            assertEquals(held, hot.getReserved());
+            assertEquals(1000 + restocked - shipped, hot.getOnHand());
+            assertTrue(shipped > 0);
+        }
+    }
+}
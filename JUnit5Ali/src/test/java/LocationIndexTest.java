@@ -0,0 +1,194 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("LocationIndex – Warehouse Hierarchy")
+class LocationIndexTest {
+
+    private StockRegistry registry;
+    private LocationIndex index;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StockRegistry();
+        registry.put(new ProductStock("1", "WH-1-A1", 10, 1, 100));
+        registry.put(new ProductStock("2", "WH-1-A3", 10, 1, 100));
+        registry.put(new ProductStock("3", "WH-1-A12", 10, 1, 100));
+        registry.put(new ProductStock("4", "WH-1-B3", 10, 1, 100));
+        registry.put(new ProductStock("5", "WH-2-A1", 10, 1, 100));
+        registry.put(new ProductStock("6", "WH-1", 10, 1, 100));
+        registry.put(new ProductStock("7", "Nablus", 10, 1, 100));
+        index = new LocationIndex();
+        index.trackAll(registry);
+    }
+
+    private static Set<String> ids(List<ProductStock> stocks) {
+        return stocks.stream().map(ProductStock::getProductId).collect(Collectors.toSet());
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Location codes")
+    class CodeTests {
+
+        @ParameterizedTest
+        @CsvSource({
+                "WH-1-A3,  WH-1,    A,  3",
+                "WH-1-AB12, WH-1,   AB, 12",
+                "DC-EAST-C007, DC-EAST, C, 7",
+                "DC-EAST-C0,  DC-EAST, C, 0",
+                "WH-1,     WH-1,    '', -1",
+                "Nablus,   Nablus,  '', -1",
+                "WH-1-A,   WH-1-A,  '', -1",
+                "WH-1-3,   WH-1-3,  '', -1",
+                "WH-1-A3x, WH-1-A3x, '', -1",
+                "-A3,      -A3,     '', -1",
+                "WH-A1234567890, WH-A1234567890, '', -1"
+        })
+        void parse(String location, String warehouse, String zone, int bin) {
+            LocationCode code = LocationCode.of(location);
+            assertEquals(new LocationCode(location, warehouse, zone, bin), code);
+            assertEquals(bin != LocationCode.NO_BIN, code.isBin());
+        }
+
+        @Test
+        void locationsAreInterned() {
+            String location = new String("WH-9-Z9".toCharArray());
+            ProductStock a = new ProductStock("1", location, 1, 1, 10);
+            ProductStock b = new ProductStock("2", new String("WH-9-Z9".toCharArray()), 1, 1, 10);
+            ConcurrentProductStock c = new ConcurrentProductStock("3", new String(location.toCharArray()), 1, 1, 10);
+
+            assertSame(a.getLocation(), b.getLocation());
+            assertSame(a.getLocation(), c.getLocation());
+            assertSame(LocationCode.of(location), LocationCode.of(b.getLocation()));
+            b.changeLocation(new String("WH-9-Z8".toCharArray()));
+            assertSame(LocationCode.intern("WH-9-Z8"), b.getLocation());
+        }
+
+        @Test
+        void leadingZerosGiveADistinctBinKey() {
+            LocationCode padded = LocationCode.of("WH-1-A03");
+            LocationCode plain = LocationCode.of("WH-1-A3");
+
+            assertEquals(3, padded.bin());
+            assertNotEquals(plain.binKey(), padded.binKey());
+            assertTrue(plain.binKey() < padded.binKey());
+            assertTrue(padded.binKey() < LocationCode.of("WH-1-A4").binKey());
+        }
+
+        @Test
+        void unusedCodesAreNotKeptAlive() throws InterruptedException {
+            for (int i = 0; i < 10_000; i++) {
+                LocationCode.of("ONE-OFF-" + i + "-A1");
+            }
+            for (int attempt = 0; attempt < 50 && LocationCode.cached() >= 10_000; attempt++) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertTrue(LocationCode.cached() < 10_000, "cached: " + LocationCode.cached());
+        }
+
+        @Test
+        void blankLocationsAreRejected() {
+            assertThrows(IllegalArgumentException.class, () -> LocationCode.of(" "));
+            assertThrows(IllegalArgumentException.class, () -> LocationCode.of(null));
+        }
+    }
+
+    @Nested
+    @DisplayName("Queries")
+    class QueryTests {
+
+        @Test
+        void warehouseIncludesBinsAndTheWarehouseItself() {
+            assertEquals(Set.of("1", "2", "3", "4", "6"), ids(index.inWarehouse("WH-1")));
+            assertEquals(Set.of("7"), ids(index.inWarehouse("Nablus")));
+            assertTrue(index.inWarehouse("WH-9").isEmpty());
+        }
+
+        @Test
+        void zonesAndBinRanges() {
+            assertEquals(Set.of("1", "2", "3"), ids(index.inZone("WH-1", "A")));
+            assertEquals(Set.of("1", "2"), ids(index.inBins("WH-1", "A", 1, 11)));
+            assertEquals(Set.of("3"), ids(index.inBins("WH-1", "A", 4, 20)));
+            assertTrue(index.inZone("WH-1", "C").isEmpty());
+            assertThrows(IllegalArgumentException.class, () -> index.inBins("WH-1", "A", 5, 4));
+        }
+
+        @Test
+        void leadingZeroBinIsADifferentLocation() {
+            registry.put(new ProductStock("8", "WH-1-A03", 10, 1, 100));
+            index.track(registry.get("8", "WH-1-A03"));
+
+            assertEquals(Set.of("2"), ids(index.atLocation("WH-1-A3")));
+            assertEquals(Set.of("8"), ids(index.atLocation("WH-1-A03")));
+            assertEquals(Set.of("2", "8"), ids(index.inBins("WH-1", "A", 3, 3)));
+            assertEquals(Set.of("1", "2", "3", "8"), ids(index.inZone("WH-1", "A")));
+            assertTrue(ids(index.inWarehouse("WH-1")).contains("8"));
+            assertEquals(List.of("Nablus", "WH-1", "WH-2"), index.warehouses());
+        }
+
+        @Test
+        void exactLocationAndWarehousePrefix() {
+            assertEquals(Set.of("2"), ids(index.atLocation("WH-1-A3")));
+            assertEquals(Set.of("6"), ids(index.atLocation("WH-1")));
+            assertEquals(Set.of("1", "2", "3", "4", "5", "6"), ids(index.inWarehouses("WH-")));
+            assertEquals(7, index.inWarehouses("").size());
+        }
+
+        @Test
+        void sortedWarehousesAndZones() {
+            assertEquals(List.of("Nablus", "WH-1", "WH-2"), index.warehouses());
+            assertEquals(List.of(LocationCode.NO_ZONE, "A", "B"), index.zones("WH-1"));
+            assertTrue(index.zones("WH-9").isEmpty());
+        }
+    }
+
+    @Nested
+    @DisplayName("Maintenance")
+    class MaintenanceTests {
+
+        @Test
+        void relocationMovesTheRecord() {
+            registry.relocate("4", "WH-1-B3", "WH-2-C5");
+
+            assertEquals(Set.of("1", "2", "3", "6"), ids(index.inWarehouse("WH-1")));
+            assertEquals(Set.of("4"), ids(index.atLocation("WH-2-C5")));
+            assertEquals(List.of(LocationCode.NO_ZONE, "A"), index.zones("WH-1"));
+        }
+
+        @Test
+        void directChangeLocationIsFollowed() {
+            ProductStock stock = registry.get("7", "Nablus");
+            stock.changeLocation("WH-3-A1");
+
+            assertEquals(List.of("WH-1", "WH-2", "WH-3"), index.warehouses());
+            assertSame(stock, index.atLocation("WH-3-A1").get(0));
+        }
+
+        @Test
+        void untrackedRecordsDisappear() {
+            ProductStock stock = registry.get("5", "WH-2-A1");
+            index.untrack(stock);
+            stock.changeLocation("WH-1-A1");
+
+            assertEquals(6, index.trackedCount());
+            assertFalse(index.warehouses().contains("WH-2"));
+            assertEquals(Set.of("1"), ids(index.atLocation("WH-1-A1")));
+        }
+
+        @Test
+        void trackingTwiceFilesOnce() {
+            index.trackAll(registry);
+            assertEquals(7, index.trackedCount());
+            assertEquals(1, index.atLocation("WH-1-A3").size());
+        }
+    }
+}
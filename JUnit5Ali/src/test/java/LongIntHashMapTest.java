@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("LongIntHashMap – Primitive Map")
+class LongIntHashMapTest {
+
+    private LongIntHashMap map;
+
+    @BeforeEach
+    void setUp() {
+        map = new LongIntHashMap(4, -1);
+    }
+
+    @Test
+    void missingKeyReturnsMissingValue() {
+        assertEquals(-1, map.get(42L));
+        assertFalse(map.containsKey(42L));
+    }
+
+    @Test
+    void putAndGet() {
+        assertEquals(-1, map.put(42L, 7));
+        assertEquals(7, map.put(42L, 8));
+        assertEquals(8, map.get(42L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void zeroKeyIsSupported() {
+        map.put(0L, 3);
+        assertTrue(map.containsKey(0L));
+        assertEquals(3, map.get(0L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void growsAndKeepsEntries() {
+        for (long k = 1; k <= 10_000; k++) {
+            map.put(k * 31, (int) k);
+        }
+        assertEquals(10_000, map.size());
+        for (long k = 1; k <= 10_000; k++) {
+            assertEquals((int) k, map.get(k * 31));
+        }
+    }
+
+    @Test
+    void removeReturnsValueAndFreesKey() {
+        map.put(0L, 1);
+        map.put(5L, 2);
+        assertEquals(2, map.remove(5L));
+        assertEquals(1, map.remove(0L));
+        assertEquals(-1, map.remove(5L));
+        assertEquals(-1, map.remove(0L));
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(5L));
+        assertEquals(-1, map.put(5L, 3));
+    }
+
+    @Test
+    void removeKeepsCollidingKeysReachable() {
+        LongIntHashMap small = new LongIntHashMap(1_000, -1);
+        for (long k = 1; k <= 1_000; k++) {
+            small.put(k, (int) k);
+        }
+        for (long k = 1; k <= 1_000; k += 2) {
+            assertEquals((int) k, small.remove(k));
+        }
+        assertEquals(500, small.size());
+        for (long k = 1; k <= 1_000; k++) {
+            assertEquals(k % 2 == 0 ? (int) k : -1, small.get(k));
+        }
+    }
+
+    @Test
+    void churnDoesNotGrowTheTable() {
+        long footprint = map.footprintBytes();
+        for (long k = 1; k <= 10_000; k++) {
+            map.put(k, (int) k);
+            map.remove(k);
+        }
+        assertEquals(0, map.size());
+        assertEquals(footprint, map.footprintBytes());
+    }
+
+    @Test
+    void clearEmptiesMap() {
+        map.put(0L, 1);
+        map.put(5L, 2);
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(5L));
+        assertEquals(-1, map.get(0L));
+    }
+
+    @Test
+    void forEachVisitsEveryEntry() {
+        map.put(0L, 10);
+        for (long k = 1; k <= 100; k++) {
+            map.put(k, (int) k);
+        }
+        long[] sums = new long[2];
+        map.forEach((key, value) -> {
+            sums[0] += key;
+            sums[1] += value;
+        });
+        assertEquals(5050, sums[0]);
+        assertEquals(5060, sums[1]);
+    }
+}
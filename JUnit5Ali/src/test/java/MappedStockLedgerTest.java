@@ -0,0 +1,182 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("MappedStockLedger – Memory-mapped Persistence")
+class MappedStockLedgerTest {
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("stock.ledger");
+    }
+
+    @Test
+    void mutationsSurviveReopen() throws IOException {
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 16, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            ProductStock stock = new ProductStock("1", "Nablus", 50, 5, 100);
+            ledger.track(stock);
+            stock.reserve(10);
+            stock.shipReserved(4);
+            stock.addStock(20);
+            stock.changeLocation("Jenin");
+            stock.updateMaxCapacity(200);
+        }
+
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 1, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            List<ProductStock> restored = ledger.restore();
+
+            assertEquals(16, ledger.capacity());
+            assertEquals(1, restored.size());
+            ProductStock stock = restored.get(0);
+            assertEquals("1", stock.getProductId());
+            assertEquals("Jenin", stock.getLocation());
+            assertEquals(66, stock.getOnHand());
+            assertEquals(6, stock.getReserved());
+            assertEquals(200, stock.getMaxCapacity());
+        }
+    }
+
+    @Test
+    void restoredRecordsKeepBeingTracked() throws IOException {
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.EVERY_WRITE)) {
+            ledger.track(new ProductStock("1", "Nablus", 50, 5, 100));
+        }
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.EVERY_WRITE)) {
+            StockRegistry registry = new StockRegistry();
+            ledger.restoreInto(registry);
+            registry.reserve("1", "Nablus", 30);
+        }
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.EVERY_WRITE)) {
+            assertEquals(30, ledger.restore().get(0).getReserved());
+        }
+    }
+
+    @Test
+    void untrackedSlotIsReused() throws IOException {
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 1, MappedStockLedger.SyncPolicy.PERIODIC, 10)) {
+            ProductStock first = new ProductStock("1", "Nablus", 50, 5, 100);
+            ledger.track(first);
+            assertThrows(IllegalStateException.class,
+                    () -> ledger.track(new ProductStock("2", "Nablus", 1, 0, 10)));
+
+            ledger.untrack(first);
+            ledger.track(new ProductStock("2", "Nablus", 1, 0, 10));
+            assertEquals(1, ledger.size());
+        }
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 1, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            assertEquals("2", ledger.restore().get(0).getProductId());
+        }
+    }
+
+    @Test
+    void tooLongKeyIsRejected() throws IOException {
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> ledger.track(new ProductStock("P".repeat(36), "Nablus", 1, 0, 10)));
+        }
+    }
+
+    @Test
+    void tooLongLocationIsRejectedBeforeTheMove() throws IOException {
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            StockRegistry registry = new StockRegistry();
+            ProductStock stock = new ProductStock("1", "Nablus", 50, 5, 100);
+            registry.put(stock);
+            ledger.track(stock);
+            String tooLong = "L".repeat(36);
+
+            assertThrows(IllegalArgumentException.class, () -> stock.changeLocation(tooLong));
+            assertThrows(IllegalArgumentException.class, () -> registry.relocate("1", "Nablus", tooLong));
+            assertEquals("Nablus", stock.getLocation());
+            assertSame(stock, registry.get("1", "Nablus"));
+            assertFalse(registry.contains("1", tooLong));
+        }
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            assertEquals("Nablus", ledger.restore().get(0).getLocation());
+        }
+    }
+
+    @Test
+    void tornRecordIsSkippedAndReported() throws IOException {
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            ledger.track(new ProductStock("1", "Nablus", 50, 5, 100));
+            ledger.track(new ProductStock("2", "Nablus", 20, 5, 100));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(MappedStockLedger.HEADER_SIZE + 72);
+            raw.writeInt(999);
+        }
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            List<ProductStock> restored = ledger.restore();
+
+            assertEquals(1, restored.size());
+            assertEquals("2", restored.get(0).getProductId());
+            assertEquals(List.of(0), ledger.corruptSlots());
+            // the corrupt slot is not handed out again
+            ledger.track(new ProductStock("3", "Nablus", 1, 0, 10));
+            ledger.track(new ProductStock("4", "Nablus", 1, 0, 10));
+            assertThrows(IllegalStateException.class,
+                    () -> ledger.track(new ProductStock("5", "Nablus", 1, 0, 10)));
+        }
+    }
+
+    @Test
+    void transferTornBetweenItsSlotsIsCompletedOnRestore() throws IOException {
+        byte[] targetBefore = new byte[MappedStockLedger.RECORD_SIZE];
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.EVERY_WRITE)) {
+            ProductStock source = new ProductStock("1", "Nablus", 50, 5, 100);
+            ProductStock target = new ProductStock("1", "Jenin", 10, 5, 100);
+            ledger.track(source);
+            ledger.track(target);
+            try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "r")) {
+                raw.seek(MappedStockLedger.HEADER_SIZE + MappedStockLedger.RECORD_SIZE);
+                raw.readFully(targetBefore);
+            }
+            source.transferTo(target, 5);
+        }
+        // crash after the note and the source slot, before the target slot
+        ByteBuffer note = ByteBuffer.allocate(28);
+        note.putInt(0).putInt(1).putInt(50).putInt(45).putInt(10).putInt(15);
+        CRC32C crc = new CRC32C();
+        crc.update(note.array(), 0, 24);
+        note.putInt((int) crc.getValue());
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(MappedStockLedger.HEADER_TRANSFER);
+            raw.write(note.array());
+            raw.seek(MappedStockLedger.HEADER_SIZE + MappedStockLedger.RECORD_SIZE);
+            raw.write(targetBefore);
+        }
+
+        try (MappedStockLedger ledger = MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.ON_DEMAND)) {
+            List<ProductStock> restored = ledger.restore();
+
+            assertEquals(2, restored.size());
+            assertEquals(45, restored.get(0).getOnHand());
+            assertEquals(15, restored.get(1).getOnHand());
+            assertTrue(ledger.corruptSlots().isEmpty());
+        }
+    }
+
+    @Test
+    void notALedgerFails() throws IOException {
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.write(new byte[128]);
+        }
+        assertThrows(IllegalStateException.class,
+                () -> MappedStockLedger.open(file, 4, MappedStockLedger.SyncPolicy.ON_DEMAND));
+    }
+}
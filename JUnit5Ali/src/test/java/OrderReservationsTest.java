@@ -0,0 +1,240 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("OrderReservations – Idempotent Per-order Holds")
+class OrderReservationsTest {
+
+    private ProductStock stock;
+    private OrderReservations orders;
+
+    @BeforeEach
+    void setUp() {
+        stock = new ProductStock("1", "Nablus", 50, 5, 100);
+        orders = new OrderReservations(stock);
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Retries")
+    class RetryTests {
+
+        @Test
+        void retriedReserveDoesNotDoubleReserve() {
+            assertTrue(orders.reserve(1001L, 10));
+            assertFalse(orders.reserve(1001L, 10));
+            assertEquals(10, stock.getReserved());
+            assertEquals(10, orders.getReserved(1001L));
+        }
+
+        @Test
+        void retriedShipDoesNotDoubleShip() {
+            orders.reserve(1001L, 10);
+            assertTrue(orders.shipReserved(1001L));
+            assertFalse(orders.shipReserved(1001L));
+            assertEquals(40, stock.getOnHand());
+            assertEquals(0, stock.getReserved());
+        }
+
+        @Test
+        void retriedReleaseDoesNotDoubleRelease() {
+            orders.reserve(1001L, 10);
+            orders.reserve(1002L, 5);
+            assertTrue(orders.releaseReservation(1001L));
+            assertFalse(orders.releaseReservation(1001L));
+            assertEquals(5, stock.getReserved());
+        }
+
+        @Test
+        void lateReserveRetryAfterShipIsIgnored() {
+            orders.reserve(1001L, 10);
+            orders.shipReserved(1001L);
+            assertFalse(orders.reserve(1001L, 10));
+            assertEquals(0, stock.getReserved());
+        }
+    }
+
+    @Nested
+    @DisplayName("Per-order bookkeeping")
+    class BookkeepingTests {
+
+        @Test
+        void ordersAreTrackedSeparately() {
+            orders.reserve(1L, 10);
+            orders.reserve(2L, 15);
+            orders.shipReserved(1L);
+
+            assertEquals(0, orders.getReserved(1L));
+            assertEquals(15, orders.getReserved(2L));
+            assertTrue(orders.isOpen(2L));
+            assertEquals(1, orders.openOrderCount());
+            assertEquals(2, orders.trackedOrderCount());
+        }
+
+        @Test
+        void differentQuantityForSameOrderFails() {
+            orders.reserve(1L, 10);
+            assertThrows(IllegalStateException.class, () -> orders.reserve(1L, 12));
+            assertEquals(10, stock.getReserved());
+        }
+
+        @Test
+        void insufficientStockLeavesOrderUntracked() {
+            assertThrows(IllegalStateException.class, () -> orders.reserve(1L, 999));
+            assertFalse(orders.isOpen(1L));
+            assertEquals(0, orders.trackedOrderCount());
+            assertTrue(orders.reserve(1L, 10));
+        }
+
+        @Test
+        void invalidAmountFails() {
+            assertThrows(IllegalArgumentException.class, () -> orders.reserve(1L, 0));
+        }
+
+        @Test
+        void shipUnknownOrReleasedOrderFails() {
+            assertThrows(IllegalStateException.class, () -> orders.shipReserved(7L));
+            orders.reserve(7L, 3);
+            orders.releaseReservation(7L);
+            assertThrows(IllegalStateException.class, () -> orders.shipReserved(7L));
+        }
+
+        @Test
+        void releaseUnknownOrderIsNoOp() {
+            assertFalse(orders.releaseReservation(7L));
+        }
+
+        @Test
+        void orderIdZeroIsSupported() {
+            assertTrue(orders.reserve(0L, 4));
+            assertFalse(orders.reserve(0L, 4));
+            assertTrue(orders.shipReserved(0L));
+            assertEquals(46, stock.getOnHand());
+        }
+
+        @Test
+        void purgeSettledKeepsOpenOrders() {
+            for (long id = 1; id <= 40; id++) {
+                orders.reserve(id, 1);
+            }
+            for (long id = 1; id <= 30; id++) {
+                if (id % 2 == 0) {
+                    orders.shipReserved(id);
+                } else {
+                    orders.releaseReservation(id);
+                }
+            }
+
+            assertEquals(30, orders.purgeSettled());
+            assertEquals(10, orders.trackedOrderCount());
+            assertEquals(10, orders.openOrderCount());
+            for (long id = 31; id <= 40; id++) {
+                assertEquals(1, orders.getReserved(id));
+            }
+            // settled orders are forgotten, so their IDs are new again
+            assertTrue(orders.reserve(1L, 1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Damage")
+    class DamageTests {
+
+        @Test
+        void damageWithinAvailableLeavesOrdersWhole() {
+            orders.reserve(1L, 20);
+            stock.removeDamaged(30);
+
+            assertEquals(0, orders.getShortfall(1L));
+            assertTrue(orders.shipReserved(1L));
+            assertEquals(0, stock.getOnHand());
+        }
+
+        @Test
+        void damageIntoReservedUnitsIsChargedToOpenOrders() {
+            orders.reserve(1L, 20);
+            orders.reserve(2L, 20);
+            stock.removeDamaged(25);   // onHand 25, reserved clamped from 40 to 25
+
+            assertEquals(15, orders.getShortfall(1L) + orders.getShortfall(2L));
+            assertEquals(stock.getReserved(), orders.getReserved(1L) + orders.getReserved(2L));
+            long shortOrder = orders.getShortfall(1L) > 0 ? 1L : 2L;
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> orders.shipReserved(shortOrder));
+            assertTrue(e.getMessage().contains("reserved units to damage"));
+            assertTrue(orders.isOpen(shortOrder));
+        }
+
+        @Test
+        void shortOrdersReleaseWhatTheyStillHold() {
+            orders.reserve(1L, 20);
+            orders.reserve(2L, 20);
+            stock.removeDamaged(25);
+
+            for (long id = 1; id <= 2; id++) {
+                if (orders.getShortfall(id) > 0) {
+                    assertTrue(orders.releaseReservation(id));
+                } else {
+                    assertTrue(orders.shipReserved(id));
+                }
+            }
+            assertEquals(0, stock.getReserved());
+            assertEquals(0, orders.openOrderCount());
+            assertEquals(0, orders.getShortfall(1L) + orders.getShortfall(2L));
+        }
+    }
+
+    @Nested
+    @DisplayName("Ownership")
+    class OwnershipTests {
+
+        @Test
+        void registeredOrAlreadyReservedStockIsRejected() {
+            StockRegistry registry = new StockRegistry();
+            ProductStock registered = new ProductStock("2", "Jenin", 10, 0, 100);
+            registry.put(registered);
+            assertThrows(IllegalArgumentException.class, () -> new OrderReservations(registered));
+
+            ProductStock reserved = new ProductStock("3", "Jenin", 10, 0, 100);
+            reserved.reserve(1);
+            assertThrows(IllegalArgumentException.class, () -> new OrderReservations(reserved));
+
+            registry.remove("2", "Jenin");
+            assertEquals(0, new OrderReservations(registered).openOrderCount());
+        }
+
+        @Test
+        void foreignReservationStopsTheWrapper() {
+            orders.reserve(1L, 10);
+            stock.reserve(5);
+
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> orders.shipReserved(1L));
+            assertEquals("Stock reservations were changed outside this wrapper", e.getMessage());
+            assertThrows(IllegalStateException.class, () -> orders.reserve(2L, 1));
+            assertEquals(15, stock.getReserved());
+            // retries of settled work are still answered
+            assertFalse(orders.reserve(1L, 10));
+        }
+
+        @Test
+        void registeringTheStockLaterStopsTheWrapper() {
+            orders.reserve(1L, 10);
+            new StockRegistry().put(stock);
+
+            assertThrows(IllegalStateException.class, () -> orders.releaseReservation(1L));
+            assertEquals(10, stock.getReserved());
+        }
+    }
+
+    @Test
+    void millionOpenOrdersStayCompact() {
+        ProductStock big = new ProductStock("2", "Jenin", 1_000_000, 0, 1_000_000);
+        OrderReservations many = new OrderReservations(big, 1_000_000);
+        for (long id = 1; id <= 1_000_000; id++) {
+            many.reserve(id * 7919, 1);
+        }
+        assertEquals(1_000_000, big.getReserved());
+        assertTrue(many.footprintBytes() / 1_000_000 <= 32,
+                "bytes per order: " + many.footprintBytes() / 1_000_000);
+    }
+}
@@ -0,0 +1,295 @@
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("OrderService – Virtual-thread Requests")
+class OrderServiceTest {
+
+    private static final List<OrderLine> ORDER = List.of(
+            new OrderLine("1", "WH-1-A3", 10),
+            new OrderLine("2", "WH-1-A3", 5));
+
+    private StockRegistry registry;
+    private OrderService service;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StockRegistry();
+        registry.put(new ProductStock("1", "WH-1-A3", 50, 5, 100));
+        registry.put(new ProductStock("2", "WH-1-A3", 20, 5, 100));
+        service = new OrderService(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    private static OrderService.Status status(CompletableFuture<OrderService.Response> response) {
+        return response.join().status();
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Two-phase orders")
+    class TwoPhaseTests {
+
+        @Test
+        void reserveThenShip() {
+            assertEquals(OrderService.Status.RESERVED, status(service.reserve(7, ORDER)));
+            assertEquals(10, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(1, service.openOrders());
+
+            assertEquals(OrderService.Status.SHIPPED, status(service.ship(7)));
+            assertEquals(40, registry.get("1", "WH-1-A3").getOnHand());
+            assertEquals(15, registry.get("2", "WH-1-A3").getOnHand());
+            assertEquals(0, service.openOrders());
+        }
+
+        @Test
+        void reserveThenCancel() {
+            service.reserve(7, ORDER).join();
+
+            assertEquals(OrderService.Status.RELEASED, status(service.cancel(7)));
+            assertEquals(0, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(OrderService.Status.REJECTED, status(service.ship(7)));
+        }
+
+        @Test
+        void retriesAreAnsweredFromTheOrderState() {
+            service.reserve(7, ORDER).join();
+            assertEquals(OrderService.Status.RESERVED, status(service.reserve(7, ORDER)));
+            assertEquals(10, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(OrderService.Status.REJECTED,
+                    status(service.reserve(7, List.of(new OrderLine("1", "WH-1-A3", 1)))));
+
+            service.ship(7).join();
+            assertEquals(OrderService.Status.SHIPPED, status(service.ship(7)));
+            assertEquals(OrderService.Status.SHIPPED, status(service.reserve(7, ORDER)));
+            assertEquals(OrderService.Status.REJECTED, status(service.cancel(7)));
+            assertEquals(40, registry.get("1", "WH-1-A3").getOnHand());
+        }
+
+        @Test
+        void ruleViolationsAreRejected() {
+            OrderService.Response response = service.reserve(7, List.of(
+                    new OrderLine("1", "WH-1-A3", 10),
+                    new OrderLine("2", "WH-1-A3", 21))).join();
+
+            assertEquals(OrderService.Status.REJECTED, response.status());
+            assertTrue(response.reason().startsWith("Insufficient available stock to reserve"));
+            assertEquals(0, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(OrderService.Status.UNKNOWN_ORDER, status(service.ship(7)));
+            assertEquals(OrderService.Status.RESERVED, status(service.reserve(7, ORDER)));
+        }
+
+        @Test
+        void failingShipLeavesTheOrderReservedAndWhole() {
+            service.reserve(7, ORDER).join();
+            // a line's reservation is released behind the service's back
+            registry.releaseReservation("2", "WH-1-A3", 5);
+
+            OrderService.Response response = service.ship(7).join();
+            assertEquals(OrderService.Status.REJECTED, response.status());
+            assertTrue(response.reason().startsWith("Cannot ship more than reserved"));
+            assertEquals(50, registry.get("1", "WH-1-A3").getOnHand());
+            assertEquals(10, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(1, service.openOrders());
+
+            registry.reserve("2", "WH-1-A3", 5);
+            assertEquals(OrderService.Status.SHIPPED, status(service.ship(7)));
+            assertEquals(40, registry.get("1", "WH-1-A3").getOnHand());
+            assertEquals(15, registry.get("2", "WH-1-A3").getOnHand());
+        }
+
+        @Test
+        void failingCancelReleasesNothing() {
+            service.reserve(7, ORDER).join();
+            registry.releaseReservation("2", "WH-1-A3", 5);
+
+            assertEquals(OrderService.Status.REJECTED, status(service.cancel(7)));
+            assertEquals(10, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(1, service.openOrders());
+        }
+
+        @Test
+        @Timeout(10)
+        void failedWriteAheadStillRecordsTheReservation() {
+            StockListener failing = (stock, mutation, amount, previousOnHand, previousReserved) -> {
+                throw new UncheckedIOException(new IOException("disk full"));
+            };
+            registry.get("2", "WH-1-A3").addListener(failing);
+            CompletionException failure = assertThrows(CompletionException.class, () -> service.reserve(7, ORDER).join());
+            assertInstanceOf(UncheckedIOException.class, failure.getCause());
+            registry.get("2", "WH-1-A3").removeListener(failing);
+
+            // the lines were reserved before the write failed
+            assertEquals(1, service.openOrders());
+            assertEquals(OrderService.Status.RESERVED, status(service.reserve(7, ORDER)));
+            assertEquals(5, registry.get("2", "WH-1-A3").getReserved());
+            assertEquals(OrderService.Status.SHIPPED, status(service.ship(7)));
+        }
+
+        @Test
+        @Timeout(10)
+        void failedReservationIsForgotten() {
+            StockListener failing = (stock, mutation, amount, previousOnHand, previousReserved) -> {
+                throw new UnsupportedOperationException("listener bug");
+            };
+            registry.get("2", "WH-1-A3").addListener(failing);
+            assertThrows(CompletionException.class, () -> service.reserve(7, ORDER).join());
+            registry.get("2", "WH-1-A3").removeListener(failing);
+
+            assertEquals(OrderService.Status.UNKNOWN_ORDER, status(service.ship(7)));
+            assertEquals(0, service.openOrders());
+            assertEquals(OrderService.Status.RESERVED, status(service.reserve(7, ORDER)));
+        }
+
+        @Test
+        void unknownOrdersAndInvalidRequests() {
+            assertEquals(OrderService.Status.UNKNOWN_ORDER, status(service.ship(1)));
+            assertEquals(OrderService.Status.UNKNOWN_ORDER, status(service.cancel(1)));
+            assertThrows(IllegalArgumentException.class, () -> service.reserve(1, List.of()));
+            assertThrows(IllegalArgumentException.class, () -> service.checkout(1, null));
+        }
+
+        @Test
+        void settledOrdersArePurged() {
+            service.reserve(1, ORDER).join();
+            service.reserve(2, ORDER).join();
+            service.ship(1).join();
+
+            assertEquals(1, service.purgeSettled());
+            assertEquals(OrderService.Status.UNKNOWN_ORDER, status(service.ship(1)));
+            assertEquals(1, service.openOrders());
+        }
+    }
+
+    @Nested
+    @DisplayName("Checkout")
+    class CheckoutTests {
+
+        @Test
+        void approvedCheckoutShipsOnAVirtualThread() {
+            AtomicBoolean virtual = new AtomicBoolean();
+            try (OrderService checkout = new OrderService(registry, (orderId, lines) -> {
+                virtual.set(Thread.currentThread().isVirtual());
+                return true;
+            })) {
+                assertEquals(OrderService.Status.SHIPPED, status(checkout.checkout(7, ORDER)));
+            }
+            assertTrue(virtual.get());
+            assertEquals(40, registry.get("1", "WH-1-A3").getOnHand());
+        }
+
+        @Test
+        void declinedOrFailedAuthorizationReleases() {
+            try (OrderService declining = new OrderService(registry, (orderId, lines) -> {
+                if (orderId == 2) {
+                    throw new IllegalStateException("card expired");
+                }
+                return false;
+            })) {
+                OrderService.Response declined = declining.checkout(1, ORDER).join();
+                OrderService.Response failed = declining.checkout(2, ORDER).join();
+
+                assertEquals(OrderService.Status.DECLINED, declined.status());
+                assertEquals(OrderService.Status.DECLINED, failed.status());
+                assertEquals("Authorization failed: card expired", failed.reason());
+                assertEquals(OrderService.Status.RELEASED, status(declining.cancel(1)));
+            }
+            assertEquals(0, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(50, registry.get("1", "WH-1-A3").getOnHand());
+        }
+
+        @Test
+        @Timeout(10)
+        void onlyTheCheckoutSettlesAnOrderBeingAuthorized() throws InterruptedException {
+            CountDownLatch authorizing = new CountDownLatch(2);
+            CountDownLatch decide = new CountDownLatch(1);
+            try (OrderService slow = new OrderService(registry, (orderId, lines) -> {
+                authorizing.countDown();
+                decide.await();
+                return orderId == 7;
+            })) {
+                CompletableFuture<OrderService.Response> approved = slow.checkout(7, ORDER);
+                CompletableFuture<OrderService.Response> declined = slow.checkout(8, List.of(new OrderLine("1", "WH-1-A3", 1)));
+                authorizing.await();
+
+                OrderService.Response ship = slow.ship(7).join();
+                assertEquals(OrderService.Status.REJECTED, ship.status());
+                assertEquals("Order 7 is being authorized", ship.reason());
+                assertEquals(OrderService.Status.REJECTED, status(slow.cancel(7)));
+                assertEquals(OrderService.Status.REJECTED, status(slow.ship(8)));
+                assertEquals(OrderService.Status.AUTHORIZING, status(slow.reserve(7, ORDER)));
+                assertEquals(50, registry.get("1", "WH-1-A3").getOnHand());
+                assertEquals(2, slow.openOrders());
+
+                CompletableFuture<OrderService.Response> approvedRetry = slow.checkout(7, ORDER);
+                CompletableFuture<OrderService.Response> declinedRetry = slow.checkout(8, List.of(new OrderLine("1", "WH-1-A3", 1)));
+                decide.countDown();
+
+                assertEquals(OrderService.Status.SHIPPED, status(approved));
+                assertEquals(OrderService.Status.SHIPPED, status(approvedRetry));
+                assertEquals(OrderService.Status.DECLINED, status(declined));
+                assertEquals(declined.join(), declinedRetry.join());
+                assertEquals("Declined by authorizer", declinedRetry.join().reason());
+            }
+            assertEquals(40, registry.get("1", "WH-1-A3").getOnHand());
+            assertEquals(0, registry.get("1", "WH-1-A3").getReserved());
+        }
+
+        @Test
+        void closedServiceRefusesRequests() {
+            service.close();
+            assertThrows(IllegalStateException.class, () -> service.ship(1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Concurrency")
+    class ConcurrencyTests {
+
+        @Test
+        @Timeout(30)
+        void tenThousandBlockedCheckoutsAreHeldOpenAtOnce() {
+            int requests = 10_000;
+            registry.put(new ProductStock("3", "WH-2", 8_000, 0, 10_000));
+            List<OrderLine> one = List.of(new OrderLine("3", "WH-2", 1));
+            // every authorization sleeps; on a pool of a few hundred platform
+            // threads this would take tens of seconds
+            try (OrderService sleepy = new OrderService(registry, (orderId, lines) -> {
+                Thread.sleep(200);
+                return orderId % 4 != 0;
+            })) {
+                List<CompletableFuture<OrderService.Response>> responses = new ArrayList<>();
+                for (int i = 0; i < requests; i++) {
+                    responses.add(sleepy.checkout(i, one));
+                }
+                int[] counts = new int[OrderService.Status.values().length];
+                for (CompletableFuture<OrderService.Response> response : responses) {
+                    counts[response.join().status().ordinal()]++;
+                }
+
+                int shipped = counts[OrderService.Status.SHIPPED.ordinal()];
+                assertEquals(requests, shipped
+                                       + counts[OrderService.Status.DECLINED.ordinal()]
+                                       + counts[OrderService.Status.REJECTED.ordinal()]);
+                assertEquals(8_000 - shipped, registry.get("3", "WH-2").getOnHand());
+                assertEquals(0, registry.get("3", "WH-2").getReserved());
+                assertEquals(0, sleepy.openOrders());
+                assertTrue(shipped > 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("ProductAvailability – Multi-location Rollups")
+class ProductAvailabilityTest {
+
+    private ProductAvailability availability;
+    private StockRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        availability = new ProductAvailability();
+        registry = new StockRegistry();
+        registry.put(new ProductStock("1", "Nablus", 50, 5, 100));
+        registry.put(new ProductStock("1", "Jenin", 30, 5, 100));
+        registry.put(new ProductStock("1", "Ramallah", 10, 5, 100));
+        registry.put(new ProductStock("2", "Jenin", 7, 5, 100));
+        availability.trackAll(registry);
+    }
+
+    private void assertTotals(String productId, long onHand, long reserved) {
+        assertAll(
+                () -> assertEquals(onHand, availability.getOnHand(productId), "onHand"),
+                () -> assertEquals(reserved, availability.getReserved(productId), "reserved"),
+                () -> assertEquals(onHand - reserved, availability.getAvailable(productId), "available")
+        );
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Rollups")
+    class RollupTests {
+
+        @Test
+        void initialTotalsAreSummedPerProduct() {
+            assertTotals("1", 90, 0);
+            assertTotals("2", 7, 0);
+            assertEquals(3, availability.locationCount("1"));
+            assertEquals(2, availability.productCount());
+        }
+
+        @Test
+        void unknownProductHasZeroTotals() {
+            assertTotals("missing", 0, 0);
+            assertEquals(0, availability.locationCount("missing"));
+        }
+
+        @Test
+        void everyStockMovementIsFollowed() {
+            registry.addStock("1", "Jenin", 20);
+            assertTotals("1", 110, 0);
+            registry.reserve("1", "Nablus", 15);
+            assertTotals("1", 110, 15);
+            registry.shipReserved("1", "Nablus", 5);
+            assertTotals("1", 105, 10);
+            registry.releaseReservation("1", "Nablus", 4);
+            assertTotals("1", 105, 6);
+            registry.removeDamaged("1", "Nablus", 45);
+            // damaged stock trims the reservation down to what is left
+            assertTotals("1", 60, 0);
+            assertTotals("2", 7, 0);
+        }
+
+        @Test
+        void transferNeverDipsTheTotals() {
+            List<Long> seen = new ArrayList<>();
+            ProductAvailability watched = new ProductAvailability() {
+                @Override
+                public void onMutation(ProductStock stock, StockMutation mutation, int amount,
+                                       int previousOnHand, int previousReserved) {
+                    super.onMutation(stock, mutation, amount, previousOnHand, previousReserved);
+                    seen.add(getAvailable("1"));
+                }
+            };
+            watched.trackAll(registry);
+
+            registry.transfer("1", "Nablus", "Jenin", 20);
+
+            assertTrue(seen.stream().allMatch(available -> available == 90), "seen: " + seen);
+            assertEquals(90, watched.getAvailable("1"));
+            assertEquals(50, registry.get("1", "Jenin").getOnHand());
+        }
+
+        @Test
+        void relocationKeepsTotals() {
+            registry.reserve("1", "Ramallah", 4);
+            registry.relocate("1", "Ramallah", "Hebron");
+            assertTotals("1", 90, 4);
+        }
+
+        @Test
+        void untrackedRecordLeavesTotals() {
+            ProductStock ramallah = registry.get("1", "Ramallah");
+            ramallah.reserve(3);
+            availability.untrack(ramallah);
+
+            assertTotals("1", 80, 0);
+            ramallah.addStock(50);
+            assertTotals("1", 80, 0);
+            assertEquals(2, availability.locationCount("1"));
+        }
+
+        @Test
+        void trackingTwiceCountsOnce() {
+            availability.track(registry.get("1", "Nablus"));
+            registry.addStock("1", "Nablus", 1);
+            assertTotals("1", 91, 0);
+        }
+    }
+
+    @Nested
+    @DisplayName("Allocation")
+    class AllocationTests {
+
+        @Test
+        void singleLocationCoversSmallOrder() {
+            List<OrderLine> lines = availability.reserveAnywhere(registry, "1", 20);
+
+            assertEquals(List.of(new OrderLine("1", "Nablus", 20)), lines);
+            assertEquals(20, registry.get("1", "Nablus").getReserved());
+            assertTotals("1", 90, 20);
+        }
+
+        @Test
+        void largeOrderSpreadsOverFewestLocations() {
+            List<OrderLine> lines = availability.reserveAnywhere(registry, "1", 70);
+
+            assertEquals(List.of(new OrderLine("1", "Nablus", 50), new OrderLine("1", "Jenin", 20)), lines);
+            assertEquals(0, registry.get("1", "Ramallah").getReserved());
+            assertTotals("1", 90, 70);
+        }
+
+        @Test
+        void wholeProductCanBeReserved() {
+            List<OrderLine> lines = availability.reserveAnywhere(registry, "1", 90);
+
+            assertEquals(3, lines.size());
+            assertEquals(0, availability.getAvailable("1"));
+        }
+
+        @Test
+        void insufficientTotalIsRejectedWithoutReserving() {
+            registry.reserve("1", "Jenin", 25);
+
+            IllegalStateException ex = assertThrows(IllegalStateException.class,
+                    () -> availability.reserveAnywhere(registry, "1", 66));
+            assertEquals("Insufficient available stock to reserve product 1", ex.getMessage());
+            assertTotals("1", 90, 25);
+        }
+
+        @Test
+        void invalidArgumentsAreRejected() {
+            assertThrows(IllegalArgumentException.class, () -> availability.reserveAnywhere(registry, "1", 0));
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                    () -> availability.reserveAnywhere(registry, "missing", 1));
+            assertEquals("No stock for product missing", ex.getMessage());
+        }
+
+        @Test
+        void concurrentAllocationsNeverOversell() throws Exception {
+            int threads = 4;
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            try {
+                Future<?>[] futures = new Future<?>[threads];
+                for (int t = 0; t < threads; t++) {
+                    futures[t] = pool.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < 50; i++) {
+                            try {
+                                availability.reserveAnywhere(registry, "1", 3);
+                            } catch (IllegalStateException sold) {
+                                // expected once the product runs out
+                            }
+                        }
+                        return null;
+                    });
+                }
+                start.countDown();
+                for (Future<?> f : futures) {
+                    f.get(10, TimeUnit.SECONDS);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+
+            long reserved = 0;
+            for (String location : List.of("Nablus", "Jenin", "Ramallah")) {
+                ProductStock stock = registry.get("1", location);
+                assertTrue(stock.getReserved() <= stock.getOnHand());
+                reserved += stock.getReserved();
+            }
+            assertEquals(reserved, availability.getReserved("1"));
+            assertTrue(availability.getAvailable("1") < 3);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("ProductStockCodec – Binary Replication Codec")
+class ProductStockCodecTest {
+
+    private ProductStockCodec.Encoder encoder;
+    private ProductStockCodec.Decoder decoder;
+    private ByteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        encoder = new ProductStockCodec.Encoder();
+        decoder = new ProductStockCodec.Decoder();
+        buffer = ByteBuffer.allocate(64 * 1024);
+    }
+
+    private static ProductStock stock(String productId, String location, int onHand, int reserved) {
+        ProductStock stock = new ProductStock(productId, location, onHand, 5, 1000);
+        if (reserved > 0) {
+            stock.reserve(reserved);
+        }
+        return stock;
+    }
+
+    private static void assertSameState(ProductStock expected, ProductStock actual) {
+        assertAll(
+                () -> assertEquals(expected.getProductId(), actual.getProductId()),
+                () -> assertEquals(expected.getLocation(), actual.getLocation()),
+                () -> assertEquals(expected.getOnHand(), actual.getOnHand()),
+                () -> assertEquals(expected.getReserved(), actual.getReserved()),
+                () -> assertEquals(expected.getReorderThreshold(), actual.getReorderThreshold()),
+                () -> assertEquals(expected.getMaxCapacity(), actual.getMaxCapacity())
+        );
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Round trips")
+    class RoundTripTests {
+
+        @Test
+        void singleRecord() {
+            ProductStock original = stock("1", "WH-1-A3", 500, 120);
+            encoder.encode(original, buffer);
+
+            assertSameState(original, decoder.decode(buffer.flip()));
+            assertFalse(buffer.hasRemaining());
+        }
+
+        @Test
+        void batchOfRecords() {
+            List<ProductStock> originals = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                originals.add(stock("P" + (i % 50), "WH-" + (i % 7) + "-é", i, i / 2));
+            }
+            encoder.encodeBatch(originals, buffer);
+
+            List<ProductStock> decoded = decoder.decodeBatch(buffer.flip());
+            assertEquals(originals.size(), decoded.size());
+            for (int i = 0; i < originals.size(); i++) {
+                assertSameState(originals.get(i), decoded.get(i));
+            }
+            assertEquals(57, decoder.dictionarySize());
+            assertEquals(encoder.dictionarySize(), decoder.dictionarySize());
+        }
+
+        @Test
+        void directBuffer() {
+            ByteBuffer direct = ByteBuffer.allocateDirect(256);
+            ProductStock original = stock("SKU-ß", "Nablus", 3, 1);
+            encoder.encode(original, direct);
+            encoder.encode(original, direct);
+
+            direct.flip();
+            assertSameState(original, decoder.decode(direct));
+            assertSameState(original, decoder.decode(direct));
+        }
+
+        @Test
+        void repeatedStringsAreSentAsCodes() {
+            ProductStock original = stock("PRODUCT-0001", "WAREHOUSE-1-A3", 50, 0);
+            encoder.encode(original, buffer);
+            int first = buffer.position();
+            encoder.encode(original, buffer);
+            int second = buffer.position() - first;
+
+            assertEquals(8, second);   // version, two codes, three 1-byte quantities, 2-byte capacity
+            assertTrue(first > 30);
+            buffer.flip();
+            decoder.decode(buffer);
+            assertSameState(original, decoder.decode(buffer));
+        }
+    }
+
+    @Nested
+    @DisplayName("Errors")
+    class ErrorTests {
+
+        @Test
+        void tooSmallBufferWritesNothing() {
+            ByteBuffer small = ByteBuffer.allocate(8);
+            assertThrows(BufferOverflowException.class, () -> encoder.encode(stock("1", "WH-1", 1, 0), small));
+
+            assertEquals(0, small.position());
+            assertEquals(0, encoder.dictionarySize());
+        }
+
+        @Test
+        void otherVersionIsRejected() {
+            buffer.put((byte) 99).flip();
+
+            IllegalStateException ex = assertThrows(IllegalStateException.class, () -> decoder.decode(buffer));
+            assertEquals("Unsupported stock codec version: 99", ex.getMessage());
+        }
+
+        @Test
+        void decoderOutOfStepIsDetected() {
+            ProductStock original = stock("1", "WH-1", 1, 0);
+            encoder.encode(original, buffer);
+            int first = buffer.position();
+            encoder.encode(original, buffer);
+            buffer.flip().position(first);
+
+            IllegalStateException ex = assertThrows(IllegalStateException.class, () -> decoder.decode(buffer));
+            assertEquals("Unknown dictionary code: 0", ex.getMessage());
+        }
+
+        @Test
+        void invalidRecordFailsConstructorRules() {
+            buffer.put((byte) ProductStockCodec.VERSION);
+            Varints.putUnsigned(buffer, 1 << 1 | 1);
+            buffer.put((byte) '1');
+            Varints.putUnsigned(buffer, 2 << 1 | 1);
+            buffer.put((byte) 'W').put((byte) 'H');
+            Varints.putUnsigned(buffer, 20);
+            Varints.putUnsigned(buffer, 0);
+            Varints.putUnsigned(buffer, 0);
+            Varints.putUnsigned(buffer, 10);
+            buffer.flip();
+
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> decoder.decode(buffer));
+            assertEquals("initialOnHand exceeds maxCapacity", ex.getMessage());
+        }
+    }
+}
@@ -2,6 +2,8 @@ import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -336,6 +338,197 @@ class ProductStockTest {
         }
     }
 
+    @Nested
+    @DisplayName("Transfers")
+    class TransferTests {
+
+        @Test
+        void transferMovesAvailableUnits() {
+            ProductStock target = new ProductStock("1", "Jenin", 10, 5, 100);
+            stock.reserve(20);
+            stock.transferTo(target, 30);
+
+            assertEquals(20, stock.getOnHand());
+            assertEquals(20, stock.getReserved());
+            assertEquals(40, target.getOnHand());
+            assertEquals(0, target.getReserved());
+        }
+
+        @Test
+        void reservedUnitsCannotMove() {
+            ProductStock target = new ProductStock("1", "Jenin", 10, 5, 100);
+            stock.reserve(20);
+
+            Exception exception = assertThrows(IllegalStateException.class, () -> stock.transferTo(target, 31));
+            assertEquals("Insufficient available stock to transfer", exception.getMessage());
+            assertEquals(50, stock.getOnHand());
+            assertEquals(10, target.getOnHand());
+        }
+
+        @Test
+        void targetCapacityIsChecked() {
+            ProductStock target = new ProductStock("1", "Jenin", 90, 5, 100);
+
+            Exception exception = assertThrows(IllegalStateException.class, () -> stock.transferTo(target, 11));
+            assertEquals("Cannot add stock beyond maxCapacity", exception.getMessage());
+            assertEquals(50, stock.getOnHand());
+            assertEquals(90, target.getOnHand());
+        }
+
+        @Test
+        void invalidTransfersFail() {
+            ProductStock other = new ProductStock("2", "Jenin", 10, 5, 100);
+            ProductStock target = new ProductStock("1", "Jenin", 10, 5, 100);
+
+            assertThrows(IllegalArgumentException.class, () -> stock.transferTo(null, 1));
+            assertThrows(IllegalArgumentException.class, () -> stock.transferTo(stock, 1));
+            assertThrows(IllegalArgumentException.class, () -> stock.transferTo(other, 1));
+            assertThrows(IllegalArgumentException.class, () -> stock.transferTo(target, 0));
+        }
+
+        @Test
+        void bothSidesAreReported() {
+            ProductStock target = new ProductStock("1", "Jenin", 10, 5, 100);
+            List<String> seen = new ArrayList<>();
+            stock.addListener((s, m, amount, previousOnHand, previousReserved) ->
+                    seen.add(m + " " + amount + " " + previousOnHand));
+            target.addListener((s, m, amount, previousOnHand, previousReserved) ->
+                    seen.add(m + " " + amount + " " + previousOnHand));
+
+            stock.transferTo(target, 5);
+            assertEquals(List.of("TRANSFER_OUT 5 50", "TRANSFER_IN 5 10"), seen);
+        }
+
+        @Test
+        void listenerOnBothSidesIsToldOnce() {
+            ProductStock target = new ProductStock("1", "Jenin", 10, 5, 100);
+            List<String> seen = new ArrayList<>();
+            StockListener listener = new StockListener() {
+                @Override
+                public void onMutation(ProductStock s, StockMutation m, int amount,
+                                       int previousOnHand, int previousReserved) {
+                    seen.add(m + " " + amount);
+                }
+
+                @Override
+                public void onTransfer(ProductStock source, ProductStock to, int amount,
+                                       int sourcePreviousOnHand, int targetPreviousOnHand) {
+                    seen.add(StockMutation.TRANSFER + " " + amount + " " + sourcePreviousOnHand
+                            + " " + targetPreviousOnHand + " " + (source == stock) + " " + (to == target));
+                }
+            };
+            stock.addListener(listener);
+            target.addListener(listener);
+
+            stock.transferTo(target, 5);
+            assertEquals(List.of("TRANSFER 5 50 10 true true"), seen);
+        }
+    }
+
+    @Nested
+    @DisplayName("Non-throwing Operations")
+    class TryOperationTests {
+
+        @Test
+        void tryReserveSucceeds() {
+            assertEquals(StockStatus.OK, stock.tryReserve(10));
+            assertEquals(10, stock.getReserved());
+        }
+
+        @Test
+        void tryReserveMoreThanAvailableLeavesStockUnchanged() {
+            assertEquals(StockStatus.INSUFFICIENT_AVAILABLE, stock.tryReserve(51));
+            assertEquals(0, stock.getReserved());
+        }
+
+        @ParameterizedTest
+        @ValueSource(ints = {0, -5})
+        void nonPositiveAmountIsInvalid(int amount) {
+            assertEquals(StockStatus.INVALID_AMOUNT, stock.tryReserve(amount));
+            assertEquals(StockStatus.INVALID_AMOUNT, stock.tryReleaseReservation(amount));
+            assertEquals(StockStatus.INVALID_AMOUNT, stock.tryShipReserved(amount));
+        }
+
+        @Test
+        void tryReleaseAndShipNeedReservation() {
+            stock.reserve(10);
+            assertEquals(StockStatus.INSUFFICIENT_RESERVED, stock.tryReleaseReservation(11));
+            assertEquals(StockStatus.INSUFFICIENT_RESERVED, stock.tryShipReserved(11));
+            assertEquals(StockStatus.OK, stock.tryShipReserved(4));
+            assertEquals(StockStatus.OK, stock.tryReleaseReservation(6));
+
+            assertEquals(46, stock.getOnHand());
+            assertEquals(0, stock.getReserved());
+        }
+
+        @Test
+        void tryShipWithCorruptedOnHand() throws Exception {
+            stock.reserve(10);
+            Field f = ProductStock.class.getDeclaredField("onHand");
+            f.setAccessible(true);
+            f.set(stock, 5);
+
+            assertEquals(StockStatus.INSUFFICIENT_ON_HAND, stock.tryShipReserved(8));
+            assertThrows(IllegalStateException.class, () -> stock.shipReserved(8));
+        }
+
+        @Test
+        void rejectedTryIsNotReported() {
+            int[] calls = new int[1];
+            stock.addListener((s, m, amount, previousOnHand, previousReserved) -> calls[0]++);
+
+            stock.tryReserve(999);
+            stock.tryReserve(1);
+
+            assertEquals(1, calls[0]);
+        }
+    }
+
+    @Nested
+    @DisplayName("Listeners")
+    class ListenerTests {
+
+        @Test
+        void listenerSeesMutationAndPreviousState() {
+            int[] seen = new int[3];
+            StockMutation[] mutation = new StockMutation[1];
+            stock.addListener((s, m, amount, previousOnHand, previousReserved) -> {
+                mutation[0] = m;
+                seen[0] = amount;
+                seen[1] = previousOnHand;
+                seen[2] = previousReserved;
+            });
+
+            stock.reserve(40);
+            stock.removeDamaged(20);
+
+            assertEquals(StockMutation.REMOVE_DAMAGED, mutation[0]);
+            assertArrayEquals(new int[]{20, 50, 40}, seen);
+            assertEquals(30, stock.getReserved());
+        }
+
+        @Test
+        void failedMutationIsNotReported() {
+            int[] calls = new int[1];
+            stock.addListener((s, m, amount, previousOnHand, previousReserved) -> calls[0]++);
+
+            assertThrows(IllegalStateException.class, () -> stock.reserve(999));
+            assertEquals(0, calls[0]);
+        }
+
+        @Test
+        void removedListenerIsNotCalled() {
+            int[] calls = new int[1];
+            StockListener listener = (s, m, amount, previousOnHand, previousReserved) -> calls[0]++;
+            stock.addListener(listener);
+            stock.addStock(1);
+            stock.removeListener(listener);
+            stock.addStock(1);
+
+            assertEquals(1, calls[0]);
+        }
+    }
+
     @Test
     void availableWithoutReservation() {
         assertEquals(50, stock.getAvailable());
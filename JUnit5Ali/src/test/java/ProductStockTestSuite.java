@@ -4,7 +4,28 @@ import org.junit.platform.suite.api.Suite;
 
 @Suite
 @SelectClasses({
-        ProductStockTest.class
+        ProductStockTest.class,
+        ConcurrentProductStockTest.class,
+        StockRegistryTest.class,
+        ColumnarStockStoreTest.class,
+        LongIntHashMapTest.class,
+        MappedStockLedgerTest.class,
+        StockWriteAheadLogTest.class,
+        ReorderIndexTest.class,
+        ReorderEventPublisherTest.class,
+        TimingWheelTest.class,
+        TimedReservationsTest.class,
+        OrderReservationsTest.class,
+        ProductAvailabilityTest.class,
+        BulkStockLoaderTest.class,
+        ProductStockCodecTest.class,
+        StockChangeFeedTest.class,
+        StockMetricsTest.class,
+        HotProductStockTest.class,
+        StockSnapshotTest.class,
+        StockAnalyticsTest.class,
+        LocationIndexTest.class,
+        OrderServiceTest.class
 })
 public class ProductStockTestSuite {
 
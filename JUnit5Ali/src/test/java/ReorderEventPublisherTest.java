@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("ReorderEventPublisher – Reorder Event Stream")
+class ReorderEventPublisherTest {
+
+    private ReorderIndex index;
+    private ReorderEventPublisher publisher;
+    private ProductStock stock;
+    private RecordingSubscriber subscriber;
+
+    static class RecordingSubscriber implements Flow.Subscriber<ReorderEvent> {
+        final List<ReorderEvent> events = new CopyOnWriteArrayList<>();
+        Flow.Subscription subscription;
+        boolean completed;
+        Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ReorderEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        index = new ReorderIndex();
+        // deliver inline so assertions see events immediately
+        publisher = new ReorderEventPublisher(index, Runnable::run);
+        stock = new ProductStock("1", "Nablus", 50, 5, 100);
+        index.track(stock);
+        subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+    }
+
+    @Test
+    void deliversTransitionsOnDemand() {
+        stock.reserve(46);
+        assertTrue(subscriber.events.isEmpty());
+
+        subscriber.subscription.request(10);
+        assertEquals(1, subscriber.events.size());
+        ReorderEvent event = subscriber.events.get(0);
+        assertEquals("1", event.productId());
+        assertTrue(event.reorderNeeded());
+        assertEquals(4, event.available());
+    }
+
+    @Test
+    void burstOnHotSkuIsCoalesced() {
+        for (int i = 0; i < 1000; i++) {
+            stock.reserve(46);
+            stock.releaseReservation(46);
+        }
+        stock.reserve(46);
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(1, subscriber.events.size());
+        assertTrue(subscriber.events.get(0).reorderNeeded());
+    }
+
+    @Test
+    void transitionsThatCancelOutAreDropped() {
+        stock.reserve(46);
+        stock.releaseReservation(46);
+
+        subscriber.subscription.request(1);
+        assertTrue(subscriber.events.isEmpty());
+    }
+
+    @Test
+    void deliveryRespectsDemand() {
+        ProductStock other = new ProductStock("2", "Jenin", 50, 5, 100);
+        index.track(other);
+        stock.reserve(46);
+        other.reserve(46);
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.events.size());
+        subscriber.subscription.request(1);
+        assertEquals(2, subscriber.events.size());
+    }
+
+    @Test
+    void invalidRequestSignalsError() {
+        subscriber.subscription.request(0);
+        assertInstanceOf(IllegalArgumentException.class, subscriber.error);
+        assertEquals(0, publisher.subscriberCount());
+    }
+
+    @Test
+    void cancelledSubscriberReceivesNothing() {
+        subscriber.subscription.request(5);
+        subscriber.subscription.cancel();
+        stock.reserve(46);
+
+        assertTrue(subscriber.events.isEmpty());
+        assertEquals(0, publisher.subscriberCount());
+    }
+
+    @Test
+    void closeCompletesAfterPendingEvents() {
+        stock.reserve(46);
+        publisher.close();
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.events.size());
+        assertTrue(subscriber.completed);
+    }
+}
@@ -0,0 +1,62 @@
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("ReorderIndex – Incremental Reorder Set")
+class ReorderIndexTest {
+
+    private ReorderIndex index;
+    private StockRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        index = new ReorderIndex();
+        registry = new StockRegistry();
+        registry.put(new ProductStock("1", "Nablus", 50, 5, 100));
+        registry.put(new ProductStock("2", "Jenin", 3, 5, 100));
+        index.trackAll(registry);
+    }
+
+    @Test
+    void initialStateIsIndexed() {
+        assertEquals(2, index.trackedCount());
+        assertEquals(1, index.size());
+        assertTrue(index.isReorderNeeded(registry.get("2", "Jenin")));
+    }
+
+    @Test
+    void reserveAcrossThresholdAddsRecord() {
+        registry.reserve("1", "Nablus", 46);
+        assertTrue(index.isReorderNeeded(registry.get("1", "Nablus")));
+
+        registry.releaseReservation("1", "Nablus", 46);
+        assertFalse(index.isReorderNeeded(registry.get("1", "Nablus")));
+    }
+
+    @Test
+    void everyBoundaryOperationIsFollowed() {
+        ProductStock stock = registry.get("1", "Nablus");
+
+        registry.removeDamaged("1", "Nablus", 46);
+        assertEquals(2, index.size());
+        registry.addStock("1", "Nablus", 10);
+        assertEquals(1, index.size());
+        stock.updateReorderThreshold(20);
+        assertEquals(2, index.size());
+        registry.reserve("1", "Nablus", 2);
+        registry.shipReserved("1", "Nablus", 2);
+        assertTrue(index.snapshot().contains(stock));
+    }
+
+    @Test
+    void untrackedRecordLeavesIndex() {
+        ProductStock low = registry.get("2", "Jenin");
+        index.untrack(low);
+
+        assertEquals(0, index.size());
+        low.addStock(50);
+        low.reserve(50);
+        assertFalse(index.isReorderNeeded(low));
+    }
+}
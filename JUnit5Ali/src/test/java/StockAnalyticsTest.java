@@ -0,0 +1,248 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("StockAnalytics – Aggregation Queries")
+class StockAnalyticsTest {
+
+    private List<ProductStock> stocks;
+    private StockAnalytics analytics;
+
+    @BeforeEach
+    void setUp() {
+        stocks = new ArrayList<>();
+        stocks.add(stock("1", "WH-1-A1", 50, 10, 5, 100));
+        stocks.add(stock("1", "WH-1-B2", 20, 0, 30, 50));
+        stocks.add(stock("2", "WH-1-A1", 80, 40, 5, 100));
+        stocks.add(stock("2", "WH-2-A1", 0, 0, 0, 10));
+        stocks.add(stock("3", "STORE-9", 5, 5, 1, 20));
+        analytics = StockAnalytics.of(stocks);
+    }
+
+    private static ProductStock stock(String productId, String location, int onHand, int reserved,
+                                      int reorderThreshold, int maxCapacity) {
+        ProductStock stock = new ProductStock(productId, location, onHand, reorderThreshold, maxCapacity);
+        if (reserved > 0) {
+            stock.reserve(reserved);
+        }
+        return stock;
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Aggregates")
+    class AggregateTests {
+
+        @Test
+        void totalsOverEveryRecord() {
+            StockAnalytics.Result result = analytics.query().run();
+
+            StockAnalytics.Aggregate total = result.total();
+            assertEquals(new StockAnalytics.Aggregate(StockAnalytics.ALL, 5, 155, 55, 280, 2), total);
+            assertEquals(List.of(total), result.groups());
+            assertEquals(100, total.available());
+            assertEquals(155.0 / 280, total.utilization(), 1e-9);
+            assertEquals(55.0 / 155, total.reservedRatio(), 1e-9);
+        }
+
+        @Test
+        void totalOnHandForALocationPrefix() {
+            StockAnalytics.Result result = analytics.query().locationMatches("WH-1-*").run();
+
+            assertEquals(3, result.total().records());
+            assertEquals(150, result.total().onHand());
+            assertEquals(250, result.total().maxCapacity());
+        }
+
+        @Test
+        void groupByProduct() {
+            StockAnalytics.Result result = analytics.query().groupByProduct().run();
+
+            assertEquals(List.of("1", "2", "3"), result.groups().stream().map(StockAnalytics.Aggregate::key).toList());
+            assertEquals(new StockAnalytics.Aggregate("2", 2, 80, 40, 110, 0), result.group("2"));
+            assertEquals(0.5, result.group("2").reservedRatio(), 1e-9);
+            assertEquals(155, result.total().onHand());
+        }
+
+        @Test
+        void groupByLocationPrefix() {
+            StockAnalytics.Result result = analytics.query().groupByLocationPrefix('-', 2).run();
+
+            assertEquals(List.of("STORE-9", "WH-1", "WH-2"),
+                    result.groups().stream().map(StockAnalytics.Aggregate::key).toList());
+            assertEquals(150, result.group("WH-1").onHand());
+            assertEquals(0.6, result.group("WH-1").utilization(), 1e-9);
+            assertEquals(0, result.group("WH-2").utilization(), 1e-9);
+            assertEquals(0, result.group("WH-2").reservedRatio(), 1e-9);
+        }
+
+        @Test
+        void emptyGroupsAreLeftOut() {
+            StockAnalytics.Result result = analytics.query().productMatches("1").groupByLocation().run();
+
+            assertEquals(List.of("WH-1-A1", "WH-1-B2"),
+                    result.groups().stream().map(StockAnalytics.Aggregate::key).toList());
+            assertNull(result.group("STORE-9"));
+        }
+
+        @Test
+        void emptySource() {
+            StockAnalytics.Result result = StockAnalytics.of(List.of()).query().groupByProduct().run();
+
+            assertTrue(result.groups().isEmpty());
+            assertEquals(0, result.total().records());
+            assertEquals(0, result.total().utilization());
+        }
+    }
+
+    @Nested
+    @DisplayName("Filters")
+    class FilterTests {
+
+        @Test
+        void fieldRangesAreInclusiveAndIntersect() {
+            StockAnalytics.Result result = analytics.query()
+                    .where(StockAnalytics.Field.AVAILABLE, 20, 100)
+                    .where(StockAnalytics.Field.MAX_CAPACITY, 0, 99)
+                    .run();
+
+            assertEquals(1, result.total().records());
+            assertEquals(20, result.total().onHand());
+        }
+
+        @Test
+        void reorderNeededAndPatternsCombine() {
+            StockAnalytics.Result result = analytics.query()
+                    .reorderNeeded()
+                    .locationMatches("WH-*")
+                    .groupByProduct()
+                    .run();
+
+            assertEquals(List.of(new StockAnalytics.Aggregate("1", 1, 20, 0, 50, 1)), result.groups());
+        }
+
+        @Test
+        void invalidQueriesFail() {
+            StockAnalytics.Query query = analytics.query();
+            assertThrows(IllegalArgumentException.class, () -> query.locationMatches("WH-*-A1"));
+            assertThrows(IllegalArgumentException.class, () -> query.productMatches(" "));
+            assertThrows(IllegalArgumentException.class, () -> query.where(StockAnalytics.Field.ON_HAND, 5, 4));
+            assertThrows(IllegalArgumentException.class, () -> query.groupByLocationPrefix('-', 0));
+        }
+
+        @Test
+        void locationPrefixes() {
+            assertEquals("WH-1", StockAnalytics.prefix("WH-1-A3", '-', 2));
+            assertEquals("WH", StockAnalytics.prefix("WH-1-A3", '-', 1));
+            assertEquals("WH-1-A3", StockAnalytics.prefix("WH-1-A3", '-', 3));
+            assertEquals("Nablus", StockAnalytics.prefix("Nablus", '-', 2));
+        }
+    }
+
+    @Nested
+    @DisplayName("Sources")
+    class SourceTests {
+
+        @Test
+        void everySourceGivesTheSameAnswer() {
+            StockRegistry registry = new StockRegistry();
+            ColumnarStockStore store = new ColumnarStockStore();
+            for (ProductStock stock : stocks) {
+                registry.put(stock);
+                store.add(stock);
+            }
+
+            StockAnalytics.Result expected = analytics.query().groupByLocation().run();
+            assertEquals(expected, StockAnalytics.of(registry).query().groupByLocation().run());
+            assertEquals(expected, StockAnalytics.of(store).query().groupByLocation().run());
+        }
+
+        @Test
+        void analyticsIsACopy() {
+            stocks.get(0).reserve(40);
+            assertEquals(55, analytics.query().run().total().reserved());
+        }
+    }
+
+    @Nested
+    @DisplayName("Parallel evaluation")
+    class ParallelTests {
+
+        @Test
+        void splitEvaluationMatchesASequentialLoop() {
+            Random random = new Random(42);
+            List<ProductStock> many = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                int capacity = 1 + random.nextInt(1000);
+                int onHand = random.nextInt(capacity + 1);
+                many.add(stock("P" + random.nextInt(500), "WH-" + (i % 7) + "-" + i, onHand,
+                        random.nextInt(onHand + 1), random.nextInt(capacity + 1), capacity));
+            }
+            Map<String, long[]> expected = new HashMap<>();
+            for (ProductStock s : many) {
+                if (s.getAvailable() >= 100) {
+                    long[] sums = expected.computeIfAbsent(s.getProductId(), k -> new long[3]);
+                    sums[0]++;
+                    sums[1] += s.getOnHand();
+                    sums[2] += s.getReserved();
+                }
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                StockAnalytics.Result result = StockAnalytics.of(many).query()
+                        .where(StockAnalytics.Field.AVAILABLE, 100, Integer.MAX_VALUE)
+                        .groupByProduct()
+                        .leafRows(64)
+                        .run(pool);
+
+                assertEquals(expected.size(), result.groups().size());
+                for (StockAnalytics.Aggregate group : result.groups()) {
+                    long[] sums = expected.get(group.key());
+                    assertArrayEquals(sums, new long[]{group.records(), group.onHand(), group.reserved()}, group.key());
+                }
+                StockAnalytics.Result total = StockAnalytics.of(many).query().leafRows(64).run(pool);
+                assertEquals(many.stream().mapToLong(ProductStock::getOnHand).sum(), total.total().onHand());
+                assertEquals(many.stream().filter(ProductStock::isReorderNeeded).count(),
+                        total.total().reorderNeeded());
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        @Test
+        void highCardinalityGroupByStillSplits() {
+            List<ProductStock> many = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                // one record per product: as many groups as rows
+                many.add(stock("P" + i, "WH-" + i, i % 50, 0, 5, 100));
+            }
+            StockAnalytics analytics = StockAnalytics.of(many);
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                StockAnalytics.Query query = analytics.query().groupByProduct().leafRows(64);
+                assertTrue(query.leafTasks(pool) > 1, () -> query.leafTasks(pool) + " leaf tasks");
+
+                StockAnalytics.Result result = query.run(pool);
+                assertEquals(20_000, result.groups().size());
+                for (StockAnalytics.Aggregate group : result.groups()) {
+                    int product = Integer.parseInt(group.key().substring(1));
+                    assertEquals(1, group.records(), group.key());
+                    assertEquals(product % 50, group.onHand(), group.key());
+                }
+                assertEquals(many.stream().mapToLong(ProductStock::getOnHand).sum(), result.total().onHand());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+import org.junit.jupiter.api.*;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("StockChangeFeed – Delta Replication")
+class StockChangeFeedTest {
+
+    private StockRegistry registry;
+    private LocalDeltaTransport transport;
+    private StockChangeFeed feed;
+    private StockReplica replica;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StockRegistry();
+        registry.put(new ProductStock("1", "Nablus", 50, 5, 100));
+        registry.put(new ProductStock("2", "Jenin", 30, 5, 100));
+        transport = new LocalDeltaTransport();
+        replica = new StockReplica();
+        transport.subscribe(replica);
+        feed = new StockChangeFeed(transport);
+        feed.trackAll(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.close();
+    }
+
+    private void assertReplicaMatchesRegistry(StockReplica replica) {
+        assertEquals(registry.size(), replica.size());
+        registry.forEach(stock -> {
+            StockReplica.Entry entry = replica.get(stock.getProductId(), stock.getLocation());
+            assertNotNull(entry, stock.toString());
+            assertEquals(stock.getOnHand(), entry.onHand());
+            assertEquals(stock.getReserved(), entry.reserved());
+            assertEquals(stock.getReorderThreshold(), entry.reorderThreshold());
+            assertEquals(stock.getMaxCapacity(), entry.maxCapacity());
+        });
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Streaming")
+    class StreamingTests {
+
+        @Test
+        void replicaFollowsEveryMutation() {
+            registry.reserve("1", "Nablus", 10);
+            registry.shipReserved("1", "Nablus", 4);
+            registry.addStock("2", "Jenin", 5);
+            registry.get("2", "Jenin").updateReorderThreshold(12);
+            feed.flush();
+
+            assertReplicaMatchesRegistry(replica);
+            assertEquals(40, replica.getAvailable("1", "Nablus"));
+            assertEquals(feed.sequence(), replica.appliedSequence());
+            assertTrue(replica.isInSync());
+        }
+
+        @Test
+        void nothingIsSentBeforeFlush() {
+            registry.reserve("1", "Nablus", 10);
+
+            assertEquals(0, replica.size());
+            assertEquals(3, feed.sequence());
+            assertEquals(0, feed.publishedSequence());
+            feed.flush();
+            assertEquals(3, feed.publishedSequence());
+            assertEquals(40, replica.getAvailable("1", "Nablus"));
+        }
+
+        @Test
+        void hotRecordIsCoalescedIntoOneDelta() {
+            feed.flush();
+            long bytesBefore = transport.publishedBytes();
+            for (int i = 0; i < 100; i++) {
+                registry.reserve("1", "Nablus", 1);
+                registry.releaseReservation("1", "Nablus", 1);
+            }
+            registry.reserve("1", "Nablus", 7);
+            feed.flush();
+
+            assertEquals(200, feed.coalescedCount());
+            assertEquals(43, replica.getAvailable("1", "Nablus"));
+            // header plus one quantities-only delta
+            assertTrue(transport.publishedBytes() - bytesBefore <= 16,
+                    () -> "batch of " + (transport.publishedBytes() - bytesBefore) + " bytes");
+        }
+
+        @Test
+        void fullBatchIsFlushedAutomatically() {
+            LocalDeltaTransport direct = new LocalDeltaTransport(0);
+            StockChangeFeed small = new StockChangeFeed(direct, 2, 0);
+            StockReplica other = new StockReplica();
+            direct.subscribe(other);
+            ProductStock a = new ProductStock("A", "WH", 5, 0, 10);
+            ProductStock b = new ProductStock("B", "WH", 5, 0, 10);
+            small.track(a);
+            assertEquals(1, small.pendingCount());
+            small.track(b);
+
+            // shipped by the background drainer, not the tracking thread
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                while (other.get("B", "WH") == null) {
+                    Thread.onSpinWait();
+                }
+            });
+            assertEquals(5, other.getAvailable("B", "WH"));
+            small.close();
+        }
+
+        @Test
+        void relocationMovesTheRecord() {
+            feed.flush();
+            registry.relocate("1", "Nablus", "Hebron");
+            feed.flush();
+
+            assertNull(replica.get("1", "Nablus"));
+            assertEquals(50, replica.getAvailable("1", "Hebron"));
+        }
+
+        @Test
+        void untrackedRecordIsRemoved() {
+            feed.flush();
+            feed.untrack(registry.get("2", "Jenin"));
+            feed.flush();
+
+            assertNull(replica.get("2", "Jenin"));
+            assertEquals(1, replica.size());
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                    () -> replica.getAvailable("2", "Jenin"));
+            assertEquals("No stock for product 2 at Jenin", ex.getMessage());
+        }
+    }
+
+    @Nested
+    @DisplayName("Catch-up")
+    class CatchUpTests {
+
+        @Test
+        void lateReplicaCatchesUpFromSnapshotAndRetainedBatches() {
+            registry.reserve("1", "Nablus", 10);
+            feed.flush();
+            registry.reserve("1", "Nablus", 5);
+            registry.addStock("2", "Jenin", 1);
+
+            StockReplica late = new StockReplica();
+            late.accept(feed.snapshot());
+            registry.removeDamaged("2", "Jenin", 6);
+            feed.flush();
+            // replays the batch from before the snapshot and the one overlapping it
+            transport.subscribe(late);
+
+            assertTrue(late.isInSync());
+            assertReplicaMatchesRegistry(late);
+            assertEquals(feed.sequence(), late.appliedSequence());
+        }
+
+        @Test
+        void missedBatchesAreDetected() {
+            LocalDeltaTransport lossy = new LocalDeltaTransport(1);
+            StockChangeFeed source = new StockChangeFeed(lossy);
+            ProductStock stock = new ProductStock("A", "WH", 50, 0, 100);
+            source.track(stock);
+            source.flush();
+            StockReplica late = new StockReplica();
+            late.accept(source.snapshot());
+
+            stock.reserve(1);
+            source.flush();
+            stock.reserve(1);
+            source.flush();
+            // only the last batch is retained
+            lossy.subscribe(late);
+
+            assertFalse(late.isInSync());
+            assertEquals(50, late.getAvailable("A", "WH"));
+
+            late.accept(source.snapshot());
+            assertTrue(late.isInSync());
+            assertEquals(48, late.getAvailable("A", "WH"));
+        }
+
+        @Test
+        void duplicateBatchIsIgnored() {
+            List<ByteBuffer> batches = new ArrayList<>();
+            transport.subscribe(batches::add);
+            registry.reserve("1", "Nablus", 10);
+            feed.flush();
+            registry.releaseReservation("1", "Nablus", 10);
+            feed.flush();
+
+            replica.accept(batches.get(0));
+            assertEquals(50, replica.getAvailable("1", "Nablus"));
+            assertTrue(replica.isInSync());
+        }
+    }
+
+    @Nested
+    @DisplayName("Concurrency")
+    class ConcurrencyTests {
+
+        @Test
+        void concurrentMutationsReplicateExactly() throws Exception {
+            feed.close();
+            transport = new LocalDeltaTransport();
+            feed = new StockChangeFeed(transport, 64, 1);
+            StockRegistry many = new StockRegistry();
+            for (int i = 0; i < 50; i++) {
+                many.put(new ProductStock("P" + i, "WH", 1000, 5, 2000));
+            }
+            registry = many;
+            StockReplica fresh = new StockReplica();
+            fresh.accept(feed.snapshot());
+            transport.subscribe(fresh);
+            feed.trackAll(many);
+
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    int seed = t;
+                    futures.add(pool.submit(() -> {
+                        for (int i = 0; i < 2000; i++) {
+                            String productId = "P" + ((i * 7 + seed) % 50);
+                            many.reserve(productId, "WH", 1);
+                            if (i % 3 == 0) {
+                                many.shipReserved(productId, "WH", 1);
+                            } else {
+                                many.releaseReservation(productId, "WH", 1);
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> f : futures) {
+                    f.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            feed.flush();
+
+            assertTrue(fresh.isInSync());
+            assertReplicaMatchesRegistry(fresh);
+            assertEquals(feed.sequence(), fresh.appliedSequence());
+        }
+
+        @Test
+        void mutatingThreadsNeverCallTheTransport() {
+            List<String> threads = new CopyOnWriteArrayList<>();
+            StockChangeFeed small = new StockChangeFeed(batch -> threads.add(Thread.currentThread().getName()), 1, 0);
+            ProductStock stock = new ProductStock("A", "WH", 50, 0, 100);
+            small.track(stock);
+            for (int i = 0; i < 50; i++) {
+                stock.reserve(1);
+            }
+            small.close();
+
+            assertFalse(threads.isEmpty());
+            String caller = Thread.currentThread().getName();
+            // only the final flush in close() runs on this thread
+            assertTrue(threads.subList(0, threads.size() - 1).stream().noneMatch(caller::equals), threads::toString);
+        }
+
+        @Test
+        void readersNeverSeeASnapshotHalfLoaded() throws Exception {
+            feed.flush();
+            ByteBuffer snapshot = feed.snapshot();
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicInteger misses = new AtomicInteger();
+            Thread reader = new Thread(() -> {
+                while (!done.get()) {
+                    if (replica.get("1", "Nablus") == null || replica.get("2", "Jenin") == null) {
+                        misses.incrementAndGet();
+                    }
+                }
+            });
+            reader.start();
+            for (int i = 0; i < 20_000; i++) {
+                replica.accept(snapshot);
+            }
+            done.set(true);
+            reader.join();
+
+            assertEquals(0, misses.get());
+            assertEquals(50, replica.getAvailable("1", "Nablus"));
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import org.junit.jupiter.api.*;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("StockMetrics – Instrumentation")
+class StockMetricsTest {
+
+    private StockRegistry registry;
+    private StockMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StockRegistry();
+        registry.put(new ProductStock("1", "Nablus", 50, 5, 100));
+        registry.put(new ProductStock("2", "Jenin", 30, 5, 100));
+        metrics = new StockMetrics();
+        registry.setMetrics(metrics);
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Registry operations")
+    class RegistryTests {
+
+        @Test
+        void successesAreCountedPerOperation() {
+            registry.reserve("1", "Nablus", 10);
+            registry.reserve("1", "Nablus", 5);
+            registry.shipReserved("1", "Nablus", 5);
+            registry.addStock("2", "Jenin", 1);
+
+            assertEquals(2, metrics.stats(StockMetrics.Operation.RESERVE).successes());
+            assertEquals(1, metrics.stats(StockMetrics.Operation.SHIP_RESERVED).successes());
+            assertEquals(1, metrics.stats(StockMetrics.Operation.ADD_STOCK).successes());
+            assertEquals(0, metrics.stats(StockMetrics.Operation.RELOCATE).successes());
+            assertEquals(2, metrics.stats(StockMetrics.Operation.RESERVE).latency().count());
+        }
+
+        @Test
+        void failuresAreCountedAndStillThrown() {
+            assertThrows(IllegalStateException.class, () -> registry.reserve("1", "Nablus", 51));
+            assertThrows(IllegalArgumentException.class, () -> registry.reserve("9", "Nowhere", 1));
+            assertThrows(IllegalStateException.class,
+                    () -> registry.reserveAll(List.of(new OrderLine("1", "Nablus", 60))));
+
+            StockMetrics.OperationStats reserve = metrics.stats(StockMetrics.Operation.RESERVE);
+            assertEquals(0, reserve.successes());
+            assertEquals(2, reserve.failures());
+            assertEquals(1, metrics.stats(StockMetrics.Operation.RESERVE_ALL).failures());
+            assertEquals(50, registry.getAvailable("1", "Nablus"));
+        }
+
+        @Test
+        void batchAndRelocationAreMeasured() {
+            registry.reserveAll(List.of(new OrderLine("1", "Nablus", 1), new OrderLine("2", "Jenin", 1)));
+            registry.relocate("2", "Jenin", "Hebron");
+
+            assertEquals(1, metrics.stats(StockMetrics.Operation.RESERVE_ALL).successes());
+            assertEquals(1, metrics.stats(StockMetrics.Operation.RELOCATE).successes());
+        }
+
+        @Test
+        void nothingIsRecordedWhenDisabled() {
+            registry.setMetrics(null);
+            registry.reserve("1", "Nablus", 10);
+
+            assertNull(registry.getMetrics());
+            assertEquals(0, metrics.stats(StockMetrics.Operation.RESERVE).successes());
+            assertEquals(40, registry.getAvailable("1", "Nablus"));
+        }
+
+        @Test
+        void hottestProductsComeFirst() {
+            for (int i = 0; i < 5; i++) {
+                registry.reserve("1", "Nablus", 1);
+            }
+            registry.reserve("2", "Jenin", 1);
+
+            List<StockMetrics.HotProduct> hottest = metrics.snapshot().hottest();
+            assertEquals(List.of(new StockMetrics.HotProduct("1", 5), new StockMetrics.HotProduct("2", 1)), hottest);
+        }
+
+        @Test
+        void resetClearsEverything() {
+            registry.reserve("1", "Nablus", 1);
+            metrics.reset();
+
+            StockMetrics.Snapshot snapshot = metrics.snapshot();
+            assertEquals(0, snapshot.operations().get(StockMetrics.Operation.RESERVE).successes());
+            assertEquals(0, snapshot.operations().get(StockMetrics.Operation.RESERVE).latency().count());
+            assertTrue(snapshot.hottest().isEmpty());
+        }
+
+        @Test
+        void concurrentCallsAreAllCounted() throws Exception {
+            registry.put(new ProductStock("3", "Gaza", 0, 0, 1_000_000));
+            int threads = 4;
+            int perThread = 5000;
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < perThread; i++) {
+                            registry.addStock("3", "Gaza", 1);
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> f : futures) {
+                    f.get(30, TimeUnit.SECONDS);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+
+            StockMetrics.OperationStats stats = metrics.stats(StockMetrics.Operation.ADD_STOCK);
+            assertEquals(threads * perThread, stats.successes());
+            assertEquals(threads * perThread, stats.latency().count());
+            assertTrue(stats.contended() <= stats.successes());
+            assertEquals(threads * perThread, registry.get("3", "Gaza").getOnHand());
+        }
+
+        @Test
+        void invalidSizesAreRejected() {
+            assertThrows(IllegalArgumentException.class, () -> new StockMetrics(0, 1));
+            assertThrows(IllegalArgumentException.class, () -> new StockMetrics(4, 5));
+        }
+    }
+
+    @Nested
+    @DisplayName("LatencyHistogram")
+    class HistogramTests {
+
+        @Test
+        void bucketsRoundTrip() {
+            for (long v : new long[]{0, 1, 31, 32, 33, 63, 64, 1000, 123_456_789, LatencyHistogram.MAX_VALUE}) {
+                int index = LatencyHistogram.index(v);
+                assertTrue(LatencyHistogram.lowestValue(index) <= v, () -> "value " + v);
+                assertTrue(LatencyHistogram.lowestValue(index + 1) > v, () -> "value " + v);
+            }
+        }
+
+        @Test
+        void percentilesAreWithinBucketPrecision() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            for (long v = 1; v <= 100_000; v++) {
+                histogram.record(v * 10);
+            }
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+            assertEquals(100_000, snapshot.count());
+            assertEquals(500_000, snapshot.p50(), 500_000 * 0.04);
+            assertEquals(990_000, snapshot.p99(), 990_000 * 0.04);
+            assertEquals(1_000_000, snapshot.max());
+            assertEquals(500_005, snapshot.mean(), 1);
+        }
+
+        @Test
+        void emptyAndOutOfRangeValues() {
+            LatencyHistogram histogram = new LatencyHistogram();
+            assertEquals(0, histogram.valueAtPercentile(99));
+
+            histogram.record(-5);
+            histogram.record(Long.MAX_VALUE);
+            assertEquals(0, histogram.valueAtPercentile(50));
+            assertEquals(LatencyHistogram.MAX_VALUE, histogram.valueAtPercentile(100));
+        }
+    }
+
+    @Nested
+    @DisplayName("HotKeyTracker")
+    class HotKeyTests {
+
+        @Test
+        void frequentKeysSurviveEviction() {
+            HotKeyTracker tracker = new HotKeyTracker(8);
+            for (int round = 0; round < 100; round++) {
+                tracker.record("hot");
+                if (round % 2 == 0) {
+                    tracker.record("warm");
+                }
+                tracker.record("cold-" + round);
+            }
+
+            List<StockMetrics.HotProduct> top = tracker.top(2);
+            assertEquals("hot", top.get(0).productId());
+            assertEquals("warm", top.get(1).productId());
+            assertTrue(top.get(0).count() >= 100);
+        }
+
+        @Test
+        void countsAreExactWithinCapacity() {
+            HotKeyTracker tracker = new HotKeyTracker(8);
+            for (int i = 0; i < 6; i++) {
+                for (int j = 0; j <= i; j++) {
+                    tracker.record("k" + i);
+                }
+            }
+
+            List<StockMetrics.HotProduct> top = tracker.top(10);
+            assertEquals(6, top.size());
+            for (int i = 0; i < 6; i++) {
+                assertEquals(new StockMetrics.HotProduct("k" + (5 - i), 6 - i), top.get(i));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("JMX")
+    class JmxTests {
+
+        @Test
+        void attributesAreReadableOverJmx() throws Exception {
+            registry.reserve("1", "Nablus", 3);
+            ObjectName name = metrics.registerMBean("test-registry");
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                Object successes = server.getAttribute(name, "SuccessCounts");
+                assertInstanceOf(javax.management.openmbean.TabularData.class, successes);
+                assertEquals(1L, metrics.getSuccessCounts().get("RESERVE"));
+                String[] hottest = (String[]) server.getAttribute(name, "HottestProducts");
+                assertArrayEquals(new String[]{"1=1"}, hottest);
+
+                server.invoke(name, "reset", null, null);
+                Map<String, Long> after = metrics.getSuccessCounts();
+                assertEquals(0L, after.get("RESERVE"));
+            } finally {
+                metrics.unregisterMBean("test-registry");
+            }
+            assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+        }
+
+        @Test
+        void duplicateRegistrationFails() {
+            metrics.registerMBean("dup");
+            try {
+                assertThrows(IllegalStateException.class, () -> new StockMetrics().registerMBean("dup"));
+            } finally {
+                metrics.unregisterMBean("dup");
+            }
+        }
+    }
+}
@@ -0,0 +1,457 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("StockRegistry – Sharded Registry")
+class StockRegistryTest {
+
+    private StockRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StockRegistry(8, 100);
+        registry.put(new ProductStock("1", "WH-1-A3", 50, 5, 100));
+        registry.put(new ProductStock("1", "WH-2-B1", 20, 5, 100));
+        registry.put(new ProductStock("2", "WH-1-A3", 10, 2, 40));
+    }
+
+    /**
+     * Runs {@code operation} on record "2" at WH-1-A3 while a relocation of
+     * that record to WH-3-C7 holds its lock, so the operation resolves the
+     * record under its old key and only gets the lock once it has moved.
+     *
+     * @return what the operation threw, or null
+     */
+    private Throwable raceWithRelocation(Runnable operation) throws Exception {
+        CountDownLatch relocating = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        registry.get("2", "WH-1-A3").addListener((stock, mutation, amount, previousOnHand, previousReserved) -> {
+            if (mutation == StockMutation.CHANGE_LOCATION) {
+                relocating.countDown();
+                try {
+                    proceed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Thread relocation = new Thread(() -> registry.relocate("2", "WH-1-A3", "WH-3-C7"));
+        relocation.start();
+        relocating.await();
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread racer = new Thread(() -> {
+            try {
+                operation.run();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        racer.start();
+        while (racer.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+        proceed.countDown();
+        relocation.join();
+        racer.join();
+        return failure.get();
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Map operations")
+    class MapTests {
+
+        @Test
+        void getByProductAndLocation() {
+            ProductStock stock = registry.get("1", "WH-2-B1");
+            assertNotNull(stock);
+            assertEquals(20, stock.getOnHand());
+            assertEquals(3, registry.size());
+        }
+
+        @Test
+        void missingRecordReturnsNull() {
+            assertNull(registry.get("3", "WH-1-A3"));
+            assertFalse(registry.contains("3", "WH-1-A3"));
+        }
+
+        @Test
+        void putReplacesExisting() {
+            ProductStock replacement = new ProductStock("2", "WH-1-A3", 1, 0, 10);
+            ProductStock previous = registry.put(replacement);
+
+            assertEquals(10, previous.getOnHand());
+            assertSame(replacement, registry.get("2", "WH-1-A3"));
+            assertEquals(3, registry.size());
+        }
+
+        @Test
+        void putIfAbsentKeepsExisting() {
+            ProductStock original = registry.get("2", "WH-1-A3");
+            ProductStock duplicate = new ProductStock("2", "WH-1-A3", 1, 0, 10);
+
+            assertSame(original, registry.putIfAbsent(duplicate));
+            assertSame(original, registry.get("2", "WH-1-A3"));
+            assertNull(registry.putIfAbsent(new ProductStock("3", "WH-1-A3", 1, 0, 10)));
+            assertEquals(4, registry.size());
+        }
+
+        @Test
+        void removeRecord() {
+            assertNotNull(registry.remove("1", "WH-1-A3"));
+            assertNull(registry.get("1", "WH-1-A3"));
+            assertEquals(2, registry.size());
+        }
+
+        @Test
+        void shardCountRoundedToPowerOfTwo() {
+            assertEquals(8, new StockRegistry(5, 0).shardCount());
+            assertEquals(1, new StockRegistry(1, 0).shardCount());
+        }
+
+        @Test
+        void keysInAShardSpreadOverItsBuckets() {
+            StockRegistry sharded = new StockRegistry(64, 0);
+            Set<Integer> buckets = new HashSet<>();
+            for (int i = 0; i < 100_000; i++) {
+                StockKey key = new StockKey("SKU-" + i, "WH-1-A" + (i % 100));
+                if (sharded.shardIndex(key) == 0) {
+                    int h = key.hashCode();
+                    // the bucket ConcurrentHashMap would pick in a 1024-bucket table
+                    buckets.add((h ^ (h >>> 16)) & 1023);
+                }
+            }
+            assertTrue(buckets.size() > 512, "buckets used: " + buckets.size());
+            assertEquals(0, new StockRegistry(1, 0).shardIndex(new StockKey("1", "WH-1")));
+        }
+
+        @Test
+        void invalidShardCountFails() {
+            assertThrows(IllegalArgumentException.class, () -> new StockRegistry(0, 10));
+        }
+    }
+
+    @Nested
+    @DisplayName("Pass-through operations")
+    class OperationTests {
+
+        @Test
+        void reserveAndShip() {
+            registry.reserve("1", "WH-1-A3", 10);
+            registry.shipReserved("1", "WH-1-A3", 4);
+
+            ProductStock stock = registry.get("1", "WH-1-A3");
+            assertEquals(46, stock.getOnHand());
+            assertEquals(6, stock.getReserved());
+            assertEquals(40, registry.getAvailable("1", "WH-1-A3"));
+        }
+
+        @Test
+        void businessRulesStillApply() {
+            Exception exception = assertThrows(IllegalStateException.class,
+                    () -> registry.reserve("2", "WH-1-A3", 11));
+            assertEquals("Insufficient available stock to reserve", exception.getMessage());
+        }
+
+        @Test
+        void unknownRecordFails() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> registry.reserve("9", "WH-1-A3", 1));
+        }
+
+        @Test
+        void relocateRekeysRecord() {
+            registry.relocate("2", "WH-1-A3", "WH-3-C7");
+
+            assertNull(registry.get("2", "WH-1-A3"));
+            assertEquals("WH-3-C7", registry.get("2", "WH-3-C7").getLocation());
+        }
+
+        @Test
+        void relocateOntoOccupiedKeyFails() {
+            assertThrows(IllegalStateException.class,
+                    () -> registry.relocate("1", "WH-1-A3", "WH-2-B1"));
+            assertEquals("WH-1-A3", registry.get("1", "WH-1-A3").getLocation());
+        }
+
+        @Test
+        @Timeout(10)
+        void operationRacingARelocationDoesNotFollowTheRecord() throws Exception {
+            Throwable failure = raceWithRelocation(() -> registry.reserve("2", "WH-1-A3", 5));
+
+            assertInstanceOf(IllegalArgumentException.class, failure);
+            assertEquals(0, registry.get("2", "WH-3-C7").getReserved());
+        }
+
+        @Test
+        @Timeout(10)
+        void concurrentReservationsOnSameRecord() throws Exception {
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        registry.reserve("1", "WH-1-A3", 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            pool.shutdown();
+
+            assertEquals(40, registry.get("1", "WH-1-A3").getReserved());
+        }
+    }
+
+    @Nested
+    @DisplayName("Batch reservation")
+    class BatchReserveTests {
+
+        @Test
+        void reservesEveryLine() {
+            registry.reserveAll(List.of(
+                    new OrderLine("1", "WH-1-A3", 10),
+                    new OrderLine("1", "WH-2-B1", 5),
+                    new OrderLine("2", "WH-1-A3", 10)));
+
+            assertEquals(10, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(5, registry.get("1", "WH-2-B1").getReserved());
+            assertEquals(0, registry.get("2", "WH-1-A3").getAvailable());
+        }
+
+        @Test
+        void failingLineLeavesNothingReserved() {
+            Exception exception = assertThrows(IllegalStateException.class,
+                    () -> registry.reserveAll(List.of(
+                            new OrderLine("1", "WH-1-A3", 10),
+                            new OrderLine("2", "WH-1-A3", 11))));
+
+            assertTrue(exception.getMessage().startsWith("Insufficient available stock to reserve"));
+            assertEquals(0, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(0, registry.get("2", "WH-1-A3").getReserved());
+        }
+
+        @Test
+        @Timeout(10)
+        void reservationRacingARelocationChangesNothing() throws Exception {
+            Throwable failure = raceWithRelocation(() -> registry.reserveAll(List.of(
+                    new OrderLine("1", "WH-1-A3", 1),
+                    new OrderLine("2", "WH-1-A3", 1))));
+
+            assertInstanceOf(IllegalStateException.class, failure);
+            assertEquals(0, registry.get("2", "WH-3-C7").getReserved());
+            assertEquals(0, registry.get("1", "WH-1-A3").getReserved());
+        }
+
+        @Test
+        void duplicateLinesAreMerged() {
+            assertThrows(IllegalStateException.class,
+                    () -> registry.reserveAll(List.of(
+                            new OrderLine("2", "WH-1-A3", 6),
+                            new OrderLine("2", "WH-1-A3", 6))));
+
+            registry.reserveAll(List.of(
+                    new OrderLine("2", "WH-1-A3", 5),
+                    new OrderLine("2", "WH-1-A3", 5)));
+            assertEquals(10, registry.get("2", "WH-1-A3").getReserved());
+        }
+
+        @Test
+        void invalidLineIsRejectedBeforeLocking() {
+            assertThrows(IllegalArgumentException.class,
+                    () -> registry.reserveAll(List.of(
+                            new OrderLine("1", "WH-1-A3", 10),
+                            new OrderLine("1", "WH-2-B1", 0))));
+            assertThrows(IllegalArgumentException.class,
+                    () -> registry.reserveAll(List.of(new OrderLine("9", "WH-9", 1))));
+            assertEquals(0, registry.get("1", "WH-1-A3").getReserved());
+        }
+
+        @Test
+        @Timeout(10)
+        void opposingOrdersDoNotDeadlock() throws Exception {
+            registry.put(new ProductStock("3", "WH-1-A3", 100_000, 0, 100_000));
+            registry.put(new ProductStock("4", "WH-1-A3", 100_000, 0, 100_000));
+            List<OrderLine> forward = List.of(
+                    new OrderLine("3", "WH-1-A3", 1), new OrderLine("4", "WH-1-A3", 1));
+            List<OrderLine> backward = List.of(
+                    new OrderLine("4", "WH-1-A3", 1), new OrderLine("3", "WH-1-A3", 1));
+
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            Future<?> a = pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    registry.reserveAll(forward);
+                }
+            });
+            Future<?> b = pool.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    registry.reserveAll(backward);
+                }
+            });
+            a.get();
+            b.get();
+            pool.shutdown();
+
+            assertEquals(20_000, registry.get("3", "WH-1-A3").getReserved());
+            assertEquals(20_000, registry.get("4", "WH-1-A3").getReserved());
+        }
+    }
+
+    @Nested
+    @DisplayName("Batch ship and release")
+    class BatchShipTests {
+
+        private final List<OrderLine> order = List.of(
+                new OrderLine("1", "WH-1-A3", 10),
+                new OrderLine("2", "WH-1-A3", 5));
+
+        @Test
+        void shipsAndReleasesEveryLine() {
+            registry.reserveAll(order);
+            registry.shipAll(order);
+            assertEquals(40, registry.get("1", "WH-1-A3").getOnHand());
+            assertEquals(5, registry.get("2", "WH-1-A3").getOnHand());
+            assertEquals(0, registry.get("2", "WH-1-A3").getReserved());
+
+            registry.reserveAll(order);
+            registry.releaseAll(order);
+            assertEquals(0, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(40, registry.get("1", "WH-1-A3").getOnHand());
+        }
+
+        @Test
+        void failingLineLeavesEveryRecordUnchanged() {
+            registry.reserveAll(order);
+            registry.releaseReservation("2", "WH-1-A3", 1);
+
+            Exception ship = assertThrows(IllegalStateException.class, () -> registry.shipAll(order));
+            assertTrue(ship.getMessage().startsWith("Cannot ship more than reserved"));
+            Exception release = assertThrows(IllegalStateException.class, () -> registry.releaseAll(order));
+            assertTrue(release.getMessage().startsWith("Cannot release more than reserved"));
+            assertEquals(50, registry.get("1", "WH-1-A3").getOnHand());
+            assertEquals(10, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(4, registry.get("2", "WH-1-A3").getReserved());
+            assertThrows(IllegalArgumentException.class,
+                    () -> registry.shipAll(List.of(new OrderLine("1", "WH-1-A3", 0))));
+        }
+
+        @Test
+        void overflowingMergedLinesReportTheOperation() {
+            List<OrderLine> huge = List.of(
+                    new OrderLine("1", "WH-1-A3", Integer.MAX_VALUE),
+                    new OrderLine("1", "WH-1-A3", 1));
+
+            assertEquals("Cannot ship more than reserved",
+                    assertThrows(IllegalStateException.class, () -> registry.shipAll(huge)).getMessage());
+            assertEquals("Cannot release more than reserved",
+                    assertThrows(IllegalStateException.class, () -> registry.releaseAll(huge)).getMessage());
+        }
+
+        @Test
+        @Timeout(10)
+        void batchesRacingARelocationChangeNothing() throws Exception {
+            registry.reserve("2", "WH-1-A3", 5);
+            List<OrderLine> lines = List.of(
+                    new OrderLine("1", "WH-1-A3", 1),
+                    new OrderLine("2", "WH-1-A3", 1));
+
+            Throwable failure = raceWithRelocation(() -> registry.shipAll(lines));
+            assertInstanceOf(IllegalStateException.class, failure);
+            assertEquals("Stock was moved or removed concurrently", failure.getMessage());
+            assertEquals(5, registry.get("2", "WH-3-C7").getReserved());
+            assertEquals(10, registry.get("2", "WH-3-C7").getOnHand());
+            assertEquals(50, registry.get("1", "WH-1-A3").getOnHand());
+        }
+    }
+
+    @Nested
+    @DisplayName("Transfers")
+    class TransferTests {
+
+        @Test
+        void transferMovesUnitsBetweenLocations() {
+            registry.reserve("1", "WH-1-A3", 10);
+            registry.transfer("1", "WH-1-A3", "WH-2-B1", 40);
+
+            assertEquals(10, registry.get("1", "WH-1-A3").getOnHand());
+            assertEquals(10, registry.get("1", "WH-1-A3").getReserved());
+            assertEquals(60, registry.get("1", "WH-2-B1").getOnHand());
+            StockRegistry.Snapshot snapshot = registry.snapshot();
+            assertEquals(10, snapshot.get("1", "WH-1-A3").onHand());
+            assertEquals(60, snapshot.get("1", "WH-2-B1").onHand());
+        }
+
+        @Test
+        void failedTransferChangesNothing() {
+            registry.put(new ProductStock("1", "WH-3-C1", 95, 5, 100));
+
+            assertThrows(IllegalStateException.class, () -> registry.transfer("1", "WH-1-A3", "WH-3-C1", 6));
+            assertThrows(IllegalStateException.class, () -> registry.transfer("1", "WH-2-B1", "WH-1-A3", 21));
+            assertThrows(IllegalArgumentException.class, () -> registry.transfer("1", "WH-1-A3", "WH-1-A3", 1));
+            assertThrows(IllegalArgumentException.class, () -> registry.transfer("1", "WH-1-A3", "WH-9", 1));
+            assertThrows(IllegalArgumentException.class, () -> registry.transfer("1", "WH-1-A3", "WH-2-B1", 0));
+
+            assertEquals(50, registry.get("1", "WH-1-A3").getOnHand());
+            assertEquals(20, registry.get("1", "WH-2-B1").getOnHand());
+            assertEquals(95, registry.get("1", "WH-3-C1").getOnHand());
+        }
+
+        @Test
+        @Timeout(20)
+        void opposingTransfersDoNotDeadlockOrLoseStock() throws Exception {
+            registry.put(new ProductStock("3", "WH-1-A1", 5_000, 0, 10_000));
+            registry.put(new ProductStock("3", "WH-1-A2", 5_000, 0, 10_000));
+            ExecutorService pool = Executors.newFixedThreadPool(5);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    boolean forward = t % 2 == 0;
+                    futures.add(pool.submit(() -> {
+                        for (int i = 0; i < 20_000; i++) {
+                            try {
+                                if (forward) {
+                                    registry.transfer("3", "WH-1-A1", "WH-1-A2", 3);
+                                } else {
+                                    registry.transfer("3", "WH-1-A2", "WH-1-A1", 3);
+                                }
+                            } catch (IllegalStateException e) {
+                                // one side ran dry; keep going
+                            }
+                        }
+                    }));
+                }
+                Future<Integer> reader = pool.submit(() -> {
+                    int checked = 0;
+                    while (!futures.stream().allMatch(Future::isDone)) {
+                        StockRegistry.Snapshot snapshot = registry.snapshot();
+                        assertEquals(10_000, snapshot.get("3", "WH-1-A1").onHand()
+                                             + snapshot.get("3", "WH-1-A2").onHand());
+                        checked++;
+                    }
+                    return checked;
+                });
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                reader.get();
+            } finally {
+                pool.shutdownNow();
+            }
+
+            assertEquals(10_000, registry.get("3", "WH-1-A1").getOnHand() + registry.get("3", "WH-1-A2").getOnHand());
+        }
+    }
+}
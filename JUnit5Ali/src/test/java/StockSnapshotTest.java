@@ -0,0 +1,199 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("StockSnapshot – Point-in-time Reads")
+class StockSnapshotTest {
+
+    private StockRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StockRegistry(8, 100);
+        registry.put(new ProductStock("1", "Nablus", 50, 5, 100));
+        registry.put(new ProductStock("2", "Jenin", 30, 5, 100));
+    }
+
+    @Nested
+    @Tag("sanity")
+    @DisplayName("Single record")
+    class SingleRecordTests {
+
+        @Test
+        void registryRecordSnapshot() {
+            registry.reserve("1", "Nablus", 10);
+            registry.updateReorderThreshold("1", "Nablus", 45);
+
+            StockSnapshot snapshot = registry.snapshot("1", "Nablus");
+            assertEquals(new StockSnapshot("1", "Nablus", 50, 10, 45, 100), snapshot);
+            assertEquals(40, snapshot.available());
+            assertTrue(snapshot.isReorderNeeded());
+            assertNull(registry.snapshot("9", "Nowhere"));
+        }
+
+        @Test
+        void snapshotDoesNotFollowLaterChanges() {
+            StockSnapshot before = registry.snapshot("1", "Nablus");
+            registry.reserve("1", "Nablus", 10);
+
+            assertEquals(0, before.reserved());
+            assertEquals(10, registry.snapshot("1", "Nablus").reserved());
+        }
+
+        @Test
+        void concurrentVariantsSnapshot() {
+            ConcurrentProductStock concurrent = new ConcurrentProductStock("1", "Nablus", 50, 5, 100);
+            concurrent.reserve(20);
+            assertEquals(new StockSnapshot("1", "Nablus", 50, 20, 5, 100), concurrent.snapshot());
+
+            HotProductStock hot = new HotProductStock("1", "Nablus", 50, 5, 100);
+            hot.split();
+            hot.reserve(20);
+            assertEquals(new StockSnapshot("1", "Nablus", 50, 20, 5, 100), hot.snapshot());
+        }
+
+        @Test
+        void onlyTheLatestVersionIsKeptWithoutReaders() {
+            for (int i = 0; i < 10; i++) {
+                registry.reserve("1", "Nablus", 1);
+            }
+            StockRegistry.Version head = registry.entry(new StockKey("1", "Nablus")).head;
+            assertEquals(10, head.reserved);
+            assertNull(head.previous);
+        }
+    }
+
+    @Nested
+    @DisplayName("Whole registry")
+    class RegistryTests {
+
+        @Test
+        void snapshotHoldsEveryRecord() {
+            registry.reserve("2", "Jenin", 5);
+            StockRegistry.Snapshot snapshot = registry.snapshot();
+
+            assertEquals(2, snapshot.size());
+            assertEquals(50, snapshot.get("1", "Nablus").available());
+            assertEquals(25, snapshot.get("2", "Jenin").available());
+            assertThrows(UnsupportedOperationException.class, () -> snapshot.records().clear());
+        }
+
+        @Test
+        void snapshotIsUnaffectedByLaterWrites() {
+            StockRegistry.Snapshot snapshot = registry.snapshot();
+            registry.reserve("1", "Nablus", 10);
+            registry.remove("2", "Jenin");
+            registry.put(new ProductStock("3", "Gaza", 5, 1, 10));
+
+            assertEquals(2, snapshot.size());
+            assertEquals(0, snapshot.get("1", "Nablus").reserved());
+            assertNotNull(snapshot.get("2", "Jenin"));
+            assertNull(snapshot.get("3", "Gaza"));
+            assertTrue(registry.snapshot().version() > snapshot.version());
+        }
+
+        @Test
+        void structuralChangesAreVisible() {
+            registry.remove("2", "Jenin");
+            registry.relocate("1", "Nablus", "Hebron");
+            registry.put(new ProductStock("1", "Nablus", 7, 1, 10));
+            registry.put(new ProductStock("3", "Gaza", 5, 1, 10));
+            registry.put(new ProductStock("3", "Gaza", 6, 1, 10));
+
+            StockRegistry.Snapshot snapshot = registry.snapshot();
+            assertEquals(3, snapshot.size());
+            assertNull(snapshot.get("2", "Jenin"));
+            assertEquals(50, snapshot.get("1", "Hebron").onHand());
+            assertEquals(7, snapshot.get("1", "Nablus").onHand());
+            assertEquals(6, snapshot.get("3", "Gaza").onHand());
+        }
+
+        @Test
+        void failedOperationsPublishNothing() {
+            long before = registry.entry(new StockKey("1", "Nablus")).head.number;
+            registry.snapshot();
+            assertThrows(IllegalStateException.class, () -> registry.reserve("1", "Nablus", 51));
+            assertThrows(IllegalStateException.class,
+                    () -> registry.reserveAll(List.of(new OrderLine("1", "Nablus", 1), new OrderLine("2", "Jenin", 31))));
+
+            assertEquals(before, registry.entry(new StockKey("1", "Nablus")).head.number);
+        }
+    }
+
+    @Nested
+    @DisplayName("Concurrency")
+    class ConcurrencyTests {
+
+        @Test
+        @Timeout(20)
+        void snapshotsNeverSeePartOfABatch() throws Exception {
+            StockRegistry pairs = new StockRegistry(8, 100);
+            for (int i = 0; i < 8; i++) {
+                pairs.put(new ProductStock("A" + i, "WH", 100_000, 0, 100_000));
+                pairs.put(new ProductStock("B" + i, "WH", 100_000, 0, 100_000));
+            }
+            AtomicBoolean done = new AtomicBoolean();
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            CountDownLatch start = new CountDownLatch(1);
+            try {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int t = 0; t < 3; t++) {
+                    int seed = t;
+                    writers.add(pool.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < 5000; i++) {
+                            int pair = (i + seed) % 8;
+                            pairs.reserveAll(List.of(new OrderLine("A" + pair, "WH", 1),
+                                    new OrderLine("B" + pair, "WH", 1)));
+                            if (i % 100 == 0) {
+                                // churn records so snapshots also race with structural changes
+                                pairs.put(new ProductStock("C" + seed, "WH", i, 0, 100_000));
+                                pairs.remove("C" + seed, "WH");
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                Future<Integer> reader = pool.submit(() -> {
+                    start.await();
+                    int snapshots = 0;
+                    while (!done.get()) {
+                        StockRegistry.Snapshot snapshot = pairs.snapshot();
+                        for (int i = 0; i < 8; i++) {
+                            assertEquals(snapshot.get("A" + i, "WH").reserved(),
+                                    snapshot.get("B" + i, "WH").reserved(), "pair " + i);
+                        }
+                        snapshots++;
+                    }
+                    return snapshots;
+                });
+                start.countDown();
+                for (Future<?> writer : writers) {
+                    writer.get(20, TimeUnit.SECONDS);
+                }
+                done.set(true);
+                assertTrue(reader.get(20, TimeUnit.SECONDS) > 0);
+            } finally {
+                pool.shutdownNow();
+            }
+
+            StockRegistry.Snapshot last = pairs.snapshot();
+            assertEquals(16, last.size());
+            int total = 0;
+            for (int i = 0; i < 8; i++) {
+                total += last.get("A" + i, "WH").reserved();
+            }
+            assertEquals(15_000, total);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("StockWriteAheadLog – Durable Mutation Log")
+class StockWriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void everyMutationIsReplayed() throws IOException {
+        StockRegistry registry = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, registry)) {
+            ProductStock stock = new ProductStock("1", "Nablus", 50, 5, 100);
+            registry.put(stock);
+            log.track(stock);
+
+            registry.addStock("1", "Nablus", 10);
+            registry.removeDamaged("1", "Nablus", 5);
+            registry.reserve("1", "Nablus", 20);
+            registry.releaseReservation("1", "Nablus", 5);
+            registry.shipReserved("1", "Nablus", 10);
+            registry.relocate("1", "Nablus", "Jenin");
+            stock.updateMaxCapacity(200);
+            stock.updateReorderThreshold(30);
+        }
+
+        StockRegistry restored = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, restored)) {
+            assertEquals(1, log.size());
+            ProductStock stock = restored.get("1", "Jenin");
+            assertNotNull(stock);
+            assertEquals(45, stock.getOnHand());
+            assertEquals(5, stock.getReserved());
+            assertEquals(30, stock.getReorderThreshold());
+            assertEquals(200, stock.getMaxCapacity());
+        }
+    }
+
+    @Test
+    void untrackedRecordIsNotRestored() throws IOException {
+        StockRegistry registry = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, registry)) {
+            ProductStock stock = new ProductStock("1", "Nablus", 50, 5, 100);
+            registry.put(stock);
+            log.track(stock);
+            log.untrack(registry.remove("1", "Nablus"));
+        }
+        StockRegistry restored = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, restored)) {
+            assertEquals(0, log.size());
+            assertEquals(0, restored.size());
+        }
+    }
+
+    @Test
+    void durabilityWaitIsDeferredToTheScope() throws IOException {
+        StockRegistry registry = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, registry)) {
+            ProductStock stock = new ProductStock("1", "Nablus", 50, 5, 100);
+            registry.put(stock);
+            log.track(stock);
+            long tracked = log.durablePosition();
+
+            DurabilityScope outer = DurabilityScope.open();
+            DurabilityScope inner = DurabilityScope.open();
+            stock.reserve(5);
+            inner.close();
+            // appended, but not waited for while the outer scope is open
+            assertEquals(tracked, log.durablePosition());
+            outer.close();
+            assertTrue(log.durablePosition() > tracked);
+
+            long reserved = log.durablePosition();
+            registry.reserve("1", "Nablus", 5);
+            assertTrue(log.durablePosition() > reserved);
+        }
+        StockRegistry restored = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, restored)) {
+            assertEquals(1, log.size());
+            assertEquals(10, restored.get("1", "Nablus").getReserved());
+        }
+    }
+
+    @Test
+    @Timeout(20)
+    void concurrentWritersShareGroupCommits() throws Exception {
+        StockRegistry registry = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, registry)) {
+            for (int p = 0; p < 8; p++) {
+                ProductStock stock = new ProductStock("P" + p, "WH-1", 1000, 0, 1000);
+                registry.put(stock);
+                log.track(stock);
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < 8; p++) {
+                String productId = "P" + p;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        registry.reserve(productId, "WH-1", 1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            pool.shutdown();
+        }
+
+        StockRegistry restored = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, restored)) {
+            assertEquals(8, log.size());
+            for (int p = 0; p < 8; p++) {
+                assertEquals(200, restored.get("P" + p, "WH-1").getReserved());
+            }
+        }
+    }
+
+    @Test
+    void snapshotReplacesOldSegments() throws IOException {
+        StockRegistry registry = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, registry)) {
+            ProductStock stock = new ProductStock("1", "Nablus", 50, 5, 100);
+            registry.put(stock);
+            log.track(stock);
+            registry.reserve("1", "Nablus", 10);
+
+            log.snapshot();
+            registry.reserve("1", "Nablus", 5);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.filter(f -> f.toString().endsWith(".snap")).count());
+        }
+
+        StockRegistry restored = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, restored)) {
+            assertEquals(1, log.size());
+            assertEquals(15, restored.get("1", "Nablus").getReserved());
+            restored.reserve("1", "Nablus", 1);
+        }
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, new StockRegistry())) {
+            assertEquals(1, log.size());
+        }
+    }
+
+    @Test
+    void tornTailIsIgnored() throws IOException {
+        StockRegistry registry = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, registry)) {
+            ProductStock stock = new ProductStock("1", "Nablus", 50, 5, 100);
+            registry.put(stock);
+            log.track(stock);
+            registry.reserve("1", "Nablus", 10);
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(f -> f.toString().endsWith(".log")).sorted().findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        StockRegistry restored = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, restored)) {
+            assertEquals(1, log.size());
+            assertEquals(10, restored.get("1", "Nablus").getReserved());
+        }
+    }
+
+    @Test
+    void transferIsLoggedAsOneFrame() throws IOException {
+        StockRegistry registry = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, registry)) {
+            ProductStock source = new ProductStock("1", "Nablus", 50, 5, 100);
+            ProductStock target = new ProductStock("1", "Jenin", 10, 5, 100);
+            registry.put(source);
+            registry.put(target);
+            log.track(source);
+            log.track(target);
+            // outside a scope each event is fsynced on its own frame
+            source.transferTo(target, 5);
+        }
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(f -> f.toString().endsWith(".log")).sorted().findFirst().orElseThrow();
+        }
+
+        StockRegistry replayed = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, replayed)) {
+            assertEquals(2, log.size());
+            assertEquals(45, replayed.get("1", "Nablus").getOnHand());
+            assertEquals(15, replayed.get("1", "Jenin").getOnHand());
+        }
+
+        // crash before the transfer's last frame reached the disk
+        dropLastFrame(segment);
+        StockRegistry restored = new StockRegistry();
+        try (StockWriteAheadLog log = StockWriteAheadLog.open(dir, restored)) {
+            assertEquals(2, log.size());
+            assertEquals(50, restored.get("1", "Nablus").getOnHand());
+            assertEquals(10, restored.get("1", "Jenin").getOnHand());
+        }
+    }
+
+    private static void dropLastFrame(Path segment) throws IOException {
+        byte[] data = Files.readAllBytes(segment);
+        ByteBuffer frames = ByteBuffer.wrap(data);
+        int last = 0;
+        while (frames.remaining() >= 8) {
+            last = frames.position();
+            int length = frames.getInt();
+            frames.position(frames.position() + 4 + length);
+        }
+        Files.write(segment, Arrays.copyOf(data, last));
+    }
+}
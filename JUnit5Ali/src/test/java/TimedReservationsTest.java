@@ -0,0 +1,131 @@
+import org.junit.jupiter.api.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("TimedReservations – Reservation TTL")
+class TimedReservationsTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+    private StockRegistry registry;
+    private TimedReservations holds;
+
+    @BeforeEach
+    void setUp() {
+        registry = new StockRegistry();
+        registry.put(new ProductStock("1", "Nablus", 50, 5, 100));
+        holds = new TimedReservations(registry, 10, clock::get, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        holds.close();
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(millis);
+        holds.expireDue();
+    }
+
+    @Test
+    void holdReservesImmediately() {
+        TimedReservations.Hold hold = holds.reserve("1", "Nablus", 20, Duration.ofSeconds(1));
+        assertEquals(30, registry.getAvailable("1", "Nablus"));
+        assertTrue(holds.isPending(hold));
+        assertEquals(1, holds.pendingCount());
+    }
+
+    @Test
+    void expiredHoldIsReleased() {
+        TimedReservations.Hold hold = holds.reserve("1", "Nablus", 20, Duration.ofMillis(100));
+        advance(99);
+        assertEquals(30, registry.getAvailable("1", "Nablus"));
+        advance(1);
+        assertEquals(50, registry.getAvailable("1", "Nablus"));
+        assertFalse(holds.isPending(hold));
+        assertEquals(1, holds.expiredCount());
+    }
+
+    @Test
+    void neverExpiresEarlyWithinATick() {
+        clock.addAndGet(9);   // just before the next tick boundary
+        holds.reserve("1", "Nablus", 20, Duration.ofMillis(15));
+        advance(14);
+        assertEquals(30, registry.getAvailable("1", "Nablus"));
+        advance(10);
+        assertEquals(50, registry.getAvailable("1", "Nablus"));
+    }
+
+    @Test
+    void shippedHoldDoesNotExpire() {
+        TimedReservations.Hold hold = holds.reserve("1", "Nablus", 20, Duration.ofMillis(100));
+        holds.ship(hold);
+        advance(1_000);
+
+        ProductStock stock = registry.get("1", "Nablus");
+        assertEquals(30, stock.getOnHand());
+        assertEquals(0, stock.getReserved());
+        assertEquals(0, holds.expiredCount());
+    }
+
+    @Test
+    void expiredHoldCannotBeShipped() {
+        TimedReservations.Hold hold = holds.reserve("1", "Nablus", 20, Duration.ofMillis(100));
+        advance(100);
+        assertThrows(IllegalStateException.class, () -> holds.ship(hold));
+        assertFalse(holds.release(hold));
+        assertEquals(0, registry.get("1", "Nablus").getReserved());
+    }
+
+    @Test
+    void releaseSettlesOnce() {
+        TimedReservations.Hold hold = holds.reserve("1", "Nablus", 20, Duration.ofMillis(100));
+        assertTrue(holds.release(hold));
+        assertFalse(holds.release(hold));
+        assertEquals(50, registry.getAvailable("1", "Nablus"));
+    }
+
+    @Test
+    void extendPushesExpiry() {
+        TimedReservations.Hold hold = holds.reserve("1", "Nablus", 20, Duration.ofMillis(100));
+        advance(80);
+        assertTrue(holds.extend(hold, Duration.ofMillis(100)));
+        advance(80);
+        assertTrue(holds.isPending(hold));
+        advance(20);
+        assertFalse(holds.isPending(hold));
+        assertFalse(holds.extend(hold, Duration.ofMillis(100)));
+    }
+
+    @Test
+    void trimmedReservationIsSkippedOnExpiry() {
+        holds.reserve("1", "Nablus", 20, Duration.ofMillis(100));
+        registry.removeDamaged("1", "Nablus", 40);   // reserved trimmed to 10
+        advance(100);
+        assertEquals(10, registry.get("1", "Nablus").getReserved());
+    }
+
+    @Test
+    void failedReserveSchedulesNothing() {
+        assertThrows(IllegalStateException.class,
+                () -> holds.reserve("1", "Nablus", 999, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> holds.reserve("1", "Nablus", 5, Duration.ZERO));
+        assertEquals(0, holds.pendingCount());
+    }
+
+    @Test
+    @Timeout(5)
+    void backgroundTickerExpiresHolds() throws InterruptedException {
+        try (TimedReservations live = new TimedReservations(registry, 5)) {
+            live.reserve("1", "Nablus", 20, Duration.ofMillis(20));
+            while (registry.getAvailable("1", "Nablus") != 50) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, live.expiredCount());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("regression")
+@DisplayName("TimingWheel – Hierarchical Expiry")
+class TimingWheelTest {
+
+    private TimingWheel<String> wheel;
+    private List<String> fired;
+
+    @BeforeEach
+    void setUp() {
+        wheel = new TimingWheel<>(0);
+        fired = new ArrayList<>();
+    }
+
+    @Test
+    void firesAtDeadlineNotBefore() {
+        wheel.schedule("a", 5);
+        wheel.advanceTo(4, fired::add);
+        assertTrue(fired.isEmpty());
+        wheel.advanceTo(5, fired::add);
+        assertEquals(List.of("a"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        wheel.advanceTo(10, fired::add);
+        wheel.schedule("late", 3);
+        wheel.advanceTo(11, fired::add);
+        assertEquals(List.of("late"), fired);
+    }
+
+    @Test
+    void cascadesAcrossLevelBoundaries() {
+        long[] deadlines = {63, 64, 65, 4095, 4096, 4097, 262_144, 262_145};
+        for (long d : deadlines) {
+            wheel.schedule("t" + d, d);
+        }
+        for (long d : deadlines) {
+            wheel.advanceTo(d - 1, fired::add);
+            assertFalse(fired.contains("t" + d), "fired early: " + d);
+            wheel.advanceTo(d, fired::add);
+            assertTrue(fired.contains("t" + d), "not fired: " + d);
+        }
+    }
+
+    @Test
+    void cancelledTimerNeverFires() {
+        TimingWheel.Node<String> node = wheel.schedule("a", 100);
+        wheel.schedule("b", 100);
+        assertTrue(wheel.cancel(node));
+        assertFalse(wheel.cancel(node));
+        wheel.advanceTo(200, fired::add);
+        assertEquals(List.of("b"), fired);
+    }
+
+    @Test
+    void rescheduleMovesDeadline() {
+        TimingWheel.Node<String> node = wheel.schedule("a", 10);
+        wheel.reschedule(node, 5_000);
+        wheel.advanceTo(4_999, fired::add);
+        assertTrue(fired.isEmpty());
+        wheel.advanceTo(5_000, fired::add);
+        assertEquals(List.of("a"), fired);
+        assertThrows(IllegalStateException.class, () -> wheel.reschedule(node, 6_000));
+    }
+
+    @Test
+    void deadlineBeyondTopLevelIsParkedAndRefiled() {
+        long far = (1L << 36) + 10;
+        TimingWheel<String> w = new TimingWheel<>((1L << 36) - 5);
+        w.schedule("far", (1L << 36) - 5 + far);
+        w.advanceTo((1L << 36) - 5 + far - 1, fired::add);
+        assertTrue(fired.isEmpty());
+        w.advanceTo((1L << 36) - 5 + far, fired::add);
+        assertEquals(List.of("far"), fired);
+    }
+
+    @Test
+    void randomScheduleMatchesExactDeadlines() {
+        Random random = new Random(42);
+        Map<String, Long> deadlines = new HashMap<>();
+        Map<String, TimingWheel.Node<String>> nodes = new HashMap<>();
+        long now = 0;
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 50; i++) {
+                String id = round + "-" + i;
+                long d = now + 1 + (random.nextBoolean() ? random.nextInt(100) : random.nextInt(300_000));
+                deadlines.put(id, d);
+                nodes.put(id, wheel.schedule(id, d));
+            }
+            // cancel a few
+            for (int i = 0; i < 5; i++) {
+                String id = round + "-" + random.nextInt(50);
+                if (nodes.get(id).isScheduled()) {
+                    wheel.cancel(nodes.get(id));
+                    deadlines.remove(id);
+                }
+            }
+            long target = now + random.nextInt(5_000);
+            long at = now;
+            while (at < target) {
+                at++;
+                long tick = at;
+                wheel.advanceTo(tick, id -> {
+                    assertEquals(deadlines.get(id), tick, id);
+                    deadlines.remove(id);
+                });
+            }
+            now = target;
+        }
+        wheel.advanceTo(now + 400_000, id -> deadlines.remove(id));
+        assertTrue(deadlines.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+}